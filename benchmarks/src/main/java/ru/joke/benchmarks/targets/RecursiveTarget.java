@@ -0,0 +1,19 @@
+package ru.joke.benchmarks.targets;
+
+import ru.joke.profiler.benchmarks.BenchmarkTarget;
+
+/*
+ * Outside of the agent packages: classes of the agent itself are never instrumented.
+ * Each call of the target makes depth nested calls of the instrumented method.
+ */
+public final class RecursiveTarget implements BenchmarkTarget {
+
+    @Override
+    public long call(final int depth, final long seed) {
+        long value = seed ^ (seed >>> 33);
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+
+        return depth <= 1 ? value : call(depth - 1, value);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.joke.benchmarks.workload;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+ * JDBC calls against the embedded in-memory H2 database; each worker uses its own connection,
+ * so the repository doesn't add a contention of its own to the measured overhead.
+ */
+final class InventoryRepository implements AutoCloseable {
+
+    static final int ITEMS_COUNT = 10_000;
+
+    private static final String URL = "jdbc:h2:mem:workload;DB_CLOSE_DELAY=-1";
+
+    private final Connection connection;
+    private final PreparedStatement selectStatement;
+    private final PreparedStatement updateStatement;
+
+    InventoryRepository() throws SQLException {
+        this.connection = DriverManager.getConnection(URL);
+        this.selectStatement = this.connection.prepareStatement("SELECT quantity FROM inventory WHERE id = ?");
+        this.updateStatement = this.connection.prepareStatement("UPDATE inventory SET quantity = quantity + 1 WHERE id = ?");
+    }
+
+    static void createSchema() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE inventory (id INT PRIMARY KEY, quantity INT NOT NULL)");
+            statement.execute("INSERT INTO inventory SELECT x, 100 FROM SYSTEM_RANGE(0, " + (ITEMS_COUNT - 1) + ")");
+        }
+    }
+
+    int quantity(final int itemId) throws SQLException {
+        this.selectStatement.setInt(1, itemId);
+        try (ResultSet resultSet = this.selectStatement.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    void restock(final int itemId) throws SQLException {
+        this.updateStatement.setInt(1, itemId);
+        this.updateStatement.executeUpdate();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        this.connection.close();
+    }
+}
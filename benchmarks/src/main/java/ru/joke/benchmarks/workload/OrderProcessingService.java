@@ -0,0 +1,60 @@
+package ru.joke.benchmarks.workload;
+
+import java.sql.SQLException;
+
+/*
+ * Call tree of a request: stages are nested depth times, each non-leaf stage calls fan-out stages
+ * of the next level, each leaf stage calls the recursive calculator and every jdbcEvery-th leaf
+ * of the request queries the inventory (and updates it for odd requests).
+ */
+final class OrderProcessingService {
+
+    private final WorkloadShape shape;
+    private final PricingCalculator calculator;
+    private final InventoryRepository repository;
+    private long requestId;
+    private int leafCounter;
+
+    OrderProcessingService(
+            final WorkloadShape shape,
+            final PricingCalculator calculator,
+            final InventoryRepository repository
+    ) {
+        this.shape = shape;
+        this.calculator = calculator;
+        this.repository = repository;
+    }
+
+    long handle(final long requestId) throws SQLException {
+        this.requestId = requestId;
+        this.leafCounter = 0;
+        return processStage(1, requestId);
+    }
+
+    private long processStage(final int level, final long seed) throws SQLException {
+        if (level >= this.shape.depth()) {
+            return processLeaf(seed);
+        }
+
+        long result = seed;
+        for (int i = 0; i < this.shape.fanOut(); i++) {
+            result += processStage(level + 1, result * 31 + i);
+        }
+
+        return result;
+    }
+
+    private long processLeaf(final long seed) throws SQLException {
+        final long price = this.calculator.price(this.shape.recursionDepth(), seed);
+        if (this.shape.jdbcEvery() <= 0 || ++this.leafCounter % this.shape.jdbcEvery() != 0) {
+            return price;
+        }
+
+        final int itemId = (int) ((price >>> 1) % InventoryRepository.ITEMS_COUNT);
+        if ((this.requestId & 1) == 1) {
+            this.repository.restock(itemId);
+        }
+
+        return price + this.repository.quantity(itemId);
+    }
+}
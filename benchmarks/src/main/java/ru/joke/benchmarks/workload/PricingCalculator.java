@@ -0,0 +1,23 @@
+package ru.joke.benchmarks.workload;
+
+/*
+ * Recursive part of the call tree: each level is a separate instrumented call doing a bit of arithmetic.
+ */
+final class PricingCalculator {
+
+    private final int work;
+
+    PricingCalculator(final int work) {
+        this.work = work;
+    }
+
+    long price(final int depth, final long seed) {
+        long value = seed;
+        for (int i = 0; i < this.work; i++) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+        }
+
+        return depth <= 1 ? value : price(depth - 1, value);
+    }
+}
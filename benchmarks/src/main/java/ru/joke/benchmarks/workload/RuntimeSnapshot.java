@@ -0,0 +1,114 @@
+package ru.joke.benchmarks.workload;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * GC, allocation and CPU counters of the JVM at a moment. CPU of the Java threads which aren't started
+ * by the workload is attributed to the agent (sink flushing, journal, aggregation, metrics threads); JVM's
+ * own Java threads are idle, the run without the agent shows the remaining noise.
+ */
+final class RuntimeSnapshot {
+
+    private final long gcCount;
+    private final long gcTimeMs;
+    private final Map<Long, Long> allocatedBytes;
+    private final long processCpuNs;
+    private final Map<Long, Long> foreignThreadsCpuNs;
+
+    private RuntimeSnapshot(
+            final long gcCount,
+            final long gcTimeMs,
+            final Map<Long, Long> allocatedBytes,
+            final long processCpuNs,
+            final Map<Long, Long> foreignThreadsCpuNs
+    ) {
+        this.gcCount = gcCount;
+        this.gcTimeMs = gcTimeMs;
+        this.allocatedBytes = allocatedBytes;
+        this.processCpuNs = processCpuNs;
+        this.foreignThreadsCpuNs = foreignThreadsCpuNs;
+    }
+
+    static RuntimeSnapshot take(final Set<Long> workloadThreadIds) {
+        long gcCount = 0;
+        long gcTimeMs = 0;
+        for (final GarbageCollectorMXBean gcMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(gcMXBean.getCollectionCount(), 0);
+            gcTimeMs += Math.max(gcMXBean.getCollectionTime(), 0);
+        }
+
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        final long[] threadIds = threadMXBean.getAllThreadIds();
+
+        final Map<Long, Long> allocatedBytes = new HashMap<>();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            final long[] threadsAllocatedBytes = ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadIds);
+            for (int i = 0; i < threadIds.length; i++) {
+                if (threadsAllocatedBytes[i] > 0) {
+                    allocatedBytes.put(threadIds[i], threadsAllocatedBytes[i]);
+                }
+            }
+        }
+
+        final Map<Long, Long> foreignThreadsCpuNs = new HashMap<>();
+        for (final long threadId : threadIds) {
+            if (workloadThreadIds.contains(threadId)) {
+                continue;
+            }
+
+            final long cpuTime = threadMXBean.getThreadCpuTime(threadId);
+            if (cpuTime > 0) {
+                foreignThreadsCpuNs.put(threadId, cpuTime);
+            }
+        }
+
+        final OperatingSystemMXBean osMXBean = ManagementFactory.getOperatingSystemMXBean();
+        final long processCpuNs =
+                osMXBean instanceof com.sun.management.OperatingSystemMXBean
+                        ? ((com.sun.management.OperatingSystemMXBean) osMXBean).getProcessCpuTime()
+                        : -1;
+
+        return new RuntimeSnapshot(gcCount, gcTimeMs, allocatedBytes, processCpuNs, foreignThreadsCpuNs);
+    }
+
+    long gcCountSince(final RuntimeSnapshot start) {
+        return this.gcCount - start.gcCount;
+    }
+
+    long gcTimeMsSince(final RuntimeSnapshot start) {
+        return this.gcTimeMs - start.gcTimeMs;
+    }
+
+    /*
+     * Threads finished in between are lost, the workers are alive until the end snapshot is taken.
+     */
+    long allocatedBytesSince(final RuntimeSnapshot start) {
+        return sinceStart(this.allocatedBytes, start.allocatedBytes);
+    }
+
+    long processCpuNsSince(final RuntimeSnapshot start) {
+        return this.processCpuNs < 0 ? -1 : this.processCpuNs - start.processCpuNs;
+    }
+
+    /*
+     * Threads started in between are counted from zero, threads finished in between are lost.
+     */
+    long foreignThreadsCpuNsSince(final RuntimeSnapshot start) {
+        return sinceStart(this.foreignThreadsCpuNs, start.foreignThreadsCpuNs);
+    }
+
+    private static long sinceStart(final Map<Long, Long> endValues, final Map<Long, Long> startValues) {
+        long result = 0;
+        for (final Map.Entry<Long, Long> threadValue : endValues.entrySet()) {
+            result += threadValue.getValue() - startValues.getOrDefault(threadValue.getKey(), 0L);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,328 @@
+package ru.joke.benchmarks.workload;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Synthetic multithreaded application measured with and without the agent: each worker handles the requests
+ * in a closed loop, the call tree of a request is defined by the workload shape. After the warmup the workers
+ * handle the requests for the configured duration, the results are written as properties:
+ * throughput, latency percentiles, GC and allocations, CPU of the process and of the agent threads
+ * and, if the file of the sink is provided, the number of the records of the calls made in the meantime.
+ * The records are counted after the workers are finished and the sink is drained: only the records entered
+ * within the measurement window are counted, by the enter timestamp of the default output pattern
+ * (nanoTime of this JVM), so the backlog of the warmup written during the measurement isn't counted.
+ *
+ * Arguments (key=value): threads=4 warmup=10 duration=20 (seconds) depth=4 fanout=3 recursion=4 jdbc_every=4
+ * work=64 sink_file=<path> sink_drain=60 (max seconds) result=workload-result.properties
+ */
+public final class WorkloadApplication {
+
+    /*
+     * Classes of the application to be profiled, the measuring code isn't instrumented.
+     */
+    public static final String APPLICATION_CLASSES = String.join(
+            ",",
+            OrderProcessingService.class.getName(),
+            PricingCalculator.class.getName(),
+            InventoryRepository.class.getName()
+    );
+
+    private static final int MAX_LATENCY_SAMPLES = 1 << 20;
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+    private static final String SINK_FIELDS_DELIMITER = " : ";
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final long SINK_DRAIN_CHECK_INTERVAL_MS = 1_000;
+
+    private final WorkloadShape shape;
+    private final int threads;
+    private final long warmupNs;
+    private final long durationNs;
+    private final Path sinkFile;
+    private final long sinkDrainMs;
+    private final Path result;
+    private final Set<Long> workerThreadIds;
+
+    private volatile long warmupEndTime;
+    private volatile long measurementEndTime;
+    private long measurementStartTime;
+    private long measurementDurationNs;
+    private long sinkRecords = -1;
+    private RuntimeSnapshot startSnapshot;
+    private RuntimeSnapshot endSnapshot;
+    private volatile Throwable failure;
+
+    private WorkloadApplication(final Map<String, String> args) {
+        this.shape = new WorkloadShape(args);
+        this.threads = Integer.parseInt(args.getOrDefault("threads", "4"));
+        this.warmupNs = TimeUnit.SECONDS.toNanos(Long.parseLong(args.getOrDefault("warmup", "10")));
+        this.durationNs = TimeUnit.SECONDS.toNanos(Long.parseLong(args.getOrDefault("duration", "20")));
+        this.sinkFile = args.containsKey("sink_file") ? Paths.get(args.get("sink_file")) : null;
+        this.sinkDrainMs = TimeUnit.SECONDS.toMillis(Long.parseLong(args.getOrDefault("sink_drain", "60")));
+        this.result = Paths.get(args.getOrDefault("result", "workload-result.properties"));
+        this.workerThreadIds = new HashSet<>();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> arguments = new HashMap<>();
+        for (final String arg : args) {
+            final int delimiterIndex = arg.indexOf('=');
+            if (delimiterIndex <= 0) {
+                throw new IllegalArgumentException("Argument must be in form key=value: " + arg);
+            }
+
+            arguments.put(arg.substring(0, delimiterIndex), arg.substring(delimiterIndex + 1));
+        }
+
+        new WorkloadApplication(arguments).run();
+    }
+
+    private void run() throws Exception {
+        InventoryRepository.createSchema();
+
+        final CyclicBarrier measurementStartBarrier = new CyclicBarrier(this.threads, this::onMeasurementStart);
+        final CyclicBarrier measurementEndBarrier = new CyclicBarrier(this.threads, this::onMeasurementEnd);
+        final Worker[] workers = new Worker[this.threads];
+        final Thread[] workerThreads = new Thread[this.threads];
+        for (int i = 0; i < this.threads; i++) {
+            workers[i] = new Worker(i, measurementStartBarrier, measurementEndBarrier);
+            workerThreads[i] = new Thread(workers[i], "workload-worker-" + i);
+            this.workerThreadIds.add(workerThreads[i].getId());
+        }
+
+        this.warmupEndTime = System.nanoTime() + this.warmupNs;
+        for (final Thread workerThread : workerThreads) {
+            workerThread.start();
+        }
+
+        for (final Thread workerThread : workerThreads) {
+            workerThread.join();
+        }
+
+        if (this.failure != null) {
+            throw new IllegalStateException("Workload failed", this.failure);
+        }
+
+        if (this.sinkFile != null) {
+            awaitSinkDrained();
+            this.sinkRecords = countSinkRecords(this.measurementStartTime, this.measurementStartTime + this.measurementDurationNs);
+        }
+
+        writeResult(workers);
+        System.out.println("Workload results are written to " + this.result.toAbsolutePath());
+    }
+
+    private void onMeasurementStart() {
+        this.startSnapshot = RuntimeSnapshot.take(this.workerThreadIds);
+        this.measurementStartTime = System.nanoTime();
+        this.measurementEndTime = this.measurementStartTime + this.durationNs;
+    }
+
+    private void onMeasurementEnd() {
+        this.measurementDurationNs = System.nanoTime() - this.measurementStartTime;
+        this.endSnapshot = RuntimeSnapshot.take(this.workerThreadIds);
+    }
+
+    /*
+     * The sinks write the records with a delay (async flushing, journals, buffered output), so the sink
+     * is considered drained when the file stops growing, but no longer than the drain timeout.
+     */
+    private void awaitSinkDrained() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.sinkDrainMs);
+        long size = sinkFileSize();
+        while (System.nanoTime() - deadline < 0) {
+            Thread.sleep(SINK_DRAIN_CHECK_INTERVAL_MS);
+
+            final long currentSize = sinkFileSize();
+            if (currentSize == size) {
+                return;
+            }
+
+            size = currentSize;
+        }
+
+        System.err.println("Sink isn't drained in " + this.sinkDrainMs + " ms, the records written later aren't counted");
+    }
+
+    private long sinkFileSize() {
+        try {
+            return Files.exists(this.sinkFile) ? Files.size(this.sinkFile) : 0;
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    /*
+     * Records entered within [fromTime, toTime), -1 if a record doesn't end with the enter timestamp
+     * and the elapsed time as in the default output pattern. The last line may be flushed partially.
+     */
+    private long countSinkRecords(final long fromTime, final long toTime) throws IOException {
+        if (!Files.exists(this.sinkFile)) {
+            return 0;
+        }
+
+        long result = 0;
+        try (BufferedReader reader = Files.newBufferedReader(this.sinkFile, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                final String nextLine = reader.readLine();
+                if (!line.isEmpty()) {
+                    final long enterTimestamp = parseEnterTimestamp(line);
+                    if (enterTimestamp == NO_TIMESTAMP && nextLine != null) {
+                        System.err.println("Unexpected format of the sink record, records aren't counted: " + line);
+                        return -1;
+                    } else if (enterTimestamp != NO_TIMESTAMP && enterTimestamp - fromTime >= 0 && enterTimestamp - toTime < 0) {
+                        result++;
+                    }
+                }
+
+                line = nextLine;
+            }
+        }
+
+        return result;
+    }
+
+    private static long parseEnterTimestamp(final String record) {
+        final int elapsedIndex = record.lastIndexOf(SINK_FIELDS_DELIMITER);
+        final int enterTimestampIndex = elapsedIndex <= 0 ? -1 : record.lastIndexOf(SINK_FIELDS_DELIMITER, elapsedIndex - 1);
+        if (enterTimestampIndex < 0) {
+            return NO_TIMESTAMP;
+        }
+
+        try {
+            return Long.parseLong(record.substring(enterTimestampIndex + SINK_FIELDS_DELIMITER.length(), elapsedIndex).trim());
+        } catch (NumberFormatException ex) {
+            return NO_TIMESTAMP;
+        }
+    }
+
+    private void writeResult(final Worker[] workers) throws IOException {
+        long requests = 0;
+        int samplesCount = 0;
+        long blackhole = 0;
+        for (final Worker worker : workers) {
+            requests += worker.requests;
+            samplesCount += (int) Math.min(worker.requests, MAX_LATENCY_SAMPLES);
+            blackhole ^= worker.blackhole;
+        }
+
+        final long[] samples = new long[samplesCount];
+        int position = 0;
+        for (final Worker worker : workers) {
+            final int count = (int) Math.min(worker.requests, MAX_LATENCY_SAMPLES);
+            System.arraycopy(worker.latencies, 0, samples, position, count);
+            position += count;
+        }
+
+        Arrays.sort(samples);
+
+        final Properties result = new Properties();
+        result.setProperty("threads", String.valueOf(this.threads));
+        result.setProperty("shape", this.shape.toString());
+        result.setProperty("calls_per_request", format(this.shape.callsPerRequest()));
+        result.setProperty("duration_ns", String.valueOf(this.measurementDurationNs));
+        result.setProperty("requests", String.valueOf(requests));
+        result.setProperty("throughput", format(perSecond(requests)));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            final long value = samples.length == 0 ? 0 : samples[(int) Math.min(samples.length - 1, Math.ceil(samples.length * PERCENTILES[i] / 100) - 1)];
+            result.setProperty("latency_ns." + PERCENTILE_NAMES[i], String.valueOf(value));
+        }
+
+        result.setProperty("latency_ns.max", String.valueOf(samples.length == 0 ? 0 : samples[samples.length - 1]));
+        result.setProperty("gc_count", String.valueOf(this.endSnapshot.gcCountSince(this.startSnapshot)));
+        result.setProperty("gc_time_ms", String.valueOf(this.endSnapshot.gcTimeMsSince(this.startSnapshot)));
+        result.setProperty("allocated_bytes", String.valueOf(this.endSnapshot.allocatedBytesSince(this.startSnapshot)));
+        result.setProperty("process_cpu_ns", String.valueOf(this.endSnapshot.processCpuNsSince(this.startSnapshot)));
+        result.setProperty("foreign_threads_cpu_ns", String.valueOf(this.endSnapshot.foreignThreadsCpuNsSince(this.startSnapshot)));
+        result.setProperty("sink_records", String.valueOf(this.sinkRecords));
+        result.setProperty("blackhole", String.valueOf(blackhole));
+
+        try (OutputStream out = Files.newOutputStream(this.result)) {
+            result.store(out, "Workload results");
+        }
+    }
+
+    private double perSecond(final long value) {
+        return value * (double) TimeUnit.SECONDS.toNanos(1) / this.measurementDurationNs;
+    }
+
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int index;
+        private final CyclicBarrier measurementStartBarrier;
+        private final CyclicBarrier measurementEndBarrier;
+        private final long[] latencies;
+        private long requests;
+        private long blackhole;
+
+        private Worker(
+                final int index,
+                final CyclicBarrier measurementStartBarrier,
+                final CyclicBarrier measurementEndBarrier
+        ) {
+            this.index = index;
+            this.measurementStartBarrier = measurementStartBarrier;
+            this.measurementEndBarrier = measurementEndBarrier;
+            this.latencies = new long[MAX_LATENCY_SAMPLES];
+        }
+
+        @Override
+        public void run() {
+            try (InventoryRepository repository = new InventoryRepository()) {
+                final OrderProcessingService service = new OrderProcessingService(
+                        shape,
+                        new PricingCalculator(shape.work()),
+                        repository
+                );
+
+                long requestId = (long) this.index << 40;
+                final long warmupEndTime = WorkloadApplication.this.warmupEndTime;
+                while (System.nanoTime() < warmupEndTime) {
+                    this.blackhole += service.handle(requestId++);
+                }
+
+                this.measurementStartBarrier.await();
+
+                final long measurementEndTime = WorkloadApplication.this.measurementEndTime;
+                long now = System.nanoTime();
+                while (now < measurementEndTime) {
+                    final long startTime = now;
+                    this.blackhole += service.handle(requestId++);
+                    now = System.nanoTime();
+
+                    this.latencies[(int) (this.requests % MAX_LATENCY_SAMPLES)] = now - startTime;
+                    this.requests++;
+                }
+
+                this.measurementEndBarrier.await();
+            } catch (BrokenBarrierException ex) {
+                // another worker failed
+            } catch (Exception ex) {
+                failure = ex;
+                this.measurementStartBarrier.reset();
+                this.measurementEndBarrier.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.joke.benchmarks.workload;
+
+import java.util.Map;
+
+/*
+ * Shape of the call tree of a request.
+ */
+final class WorkloadShape {
+
+    private final int depth;
+    private final int fanOut;
+    private final int recursionDepth;
+    private final int jdbcEvery;
+    private final int work;
+
+    WorkloadShape(final Map<String, String> args) {
+        this.depth = Integer.parseInt(args.getOrDefault("depth", "4"));
+        this.fanOut = Integer.parseInt(args.getOrDefault("fanout", "3"));
+        this.recursionDepth = Integer.parseInt(args.getOrDefault("recursion", "4"));
+        this.jdbcEvery = Integer.parseInt(args.getOrDefault("jdbc_every", "4"));
+        this.work = Integer.parseInt(args.getOrDefault("work", "64"));
+        if (this.depth <= 0 || this.fanOut <= 0 || this.recursionDepth <= 0 || this.work < 0) {
+            throw new IllegalArgumentException("Illegal workload shape: " + this);
+        }
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    int fanOut() {
+        return fanOut;
+    }
+
+    int recursionDepth() {
+        return recursionDepth;
+    }
+
+    int jdbcEvery() {
+        return jdbcEvery;
+    }
+
+    int work() {
+        return work;
+    }
+
+    /*
+     * Calls of the workload methods made by a request (the JDBC driver calls aren't counted), half of the requests
+     * update the inventory in addition to the query.
+     */
+    double callsPerRequest() {
+        long stages = 0;
+        long levelStages = 1;
+        for (int i = 0; i < this.depth; i++) {
+            stages += levelStages;
+            levelStages *= this.fanOut;
+        }
+
+        final long leaves = levelStages / this.fanOut;
+        final long jdbcCalls = this.jdbcEvery <= 0 ? 0 : leaves / this.jdbcEvery;
+        return 1 + stages + leaves * (1 + this.recursionDepth) + jdbcCalls * 1.5;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkloadShape{"
+                + "depth=" + depth
+                + ", fanOut=" + fanOut
+                + ", recursionDepth=" + recursionDepth
+                + ", jdbcEvery=" + jdbcEvery
+                + ", work=" + work
+                + '}';
+    }
+}
@@ -0,0 +1,10 @@
+package ru.joke.profiler.benchmarks;
+
+/*
+ * Benchmarked code: implementations are loaded by the target class loader (instrumented or not),
+ * the interface itself belongs to the agent package and is never instrumented.
+ */
+public interface BenchmarkTarget {
+
+    long call(int depth, long seed);
+}
@@ -0,0 +1,76 @@
+package ru.joke.profiler.benchmarks;
+
+import ru.joke.profiler.ProfilerAgent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Starts the agent in the benchmark JVM exactly as the JVM does, but with the instrumentation which only captures
+ * the transformer: the transformer is applied to the target classes explicitly by the target class loader.
+ * Registrar is a JVM-wide singleton, so the agent can be started only once per JVM (JMH forks a JVM per trial).
+ */
+final class InProcessAgent {
+
+    private static final String AGENT_ARGS_TEMPLATE = "conf_file=%s";
+    private static final Logger agentLogger = Logger.getLogger("ru.joke.profiler");
+
+    private InProcessAgent() {
+    }
+
+    static ClassFileTransformer start(final Properties configuration) throws Exception {
+        agentLogger.setLevel(Level.WARNING);
+
+        final AtomicReference<ClassFileTransformer> transformer = new AtomicReference<>();
+        final Instrumentation instrumentation = (Instrumentation) Proxy.newProxyInstance(
+                InProcessAgent.class.getClassLoader(),
+                new Class<?>[] { Instrumentation.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "addTransformer":
+                            transformer.set((ClassFileTransformer) args[0]);
+                            return null;
+                        case "getAllLoadedClasses":
+                        case "getInitiatedClasses":
+                            return new Class<?>[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "BenchmarkInstrumentation";
+                        default:
+                            return method.getReturnType() == boolean.class ? false : null;
+                    }
+                }
+        );
+
+        ProfilerAgent.premain(String.format(AGENT_ARGS_TEMPLATE, store(configuration).getAbsolutePath()), instrumentation);
+
+        final ClassFileTransformer result = transformer.get();
+        if (result == null) {
+            throw new IllegalStateException("Transformer isn't added by the agent");
+        }
+
+        return result;
+    }
+
+    private static File store(final Properties configuration) throws IOException {
+        final File result = File.createTempFile("profiler-benchmark", ".properties");
+        result.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(result)) {
+            configuration.store(out, null);
+        }
+
+        return result;
+    }
+}
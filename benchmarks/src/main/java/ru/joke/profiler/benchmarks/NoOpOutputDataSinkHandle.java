@@ -0,0 +1,73 @@
+package ru.joke.profiler.benchmarks;
+
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.OutputDataSink;
+import ru.joke.profiler.output.sinks.async.AsyncOutputDataSinkHandleSupport;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ * Sink that drops the records: isolates the cost of the probes and the registrars from the output.
+ * Supports the async flushing to measure the cost of the async queue separately.
+ */
+public final class NoOpOutputDataSinkHandle extends AsyncOutputDataSinkHandleSupport<OutputData, NoOpSinkConfiguration> {
+
+    public static final String SINK_TYPE = "noop";
+
+    @Override
+    public String type() {
+        return SINK_TYPE;
+    }
+
+    @Override
+    protected Class<NoOpSinkConfiguration> configurationType() {
+        return NoOpSinkConfiguration.class;
+    }
+
+    @Override
+    protected Function<OutputData, Supplier<OutputData>> conversionFunction(
+            final NoOpSinkConfiguration configuration,
+            final Map<String, Object> context
+    ) {
+        return o -> {
+            final OutputData data = new OutputData();
+            data.fill(o);
+            return () -> data;
+        };
+    }
+
+    @Override
+    protected OutputDataSink<OutputData> createTerminalOutputSink(
+            final NoOpSinkConfiguration configuration,
+            final Map<String, Object> context
+    ) {
+        return new NoOpOutputDataSink();
+    }
+
+    @Override
+    protected OutputDataSink<OutputData> createSyncOutputSink(
+            final NoOpSinkConfiguration configuration,
+            final Map<String, Object> context
+    ) {
+        return createTerminalOutputSink(configuration, context);
+    }
+
+    private static final class NoOpOutputDataSink extends OutputDataSink<OutputData> {
+
+        @Override
+        public void write(final OutputData dataItem) {
+        }
+
+        @Override
+        public void write(final List<OutputData> dataItems) {
+        }
+
+        @Override
+        public String toString() {
+            return "NoOpOutputDataSink";
+        }
+    }
+}
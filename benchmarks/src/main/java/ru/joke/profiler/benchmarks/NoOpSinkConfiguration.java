@@ -0,0 +1,24 @@
+package ru.joke.profiler.benchmarks;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.output.sinks.async.AsyncOutputDataSinkConfigurationSupport;
+import ru.joke.profiler.output.sinks.async.AsyncSinkDataFlushingConfiguration;
+
+import static ru.joke.profiler.benchmarks.NoOpOutputDataSinkHandle.SINK_TYPE;
+
+public final class NoOpSinkConfiguration extends AsyncOutputDataSinkConfigurationSupport {
+
+    private static final String NOOP_SINK_PROPERTIES_PREFIX = SINK_TYPE + ".";
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = NOOP_SINK_PROPERTIES_PREFIX)
+    public NoOpSinkConfiguration(final AsyncSinkDataFlushingConfiguration asyncFlushingConfiguration) {
+        super(asyncFlushingConfiguration);
+    }
+
+    @Override
+    public String toString() {
+        return "NoOpSinkConfiguration{"
+                + "asyncFlushingConfiguration=" + asyncFlushingConfiguration
+                + '}';
+    }
+}
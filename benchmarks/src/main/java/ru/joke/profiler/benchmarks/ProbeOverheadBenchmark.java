@@ -0,0 +1,67 @@
+package ru.joke.profiler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of the probes per call of the target: the operation is a chain of depth nested calls of the instrumented
+ * method, so the per-probe overhead is (score - BASELINE score) / depth. Threads share the registrar and the sink,
+ * so running with several threads (-t) measures the contention as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbeOverheadBenchmark {
+
+    private static final String TARGET_CLASS = "ru.joke.benchmarks.targets.RecursiveTarget";
+
+    @Param
+    private RegistrarMode registrar;
+
+    @Param
+    private SinkMode sink;
+
+    @Param({ "1", "8", "32" })
+    private int depth;
+
+    private BenchmarkTarget target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ClassFileTransformer transformer = null;
+        if (this.registrar.instrumented()) {
+            final Properties configuration = new Properties();
+            configuration.setProperty("static.included_resources", TARGET_CLASS);
+            configuration.setProperty("static.metrics_mbean_enabled", "false");
+            this.registrar.fill(configuration);
+            this.sink.fill(configuration);
+
+            transformer = InProcessAgent.start(configuration);
+        }
+
+        final TargetClassLoader loader = new TargetClassLoader(getClass().getClassLoader(), transformer);
+        this.target = loader.create(TARGET_CLASS);
+    }
+
+    @Benchmark
+    public long call() {
+        return this.target.call(this.depth, System.identityHashCode(this));
+    }
+}
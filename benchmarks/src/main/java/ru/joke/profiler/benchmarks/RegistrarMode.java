@@ -0,0 +1,52 @@
+package ru.joke.profiler.benchmarks;
+
+import java.util.Properties;
+
+/*
+ * Registrar configurations of the benchmarks matrix; threshold is large enough for every benchmarked call
+ * to take the fast path of the completion probe.
+ */
+public enum RegistrarMode {
+
+    BASELINE(false, false, false),
+
+    /*
+     * Instrumented, but the probes are switched off by the dynamic configuration.
+     */
+    DYNAMIC_DISABLED(true, true, false),
+
+    STATIC(true, false, false),
+
+    STATIC_THRESHOLD(true, false, true),
+
+    DYNAMIC(true, true, false),
+
+    DYNAMIC_THRESHOLD(true, true, true);
+
+    private static final String THRESHOLD = "1ms";
+
+    private final boolean instrumented;
+    private final boolean dynamic;
+    private final boolean threshold;
+
+    RegistrarMode(final boolean instrumented, final boolean dynamic, final boolean threshold) {
+        this.instrumented = instrumented;
+        this.dynamic = dynamic;
+        this.threshold = threshold;
+    }
+
+    boolean instrumented() {
+        return instrumented;
+    }
+
+    void fill(final Properties configuration) {
+        configuration.setProperty("static.dynamic_conf_enabled", String.valueOf(this.dynamic));
+        if (this == DYNAMIC_DISABLED) {
+            configuration.setProperty("dynamic.profiling_disabled", "true");
+        }
+        if (this.threshold) {
+            configuration.setProperty("static.min_execution_threshold", THRESHOLD);
+            configuration.setProperty("dynamic.min_execution_threshold", THRESHOLD);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.joke.profiler.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.annotations.Mode;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runs the benchmarks with 1, 2, 4, ... N threads (N is the first argument, the number of CPUs by default)
+ * in the throughput and the average time modes with the allocation profiling; results of each threads count
+ * are stored as JSON (jmh-result-<threads>t.json) to be compared between the releases.
+ * Further arguments are the regexps of the benchmarks to run (all benchmarks by default).
+ */
+public final class ScalingBenchmarksRunner {
+
+    private static final String RESULT_FILE_TEMPLATE = "jmh-result-%dt.json";
+
+    public static void main(final String[] args) throws Exception {
+        final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(threads * 2, maxThreads) : threads + 1) {
+            final ChainedOptionsBuilder options =
+                    new OptionsBuilder()
+                            .threads(threads)
+                            .mode(Mode.Throughput)
+                            .mode(Mode.AverageTime)
+                            .timeUnit(TimeUnit.NANOSECONDS)
+                            .addProfiler(GCProfiler.class)
+                            .resultFormat(ResultFormatType.JSON)
+                            .result(String.format(RESULT_FILE_TEMPLATE, threads));
+            if (args.length > 1) {
+                for (int i = 1; i < args.length; i++) {
+                    options.include(args[i]);
+                }
+            } else {
+                options.include(ProbeOverheadBenchmark.class.getSimpleName());
+            }
+
+            new Runner(options.build()).run();
+        }
+    }
+
+    private ScalingBenchmarksRunner() {
+    }
+}
@@ -0,0 +1,27 @@
+package ru.joke.profiler.benchmarks;
+
+import java.util.Properties;
+
+public enum SinkMode {
+
+    NOOP(false),
+
+    ASYNC(true);
+
+    private final boolean async;
+
+    SinkMode(final boolean async) {
+        this.async = async;
+    }
+
+    void fill(final Properties configuration) {
+        configuration.setProperty("static.sinks", NoOpOutputDataSinkHandle.SINK_TYPE);
+        if (this.async) {
+            final String prefix = "static.sink." + NoOpOutputDataSinkHandle.SINK_TYPE + ".async-flushing.";
+            configuration.setProperty(prefix + "enabled", "true");
+            configuration.setProperty(prefix + "flushing_interval", "100ms");
+            configuration.setProperty(prefix + "flushing_queue_overflow_limit", "100000");
+            configuration.setProperty(prefix + "flushing_queue_overflow_policy", "DISCARD");
+        }
+    }
+}
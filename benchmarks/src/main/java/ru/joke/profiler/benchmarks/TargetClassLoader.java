@@ -0,0 +1,80 @@
+package ru.joke.profiler.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+
+/*
+ * Child-first loader of the benchmark targets: the same target class is loaded as is or instrumented
+ * by the agent transformer, the other classes are loaded by the parent.
+ */
+final class TargetClassLoader extends ClassLoader {
+
+    private static final String TARGETS_PACKAGE = "ru.joke.benchmarks.targets.";
+
+    private final ClassFileTransformer transformer;
+
+    TargetClassLoader(final ClassLoader parent, final ClassFileTransformer transformer) {
+        super(parent);
+        this.transformer = transformer;
+    }
+
+    BenchmarkTarget create(final String targetClassName) throws ReflectiveOperationException {
+        return (BenchmarkTarget) loadClass(targetClassName).getDeclaredConstructor().newInstance();
+    }
+
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        if (!name.startsWith(TARGETS_PACKAGE)) {
+            return super.loadClass(name, resolve);
+        }
+
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> result = findLoadedClass(name);
+            if (result == null) {
+                result = defineTarget(name);
+            }
+
+            if (resolve) {
+                resolveClass(result);
+            }
+
+            return result;
+        }
+    }
+
+    private Class<?> defineTarget(final String name) throws ClassNotFoundException {
+        final String internalName = name.replace('.', '/');
+        try {
+            final byte[] originalBytecode = readBytecode(internalName);
+            final byte[] transformedBytecode =
+                    this.transformer == null
+                            ? null
+                            : this.transformer.transform(this, internalName, null, null, originalBytecode);
+            final byte[] bytecode = transformedBytecode == null ? originalBytecode : transformedBytecode;
+
+            return defineClass(name, bytecode, 0, bytecode.length);
+        } catch (IOException | IllegalClassFormatException ex) {
+            throw new ClassNotFoundException(name, ex);
+        }
+    }
+
+    private byte[] readBytecode(final String internalName) throws IOException, ClassNotFoundException {
+        try (InputStream in = getParent().getResourceAsStream(internalName + ".class")) {
+            if (in == null) {
+                throw new ClassNotFoundException(internalName);
+            }
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.joke.profiler.benchmarks.e2e;
+
+import java.util.Properties;
+
+/*
+ * Built-in agent configurations the workload is measured with. Records are written to the file sink in tmpfs,
+ * so the sink is cheap and local and the delivered records can be counted and compared with the calls made
+ * for the profiles expected to deliver all of them.
+ */
+public enum AgentProfile {
+
+    /*
+     * Reference run without the agent.
+     */
+    NO_AGENT(false) {
+        @Override
+        Properties configuration() {
+            return null;
+        }
+    },
+
+    /*
+     * Classes are instrumented, but the profiling is disabled by the dynamic configuration: cost of the probes alone.
+     */
+    IDLE(false) {
+        @Override
+        Properties configuration() {
+            final Properties configuration = fileSink(false);
+            configuration.setProperty("static.dynamic_conf_enabled", "true");
+            configuration.setProperty("dynamic.profiling_disabled", "true");
+            return configuration;
+        }
+    },
+
+    FILE_SYNC(true) {
+        @Override
+        Properties configuration() {
+            return fileSink(false);
+        }
+    },
+
+    FILE_ASYNC(true) {
+        @Override
+        Properties configuration() {
+            return fileSink(true);
+        }
+    },
+
+    /*
+     * Only the executions longer than the threshold are written.
+     */
+    FILE_ASYNC_THRESHOLD(false) {
+        @Override
+        Properties configuration() {
+            final Properties configuration = fileSink(true);
+            configuration.setProperty("static.min_execution_threshold", "20mcs");
+            return configuration;
+        }
+    },
+
+    /*
+     * 10% of the traces are written.
+     */
+    FILE_ASYNC_SAMPLED(false) {
+        @Override
+        Properties configuration() {
+            final Properties configuration = fileSink(true);
+            configuration.setProperty("static.dynamic_conf_enabled", "true");
+            configuration.setProperty("dynamic.sampling_rate", "0.1");
+            return configuration;
+        }
+    },
+
+    /*
+     * Records are buffered in the per-thread journals and drained into the sink in background.
+     */
+    JOURNAL(true) {
+        @Override
+        Properties configuration() {
+            final Properties configuration = fileSink(true);
+            configuration.setProperty("static.journal.enabled", "true");
+            return configuration;
+        }
+    },
+
+    /*
+     * Latencies are aggregated in memory, only the summaries are written once per interval.
+     */
+    AGGREGATION(false) {
+        @Override
+        Properties configuration() {
+            final Properties configuration = fileSink(false);
+            configuration.setProperty("static.aggregation.enabled", "true");
+            configuration.setProperty("static.aggregation.interval", "1s");
+            return configuration;
+        }
+    };
+
+    static final String FILE_SINK = "file";
+    static final String SINK_FILE_PROPERTY = "static.sink.file.output_file";
+
+    private static final String ASYNC_FLUSHING_PREFIX = "static.sink.file.async-flushing.";
+
+    private final boolean deliversAllCalls;
+
+    AgentProfile(final boolean deliversAllCalls) {
+        this.deliversAllCalls = deliversAllCalls;
+    }
+
+    /*
+     * Configuration of the agent without the application specific properties (profiled classes, output file),
+     * null if the workload runs without the agent.
+     */
+    abstract Properties configuration();
+
+    /*
+     * Whether a record of each profiled call is expected in the sink, i.e. nothing is filtered, sampled
+     * or aggregated by the profile, so fewer records mean that the agent dropped them.
+     */
+    boolean deliversAllCalls() {
+        return this.deliversAllCalls;
+    }
+
+    private static Properties fileSink(final boolean async) {
+        final Properties configuration = new Properties();
+        configuration.setProperty("static.sinks", FILE_SINK);
+        if (async) {
+            configuration.setProperty(ASYNC_FLUSHING_PREFIX + "enabled", "true");
+            configuration.setProperty(ASYNC_FLUSHING_PREFIX + "flushing_interval", "100ms");
+            configuration.setProperty(ASYNC_FLUSHING_PREFIX + "flushing_queue_overflow_limit", "65536");
+            configuration.setProperty(ASYNC_FLUSHING_PREFIX + "flushing_max_batch_size", "1000");
+        }
+
+        return configuration;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.joke.profiler.benchmarks.e2e;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * Comparison of the profiles with the reference run (without the agent) as a markdown table and as JSON.
+ * The profiles expected to deliver a record of each call are compared with the calls made: the ones
+ * delivered less than the tolerance are flagged, their throughput is gained by the data loss.
+ */
+final class ComparisonReport {
+
+    private static final String NOT_AVAILABLE = "n/a";
+    private static final double DELIVERY_TOLERANCE_PERCENT = 1;
+    private static final String DROPS_FLAG = "DROPS";
+
+    private final ProfileResult reference;
+    private final List<ProfileResult> results;
+    private final Map<String, String> parameters;
+
+    ComparisonReport(
+            final ProfileResult reference,
+            final List<ProfileResult> results,
+            final Map<String, String> parameters
+    ) {
+        this.reference = reference;
+        this.results = results;
+        this.parameters = parameters;
+    }
+
+    String toMarkdown() {
+        final StringWriter output = new StringWriter();
+        final PrintWriter writer = new PrintWriter(output);
+        writer.printf(
+                Locale.ROOT,
+                "JVM: %s %s, OS: %s %s, CPUs: %d%n%n",
+                System.getProperty("java.vm.name"),
+                System.getProperty("java.version"),
+                System.getProperty("os.name"),
+                System.getProperty("os.arch"),
+                Runtime.getRuntime().availableProcessors()
+        );
+        writer.println("Parameters: " + this.parameters + ", calls per request: " + this.reference.callsPerRequest());
+        writer.println();
+        writer.println("| Profile | Throughput, req/s | Throughput change | p50, us | p50 change | p99, us | p99 change | p99.9, us "
+                + "| p99.9 change | Alloc/req, KB | GC count | GC time, ms | Agent threads CPU, % of core | CPU/req, us "
+                + "| Sink records/s | Sink records/req | Expected records/req | Delivered, % | Dropped records/req | Data loss |");
+        writer.println("|---|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---:|---|");
+        for (final ProfileResult result : this.results) {
+            final double sinkRecordsPerSecond = result.sinkRecordsPerSecond();
+            final double sinkRecordsPerRequest = result.sinkRecordsPerRequest();
+            final boolean deliveryChecked = result.deliversAllCalls() && sinkRecordsPerRequest >= 0;
+            writer.printf(
+                    Locale.ROOT,
+                    "| %s | %.0f | %s | %.1f | %s | %.1f | %s | %.1f | %s | %.2f | %d | %d | %.1f | %.1f | %s | %s | %s | %s | %s | %s |%n",
+                    result.profile(),
+                    result.throughput(),
+                    delta(result.throughput(), this.reference.throughput(), result),
+                    result.latencyNs("p50") / 1000.0,
+                    delta(result.latencyNs("p50"), this.reference.latencyNs("p50"), result),
+                    result.latencyNs("p99") / 1000.0,
+                    delta(result.latencyNs("p99"), this.reference.latencyNs("p99"), result),
+                    result.latencyNs("p99.9") / 1000.0,
+                    delta(result.latencyNs("p99.9"), this.reference.latencyNs("p99.9"), result),
+                    result.allocatedBytesPerRequest() / 1024,
+                    result.gcCount(),
+                    result.gcTimeMs(),
+                    result.agentThreadsCpuPercent(),
+                    result.cpuNsPerRequest() / 1000,
+                    sinkRecordsPerSecond < 0 ? NOT_AVAILABLE : String.format(Locale.ROOT, "%.0f", sinkRecordsPerSecond),
+                    sinkRecordsPerRequest < 0 ? NOT_AVAILABLE : String.format(Locale.ROOT, "%.1f", sinkRecordsPerRequest),
+                    deliveryChecked ? String.format(Locale.ROOT, "%.1f", result.callsPerRequest()) : NOT_AVAILABLE,
+                    deliveryChecked ? String.format(Locale.ROOT, "%.1f", result.deliveredRecordsPercent()) : NOT_AVAILABLE,
+                    deliveryChecked ? String.format(Locale.ROOT, "%.1f", droppedRecordsPerRequest(result)) : NOT_AVAILABLE,
+                    deliveryChecked && dropsRecords(result)
+                            ? String.format(Locale.ROOT, "**%s %.1f%%**", DROPS_FLAG, 100 - result.deliveredRecordsPercent())
+                            : "-"
+            );
+        }
+
+        writer.flush();
+        return output.toString();
+    }
+
+    String toJson() {
+        final StringWriter output = new StringWriter();
+        final PrintWriter writer = new PrintWriter(output);
+        writer.println("{");
+        writer.printf(Locale.ROOT, "  \"jvm\": \"%s %s\",%n", System.getProperty("java.vm.name"), System.getProperty("java.version"));
+        writer.printf(Locale.ROOT, "  \"os\": \"%s %s\",%n", System.getProperty("os.name"), System.getProperty("os.arch"));
+        writer.printf(Locale.ROOT, "  \"cpus\": %d,%n", Runtime.getRuntime().availableProcessors());
+        writer.print("  \"parameters\": {");
+        boolean first = true;
+        for (final Map.Entry<String, String> parameter : this.parameters.entrySet()) {
+            writer.printf(Locale.ROOT, "%s\"%s\": \"%s\"", first ? "" : ", ", parameter.getKey(), parameter.getValue().replace("\"", "\\\""));
+            first = false;
+        }
+
+        writer.println("},");
+        writer.printf(Locale.ROOT, "  \"callsPerRequest\": %.2f,%n", this.reference.callsPerRequest());
+        writer.println("  \"results\": [");
+        for (int i = 0; i < this.results.size(); i++) {
+            final ProfileResult result = this.results.get(i);
+            writer.printf(
+                    Locale.ROOT,
+                    "    {\"profile\": \"%s\", \"throughput\": %.1f, \"throughputChangePercent\": %.2f, "
+                            + "\"latencyNs\": {\"p50\": %d, \"p90\": %d, \"p99\": %d, \"p99.9\": %d, \"max\": %d}, "
+                            + "\"latencyChangePercent\": {\"p50\": %.2f, \"p90\": %.2f, \"p99\": %.2f, \"p99.9\": %.2f, \"max\": %.2f}, "
+                            + "\"allocatedBytesPerRequest\": %.1f, \"gcCount\": %d, \"gcTimeMs\": %d, "
+                            + "\"agentThreadsCpuPercent\": %.2f, \"cpuNsPerRequest\": %.1f, \"sinkRecordsPerSec\": %.1f, "
+                            + "\"sinkRecordsPerRequest\": %.2f, \"deliversAllCalls\": %s, \"expectedRecordsPerRequest\": %.2f, "
+                            + "\"deliveredPercent\": %.2f, \"droppedRecordsPerRequest\": %.2f, \"dropsRecords\": %s}%s%n",
+                    result.profile(),
+                    result.throughput(),
+                    change(result.throughput(), this.reference.throughput()),
+                    result.latencyNs("p50"),
+                    result.latencyNs("p90"),
+                    result.latencyNs("p99"),
+                    result.latencyNs("p99.9"),
+                    result.latencyNs("max"),
+                    change(result.latencyNs("p50"), this.reference.latencyNs("p50")),
+                    change(result.latencyNs("p90"), this.reference.latencyNs("p90")),
+                    change(result.latencyNs("p99"), this.reference.latencyNs("p99")),
+                    change(result.latencyNs("p99.9"), this.reference.latencyNs("p99.9")),
+                    change(result.latencyNs("max"), this.reference.latencyNs("max")),
+                    result.allocatedBytesPerRequest(),
+                    result.gcCount(),
+                    result.gcTimeMs(),
+                    result.agentThreadsCpuPercent(),
+                    result.cpuNsPerRequest(),
+                    result.sinkRecordsPerSecond(),
+                    result.sinkRecordsPerRequest(),
+                    result.deliversAllCalls(),
+                    result.deliversAllCalls() ? result.callsPerRequest() : -1,
+                    result.deliveredRecordsPercent(),
+                    result.deliversAllCalls() ? droppedRecordsPerRequest(result) : -1,
+                    result.deliversAllCalls() && result.sinkRecordsPerRequest() >= 0 && dropsRecords(result),
+                    i == this.results.size() - 1 ? "" : ","
+            );
+        }
+
+        writer.println("  ]");
+        writer.println("}");
+        writer.flush();
+        return output.toString();
+    }
+
+    void write(final Path markdownFile, final Path jsonFile) throws IOException {
+        Files.write(markdownFile, toMarkdown().getBytes(StandardCharsets.UTF_8));
+        Files.write(jsonFile, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static double droppedRecordsPerRequest(final ProfileResult result) {
+        final double recordsPerRequest = result.sinkRecordsPerRequest();
+        return recordsPerRequest < 0 ? -1 : Math.max(result.callsPerRequest() - recordsPerRequest, 0);
+    }
+
+    private static boolean dropsRecords(final ProfileResult result) {
+        return result.deliveredRecordsPercent() < 100 - DELIVERY_TOLERANCE_PERCENT;
+    }
+
+    private String delta(final double value, final double referenceValue, final ProfileResult result) {
+        return result == this.reference
+                ? "-"
+                : String.format(Locale.ROOT, "%+.1f%%", change(value, referenceValue));
+    }
+
+    private static double change(final double value, final double referenceValue) {
+        return referenceValue == 0 ? 0 : (value - referenceValue) * 100 / referenceValue;
+    }
+}
@@ -0,0 +1,252 @@
+package ru.joke.profiler.benchmarks.e2e;
+
+import ru.joke.benchmarks.workload.WorkloadApplication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runs the synthetic workload in the separate JVMs: without the agent and with the agent attached by -javaagent
+ * under each of the profiles, and reports the end-to-end overhead of each profile relative to the run without
+ * the agent: throughput loss, latency percentiles shift, allocations and GC, CPU of the agent threads and
+ * the records delivered to the sink compared with the calls made for the profiles expected to deliver all of them.
+ * Everything runs locally, the sink is a file in tmpfs.
+ *
+ * Arguments (key=value):
+ * agent=target/profiler-1.0-SNAPSHOT.jar
+ * profiles=NO_AGENT,IDLE,FILE_SYNC,FILE_ASYNC,FILE_ASYNC_THRESHOLD,FILE_ASYNC_SAMPLED,JOURNAL,AGGREGATION
+ * profile_files=<comma separated agent configuration files, the profile is named by the file>
+ * complete_profiles=<comma separated profiles of the files expected to deliver a record of each call>
+ * threads=4 warmup=10 duration=20 depth=4 fanout=3 recursion=4 jdbc_every=4 work=64 sink_drain=60 (workload, see WorkloadApplication)
+ * jvm_args="-Xms512m -Xmx512m" output=target/e2e-overhead (directory of the report, logs and raw results)
+ * repeats=1 (runs of each profile; the rounds of all profiles are interleaved and the run of the median throughput
+ * of each profile is reported, so a single noisy run doesn't distort the comparison)
+ */
+public final class OverheadComparisonRunner {
+
+    private static final String[] DEFAULT_AGENT_LOCATIONS = { "target/profiler-1.0-SNAPSHOT.jar", "../target/profiler-1.0-SNAPSHOT.jar" };
+    private static final String[] WORKLOAD_ARGUMENTS = { "threads", "warmup", "duration", "depth", "fanout", "recursion", "jdbc_every", "work", "sink_drain" };
+    private static final Path TMPFS = Paths.get("/dev/shm");
+    private static final long PROCESS_EXTRA_TIMEOUT_SEC = 120;
+
+    private final Path agent;
+    private final Map<String, Properties> profiles;
+    private final Set<String> completeProfiles;
+    private final Map<String, String> workloadArguments;
+    private final List<String> jvmArguments;
+    private final Path outputDirectory;
+    private final Path sinkDirectory;
+    private final int repeats;
+
+    private OverheadComparisonRunner(final Map<String, String> args) throws IOException {
+        this.agent = findAgent(args.get("agent"));
+
+        this.profiles = new LinkedHashMap<>();
+        this.completeProfiles = new HashSet<>();
+        this.profiles.put(AgentProfile.NO_AGENT.name(), null);
+        final String defaultProfiles = args.containsKey("profile_files") ? AgentProfile.NO_AGENT.name() : String.join(",", names());
+        for (final String profile : args.getOrDefault("profiles", defaultProfiles).split(",")) {
+            if (!profile.trim().isEmpty()) {
+                final AgentProfile agentProfile = AgentProfile.valueOf(profile.trim().toUpperCase(Locale.ROOT));
+                this.profiles.put(agentProfile.name(), agentProfile.configuration());
+                if (agentProfile.deliversAllCalls()) {
+                    this.completeProfiles.add(agentProfile.name());
+                }
+            }
+        }
+
+        for (final String profileFile : args.getOrDefault("profile_files", "").split(",")) {
+            if (!profileFile.trim().isEmpty()) {
+                final Path file = Paths.get(profileFile.trim());
+                final String fileName = file.getFileName().toString();
+                this.profiles.put(fileName.replaceFirst("\\.[^.]*$", ""), load(file));
+            }
+        }
+
+        for (final String profile : args.getOrDefault("complete_profiles", "").split(",")) {
+            if (!profile.trim().isEmpty()) {
+                this.completeProfiles.add(profile.trim());
+            }
+        }
+
+        this.workloadArguments = new LinkedHashMap<>();
+        for (final String workloadArgument : WORKLOAD_ARGUMENTS) {
+            if (args.containsKey(workloadArgument)) {
+                this.workloadArguments.put(workloadArgument, args.get(workloadArgument));
+            }
+        }
+
+        this.jvmArguments = new ArrayList<>();
+        for (final String jvmArgument : args.getOrDefault("jvm_args", "-Xms512m -Xmx512m").split("\\s+")) {
+            if (!jvmArgument.isEmpty()) {
+                this.jvmArguments.add(jvmArgument);
+            }
+        }
+
+        this.outputDirectory = Files.createDirectories(Paths.get(args.getOrDefault("output", "target/e2e-overhead")));
+        this.sinkDirectory = Files.isDirectory(TMPFS) ? TMPFS : Paths.get(System.getProperty("java.io.tmpdir"));
+        this.repeats = Integer.parseInt(args.getOrDefault("repeats", "1"));
+        if (this.repeats <= 0) {
+            throw new IllegalArgumentException("Repeats must be positive: " + this.repeats);
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> arguments = new HashMap<>();
+        for (final String arg : args) {
+            final int delimiterIndex = arg.indexOf('=');
+            if (delimiterIndex <= 0) {
+                throw new IllegalArgumentException("Argument must be in form key=value: " + arg);
+            }
+
+            arguments.put(arg.substring(0, delimiterIndex), arg.substring(delimiterIndex + 1));
+        }
+
+        new OverheadComparisonRunner(arguments).run();
+    }
+
+    private void run() throws Exception {
+        final Map<String, List<ProfileResult>> runs = new LinkedHashMap<>();
+        for (int round = 1; round <= this.repeats; round++) {
+            for (final Map.Entry<String, Properties> profile : this.profiles.entrySet()) {
+                System.out.println("Running workload with profile " + profile.getKey() + (this.repeats == 1 ? "" : " (run " + round + " of " + this.repeats + ")"));
+                final String runName = this.repeats == 1 ? profile.getKey() : profile.getKey() + "-" + round;
+                runs.computeIfAbsent(profile.getKey(), k -> new ArrayList<>()).add(run(profile.getKey(), runName, profile.getValue()));
+            }
+        }
+
+        final List<ProfileResult> results = new ArrayList<>();
+        for (final List<ProfileResult> profileRuns : runs.values()) {
+            profileRuns.sort(Comparator.comparingDouble(ProfileResult::throughput));
+            results.add(profileRuns.get(profileRuns.size() / 2));
+        }
+
+        final Map<String, String> parameters = new LinkedHashMap<>(this.workloadArguments);
+        parameters.put("jvm_args", String.join(" ", this.jvmArguments));
+        if (this.repeats > 1) {
+            parameters.put("repeats", String.valueOf(this.repeats));
+        }
+
+        final ComparisonReport report = new ComparisonReport(results.get(0), results, parameters);
+        report.write(this.outputDirectory.resolve("report.md"), this.outputDirectory.resolve("report.json"));
+
+        System.out.println(report.toMarkdown());
+        System.out.println("Report is written to " + this.outputDirectory.toAbsolutePath());
+    }
+
+    private ProfileResult run(final String profile, final String runName, final Properties agentConfiguration) throws Exception {
+        final Path resultFile = this.outputDirectory.resolve(runName + ".properties").toAbsolutePath();
+        final Path logFile = this.outputDirectory.resolve(runName + ".log");
+        final Path sinkFile = this.sinkDirectory.resolve("profiler-e2e-" + runName + ".log").toAbsolutePath();
+        Files.deleteIfExists(resultFile);
+        Files.deleteIfExists(sinkFile);
+
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(this.jvmArguments);
+
+        String fileSinkOutput = null;
+        if (agentConfiguration != null) {
+            final Properties configuration = new Properties();
+            configuration.putAll(agentConfiguration);
+            configuration.putIfAbsent("static.included_resources", WorkloadApplication.APPLICATION_CLASSES);
+
+            if (Arrays.asList(configuration.getProperty("static.sinks", "").split(",")).contains(AgentProfile.FILE_SINK)) {
+                configuration.putIfAbsent(AgentProfile.SINK_FILE_PROPERTY, sinkFile.toString());
+                fileSinkOutput = configuration.getProperty(AgentProfile.SINK_FILE_PROPERTY);
+            }
+
+            final Path configurationFile = this.outputDirectory.resolve(runName + ".conf.properties").toAbsolutePath();
+            try (OutputStream out = Files.newOutputStream(configurationFile)) {
+                configuration.store(out, "Agent configuration of profile " + profile);
+            }
+
+            command.add("-javaagent:" + this.agent + "=conf_file=" + configurationFile);
+        }
+
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(WorkloadApplication.class.getName());
+        this.workloadArguments.forEach((key, value) -> command.add(key + "=" + value));
+        if (fileSinkOutput != null) {
+            command.add("sink_file=" + fileSinkOutput);
+        }
+        command.add("result=" + resultFile);
+
+        final Process process =
+                new ProcessBuilder(command)
+                        .redirectErrorStream(true)
+                        .redirectOutput(logFile.toFile())
+                        .start();
+        try {
+            final long timeoutSec = PROCESS_EXTRA_TIMEOUT_SEC
+                    + Long.parseLong(this.workloadArguments.getOrDefault("warmup", "10"))
+                    + Long.parseLong(this.workloadArguments.getOrDefault("duration", "20"))
+                    + Long.parseLong(this.workloadArguments.getOrDefault("sink_drain", "60"));
+            if (!process.waitFor(timeoutSec, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Workload with profile " + profile + " didn't finish in time, see " + logFile);
+            } else if (process.exitValue() != 0 || !Files.exists(resultFile)) {
+                throw new IllegalStateException("Workload with profile " + profile + " failed, see " + logFile);
+            }
+        } finally {
+            process.destroyForcibly();
+            Files.deleteIfExists(sinkFile);
+        }
+
+        return new ProfileResult(profile, this.completeProfiles.contains(profile), load(resultFile));
+    }
+
+    private static Properties load(final Path file) throws IOException {
+        final Properties result = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            result.load(in);
+        }
+
+        return result;
+    }
+
+    private static Path findAgent(final String agent) {
+        if (agent != null) {
+            final Path agentPath = Paths.get(agent);
+            if (!Files.isRegularFile(agentPath)) {
+                throw new IllegalArgumentException("Agent jar not found: " + agentPath.toAbsolutePath());
+            }
+
+            return agentPath.toAbsolutePath();
+        }
+
+        for (final String location : DEFAULT_AGENT_LOCATIONS) {
+            final Path agentPath = Paths.get(location);
+            if (Files.isRegularFile(agentPath)) {
+                return agentPath.toAbsolutePath();
+            }
+        }
+
+        throw new IllegalArgumentException("Agent jar not found in " + String.join(", ", DEFAULT_AGENT_LOCATIONS) + ", use agent=<path>");
+    }
+
+    private static List<String> names() {
+        final List<String> result = new ArrayList<>();
+        for (final AgentProfile profile : AgentProfile.values()) {
+            result.add(profile.name());
+        }
+
+        return result;
+    }
+}
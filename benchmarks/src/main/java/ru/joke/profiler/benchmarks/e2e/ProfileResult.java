@@ -0,0 +1,111 @@
+package ru.joke.profiler.benchmarks.e2e;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Results of the workload run with a profile as written by the workload application.
+ */
+final class ProfileResult {
+
+    static final String[] LATENCY_PERCENTILES = { "p50", "p90", "p99", "p99.9", "max" };
+
+    private final String profile;
+    private final boolean deliversAllCalls;
+    private final Properties values;
+
+    ProfileResult(
+            final String profile,
+            final boolean deliversAllCalls,
+            final Properties values
+    ) {
+        this.profile = profile;
+        this.deliversAllCalls = deliversAllCalls;
+        this.values = values;
+    }
+
+    String profile() {
+        return this.profile;
+    }
+
+    /*
+     * Whether a record of each call is expected in the sink, see AgentProfile.
+     */
+    boolean deliversAllCalls() {
+        return this.deliversAllCalls;
+    }
+
+    double throughput() {
+        return doubleValue("throughput");
+    }
+
+    double callsPerRequest() {
+        return doubleValue("calls_per_request");
+    }
+
+    long latencyNs(final String percentile) {
+        return longValue("latency_ns." + percentile);
+    }
+
+    long gcCount() {
+        return longValue("gc_count");
+    }
+
+    long gcTimeMs() {
+        return longValue("gc_time_ms");
+    }
+
+    double allocatedBytesPerRequest() {
+        return longValue("allocated_bytes") / (double) Math.max(longValue("requests"), 1);
+    }
+
+    /*
+     * CPU time of the process per request, all threads including GC and JIT.
+     */
+    double cpuNsPerRequest() {
+        final long processCpuNs = longValue("process_cpu_ns");
+        return processCpuNs < 0 ? -1 : processCpuNs / (double) Math.max(longValue("requests"), 1);
+    }
+
+    /*
+     * CPU of the threads not started by the workload in percents of a core.
+     */
+    double agentThreadsCpuPercent() {
+        return longValue("foreign_threads_cpu_ns") * 100.0 / longValue("duration_ns");
+    }
+
+    double sinkRecordsPerSecond() {
+        final long records = longValue("sink_records");
+        return records < 0 ? -1 : records * (double) TimeUnit.SECONDS.toNanos(1) / longValue("duration_ns");
+    }
+
+    double sinkRecordsPerRequest() {
+        final long records = longValue("sink_records");
+        return records < 0 ? -1 : records / (double) Math.max(longValue("requests"), 1);
+    }
+
+    /*
+     * Records delivered to the sink in percents of the calls made, -1 if the records aren't counted.
+     */
+    double deliveredRecordsPercent() {
+        final double recordsPerRequest = sinkRecordsPerRequest();
+        return recordsPerRequest < 0 || callsPerRequest() <= 0 ? -1 : recordsPerRequest * 100 / callsPerRequest();
+    }
+
+    private long longValue(final String key) {
+        return Long.parseLong(this.values.getProperty(key, "-1"));
+    }
+
+    private double doubleValue(final String key) {
+        return Double.parseDouble(this.values.getProperty(key, "-1"));
+    }
+
+    @Override
+    public String toString() {
+        return "ProfileResult{"
+                + "profile='" + profile + '\''
+                + ", deliversAllCalls=" + deliversAllCalls
+                + ", values=" + values
+                + '}';
+    }
+}
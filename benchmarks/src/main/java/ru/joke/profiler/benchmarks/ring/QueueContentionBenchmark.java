@@ -0,0 +1,79 @@
+package ru.joke.profiler.benchmarks.ring;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Offers of the 64 producers (the profiled threads) into the bounded queue drained by a single consumer
+ * (the flushing thread). The offer score contains the offers rejected by the full queue, the rate of the delivered
+ * records is the drained counter of the consumer.
+ * Thread count of the group may be changed by -tg (consumer first, e.g. -tg 1,128).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueContentionBenchmark {
+
+    private static final Object ELEMENT = new Object();
+
+    @Param
+    private QueueType queueType;
+
+    @Param({ "1024", "10000" })
+    private int capacity;
+
+    @Param({ "256" })
+    private int drainBatchSize;
+
+    private QueueType.BoundedQueue<Object> queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.queue = this.queueType.create(this.capacity);
+    }
+
+    @Benchmark
+    @Group("offerDrain")
+    @GroupThreads(64)
+    public boolean offer() {
+        return this.queue.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("offerDrain")
+    @GroupThreads(1)
+    public void drain(final DrainCounters counters, final Blackhole blackhole) {
+        counters.drained += this.queue.drainTo(blackhole::consume, this.drainBatchSize);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class DrainCounters {
+
+        public long drained;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.drained = 0;
+        }
+    }
+}
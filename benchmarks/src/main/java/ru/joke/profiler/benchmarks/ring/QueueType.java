@@ -0,0 +1,89 @@
+package ru.joke.profiler.benchmarks.ring;
+
+import ru.joke.profiler.output.sinks.util.ring.MpscRingBuffer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+
+/*
+ * Bounded queues compared under the contention of the producers.
+ */
+public enum QueueType {
+
+    MPSC_RING {
+        @Override
+        <E> BoundedQueue<E> create(final int capacity) {
+            final MpscRingBuffer<E> ring = new MpscRingBuffer<>(capacity);
+            return new BoundedQueue<E>() {
+                @Override
+                public boolean offer(final E element) {
+                    return ring.offer(element);
+                }
+
+                @Override
+                public int drainTo(final Consumer<? super E> consumer, final int maxElements) {
+                    return ring.drainTo(consumer, maxElements);
+                }
+            };
+        }
+    },
+
+    SEMAPHORE_LINKED_QUEUE {
+        @Override
+        <E> BoundedQueue<E> create(final int capacity) {
+            final SemaphoreLinkedQueue<E> queue = new SemaphoreLinkedQueue<>(capacity);
+            return new BoundedQueue<E>() {
+                @Override
+                public boolean offer(final E element) {
+                    return queue.offer(element);
+                }
+
+                @Override
+                public int drainTo(final Consumer<? super E> consumer, final int maxElements) {
+                    int result = 0;
+                    E element;
+                    while (result < maxElements && (element = queue.poll()) != null) {
+                        consumer.accept(element);
+                        result++;
+                    }
+
+                    return result;
+                }
+            };
+        }
+    },
+
+    ARRAY_BLOCKING_QUEUE {
+        @Override
+        <E> BoundedQueue<E> create(final int capacity) {
+            final ArrayBlockingQueue<E> queue = new ArrayBlockingQueue<>(capacity);
+            return new BoundedQueue<E>() {
+                @Override
+                public boolean offer(final E element) {
+                    return queue.offer(element);
+                }
+
+                @Override
+                public int drainTo(final Consumer<? super E> consumer, final int maxElements) {
+                    int result = 0;
+                    E element;
+                    while (result < maxElements && (element = queue.poll()) != null) {
+                        consumer.accept(element);
+                        result++;
+                    }
+
+                    return result;
+                }
+            };
+        }
+    };
+
+    abstract <E> BoundedQueue<E> create(int capacity);
+
+    interface BoundedQueue<E> {
+
+        boolean offer(E element);
+
+        int drainTo(Consumer<? super E> consumer, int maxElements);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.joke.profiler.benchmarks.ring;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/*
+ * Queue which the async sinks and the connection pool used before the ring (linked queue bounded by the semaphores),
+ * kept here to compare with.
+ */
+final class SemaphoreLinkedQueue<E> {
+
+    private final Semaphore emptySemaphore;
+    private final Semaphore fullSemaphore;
+    private final Queue<E> sourceQueue;
+
+    SemaphoreLinkedQueue(final int capacity) {
+        this.sourceQueue = new ConcurrentLinkedQueue<>();
+        this.emptySemaphore = new Semaphore(1);
+        this.fullSemaphore = new Semaphore(capacity);
+    }
+
+    E poll() {
+        E result;
+        while ((result = this.sourceQueue.poll()) == null
+                && this.emptySemaphore.tryAcquire());
+
+        if (result != null) {
+            this.fullSemaphore.release();
+        }
+
+        return result;
+    }
+
+    boolean offer(final E elem) {
+        if (!this.fullSemaphore.tryAcquire()) {
+            return false;
+        }
+
+        this.sourceQueue.offer(elem);
+        this.emptySemaphore.release();
+
+        return true;
+    }
+}
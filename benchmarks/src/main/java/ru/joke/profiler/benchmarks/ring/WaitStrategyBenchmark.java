@@ -0,0 +1,100 @@
+package ru.joke.profiler.benchmarks.ring;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.joke.profiler.output.sinks.util.ring.BlockingMpscRingBuffer;
+import ru.joke.profiler.output.sinks.util.ring.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Handoff through the small blocking ring: 64 producers wait for the free space (the WAIT overflow policy
+ * of the async sinks), the consumer waits for the elements. The waits are limited by the timeouts, so the producers
+ * aren't blocked forever when the consumer stops at the end of the iteration; the handed off elements are counted
+ * by the consumer.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaitStrategyBenchmark {
+
+    private static final Object ELEMENT = new Object();
+    private static final long WAIT_TIMEOUT_MS = 10;
+
+    @Param
+    private WaitStrategy waitStrategy;
+
+    @Param({ "256" })
+    private int capacity;
+
+    private BlockingMpscRingBuffer<Object> ring;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.ring = new BlockingMpscRingBuffer<>(this.capacity, this.waitStrategy);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(64)
+    public boolean offer() throws InterruptedException {
+        return this.ring.offer(ELEMENT, WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public void poll(final HandoffCounters counters) throws InterruptedException {
+        if (this.ring.poll(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS) != null) {
+            counters.received++;
+        }
+    }
+
+    @Benchmark
+    @Group("batchHandoff")
+    @GroupThreads(64)
+    public boolean batchOffer() throws InterruptedException {
+        return offer();
+    }
+
+    @Benchmark
+    @Group("batchHandoff")
+    @GroupThreads(1)
+    public void drain(final HandoffCounters counters, final Blackhole blackhole) throws InterruptedException {
+        final int drained = this.ring.drainTo(blackhole::consume, this.capacity);
+        if (drained > 0) {
+            counters.received += drained;
+        } else {
+            poll(counters);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class HandoffCounters {
+
+        public long received;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.received = 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import ru.joke_shaded.org.apache.kafka.clients.producer.Callback;
+import ru.joke_shaded.org.apache.kafka.clients.producer.MockProducer;
+import ru.joke_shaded.org.apache.kafka.clients.producer.ProducerRecord;
+import ru.joke_shaded.org.apache.kafka.clients.producer.RecordMetadata;
+import ru.joke_shaded.org.apache.kafka.common.TopicPartition;
+import ru.joke_shaded.org.apache.kafka.common.header.Header;
+import ru.joke_shaded.org.apache.kafka.common.serialization.ByteArraySerializer;
+import ru.joke_shaded.org.apache.kafka.common.serialization.StringSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/*
+ * Stand-in of the Kafka cluster: the records are acknowledged immediately and only counted,
+ * unlike the mock producer they aren't kept in the history. Kafka client is bundled into the agent
+ * (built with -Dfull=true) under the relocated packages, so the producer is the relocated one too.
+ */
+final class CountingKafkaProducer extends MockProducer<String, byte[]> {
+
+    private final DeliveryCounters counters;
+
+    CountingKafkaProducer(final DeliveryCounters counters) {
+        super(true, new StringSerializer(), new ByteArraySerializer());
+        this.counters = counters;
+    }
+
+    @Override
+    public Future<RecordMetadata> send(final ProducerRecord<String, byte[]> record, final Callback callback) {
+        final int keySize = record.key() == null ? 0 : record.key().getBytes(StandardCharsets.UTF_8).length;
+        final int valueSize = record.value() == null ? 0 : record.value().length;
+        int headersSize = 0;
+        for (final Header header : record.headers()) {
+            headersSize += header.key().length() + (header.value() == null ? 0 : header.value().length);
+        }
+
+        this.counters.onDelivered(keySize + valueSize + headersSize);
+
+        final RecordMetadata metadata = new RecordMetadata(
+                new TopicPartition(record.topic(), 0),
+                0,
+                0,
+                System.currentTimeMillis(),
+                keySize,
+                valueSize
+        );
+        if (callback != null) {
+            callback.onCompletion(metadata, null);
+        }
+
+        return CompletableFuture.completedFuture(metadata);
+    }
+}
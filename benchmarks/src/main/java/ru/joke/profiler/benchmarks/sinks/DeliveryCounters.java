@@ -0,0 +1,39 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Events and bytes received by the stand-ins of the remote systems (Kafka producer, JMS broker, HTTP/2 server).
+ */
+final class DeliveryCounters {
+
+    private static final DeliveryCounters instance = new DeliveryCounters();
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    void onDelivered(final long bytes) {
+        this.events.increment();
+        this.bytes.add(bytes);
+    }
+
+    long events() {
+        return this.events.sum();
+    }
+
+    long bytes() {
+        return this.bytes.sum();
+    }
+
+    static DeliveryCounters getInstance() {
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryCounters{"
+                + "events=" + events
+                + ", bytes=" + bytes
+                + '}';
+    }
+}
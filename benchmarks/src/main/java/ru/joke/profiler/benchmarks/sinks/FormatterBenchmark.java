@@ -0,0 +1,87 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.util.injectors.JsonObjectPropertiesInjector;
+import ru.joke.profiler.output.sinks.util.injectors.OutputStringDataFormatter;
+import ru.joke.profiler.output.sinks.util.injectors.OutputStringDataFormatterFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Serialization of a record by the formatters of the file and console sinks and by the JSON injector
+ * of the Kafka, JMS and HTTP/2 messages bodies (including the encoding, as the sinks do).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+
+    private static final String CUSTOM_PATTERN = "${current_ts:yyyy-MM-dd HH:mm:ss.SSS} ${method} ${elapsed:mcs} ${trace_id}:${span_id}";
+    private static final int RECORDS_COUNT = 1024;
+
+    private OutputStringDataFormatter defaultFormatter;
+    private OutputStringDataFormatter customFormatter;
+    private JsonObjectPropertiesInjector defaultJsonInjector;
+    private JsonObjectPropertiesInjector mappedJsonInjector;
+    private OutputData[] records;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.defaultFormatter = OutputStringDataFormatterFactory.create(null);
+        this.customFormatter = OutputStringDataFormatterFactory.create(CUSTOM_PATTERN);
+        this.defaultJsonInjector = new JsonObjectPropertiesInjector(Collections.emptyMap());
+
+        final Map<String, String> mapping = new LinkedHashMap<>();
+        mapping.put("method", "operation");
+        mapping.put("elapsed", "durationNs");
+        mapping.put("trace_id", "traceId");
+        mapping.put("span_id", "spanId");
+        mapping.put("host", "host");
+        this.mappedJsonInjector = new JsonObjectPropertiesInjector(mapping);
+
+        this.records = SyntheticOutputData.create(RECORDS_COUNT, 42);
+    }
+
+    @Benchmark
+    public String stringDefaultPattern() {
+        return this.defaultFormatter.format(next());
+    }
+
+    @Benchmark
+    public String stringCustomPattern() {
+        return this.customFormatter.format(next());
+    }
+
+    @Benchmark
+    public byte[] jsonDefaultMapping() {
+        return this.defaultJsonInjector.inject(new StringBuilder(), next()).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] jsonCustomMapping() {
+        return this.mappedJsonInjector.inject(new StringBuilder(), next()).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private OutputData next() {
+        return this.records[this.index++ & (RECORDS_COUNT - 1)];
+    }
+}
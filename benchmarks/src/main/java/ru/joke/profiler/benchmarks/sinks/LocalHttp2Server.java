@@ -0,0 +1,95 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/*
+ * Local HTTP/2 (h2c) server which counts the received requests bodies and responds with 200 without a body;
+ * it's built on the own (not relocated) copy of the HttpCore, the sink connects to it over the loopback.
+ */
+final class LocalHttp2Server implements AutoCloseable {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int MAX_CONCURRENT_STREAMS = 100_000;
+
+    private final HttpAsyncServer server;
+    private final int port;
+
+    LocalHttp2Server(final DeliveryCounters counters) throws Exception {
+        this.server =
+                H2ServerBootstrap.bootstrap()
+                        .setCanonicalHostName(HOST)
+                        .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(2).build())
+                        .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+                        .setH2Config(H2Config.custom().setMaxConcurrentStreams(MAX_CONCURRENT_STREAMS).build())
+                        .register("*", new CountingRequestHandler(counters))
+                        .create();
+        this.server.start();
+
+        final ListenerEndpoint endpoint = this.server.listen(new InetSocketAddress(HOST, 0), URIScheme.HTTP).get();
+        this.port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+    }
+
+    String host() {
+        return HOST;
+    }
+
+    int port() {
+        return this.port;
+    }
+
+    @Override
+    public void close() {
+        this.server.close(CloseMode.IMMEDIATE);
+    }
+
+    private static final class CountingRequestHandler implements AsyncServerRequestHandler<Message<HttpRequest, byte[]>> {
+
+        private final DeliveryCounters counters;
+
+        private CountingRequestHandler(final DeliveryCounters counters) {
+            this.counters = counters;
+        }
+
+        @Override
+        public AsyncRequestConsumer<Message<HttpRequest, byte[]>> prepare(
+                final HttpRequest request,
+                final EntityDetails entityDetails,
+                final HttpContext context
+        ) {
+            return new BasicRequestConsumer<>(entityDetails == null ? null : new BasicAsyncEntityConsumer());
+        }
+
+        @Override
+        public void handle(
+                final Message<HttpRequest, byte[]> message,
+                final ResponseTrigger responseTrigger,
+                final HttpContext context
+        ) throws HttpException, IOException {
+            final byte[] body = message.getBody();
+            this.counters.onDelivered(body == null ? 0 : body.length);
+            responseTrigger.submitResponse(new BasicResponseProducer(new BasicHttpResponse(HttpStatus.SC_OK)), context);
+        }
+    }
+}
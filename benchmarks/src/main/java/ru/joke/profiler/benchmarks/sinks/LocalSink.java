@@ -0,0 +1,61 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.OutputDataSink;
+
+import java.util.function.LongSupplier;
+
+/*
+ * Sink created by its handle on top of a local stand-in; delivered events and bytes are the ones which reached
+ * the stand-in (file, database, producer, broker or server), -1 if the stand-in can't count them.
+ */
+public final class LocalSink implements AutoCloseable {
+
+    static final LongSupplier NOT_COUNTED = () -> -1;
+
+    private final OutputDataSink<OutputData> sink;
+    private final LongSupplier deliveredEvents;
+    private final LongSupplier deliveredBytes;
+    private final AutoCloseable standIn;
+
+    LocalSink(
+            final OutputDataSink<OutputData> sink,
+            final LongSupplier deliveredEvents,
+            final LongSupplier deliveredBytes,
+            final AutoCloseable standIn
+    ) {
+        this.sink = sink;
+        this.deliveredEvents = deliveredEvents;
+        this.deliveredBytes = deliveredBytes;
+        this.standIn = standIn;
+    }
+
+    public OutputDataSink<OutputData> sink() {
+        return this.sink;
+    }
+
+    public long deliveredEvents() {
+        return this.deliveredEvents.getAsLong();
+    }
+
+    public long deliveredBytes() {
+        return this.deliveredBytes.getAsLong();
+    }
+
+    /*
+     * Closes the sink first, so the async sinks flush the queued records into the stand-in.
+     */
+    public void closeSink() {
+        this.sink.close();
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.standIn.close();
+    }
+
+    @Override
+    public String toString() {
+        return "LocalSink{" + "sink=" + sink + '}';
+    }
+}
@@ -0,0 +1,215 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.OutputDataSink;
+import ru.joke.profiler.output.sinks.OutputDataSinkHandle;
+import ru.joke.profiler.output.sinks.fs.stream.file.OutputDataFileSinkHandle;
+import ru.joke.profiler.output.sinks.http2.OutputDataHttp2SinkHandle;
+import ru.joke.profiler.output.sinks.jdbc.OutputDataJdbcSinkHandle;
+import ru.joke.profiler.output.sinks.jms.OutputDataJmsSinkHandle;
+import ru.joke.profiler.output.sinks.kafka.OutputDataKafkaSinkHandle;
+
+import javax.naming.Context;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Output sinks of the agent created by their handles on top of the local stand-ins of the remote systems.
+ * Async sinks wait for the queue space on overflow, so the producers are throttled by the sink throughput.
+ */
+public enum SinkStandIn {
+
+    /*
+     * File in tmpfs (/dev/shm if present), so the disk isn't measured.
+     */
+    FILE(OutputDataFileSinkHandle.SINK_TYPE) {
+        @Override
+        LocalSink open(final Map<String, String> properties) throws Exception {
+            final Path directory = Files.isDirectory(TMPFS) ? TMPFS : Paths.get(System.getProperty("java.io.tmpdir"));
+            final File outputFile = Files.createTempFile(directory, "profiler-benchmark", ".log").toFile();
+            outputFile.deleteOnExit();
+
+            properties.put(property("output_file"), outputFile.getAbsolutePath());
+
+            final OutputDataSink<OutputData> sink = create(new OutputDataFileSinkHandle(), properties);
+            return new LocalSink(sink, () -> countLines(outputFile.toPath()), outputFile::length, outputFile::delete);
+        }
+    },
+
+    /*
+     * In-memory H2 database.
+     */
+    JDBC(OutputDataJdbcSinkHandle.SINK_TYPE) {
+        @Override
+        LocalSink open(final Map<String, String> properties) throws Exception {
+            final String url = "jdbc:h2:mem:profiler_benchmark;DB_CLOSE_DELAY=-1";
+            properties.put(property("connection-factory.url"), url);
+            properties.put(property("output-table.table_name"), TABLE_NAME);
+            properties.put(property("output-table.existing_table_policy"), "RECREATE");
+            properties.put(property("output-table.columns_metadata"), TABLE_COLUMNS);
+
+            final OutputDataSink<OutputData> sink = create(new OutputDataJdbcSinkHandle(), properties);
+            final Connection connection = DriverManager.getConnection(url);
+            return new LocalSink(sink, () -> countRows(connection), LocalSink.NOT_COUNTED, connection::close);
+        }
+    },
+
+    /*
+     * Producer which acknowledges the records immediately.
+     */
+    KAFKA(OutputDataKafkaSinkHandle.SINK_TYPE) {
+        @Override
+        LocalSink open(final Map<String, String> properties) throws Exception {
+            properties.put(property("producer.bootstrap.servers"), "localhost:9092");
+            properties.put(property("producer.disable_cluster_validation_on_start"), "true");
+            properties.put(property("output-record.target_queue"), "profiling-data");
+
+            final DeliveryCounters counters = DeliveryCounters.getInstance();
+            final OutputDataSinkHandle handle = new OutputDataKafkaSinkHandle(producerProperties -> new CountingKafkaProducer(counters));
+            return counted(create(handle, properties), counters, NO_STAND_IN);
+        }
+    },
+
+    /*
+     * In-VM broker stub found by JNDI.
+     */
+    JMS(OutputDataJmsSinkHandle.SINK_TYPE) {
+        @Override
+        LocalSink open(final Map<String, String> properties) throws Exception {
+            System.setProperty(Context.INITIAL_CONTEXT_FACTORY, StubJmsInitialContextFactory.class.getName());
+            properties.put(property("destination.connection_factory_jndi"), StubJmsInitialContextFactory.CONNECTION_FACTORY_JNDI_NAME);
+            properties.put(property("destination.destination_jndi"), StubJmsInitialContextFactory.DESTINATION_JNDI_NAME);
+
+            return counted(create(new OutputDataJmsSinkHandle(), properties), DeliveryCounters.getInstance(), NO_STAND_IN);
+        }
+    },
+
+    /*
+     * Local h2c server.
+     */
+    HTTP2(OutputDataHttp2SinkHandle.SINK_TYPE) {
+        @Override
+        LocalSink open(final Map<String, String> properties) throws Exception {
+            final DeliveryCounters counters = DeliveryCounters.getInstance();
+            final LocalHttp2Server server = new LocalHttp2Server(counters);
+            properties.put(property("output-endpoint.target_host"), server.host());
+            properties.put(property("output-endpoint.target_port"), String.valueOf(server.port()));
+            properties.put(property("output-endpoint.target_endpoint"), "/profiling");
+            properties.put(property("client.graceful_shutdown"), "true");
+
+            try {
+                return counted(create(new OutputDataHttp2SinkHandle(), properties), counters, server);
+            } catch (Exception | Error ex) {
+                server.close();
+                throw ex;
+            }
+        }
+    };
+
+    private static final Path TMPFS = Paths.get("/dev/shm");
+    private static final String TABLE_NAME = "profiling_data";
+    private static final String TABLE_COLUMNS =
+            "method:method_name:varchar(512);"
+            + "elapsed:elapsed_time:bigint;"
+            + "enter_ts:enter_ts:bigint;"
+            + "current_ts:created_at:timestamp;"
+            + "trace_id:trace_id:varchar(64);"
+            + "span_id:span_id:varchar(32);"
+            + "parent_span_id:parent_span_id:varchar(32);"
+            + "depth:depth:int;"
+            + "thread:thread_name:varchar(128)";
+    private static final AutoCloseable NO_STAND_IN = () -> {};
+
+    private static final String ASYNC_FLUSHING_PREFIX = "async-flushing.";
+    private static final String ASYNC_FLUSHING_INTERVAL = "100ms";
+    private static final String ASYNC_QUEUE_LIMIT = "65536";
+    private static final String ASYNC_MAX_BATCH_SIZE = "1000";
+
+    private final String sinkType;
+
+    SinkStandIn(final String sinkType) {
+        this.sinkType = sinkType;
+    }
+
+    public LocalSink open(final boolean async) throws Exception {
+        final Map<String, String> properties = new HashMap<>();
+        if (async) {
+            properties.put(property(ASYNC_FLUSHING_PREFIX + "enabled"), "true");
+            properties.put(property(ASYNC_FLUSHING_PREFIX + "flushing_interval"), ASYNC_FLUSHING_INTERVAL);
+            properties.put(property(ASYNC_FLUSHING_PREFIX + "flushing_queue_overflow_limit"), ASYNC_QUEUE_LIMIT);
+            properties.put(property(ASYNC_FLUSHING_PREFIX + "flushing_queue_overflow_policy"), "WAIT");
+            properties.put(property(ASYNC_FLUSHING_PREFIX + "flushing_max_batch_size"), ASYNC_MAX_BATCH_SIZE);
+            properties.put(property(ASYNC_FLUSHING_PREFIX + "force_flush_on_exit"), "true");
+        }
+
+        return open(properties);
+    }
+
+    abstract LocalSink open(Map<String, String> properties) throws Exception;
+
+    String property(final String name) {
+        return this.sinkType + "." + name;
+    }
+
+    private static OutputDataSink<OutputData> create(
+            final OutputDataSinkHandle handle,
+            final Map<String, String> properties
+    ) throws Exception {
+        final OutputDataSink<OutputData> sink = handle.create(properties);
+        sink.init();
+        return sink;
+    }
+
+    private static LocalSink counted(
+            final OutputDataSink<OutputData> sink,
+            final DeliveryCounters counters,
+            final AutoCloseable standIn
+    ) {
+        return new LocalSink(sink, counters::events, counters::bytes, standIn);
+    }
+
+    private static long countLines(final Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            long result = 0;
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() == '\n') {
+                        result++;
+                    }
+                }
+
+                buffer.clear();
+            }
+
+            return result;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static long countRows(final Connection connection) {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + TABLE_NAME)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.OutputDataSink;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Drives the sinks with the synthetic records at the configured rate and reports for each sink and mode:
+ * offered and delivered events per second, delivered bytes per second, allocated bytes per event (all threads)
+ * and write latency percentiles. Latency of a rate limited run is measured from the intended start of the write,
+ * so stalls of the sink aren't hidden by the delayed writes. Results are written as JSON to be kept as a baseline.
+ *
+ * Arguments (key=value): sinks=FILE,JDBC,KAFKA,JMS,HTTP2 modes=sync,async threads=1 rate=0 (events per second
+ * of all threads, 0 - unbounded) warmup=5 duration=10 (seconds) output=sink-throughput.json
+ */
+public final class SinkThroughputHarness {
+
+    private static final Logger agentLogger = Logger.getLogger("ru.joke.profiler");
+
+    private static final int RECORDS_COUNT = 1024;
+    private static final int MAX_LATENCY_SAMPLES = 1 << 20;
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private final List<SinkStandIn> sinks;
+    private final List<Boolean> modes;
+    private final int threads;
+    private final long rate;
+    private final long warmupNs;
+    private final long durationNs;
+    private final String output;
+
+    private SinkThroughputHarness(final Map<String, String> args) {
+        this.sinks = new ArrayList<>();
+        for (final String sink : args.getOrDefault("sinks", "FILE,JDBC,KAFKA,JMS,HTTP2").split(",")) {
+            this.sinks.add(SinkStandIn.valueOf(sink.trim().toUpperCase(Locale.ROOT)));
+        }
+
+        this.modes = new ArrayList<>();
+        for (final String mode : args.getOrDefault("modes", "sync,async").split(",")) {
+            this.modes.add("async".equalsIgnoreCase(mode.trim()));
+        }
+
+        this.threads = Integer.parseInt(args.getOrDefault("threads", "1"));
+        this.rate = Long.parseLong(args.getOrDefault("rate", "0"));
+        this.warmupNs = TimeUnit.SECONDS.toNanos(Long.parseLong(args.getOrDefault("warmup", "5")));
+        this.durationNs = TimeUnit.SECONDS.toNanos(Long.parseLong(args.getOrDefault("duration", "10")));
+        this.output = args.getOrDefault("output", "sink-throughput.json");
+    }
+
+    public static void main(final String[] args) throws Exception {
+        agentLogger.setLevel(Level.WARNING);
+
+        final Map<String, String> arguments = new HashMap<>();
+        for (final String arg : args) {
+            final int delimiterIndex = arg.indexOf('=');
+            if (delimiterIndex <= 0) {
+                throw new IllegalArgumentException("Argument must be in form key=value: " + arg);
+            }
+
+            arguments.put(arg.substring(0, delimiterIndex), arg.substring(delimiterIndex + 1));
+        }
+
+        new SinkThroughputHarness(arguments).run();
+    }
+
+    private void run() throws Exception {
+        final List<Result> results = new ArrayList<>();
+        for (final SinkStandIn sink : this.sinks) {
+            for (final boolean async : this.modes) {
+                final Result result = run(sink, async);
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+
+        write(results);
+        System.out.println("Results are written to " + Paths.get(this.output).toAbsolutePath());
+    }
+
+    private Result run(final SinkStandIn sinkStandIn, final boolean async) throws Exception {
+        try (LocalSink localSink = sinkStandIn.open(async)) {
+            drive(localSink.sink(), this.warmupNs, null);
+            // lets the async sinks flush the warmup records
+            TimeUnit.MILLISECONDS.sleep(500);
+
+            final long deliveredEventsOnStart = localSink.deliveredEvents();
+            final long deliveredBytesOnStart = localSink.deliveredBytes();
+            final long allocatedBytesOnStart = allocatedBytes();
+            final long startTime = System.nanoTime();
+
+            final Writers writers = new Writers();
+            drive(localSink.sink(), this.durationNs, writers);
+
+            final long writeEndTime = System.nanoTime();
+            final long allocatedBytes = allocatedBytes() - allocatedBytesOnStart + writers.allocatedBytes();
+            localSink.closeSink();
+            final long endTime = System.nanoTime();
+
+            final long deliveredBytes = localSink.deliveredBytes();
+            return new Result(
+                    sinkStandIn,
+                    async,
+                    this.threads,
+                    this.rate,
+                    writeEndTime - startTime,
+                    endTime - startTime,
+                    writers.offeredEvents(),
+                    localSink.deliveredEvents() - deliveredEventsOnStart,
+                    deliveredBytes < 0 ? -1 : deliveredBytes - deliveredBytesOnStart,
+                    allocatedBytes,
+                    writers.latencyPercentiles()
+            );
+        }
+    }
+
+    private void drive(
+            final OutputDataSink<OutputData> sink,
+            final long durationNs,
+            final Writers writers
+    ) throws InterruptedException {
+        final long intervalNs = this.rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(this.threads) / this.rate;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final Thread[] writerThreads = new Thread[this.threads];
+        for (int i = 0; i < this.threads; i++) {
+            final OutputData[] records = SyntheticOutputData.create(RECORDS_COUNT, i);
+            final Writer writer = new Writer(sink, records, intervalNs, durationNs, startLatch);
+            if (writers != null) {
+                writers.add(writer);
+            }
+
+            writerThreads[i] = new Thread(writer, "sink-benchmark-writer-" + i);
+            writerThreads[i].start();
+        }
+
+        startLatch.countDown();
+        for (final Thread writerThread : writerThreads) {
+            writerThread.join();
+        }
+    }
+
+    private void write(final List<Result> results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(this.output), StandardCharsets.UTF_8))) {
+            writer.println("{");
+            writer.printf(Locale.ROOT, "  \"jvm\": \"%s %s\",%n", System.getProperty("java.vm.name"), System.getProperty("java.version"));
+            writer.printf(Locale.ROOT, "  \"os\": \"%s %s\",%n", System.getProperty("os.name"), System.getProperty("os.arch"));
+            writer.printf(Locale.ROOT, "  \"cpus\": %d,%n", Runtime.getRuntime().availableProcessors());
+            writer.println("  \"results\": [");
+            for (int i = 0; i < results.size(); i++) {
+                writer.print("    ");
+                writer.print(results.get(i).toJson());
+                writer.println(i == results.size() - 1 ? "" : ",");
+            }
+
+            writer.println("  ]");
+            writer.println("}");
+        }
+    }
+
+    /*
+     * Allocated by the live threads (sink threads, stand-ins), writers count their own allocations
+     * as they are finished before the end of the measurement.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+
+        final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        long result = 0;
+        for (final long allocated : allocationMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            result += Math.max(allocated, 0);
+        }
+
+        return result;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        return threadMXBean instanceof com.sun.management.ThreadMXBean
+                ? ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId())
+                : 0;
+    }
+
+    private static final class Writer implements Runnable {
+
+        private final OutputDataSink<OutputData> sink;
+        private final OutputData[] records;
+        private final long intervalNs;
+        private final long durationNs;
+        private final CountDownLatch startLatch;
+        private final long[] latencies;
+        private long offeredEvents;
+        private long allocatedBytes;
+
+        private Writer(
+                final OutputDataSink<OutputData> sink,
+                final OutputData[] records,
+                final long intervalNs,
+                final long durationNs,
+                final CountDownLatch startLatch
+        ) {
+            this.sink = sink;
+            this.records = records;
+            this.intervalNs = intervalNs;
+            this.durationNs = durationNs;
+            this.startLatch = startLatch;
+            this.latencies = new long[MAX_LATENCY_SAMPLES];
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.startLatch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            final long allocatedBytesOnStart = currentThreadAllocatedBytes();
+            final long startTime = System.nanoTime();
+            final long endTime = startTime + this.durationNs;
+            long intendedStartTime = startTime;
+            long now = startTime;
+            while (now < endTime) {
+                if (this.intervalNs > 0) {
+                    while (now < intendedStartTime) {
+                        LockSupport.parkNanos(intendedStartTime - now);
+                        now = System.nanoTime();
+                    }
+                }
+
+                final long writeStartTime = this.intervalNs > 0 ? intendedStartTime : now;
+                this.sink.write(this.records[(int) (this.offeredEvents & (RECORDS_COUNT - 1))]);
+                now = System.nanoTime();
+
+                this.latencies[(int) (this.offeredEvents % MAX_LATENCY_SAMPLES)] = now - writeStartTime;
+                this.offeredEvents++;
+                intendedStartTime += this.intervalNs;
+            }
+
+            this.allocatedBytes = currentThreadAllocatedBytes() - allocatedBytesOnStart;
+        }
+    }
+
+    private static final class Writers {
+
+        private final List<Writer> writers = new ArrayList<>();
+
+        private void add(final Writer writer) {
+            this.writers.add(writer);
+        }
+
+        private long offeredEvents() {
+            long result = 0;
+            for (final Writer writer : this.writers) {
+                result += writer.offeredEvents;
+            }
+
+            return result;
+        }
+
+        private long allocatedBytes() {
+            long result = 0;
+            for (final Writer writer : this.writers) {
+                result += writer.allocatedBytes;
+            }
+
+            return result;
+        }
+
+        private long[] latencyPercentiles() {
+            int samplesCount = 0;
+            for (final Writer writer : this.writers) {
+                samplesCount += (int) Math.min(writer.offeredEvents, MAX_LATENCY_SAMPLES);
+            }
+
+            final long[] samples = new long[samplesCount];
+            int position = 0;
+            for (final Writer writer : this.writers) {
+                final int count = (int) Math.min(writer.offeredEvents, MAX_LATENCY_SAMPLES);
+                System.arraycopy(writer.latencies, 0, samples, position, count);
+                position += count;
+            }
+
+            Arrays.sort(samples);
+
+            final long[] result = new long[PERCENTILES.length + 1];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                result[i] = samples.length == 0 ? 0 : samples[(int) Math.min(samples.length - 1, Math.ceil(samples.length * PERCENTILES[i] / 100) - 1)];
+            }
+
+            result[PERCENTILES.length] = samples.length == 0 ? 0 : samples[samples.length - 1];
+            return result;
+        }
+    }
+
+    private static final class Result {
+
+        private final SinkStandIn sink;
+        private final boolean async;
+        private final int threads;
+        private final long rate;
+        private final long writeDurationNs;
+        private final long deliveryDurationNs;
+        private final long offeredEvents;
+        private final long deliveredEvents;
+        private final long deliveredBytes;
+        private final long allocatedBytes;
+        private final long[] latencyPercentilesNs;
+
+        private Result(
+                final SinkStandIn sink,
+                final boolean async,
+                final int threads,
+                final long rate,
+                final long writeDurationNs,
+                final long deliveryDurationNs,
+                final long offeredEvents,
+                final long deliveredEvents,
+                final long deliveredBytes,
+                final long allocatedBytes,
+                final long[] latencyPercentilesNs
+        ) {
+            this.sink = sink;
+            this.async = async;
+            this.threads = threads;
+            this.rate = rate;
+            this.writeDurationNs = writeDurationNs;
+            this.deliveryDurationNs = deliveryDurationNs;
+            this.offeredEvents = offeredEvents;
+            this.deliveredEvents = deliveredEvents;
+            this.deliveredBytes = deliveredBytes;
+            this.allocatedBytes = allocatedBytes;
+            this.latencyPercentilesNs = latencyPercentilesNs;
+        }
+
+        private double perSecond(final long value, final long durationNs) {
+            return value < 0 ? -1 : value * (double) TimeUnit.SECONDS.toNanos(1) / durationNs;
+        }
+
+        private String toJson() {
+            return String.format(
+                    Locale.ROOT,
+                    "{\"sink\": \"%s\", \"mode\": \"%s\", \"threads\": %d, \"targetRate\": %d, "
+                            + "\"offeredEventsPerSec\": %.1f, \"deliveredEventsPerSec\": %.1f, \"deliveredBytesPerSec\": %.1f, "
+                            + "\"allocatedBytesPerEvent\": %.1f, "
+                            + "\"latencyNs\": {\"p50\": %d, \"p90\": %d, \"p99\": %d, \"p99.9\": %d, \"max\": %d}}",
+                    this.sink,
+                    this.async ? "async" : "sync",
+                    this.threads,
+                    this.rate,
+                    perSecond(this.offeredEvents, this.writeDurationNs),
+                    perSecond(this.deliveredEvents, this.deliveryDurationNs),
+                    perSecond(this.deliveredBytes, this.deliveryDurationNs),
+                    this.offeredEvents == 0 ? 0 : this.allocatedBytes / (double) this.offeredEvents,
+                    this.latencyPercentilesNs[0],
+                    this.latencyPercentilesNs[1],
+                    this.latencyPercentilesNs[2],
+                    this.latencyPercentilesNs[3],
+                    this.latencyPercentilesNs[4]
+            );
+        }
+
+        @Override
+        public String toString() {
+            return "Result" + toJson();
+        }
+    }
+}
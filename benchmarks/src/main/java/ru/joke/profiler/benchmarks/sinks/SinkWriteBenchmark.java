@@ -0,0 +1,94 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.joke.profiler.output.sinks.OutputData;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/*
+ * Write of a single record into the sink by the profiled thread: events per second in the throughput mode and
+ * the latency percentiles in the sample time mode; allocation per event is reported by the GC profiler (-prof gc).
+ * For the async sinks the write is an offer into the queue, the flushing threads are throttled by the sink itself.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SinkWriteBenchmark {
+
+    private static final Logger agentLogger = Logger.getLogger("ru.joke.profiler");
+
+    @Param
+    private SinkStandIn sink;
+
+    @Param({ "false", "true" })
+    private boolean async;
+
+    private LocalSink localSink;
+    private long deliveredEventsOnStart;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        agentLogger.setLevel(java.util.logging.Level.WARNING);
+        this.localSink = this.sink.open(this.async);
+        this.deliveredEventsOnStart = this.localSink.deliveredEvents();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.localSink.closeSink();
+        System.out.printf(
+                "%n%s (async=%s): delivered events %d, delivered bytes %d%n",
+                this.sink,
+                this.async,
+                this.localSink.deliveredEvents() - this.deliveredEventsOnStart,
+                this.localSink.deliveredBytes()
+        );
+        this.localSink.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void write(final Records records) {
+        this.localSink.sink().write(records.next());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void writeLatency(final Records records) {
+        this.localSink.sink().write(records.next());
+    }
+
+    @State(Scope.Thread)
+    public static class Records {
+
+        private static final int RECORDS_COUNT = 1024;
+
+        private OutputData[] records;
+        private int index;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.records = SyntheticOutputData.create(RECORDS_COUNT, Thread.currentThread().getId());
+        }
+
+        OutputData next() {
+            return this.records[this.index++ & (RECORDS_COUNT - 1)];
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSContext;
+import jakarta.jms.JMSProducer;
+import jakarta.jms.Queue;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.spi.InitialContextFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+
+/*
+ * In-VM stand-in of the JMS broker registered as the JNDI initial context factory: connection factory creates
+ * the contexts whose producers count the sent messages bodies instead of sending them.
+ */
+public final class StubJmsInitialContextFactory implements InitialContextFactory {
+
+    static final String CONNECTION_FACTORY_JNDI_NAME = "jms/ProfilingConnectionFactory";
+    static final String DESTINATION_JNDI_NAME = "jms/ProfilingQueue";
+
+    private static final String QUEUE_NAME = "profiling-queue";
+
+    @Override
+    public Context getInitialContext(final Hashtable<?, ?> environment) {
+        final ConnectionFactory connectionFactory = createConnectionFactory(DeliveryCounters.getInstance());
+        final Queue queue = stub(Queue.class, (proxy, method, args) -> "getQueueName".equals(method.getName()) ? QUEUE_NAME : null);
+
+        return stub(Context.class, (proxy, method, args) -> {
+            if (!"lookup".equals(method.getName())) {
+                return null;
+            }
+
+            final String name = String.valueOf(args[0]);
+            if (CONNECTION_FACTORY_JNDI_NAME.equals(name)) {
+                return connectionFactory;
+            } else if (DESTINATION_JNDI_NAME.equals(name)) {
+                return queue;
+            }
+
+            throw new NameNotFoundException(name);
+        });
+    }
+
+    private static ConnectionFactory createConnectionFactory(final DeliveryCounters counters) {
+        return stub(ConnectionFactory.class, (proxy, method, args) ->
+                method.getReturnType() == JMSContext.class
+                        ? createContext(counters)
+                        : null
+        );
+    }
+
+    private static JMSContext createContext(final DeliveryCounters counters) {
+        return stub(JMSContext.class, (proxy, method, args) ->
+                method.getReturnType() == JMSProducer.class
+                        ? createProducer(counters)
+                        : null
+        );
+    }
+
+    private static JMSProducer createProducer(final DeliveryCounters counters) {
+        return stub(JMSProducer.class, (proxy, method, args) -> {
+            if ("send".equals(method.getName()) && args.length == 2) {
+                counters.onDelivered(args[1] instanceof byte[] ? ((byte[]) args[1]).length : String.valueOf(args[1]).length());
+            }
+
+            return method.getReturnType() == JMSProducer.class ? proxy : null;
+        });
+    }
+
+    private static <T> T stub(final Class<T> type, final StubHandler handler) {
+        final Object result = Proxy.newProxyInstance(
+                StubJmsInitialContextFactory.class.getClassLoader(),
+                new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return type.getSimpleName() + "Stub";
+                    }
+
+                    final Object value = handler.invoke(proxy, method, args == null ? new Object[0] : args);
+                    return value == null ? defaultValue(method.getReturnType()) : value;
+                }
+        );
+
+        return type.cast(result);
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == int.class) {
+            return 0;
+        }
+
+        throw new UnsupportedOperationException("Unsupported type: " + type);
+    }
+
+    @FunctionalInterface
+    private interface StubHandler {
+
+        Object invoke(Object proxy, Method method, Object[] args) throws Exception;
+    }
+}
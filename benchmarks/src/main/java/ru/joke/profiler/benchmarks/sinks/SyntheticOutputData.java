@@ -0,0 +1,52 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import ru.joke.profiler.output.sinks.OutputData;
+
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/*
+ * Records similar to the ones produced by the traced registrar: methods of a few classes of an application,
+ * elapsed times from microseconds to hundreds of milliseconds, nested spans of a trace.
+ */
+public final class SyntheticOutputData {
+
+    private static final String[] METHODS = {
+            "com.acme.orders.api.OrderController.placeOrder",
+            "com.acme.orders.service.OrderService.validate",
+            "com.acme.orders.service.PricingService.calculateTotal",
+            "com.acme.orders.repository.OrderRepository.save",
+            "com.acme.inventory.client.InventoryClient.reserve",
+            "com.acme.payments.client.PaymentGateway.authorize"
+    };
+    private static final String[] THREADS = { "http-nio-8080-exec-1", "http-nio-8080-exec-2", "order-events-consumer-0" };
+
+    private SyntheticOutputData() {
+    }
+
+    public static OutputData[] create(final int count, final long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final LocalDateTime timestamp = LocalDateTime.now();
+        final OutputData[] result = new OutputData[count];
+        for (int i = 0; i < count; i++) {
+            final int depth = i % METHODS.length;
+            final OutputData data = new OutputData();
+            data.fill(
+                    depth + 1,
+                    METHODS[depth],
+                    1_000L << random.nextInt(18),
+                    System.nanoTime(),
+                    random.nextLong(),
+                    random.nextLong(),
+                    depth,
+                    THREADS[random.nextInt(THREADS.length)],
+                    timestamp.plusNanos(i * 1_000L),
+                    random.nextLong(),
+                    depth == 0 ? 0 : random.nextLong()
+            );
+            result[i] = data;
+        }
+
+        return result;
+    }
+}
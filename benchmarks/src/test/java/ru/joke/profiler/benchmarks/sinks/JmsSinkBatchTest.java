@@ -0,0 +1,40 @@
+package ru.joke.profiler.benchmarks.sinks;
+
+import org.junit.jupiter.api.Test;
+import ru.joke.profiler.output.sinks.OutputData;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * Each message of the batch written to the JMS sink carries the body of its own record only.
+ */
+class JmsSinkBatchTest {
+
+    private static final int BATCH_SIZE = 16;
+
+    @Test
+    void batchMessagesCarryOnlyTheirRecords() throws Exception {
+        final OutputData record = SyntheticOutputData.create(1, 42)[0];
+        final List<OutputData> batch = Collections.nCopies(BATCH_SIZE, record);
+
+        try (LocalSink localSink = SinkStandIn.JMS.open(false)) {
+            try {
+                final long bytesBeforeRecord = localSink.deliveredBytes();
+                localSink.sink().write(record);
+                final long recordBytes = localSink.deliveredBytes() - bytesBeforeRecord;
+
+                final long eventsBeforeBatch = localSink.deliveredEvents();
+                final long bytesBeforeBatch = localSink.deliveredBytes();
+                localSink.sink().write(batch);
+
+                assertEquals(BATCH_SIZE, localSink.deliveredEvents() - eventsBeforeBatch);
+                assertEquals(BATCH_SIZE * recordBytes, localSink.deliveredBytes() - bytesBeforeBatch);
+            } finally {
+                localSink.closeSink();
+            }
+        }
+    }
+}
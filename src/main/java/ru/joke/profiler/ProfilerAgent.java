@@ -3,30 +3,67 @@ package ru.joke.profiler;
 import ru.joke.profiler.configuration.DynamicProfilingConfigurationHolder;
 import ru.joke.profiler.configuration.DynamicProfilingConfigurationHolderFactory;
 import ru.joke.profiler.configuration.DynamicProfilingConfigurationRefreshService;
+import ru.joke.profiler.configuration.StartupConfiguration;
 import ru.joke.profiler.configuration.StaticProfilingConfiguration;
 import ru.joke.profiler.configuration.loaders.ProfilingConfigurationLoader;
 import ru.joke.profiler.configuration.loaders.ProfilingConfigurationLoaderFactory;
+import ru.joke.profiler.metrics.ProfilerMetrics;
+import ru.joke.profiler.metrics.SinkPipelineMetrics;
 import ru.joke.profiler.output.ExecutionTimeRegistrar;
 import ru.joke.profiler.output.ExecutionTimeRegistrarFactory;
 import ru.joke.profiler.output.ExecutionTimeRegistrarMetadataSelector;
+import ru.joke.profiler.output.ProbesSwitch;
+import ru.joke.profiler.output.RegistrationMetrics;
+import ru.joke.profiler.output.aggregation.AggregationConfiguration;
+import ru.joke.profiler.output.aggregation.LatencyAggregator;
+import ru.joke.profiler.output.journal.EventJournal;
+import ru.joke.profiler.output.journal.EventJournalConfiguration;
 import ru.joke.profiler.output.sinks.OutputData;
 import ru.joke.profiler.output.sinks.OutputDataSink;
 import ru.joke.profiler.output.sinks.OutputDataSinkFactory;
+import ru.joke.profiler.output.sinks.util.DeferredInitOutputDataSink;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetricsRegistry;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetricsReporter;
+import ru.joke.profiler.transformation.AdaptiveDeinstrumentationConfiguration;
+import ru.joke.profiler.transformation.AdaptiveDeinstrumentationService;
+import ru.joke.profiler.transformation.BytecodeCacheConfiguration;
+import ru.joke.profiler.transformation.ClassMetadataIndex;
+import ru.joke.profiler.transformation.ClassesRetransformer;
 import ru.joke.profiler.transformation.NativeClassMethodsCollector;
 import ru.joke.profiler.transformation.ProfilingTransformer;
+import ru.joke.profiler.transformation.RetransformationConfiguration;
 import ru.joke.profiler.transformation.TransformationFilter;
+import ru.joke.profiler.transformation.TransformationMetrics;
+import ru.joke.profiler.transformation.TransformedBytecodeCache;
 import ru.joke.profiler.transformation.spy.SpyContext;
 import ru.joke.profiler.transformation.spy.SpyInjector;
 import ru.joke.profiler.transformation.spy.SpyInjectorFactory;
 
+import java.io.File;
 import java.lang.instrument.Instrumentation;
+import java.security.CodeSource;
 import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public final class ProfilerAgent {
 
     private static final Logger logger = Logger.getLogger(ProfilerAgent.class.getCanonicalName());
 
+    /*
+     * Classes loaded by the JVM on the first linkage of a VarHandle operation (JDK 9+). If the linkage happens after
+     * the transformer is added, the transformer is called for these classes while it uses VarHandles itself
+     * (atomics, striped counters, concurrent maps), so the loading fails with ClassCircularityError.
+     */
+    private static final String[] VAR_HANDLE_LINKAGE_CLASSES = {
+            "java.lang.invoke.VarHandle$AccessDescriptor",
+            "java.lang.invoke.VarHandle$AccessMode",
+            "java.lang.invoke.VarHandle$AccessType"
+    };
+
+    private static volatile ClassesRetransformer classesRetransformer;
+
     public static void premain(final String args, final Instrumentation instrumentation) throws Exception {
         agentmain(args, instrumentation);
     }
@@ -36,20 +73,233 @@ public final class ProfilerAgent {
 
         final ProfilingConfigurationLoader configurationLoader = createConfigurationLoader(args);
         final StaticProfilingConfiguration staticConfiguration = configurationLoader.loadStatic();
+        if (staticConfiguration.metricsMBeanEnabled()) {
+            RegistrationMetrics.getInstance().enable();
+        }
 
         final DynamicProfilingConfigurationHolder dynamicConfigHolder = createDynamicConfigurationHolder();
         final ExecutionTimeRegistrar registrar = createRegistrar(staticConfiguration, dynamicConfigHolder);
 
         handleDynamicConfiguration(configurationLoader, staticConfiguration);
 
+        final Predicate<String> transformationFilter = new TransformationFilter(staticConfiguration);
+        final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService = createAdaptiveDeinstrumentationService(
+                staticConfiguration,
+                instrumentation
+        );
+        final TransformedBytecodeCache bytecodeCache = createBytecodeCache(staticConfiguration, adaptiveDeinstrumentationService);
         final ProfilingTransformer transformer = createTransformer(
                 staticConfiguration,
+                transformationFilter,
                 registrar,
-                dynamicConfigHolder
+                dynamicConfigHolder,
+                adaptiveDeinstrumentationService,
+                bytecodeCache
         );
-        instrumentation.addTransformer(transformer);
+        preloadVarHandleLinkageClasses();
+        instrumentation.addTransformer(transformer, instrumentation.isRetransformClassesSupported());
 
         logger.info("Profiling transformer added by agent");
+
+        final TransformationMetrics transformationMetrics = transformer.metrics();
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread(() -> {
+                    logger.info("Probes of trivial methods elided: " + transformationMetrics.elidedProbes());
+                    logger.info("Classes instrumented with frames computation fallback: " + transformationMetrics.framesComputationFallbacks());
+                    logger.info(
+                            String.format(
+                                    "Bytecode of the instrumented classes: %d -> %d bytes, methods grown over the huge method limit: %d",
+                                    transformationMetrics.originalBytecodeSize(),
+                                    transformationMetrics.instrumentedBytecodeSize(),
+                                    transformationMetrics.hugeMethods()
+                            )
+                    );
+                }));
+
+        createClassesRetransformer(
+                staticConfiguration,
+                instrumentation,
+                transformer,
+                transformationFilter,
+                dynamicConfigHolder
+        );
+
+        if (adaptiveDeinstrumentationService != null) {
+            adaptiveDeinstrumentationService.init(classesRetransformer);
+            Runtime.getRuntime()
+                    .addShutdownHook(new Thread(adaptiveDeinstrumentationService::close));
+        }
+
+        registerMetrics(staticConfiguration, transformationMetrics, adaptiveDeinstrumentationService);
+    }
+
+    /*
+     * Restores the original bytecode of all the instrumented classes; requires retransformation support from the JVM.
+     */
+    public static void detach() {
+        final ClassesRetransformer retransformer = classesRetransformer;
+        if (retransformer == null) {
+            logger.warning("Profiler can't be detached: classes retransformation isn't supported");
+            return;
+        }
+
+        retransformer.detach();
+    }
+
+    private static void registerMetrics(
+            final StaticProfilingConfiguration staticConfiguration,
+            final TransformationMetrics transformationMetrics,
+            final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService
+    ) {
+        if (!staticConfiguration.metricsMBeanEnabled()) {
+            return;
+        }
+
+        final ProfilerMetrics metrics = new ProfilerMetrics(transformationMetrics, adaptiveDeinstrumentationService);
+        try {
+            metrics.init();
+        } catch (ProfilerException ex) {
+            logger.log(Level.WARNING, "Profiler metrics MBean will not be available", ex);
+            return;
+        }
+
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread(metrics::close));
+
+        // sinks initialized in background register their metrics on their own
+        if (!staticConfiguration.startupConfiguration().async()) {
+            registerSinksMetrics(staticConfiguration);
+        }
+    }
+
+    private static void registerSinksMetrics(final StaticProfilingConfiguration staticConfiguration) {
+        if (!staticConfiguration.metricsMBeanEnabled()) {
+            return;
+        }
+
+        for (final SinkMetrics sinkMetrics : SinkMetricsRegistry.getInstance().all()) {
+            final SinkPipelineMetrics sinkPipelineMetrics = new SinkPipelineMetrics(sinkMetrics);
+            try {
+                sinkPipelineMetrics.init();
+            } catch (ProfilerException ex) {
+                logger.log(Level.WARNING, "Sink metrics MBean will not be available", ex);
+                continue;
+            }
+
+            Runtime.getRuntime()
+                    .addShutdownHook(new Thread(sinkPipelineMetrics::close));
+        }
+    }
+
+    private static AdaptiveDeinstrumentationService createAdaptiveDeinstrumentationService(
+            final StaticProfilingConfiguration staticConfiguration,
+            final Instrumentation instrumentation
+    ) {
+        final AdaptiveDeinstrumentationConfiguration configuration = staticConfiguration.adaptiveDeinstrumentationConfiguration();
+        if (!configuration.enabled()) {
+            return null;
+        }
+
+        if (staticConfiguration.minExecutionThresholdNs() == 0) {
+            logger.warning("Adaptive de-instrumentation is enabled but will not be used: min execution threshold isn't set");
+            return null;
+        }
+
+        if (!instrumentation.isRetransformClassesSupported()) {
+            logger.warning("Adaptive de-instrumentation is enabled but will not be used: classes retransformation isn't supported by JVM");
+            return null;
+        }
+
+        return new AdaptiveDeinstrumentationService(configuration);
+    }
+
+    private static TransformedBytecodeCache createBytecodeCache(
+            final StaticProfilingConfiguration staticConfiguration,
+            final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService
+    ) {
+        final BytecodeCacheConfiguration configuration = staticConfiguration.bytecodeCacheConfiguration();
+        if (configuration == null || !configuration.enabled()) {
+            return null;
+        }
+
+        final String fingerprint = String.join(
+                "|",
+                composeAgentVersion(),
+                System.getProperty("java.vm.version"),
+                composeClassPathVersion(),
+                staticConfiguration.transformationFingerprint(),
+                String.valueOf(adaptiveDeinstrumentationService != null)
+        );
+        final TransformedBytecodeCache bytecodeCache = new TransformedBytecodeCache(configuration, fingerprint);
+        try {
+            bytecodeCache.init();
+        } catch (ProfilerException ex) {
+            logger.log(Level.WARNING, "Bytecode cache will not be used", ex);
+            return null;
+        }
+
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread(bytecodeCache::close));
+
+        return bytecodeCache;
+    }
+
+    /*
+     * Snapshot builds share the version, so the agent jar build timestamp is taken into account as well.
+     */
+    private static String composeAgentVersion() {
+        final String version = ProfilerAgent.class.getPackage().getImplementationVersion();
+        final CodeSource codeSource = ProfilerAgent.class.getProtectionDomain().getCodeSource();
+        final File agentJar = codeSource == null ? null : new File(codeSource.getLocation().getPath());
+        return agentJar == null
+                ? version
+                : version + ':' + agentJar.lastModified() + ':' + agentJar.length();
+    }
+
+    /*
+     * Frames computation and native callees detection depend on the other classes: their results are cached only
+     * for the classes of the class path, so the cache is invalidated when any class path entry changes.
+     * Directories are identified by their own modification time only.
+     */
+    private static String composeClassPathVersion() {
+        final StringBuilder result = new StringBuilder();
+        for (final String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            final File file = new File(entry);
+            result.append(file.getAbsolutePath())
+                    .append(':').append(file.lastModified())
+                    .append(':').append(file.length())
+                    .append(';');
+        }
+
+        return result.toString();
+    }
+
+    private static void createClassesRetransformer(
+            final StaticProfilingConfiguration staticConfiguration,
+            final Instrumentation instrumentation,
+            final ProfilingTransformer transformer,
+            final Predicate<String> transformationFilter,
+            final DynamicProfilingConfigurationHolder dynamicConfigHolder
+    ) {
+        if (!instrumentation.isRetransformClassesSupported()) {
+            logger.warning("Classes retransformation isn't supported by JVM");
+            return;
+        }
+
+        final RetransformationConfiguration retransformationConfiguration = staticConfiguration.retransformationConfiguration();
+        final ClassesRetransformer retransformer = new ClassesRetransformer(
+                retransformationConfiguration,
+                instrumentation,
+                transformer,
+                transformationFilter,
+                staticConfiguration.dynamicConfigurationEnabled() ? dynamicConfigHolder : null
+        );
+        retransformer.init();
+
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread(retransformer::close));
+
+        classesRetransformer = retransformer;
     }
 
     private static ProfilingConfigurationLoader createConfigurationLoader(final String args) {
@@ -64,12 +314,15 @@ public final class ProfilerAgent {
 
     private static ProfilingTransformer createTransformer(
             final StaticProfilingConfiguration configuration,
+            final Predicate<String> transformationFilter,
             final ExecutionTimeRegistrar registrar,
-            final DynamicProfilingConfigurationHolder dynamicConfigHolder
+            final DynamicProfilingConfigurationHolder dynamicConfigHolder,
+            final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService,
+            final TransformedBytecodeCache bytecodeCache
     ) {
-        final Predicate<String> transformationFilter = new TransformationFilter(configuration);
         final ExecutionTimeRegistrarMetadataSelector registrarMetadataSelector = new ExecutionTimeRegistrarMetadataSelector(ExecutionTimeRegistrar.class);
-        final NativeClassMethodsCollector nativeClassMethodsCollector = new NativeClassMethodsCollector(transformationFilter);
+        final ClassMetadataIndex classMetadataIndex = new ClassMetadataIndex();
+        final NativeClassMethodsCollector nativeClassMethodsCollector = new NativeClassMethodsCollector(transformationFilter, classMetadataIndex);
         final SpyInjector spyInjector = createSpyInjector(
                 configuration,
                 registrar,
@@ -83,7 +336,13 @@ public final class ProfilerAgent {
                 configuration,
                 registrarMetadataSelector,
                 nativeClassMethodsCollector,
-                spyInjector
+                classMetadataIndex,
+                spyInjector,
+                configuration.dynamicConfigurationEnabled() && configuration.retransformationConfiguration().enabled()
+                        ? dynamicConfigHolder
+                        : null,
+                adaptiveDeinstrumentationService,
+                bytecodeCache
         );
     }
 
@@ -116,13 +375,28 @@ public final class ProfilerAgent {
             final DynamicProfilingConfigurationHolder dynamicConfigHolder
     ) throws Exception {
         final OutputDataSink<OutputData> sink = createOutputSink(staticConfiguration);
+        final LatencyAggregator latencyAggregator = createLatencyAggregator(staticConfiguration, sink);
+        final EventJournal eventJournal = latencyAggregator == null ? createEventJournal(staticConfiguration, sink) : null;
+        final SinkMetricsReporter sinkMetricsReporter = new SinkMetricsReporter(staticConfiguration.sinkMetricsReportingConfiguration(), sink);
+        sinkMetricsReporter.init();
         Runtime.getRuntime()
-                .addShutdownHook(new Thread(sink::close));
+                .addShutdownHook(new Thread(() -> {
+                    if (latencyAggregator != null) {
+                        latencyAggregator.close();
+                    }
+                    if (eventJournal != null) {
+                        eventJournal.close();
+                    }
+                    sinkMetricsReporter.close();
+                    sink.close();
+                }));
 
         final ExecutionTimeRegistrarFactory registrarFactory = new ExecutionTimeRegistrarFactory(
                 staticConfiguration,
                 dynamicConfigHolder,
-                sink
+                sink,
+                eventJournal,
+                latencyAggregator
         );
         final ExecutionTimeRegistrar registrar = registrarFactory.create();
 
@@ -130,18 +404,72 @@ public final class ProfilerAgent {
         return registrar;
     }
 
+    private static LatencyAggregator createLatencyAggregator(
+            final StaticProfilingConfiguration staticConfiguration,
+            final OutputDataSink<OutputData> sink
+    ) {
+        final AggregationConfiguration aggregationConfiguration = staticConfiguration.aggregationConfiguration();
+        if (aggregationConfiguration == null || !aggregationConfiguration.enabled()) {
+            return null;
+        }
+
+        final LatencyAggregator latencyAggregator = new LatencyAggregator(aggregationConfiguration, sink);
+        latencyAggregator.init();
+
+        return latencyAggregator;
+    }
+
+    private static EventJournal createEventJournal(
+            final StaticProfilingConfiguration staticConfiguration,
+            final OutputDataSink<OutputData> sink
+    ) {
+        final EventJournalConfiguration journalConfiguration = staticConfiguration.eventJournalConfiguration();
+        if (journalConfiguration == null || !journalConfiguration.enabled()) {
+            return null;
+        }
+
+        final EventJournal eventJournal = new EventJournal(journalConfiguration, sink);
+        eventJournal.init();
+
+        return eventJournal;
+    }
+
     private static OutputDataSink<OutputData> createOutputSink(final StaticProfilingConfiguration configuration) throws Exception {
         final OutputDataSinkFactory sinkFactory = new OutputDataSinkFactory();
-        final OutputDataSink<OutputData> sink = sinkFactory.create(
-                configuration.sinks(),
-                configuration.ignoreSinkErrors(),
-                configuration.sinkProperties()
-        );
+        final StartupConfiguration startupConfiguration = configuration.startupConfiguration();
+        final OutputDataSink<OutputData> sink =
+                startupConfiguration.async()
+                        ? new DeferredInitOutputDataSink(
+                                () -> sinkFactory.create(
+                                        configuration.sinks(),
+                                        configuration.ignoreSinkErrors(),
+                                        configuration.sinkProperties()
+                                ),
+                                startupConfiguration.preInitBufferSize(),
+                                () -> registerSinksMetrics(configuration),
+                                ProbesSwitch.getInstance()::turnOffPermanently
+                        )
+                        : sinkFactory.create(
+                                configuration.sinks(),
+                                configuration.ignoreSinkErrors(),
+                                configuration.sinkProperties()
+                        );
         tryInitSink(sink);
 
         return sink;
     }
 
+    private static void preloadVarHandleLinkageClasses() {
+        for (final String className : VAR_HANDLE_LINKAGE_CLASSES) {
+            try {
+                Class.forName(className, true, null);
+            } catch (ClassNotFoundException ex) {
+                // no VarHandles before JDK 9
+                return;
+            }
+        }
+    }
+
     private static void tryInitSink(final OutputDataSink<OutputData> sink) {
         try {
             sink.init();
@@ -167,7 +495,11 @@ public final class ProfilerAgent {
                         configurationLoader,
                         staticConfiguration.dynamicConfigurationRefreshIntervalMs()
                 );
-        dynamicConfigRefreshService.start();
+        if (staticConfiguration.startupConfiguration().async()) {
+            dynamicConfigRefreshService.startInBackground();
+        } else {
+            dynamicConfigRefreshService.start();
+        }
 
         Runtime.getRuntime()
                 .addShutdownHook(new Thread(dynamicConfigRefreshService::close));
@@ -0,0 +1,44 @@
+package ru.joke.profiler.configuration;
+
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/*
+ * Resource is accepted if it matches any of the included prefixes or the included mask (when any of them is set)
+ * and matches neither the excluded prefixes nor the excluded mask. Explicit prefixes are answered by the trie
+ * in one pass, masks are evaluated only when the trie's verdict isn't final.
+ */
+final class CompiledResourcesFilter implements Predicate<String> {
+
+    private final ResourcePrefixTrie prefixTrie;
+    private final boolean inclusionRequired;
+    private final Pattern includedMask;
+    private final Pattern excludedMask;
+
+    CompiledResourcesFilter(
+            final Set<String> includedPrefixes,
+            final Pattern includedMask,
+            final Set<String> excludedPrefixes,
+            final Pattern excludedMask
+    ) {
+        this.prefixTrie = new ResourcePrefixTrie(includedPrefixes, excludedPrefixes);
+        this.inclusionRequired = !includedPrefixes.isEmpty() || includedMask != null;
+        this.includedMask = includedMask;
+        this.excludedMask = excludedMask;
+    }
+
+    @Override
+    public boolean test(final String resourceName) {
+        final int matched = this.prefixTrie.match(resourceName);
+        if ((matched & ResourcePrefixTrie.EXCLUDED) != 0) {
+            return false;
+        }
+
+        final boolean included =
+                !this.inclusionRequired
+                        || (matched & ResourcePrefixTrie.INCLUDED) != 0
+                        || this.includedMask != null && this.includedMask.matcher(resourceName).find();
+        return included && (this.excludedMask == null || !this.excludedMask.matcher(resourceName).find());
+    }
+}
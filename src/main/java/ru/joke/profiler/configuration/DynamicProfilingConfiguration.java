@@ -4,9 +4,15 @@ import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrappe
 import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
 import ru.joke.profiler.configuration.util.MapConfigurationPropertiesParser;
 import ru.joke.profiler.configuration.util.NanoTimePropertyParser;
+import ru.joke.profiler.output.MethodSymbolTable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
@@ -21,12 +27,21 @@ public final class DynamicProfilingConfiguration extends ProfilingConfiguration
     private static final String PROFILING_ROOTS = "profiling_roots";
     private static final String PROFILING_ROOTS_MASK = "profiling_roots_mask";
     private static final String PROFILED_STACKTRACE_MAX_DEPTH = "profiled_stacktrace_max_depth";
+    private static final String SAMPLING_RATE = "sampling_rate";
+    private static final String PROFILING_ROOTS_SAMPLING_RATES = "profiling_roots_sampling_rates";
     private static final String SPY_PREFIX = "spy.";
 
     private final boolean profilingDisabled;
+    private final Set<String> excludedResources;
+    private final String excludedResourcesMask;
     private final Predicate<String> threadsFilter;
     private final Predicate<String> profilingRootsFilter;
+    private final MethodVerdictCache profilingRootsVerdictCache;
+    private final ResourceVerdictCache profilingRootsNamesVerdictCache;
     private final int profiledTraceMaxDepth;
+    private final double samplingRate;
+    private final String[] samplingRoots;
+    private final double[] samplingRootsRates;
     private final Map<String, String> spiesProperties;
 
     @ProfilerConfigurationPropertiesWrapper(prefix = DYNAMIC_PREFIX)
@@ -39,6 +54,8 @@ public final class DynamicProfilingConfiguration extends ProfilingConfiguration
             @ProfilerConfigurationProperty(name = PROFILING_ROOTS_MASK) final String profilingRootsMask,
             @ProfilerConfigurationProperty(name = PROFILING_DISABLED) final boolean profilingDisabled,
             @ProfilerConfigurationProperty(name = PROFILED_STACKTRACE_MAX_DEPTH, defaultValue = "-1") final int profiledTraceMaxDepth,
+            @ProfilerConfigurationProperty(name = SAMPLING_RATE, defaultValue = "1") final double samplingRate,
+            @ProfilerConfigurationProperty(name = PROFILING_ROOTS_SAMPLING_RATES, parser = SamplingRatesPropertyParser.class) final Map<String, Double> profilingRootsSamplingRates,
             @ProfilerConfigurationPropertiesWrapper(prefix = SPY_PREFIX, parser = MapConfigurationPropertiesParser.class) final Map<String, String> spiesProperties
     ) {
         super(
@@ -46,11 +63,12 @@ public final class DynamicProfilingConfiguration extends ProfilingConfiguration
                         null,
                         null,
                         excludedResources,
-                        excludedResourcesMask,
-                        '/'
+                        excludedResourcesMask
                 ),
                 minExecutionThresholdNs
         );
+        this.excludedResources = Collections.unmodifiableSet(parseResources(excludedResources));
+        this.excludedResourcesMask = excludedResourcesMask == null || excludedResourcesMask.isEmpty() ? null : excludedResourcesMask;
         this.threadsFilter =
                 excludedThreadsMask == null || excludedThreadsMask.isEmpty()
                         ? null
@@ -60,13 +78,22 @@ public final class DynamicProfilingConfiguration extends ProfilingConfiguration
                 profilingRoots,
                 profilingRootsMask,
                 null,
-                null,
-                '.'
+                null
         );
+        this.profilingRootsVerdictCache = this.profilingRootsFilter == null ? null : new MethodVerdictCache(this.profilingRootsFilter);
+        this.profilingRootsNamesVerdictCache = this.profilingRootsFilter == null ? null : new ResourceVerdictCache(this.profilingRootsFilter);
         this.profiledTraceMaxDepth =
                 profiledTraceMaxDepth == -1
                         ? Integer.MAX_VALUE
                         : checkPositive(profiledTraceMaxDepth, "profiledTraceMaxDepth");
+        this.samplingRate = checkSamplingRate(samplingRate);
+
+        // the longest root prefix has priority
+        final List<String> samplingRoots = new ArrayList<>(checkNotNull(profilingRootsSamplingRates, "profilingRootsSamplingRates").keySet());
+        samplingRoots.sort(Comparator.comparingInt(String::length).reversed());
+        this.samplingRoots = samplingRoots.toArray(new String[0]);
+        this.samplingRootsRates = samplingRoots.stream().mapToDouble(profilingRootsSamplingRates::get).toArray();
+
         this.spiesProperties = Collections.unmodifiableMap(checkNotNull(spiesProperties, "spiesProperties"));
     }
 
@@ -74,6 +101,14 @@ public final class DynamicProfilingConfiguration extends ProfilingConfiguration
         return profilingDisabled;
     }
 
+    public Set<String> excludedResources() {
+        return excludedResources;
+    }
+
+    public String excludedResourcesMask() {
+        return excludedResourcesMask;
+    }
+
     public Predicate<String> threadsFilter() {
         return threadsFilter;
     }
@@ -82,21 +117,69 @@ public final class DynamicProfilingConfiguration extends ProfilingConfiguration
         return profilingRootsFilter;
     }
 
+    public boolean isProfilingRoot(final String method) {
+        return this.profilingRootsNamesVerdictCache == null || this.profilingRootsNamesVerdictCache.test(method);
+    }
+
+    public boolean isProfilingRoot(final int methodId) {
+        return this.profilingRootsVerdictCache == null || this.profilingRootsVerdictCache.test(methodId);
+    }
+
     public int profiledTraceMaxDepth() {
         return profiledTraceMaxDepth;
     }
 
+    public double samplingRate() {
+        return samplingRate;
+    }
+
+    /*
+     * Sampling rate is requested only once per trace, when the root method is entered.
+     */
+    public double samplingRate(final String rootMethod) {
+        if (rootMethod == null) {
+            return this.samplingRate;
+        }
+
+        for (int i = 0; i < this.samplingRoots.length; i++) {
+            if (rootMethod.startsWith(this.samplingRoots[i])) {
+                return this.samplingRootsRates[i];
+            }
+        }
+
+        return this.samplingRate;
+    }
+
+    public double samplingRate(final int rootMethodId) {
+        return this.samplingRoots.length == 0
+                ? this.samplingRate
+                : samplingRate(MethodSymbolTable.getInstance().resolve(rootMethodId));
+    }
+
     public Map<String, String> spiesProperties() {
         return spiesProperties;
     }
 
+    static double checkSamplingRate(final double samplingRate) {
+        if (samplingRate < 0 || samplingRate > 1) {
+            throw new InvalidConfigurationException("Sampling rate must be in range [0, 1]: " + samplingRate);
+        }
+
+        return samplingRate;
+    }
+
     @Override
     public String toString() {
         return "DynamicProfilingConfiguration{"
                 + "profilingDisabled=" + profilingDisabled
+                + ", excludedResources=" + excludedResources
+                + ", excludedResourcesMask=" + excludedResourcesMask
                 + ", threadsFilter=" + threadsFilter
                 + ", profilingRootsFilter=" + profilingRootsFilter
                 + ", profiledTraceMaxDepth=" + profiledTraceMaxDepth
+                + ", samplingRate=" + samplingRate
+                + ", samplingRoots=" + Arrays.toString(samplingRoots)
+                + ", samplingRootsRates=" + Arrays.toString(samplingRootsRates)
                 + ", resourcesFilter=" + resourcesFilter
                 + ", minExecutionThresholdNs=" + minExecutionThresholdNs
                 + ", spiesProperties=" + spiesProperties
@@ -2,6 +2,7 @@ package ru.joke.profiler.configuration;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
@@ -13,6 +14,8 @@ public final class DynamicProfilingConfigurationHolder implements Supplier<Dynam
 
     private static final Logger logger = Logger.getLogger(DynamicProfilingConfiguration.class.getCanonicalName());
 
+    private static final AtomicLongFieldUpdater<DynamicProfilingConfigurationHolder> versionUpdater = AtomicLongFieldUpdater.newUpdater(DynamicProfilingConfigurationHolder.class, "version");
+
     private static DynamicProfilingConfigurationHolder instance;
 
     public static DynamicProfilingConfigurationHolder getInstance() {
@@ -21,6 +24,7 @@ public final class DynamicProfilingConfigurationHolder implements Supplier<Dynam
 
     private final Map<String, BiConsumer<String, DynamicProfilingConfiguration>> subscriptions;
     private volatile DynamicProfilingConfiguration dynamicConfiguration;
+    private volatile long version;
 
     DynamicProfilingConfigurationHolder() {
         this.subscriptions = new ConcurrentHashMap<>();
@@ -28,6 +32,7 @@ public final class DynamicProfilingConfigurationHolder implements Supplier<Dynam
 
     public void set(final DynamicProfilingConfiguration dynamicConfiguration) {
         this.dynamicConfiguration = dynamicConfiguration;
+        versionUpdater.incrementAndGet(this);
         this.subscriptions.forEach((id, s) -> {
             logger.finest(String.format("Calling to subscription '%s' with config: %s", id, dynamicConfiguration));
             s.accept(id, dynamicConfiguration);
@@ -39,6 +44,14 @@ public final class DynamicProfilingConfigurationHolder implements Supplier<Dynam
         return dynamicConfiguration;
     }
 
+    /*
+     * Version is increased on each change after the configuration is published, so the reader
+     * that takes the version before the configuration gets the configuration of that version or a newer one.
+     */
+    public long version() {
+        return version;
+    }
+
     public void subscribeOnChanges(
             final String subscriptionId,
             final BiConsumer<String, DynamicProfilingConfiguration> subscription
@@ -37,19 +37,32 @@ public final class DynamicProfilingConfigurationRefreshService {
         logger.info("Dynamic configuration refresh service will be started");
 
         this.refreshAction.run();
-        this.executorService.scheduleAtFixedRate(
-                this.refreshAction,
-                this.dynamicConfigRefreshIntervalMs,
-                this.dynamicConfigRefreshIntervalMs,
-                TimeUnit.MILLISECONDS
-        );
+        schedule(this.dynamicConfigRefreshIntervalMs);
 
         logger.info("Dynamic configuration refresh service started");
     }
 
+    /*
+     * Initial loading of the configuration (e.g. from the remote source) isn't awaited:
+     * registrations are made with the static configuration only until it's loaded.
+     */
+    public void startInBackground() {
+        schedule(0);
+        logger.info("Dynamic configuration refresh service started in background");
+    }
+
     public void close() {
         logger.info("Dynamic configuration refresh service will be closed");
         this.executorService.shutdownNow();
         logger.info("Dynamic configuration refresh service closed");
     }
+
+    private void schedule(final long initialDelayMs) {
+        this.executorService.scheduleAtFixedRate(
+                this.refreshAction,
+                initialDelayMs,
+                this.dynamicConfigRefreshIntervalMs,
+                TimeUnit.MILLISECONDS
+        );
+    }
 }
@@ -0,0 +1,47 @@
+package ru.joke.profiler.configuration;
+
+import ru.joke.profiler.output.MethodSymbolTable;
+
+import java.util.function.Predicate;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Memoizes filter verdicts by interned method id. Races between threads are benign:
+ * verdicts are idempotent, so a lost update only leads to the repeated evaluation of the filter.
+ */
+final class MethodVerdictCache {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte ACCEPTED = 1;
+    private static final byte REJECTED = 2;
+
+    private final Predicate<String> filter;
+    private final MethodSymbolTable methodSymbolTable;
+    private volatile byte[] verdicts;
+
+    MethodVerdictCache(final Predicate<String> filter) {
+        this.filter = checkNotNull(filter, "filter");
+        this.methodSymbolTable = MethodSymbolTable.getInstance();
+        this.verdicts = new byte[0];
+    }
+
+    boolean test(final int methodId) {
+        byte[] verdicts = this.verdicts;
+        if (methodId >= verdicts.length) {
+            final byte[] newVerdicts = new byte[Math.max(methodId + 1, this.methodSymbolTable.size())];
+            System.arraycopy(verdicts, 0, newVerdicts, 0, verdicts.length);
+            this.verdicts = verdicts = newVerdicts;
+        }
+
+        final byte verdict = verdicts[methodId];
+        if (verdict != UNKNOWN) {
+            return verdict == ACCEPTED;
+        }
+
+        final boolean result = this.filter.test(this.methodSymbolTable.resolve(methodId));
+        verdicts[methodId] = result ? ACCEPTED : REJECTED;
+
+        return result;
+    }
+}
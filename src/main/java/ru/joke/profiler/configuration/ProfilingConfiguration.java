@@ -17,12 +17,16 @@ abstract class ProfilingConfiguration {
 
     protected final Predicate<String> resourcesFilter;
     protected final long minExecutionThresholdNs;
+    private final MethodVerdictCache resourcesVerdictCache;
+    private final ResourceVerdictCache resourcesNamesVerdictCache;
 
     ProfilingConfiguration(
             final Predicate<String> resourcesFilter,
             final long minExecutionThresholdNs
     ) {
         this.resourcesFilter = resourcesFilter;
+        this.resourcesVerdictCache = resourcesFilter == null ? null : new MethodVerdictCache(resourcesFilter);
+        this.resourcesNamesVerdictCache = resourcesFilter == null ? null : new ResourceVerdictCache(resourcesFilter);
         this.minExecutionThresholdNs = checkNonNegative(minExecutionThresholdNs, "minExecutionThresholdNs");
     }
 
@@ -31,63 +35,38 @@ abstract class ProfilingConfiguration {
     }
 
     public boolean isResourceMustBeProfiled(final String resourceName) {
-        return this.resourcesFilter == null || this.resourcesFilter.test(resourceName);
+        return this.resourcesNamesVerdictCache == null || this.resourcesNamesVerdictCache.test(resourceName);
+    }
+
+    public boolean isResourceMustBeProfiled(final int methodId) {
+        return this.resourcesVerdictCache == null || this.resourcesVerdictCache.test(methodId);
     }
 
     static Predicate<String> composeResourcesFilter(
             final String includedResources,
             final String includedResourcesMask,
             final String excludedResources,
-            final String excludedResourcesMask,
-            final char delimiter
+            final String excludedResourcesMask
     ) {
-        final Set<String> includedResourcesSet = includedResources == null ? Collections.emptySet() : parseResourcesArg(includedResources, delimiter);
-        final Set<String> excludedResourcesSet = excludedResources == null ? Collections.emptySet() : parseResourcesArg(excludedResources, delimiter);
+        final Set<String> includedResourcesSet = parseResources(includedResources);
+        final Set<String> excludedResourcesSet = parseResources(excludedResources);
+        final Pattern includedMask = compileMask(includedResourcesMask);
+        final Pattern excludedMask = compileMask(excludedResourcesMask);
 
-        final Predicate<String> resourcesFilterByExcluded = composeResourcesFilter(excludedResourcesSet, excludedResourcesMask, true);
-        final Predicate<String> resourcesFilterByIncluded = composeResourcesFilter(includedResourcesSet, includedResourcesMask, false);
-
-        return resourcesFilterByExcluded == null
-                ? resourcesFilterByIncluded
-                : resourcesFilterByIncluded == null
-                    ? resourcesFilterByExcluded
-                    : resourcesFilterByIncluded.and(resourcesFilterByExcluded);
+        return includedResourcesSet.isEmpty() && excludedResourcesSet.isEmpty() && includedMask == null && excludedMask == null
+                ? null
+                : new CompiledResourcesFilter(includedResourcesSet, includedMask, excludedResourcesSet, excludedMask);
     }
 
-    private static Set<String> parseResourcesArg(final String arg, final char delimiter) {
-        return Arrays.stream(arg.split(","))
+    static Set<String> parseResources(final String resources) {
+        return resources == null
+                ? Collections.emptySet()
+                : Arrays.stream(resources.split(","))
                         .filter(p -> !p.isEmpty())
-                        .map(p -> p.replace('.', delimiter))
                         .collect(Collectors.toSet());
     }
 
-    private static Predicate<String> composeResourcesFilter(
-            final Set<String> explicitResources,
-            final String resourcesMask,
-            final boolean forExclusion
-    ) {
-        final Predicate<String> resourcesByMaskFilter =
-                resourcesMask == null || resourcesMask.isEmpty()
-                        ? null
-                        : Pattern.compile(resourcesMask).asPredicate();
-
-        final Predicate<String> resultResourcesByMaskFilter =
-                resourcesByMaskFilter != null && forExclusion
-                        ? resourcesByMaskFilter.negate()
-                        : resourcesByMaskFilter;
-
-        final Predicate<String> explicitResourcesFilter =
-                r -> forExclusion
-                        ? explicitResources.stream().noneMatch(r::startsWith)
-                        : explicitResources.stream().anyMatch(r::startsWith);
-        return explicitResources.isEmpty() && resultResourcesByMaskFilter == null
-                ? null
-                : explicitResources.isEmpty()
-                    ? resultResourcesByMaskFilter
-                    : resultResourcesByMaskFilter == null
-                        ? explicitResourcesFilter
-                        : forExclusion
-                            ? resultResourcesByMaskFilter.and(explicitResourcesFilter)
-                            : resultResourcesByMaskFilter.or(explicitResourcesFilter);
+    private static Pattern compileMask(final String mask) {
+        return mask == null || mask.isEmpty() ? null : Pattern.compile(mask);
     }
 }
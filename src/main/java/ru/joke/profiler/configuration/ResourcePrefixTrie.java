@@ -0,0 +1,117 @@
+package ru.joke.profiler.configuration;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * Included and excluded resource prefixes compiled into a single immutable trie: the resource name is matched
+ * against all the prefixes in one pass over its characters. Package and member separators ('/' and '.')
+ * are treated as the same character, so the rules match regardless of the notation they're written in.
+ */
+final class ResourcePrefixTrie {
+
+    static final int NOT_MATCHED = 0;
+    static final int INCLUDED = 1;
+    static final int EXCLUDED = 2;
+
+    private static final char SEPARATOR = '/';
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root;
+
+    ResourcePrefixTrie(
+            final Set<String> includedPrefixes,
+            final Set<String> excludedPrefixes
+    ) {
+        final NodeBuilder rootBuilder = new NodeBuilder();
+        includedPrefixes.forEach(prefix -> rootBuilder.add(prefix, INCLUDED));
+        excludedPrefixes.forEach(prefix -> rootBuilder.add(prefix, EXCLUDED));
+
+        this.root = rootBuilder.build();
+    }
+
+    /*
+     * Returns the kinds of the prefixes matched by the resource name (bit set of INCLUDED and EXCLUDED);
+     * the walk stops as soon as an excluded prefix is matched, since exclusion is final.
+     */
+    int match(final String resourceName) {
+        Node node = this.root;
+        int result = node.kinds;
+
+        for (int i = 0; i < resourceName.length() && (result & EXCLUDED) == 0; i++) {
+            node = node.child(normalize(resourceName.charAt(i)));
+            if (node == null) {
+                break;
+            }
+
+            result |= node.kinds;
+        }
+
+        return result;
+    }
+
+    private static char normalize(final char c) {
+        return c == '.' ? SEPARATOR : c;
+    }
+
+    private static final class Node {
+
+        private final char[] labels;
+        private final Node[] children;
+        private final int kinds;
+
+        private Node(
+                final char[] labels,
+                final Node[] children,
+                final int kinds
+        ) {
+            this.labels = labels;
+            this.children = children;
+            this.kinds = kinds;
+        }
+
+        private Node child(final char label) {
+            final char[] labels = this.labels;
+            if (labels.length == 1) {
+                return labels[0] == label ? this.children[0] : null;
+            }
+
+            final int index = Arrays.binarySearch(labels, label);
+            return index < 0 ? null : this.children[index];
+        }
+    }
+
+    private static final class NodeBuilder {
+
+        private final Map<Character, NodeBuilder> children = new TreeMap<>();
+        private int kinds;
+
+        private void add(final String prefix, final int kind) {
+            NodeBuilder node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(normalize(prefix.charAt(i)), c -> new NodeBuilder());
+            }
+
+            node.kinds |= kind;
+        }
+
+        private Node build() {
+            if (this.children.isEmpty()) {
+                return new Node(NO_LABELS, NO_CHILDREN, this.kinds);
+            }
+
+            final char[] labels = new char[this.children.size()];
+            final Node[] children = new Node[labels.length];
+            int i = 0;
+            for (final Map.Entry<Character, NodeBuilder> child : this.children.entrySet()) {
+                labels[i] = child.getKey();
+                children[i++] = child.getValue().build();
+            }
+
+            return new Node(labels, children, this.kinds);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.joke.profiler.configuration;
+
+import java.util.function.Predicate;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Bounded memo of the filter verdicts by resource name for the names without interned id (class names,
+ * native call sites, names composed by spies). Direct-mapped: a colliding name replaces the previous entry.
+ * Entries are immutable, so the races between threads are benign as in MethodVerdictCache.
+ */
+final class ResourceVerdictCache {
+
+    private static final int CAPACITY = 4096;
+
+    private final Predicate<String> filter;
+    private final Entry[] entries;
+    private final int mask;
+
+    ResourceVerdictCache(final Predicate<String> filter) {
+        this.filter = checkNotNull(filter, "filter");
+        this.entries = new Entry[CAPACITY];
+        this.mask = CAPACITY - 1;
+    }
+
+    boolean test(final String resourceName) {
+        final int hash = resourceName.hashCode();
+        final int index = (hash ^ (hash >>> 16)) & this.mask;
+
+        final Entry entry = this.entries[index];
+        if (entry != null && entry.resourceName.equals(resourceName)) {
+            return entry.accepted;
+        }
+
+        final boolean result = this.filter.test(resourceName);
+        this.entries[index] = new Entry(resourceName, result);
+
+        return result;
+    }
+
+    private static final class Entry {
+
+        private final String resourceName;
+        private final boolean accepted;
+
+        private Entry(final String resourceName, final boolean accepted) {
+            this.resourceName = resourceName;
+            this.accepted = accepted;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.joke.profiler.configuration;
+
+import ru.joke.profiler.configuration.meta.ConfigurationPropertyParser;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+import ru.joke.profiler.configuration.meta.StatelessParser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@StatelessParser
+final class SamplingRatesPropertyParser implements ConfigurationPropertyParser<Map<String, Double>> {
+
+    private static final String RATES_DELIMITER = ",";
+    private static final char ROOT_RATE_DELIMITER = ':';
+
+    @Override
+    public Map<String, Double> parse(
+            final ProfilerConfigurationProperty property,
+            final Class<Map<String, Double>> propertyType,
+            final String propertyValue
+    ) {
+        final Map<String, Double> result = new LinkedHashMap<>();
+        for (final String rootRate : propertyValue.split(RATES_DELIMITER)) {
+            if (rootRate.isEmpty()) {
+                continue;
+            }
+
+            final int delimiterIndex = rootRate.lastIndexOf(ROOT_RATE_DELIMITER);
+            if (delimiterIndex <= 0 || delimiterIndex == rootRate.length() - 1) {
+                throw new InvalidConfigurationException("Sampling rate must be set in format root:rate: " + rootRate);
+            }
+
+            final String root = rootRate.substring(0, delimiterIndex);
+            final double rate;
+            try {
+                rate = Double.parseDouble(rootRate.substring(delimiterIndex + 1));
+            } catch (NumberFormatException ex) {
+                throw new InvalidConfigurationException("Invalid sampling rate of root " + root + ": " + rootRate);
+            }
+
+            result.put(root, DynamicProfilingConfiguration.checkSamplingRate(rate));
+        }
+
+        return result;
+    }
+}
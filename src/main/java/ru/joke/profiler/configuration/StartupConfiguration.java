@@ -0,0 +1,48 @@
+package ru.joke.profiler.configuration;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+public final class StartupConfiguration {
+
+    private static final String STARTUP_PREFIX = "startup.";
+
+    private static final String ASYNC = "async";
+    private static final String PRE_INIT_BUFFER_SIZE = "pre_init_buffer_size";
+
+    private final boolean async;
+    private final int preInitBufferSize;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = STARTUP_PREFIX)
+    public StartupConfiguration(
+            @ProfilerConfigurationProperty(name = ASYNC) final boolean async,
+            @ProfilerConfigurationProperty(name = PRE_INIT_BUFFER_SIZE, defaultValue = "10000") final int preInitBufferSize
+    ) {
+        this.async = async;
+        this.preInitBufferSize = checkPositive(preInitBufferSize, "preInitBufferSize");
+    }
+
+    /*
+     * Sinks and dynamic configuration are initialized in background, the transformer is installed immediately.
+     */
+    public boolean async() {
+        return async;
+    }
+
+    /*
+     * Max number of the records kept until the sinks are initialized, the oldest records are overwritten.
+     */
+    public int preInitBufferSize() {
+        return preInitBufferSize;
+    }
+
+    @Override
+    public String toString() {
+        return "StartupConfiguration{"
+                + "async=" + async
+                + ", preInitBufferSize=" + preInitBufferSize
+                + '}';
+    }
+}
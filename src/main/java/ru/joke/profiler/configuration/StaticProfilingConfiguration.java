@@ -6,11 +6,20 @@ import ru.joke.profiler.configuration.util.MapConfigurationPropertiesParser;
 import ru.joke.profiler.configuration.util.MillisTimePropertyParser;
 import ru.joke.profiler.configuration.util.NanoTimePropertyParser;
 import ru.joke.profiler.configuration.util.TokenizeCommaDelimitedStringPropertyParser;
+import ru.joke.profiler.output.aggregation.AggregationConfiguration;
+import ru.joke.profiler.output.journal.EventJournalConfiguration;
+import ru.joke.profiler.output.retention.TraceRetentionConfiguration;
 import ru.joke.profiler.output.sinks.fs.stream.console.OutputDataConsoleSinkHandle;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetricsReportingConfiguration;
+import ru.joke.profiler.transformation.AdaptiveDeinstrumentationConfiguration;
+import ru.joke.profiler.transformation.BytecodeCacheConfiguration;
+import ru.joke.profiler.transformation.RetransformationConfiguration;
+import ru.joke.profiler.transformation.TrivialMethodsElisionConfiguration;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static ru.joke.profiler.util.ArgUtil.checkNotNull;
 import static ru.joke.profiler.util.ArgUtil.checkPositive;
@@ -27,14 +36,28 @@ public final class StaticProfilingConfiguration extends ProfilingConfiguration {
     private static final String INCLUDED_RESOURCES_MASK = "included_resources_mask";
     private static final String DYNAMIC_CONFIGURATION_ENABLED = "dynamic_conf_enabled";
     private static final String DYNAMIC_CONFIGURATION_REFRESH_INTERVAL = "dynamic_conf_refresh_interval";
+    private static final String COMPUTE_FRAMES = "compute_frames";
+    private static final String METRICS_MBEAN_ENABLED = "metrics_mbean_enabled";
 
     private final boolean dynamicConfigurationEnabled;
     private final long dynamicConfigurationRefreshIntervalMs;
+    private final boolean computeFrames;
+    private final boolean metricsMBeanEnabled;
     private final List<String> spies;
     private final List<String> sinks;
     private final Map<String, String> sinkProperties;
     private final Map<String, String> spiesProperties;
     private final boolean ignoreSinkErrors;
+    private final EventJournalConfiguration eventJournalConfiguration;
+    private final AggregationConfiguration aggregationConfiguration;
+    private final TraceRetentionConfiguration traceRetentionConfiguration;
+    private final RetransformationConfiguration retransformationConfiguration;
+    private final TrivialMethodsElisionConfiguration trivialMethodsElisionConfiguration;
+    private final AdaptiveDeinstrumentationConfiguration adaptiveDeinstrumentationConfiguration;
+    private final BytecodeCacheConfiguration bytecodeCacheConfiguration;
+    private final SinkMetricsReportingConfiguration sinkMetricsReportingConfiguration;
+    private final StartupConfiguration startupConfiguration;
+    private final String transformationFingerprint;
 
     @ProfilerConfigurationPropertiesWrapper(prefix = STATIC_PREFIX)
     StaticProfilingConfiguration(
@@ -45,34 +68,83 @@ public final class StaticProfilingConfiguration extends ProfilingConfiguration {
             @ProfilerConfigurationProperty(name = MIN_EXECUTION_THRESHOLD, defaultValue = "0", parser = NanoTimePropertyParser.class) final long minExecutionThresholdNs,
             @ProfilerConfigurationProperty(name = DYNAMIC_CONFIGURATION_ENABLED) final boolean dynamicConfigurationEnabled,
             @ProfilerConfigurationProperty(name = DYNAMIC_CONFIGURATION_REFRESH_INTERVAL, defaultValue = "1m", parser = MillisTimePropertyParser.class) final long dynamicConfigurationRefreshIntervalMs,
+            @ProfilerConfigurationProperty(name = COMPUTE_FRAMES) final boolean computeFrames,
+            @ProfilerConfigurationProperty(name = METRICS_MBEAN_ENABLED) final boolean metricsMBeanEnabled,
             @ProfilerConfigurationProperty(name = ACTIVE_SINKS, defaultValue = OutputDataConsoleSinkHandle.SINK_TYPE, parser = TokenizeCommaDelimitedStringPropertyParser.class) final List<String> sinks,
             @ProfilerConfigurationPropertiesWrapper(prefix = SINK_PROPERTIES_PREFIX, parser = MapConfigurationPropertiesParser.class) final Map<String, String> sinkProperties,
             @ProfilerConfigurationProperty(name = ACTIVE_SPIES, parser = TokenizeCommaDelimitedStringPropertyParser.class) final List<String> spies,
-            @ProfilerConfigurationPropertiesWrapper(prefix = SPY_PREFIX, parser = MapConfigurationPropertiesParser.class) final Map<String, String> spiesProperties
+            @ProfilerConfigurationPropertiesWrapper(prefix = SPY_PREFIX, parser = MapConfigurationPropertiesParser.class) final Map<String, String> spiesProperties,
+            final EventJournalConfiguration eventJournalConfiguration,
+            final AggregationConfiguration aggregationConfiguration,
+            final TraceRetentionConfiguration traceRetentionConfiguration,
+            final RetransformationConfiguration retransformationConfiguration,
+            final TrivialMethodsElisionConfiguration trivialMethodsElisionConfiguration,
+            final AdaptiveDeinstrumentationConfiguration adaptiveDeinstrumentationConfiguration,
+            final BytecodeCacheConfiguration bytecodeCacheConfiguration,
+            final SinkMetricsReportingConfiguration sinkMetricsReportingConfiguration,
+            final StartupConfiguration startupConfiguration
     ) {
         super(
                 composeResourcesFilter(
                         includedResources,
                         includedResourcesMask,
                         excludedResources,
-                        excludedResourcesMask,
-                        '/'
+                        excludedResourcesMask
                 ),
                 minExecutionThresholdNs
         );
         this.dynamicConfigurationEnabled = dynamicConfigurationEnabled;
         this.dynamicConfigurationRefreshIntervalMs = checkPositive(dynamicConfigurationRefreshIntervalMs, "dynamicConfigurationRefreshIntervalMs");
+        this.computeFrames = computeFrames;
+        this.metricsMBeanEnabled = metricsMBeanEnabled;
         this.sinks = Collections.unmodifiableList(checkNotNull(sinks, "sinks"));
         this.sinkProperties = Collections.unmodifiableMap(checkNotNull(sinkProperties, "sinkProperties"));
         this.ignoreSinkErrors = Boolean.parseBoolean(sinkProperties.get(IGNORE_SINK_ERRORS));
         this.spies = Collections.unmodifiableList(checkNotNull(spies, "spies"));
         this.spiesProperties = Collections.unmodifiableMap(checkNotNull(spiesProperties, "spiesProperties"));
+        this.eventJournalConfiguration = eventJournalConfiguration;
+        this.aggregationConfiguration = aggregationConfiguration;
+        this.traceRetentionConfiguration = traceRetentionConfiguration;
+        this.retransformationConfiguration = checkNotNull(retransformationConfiguration, "retransformationConfiguration");
+        this.trivialMethodsElisionConfiguration = checkNotNull(trivialMethodsElisionConfiguration, "trivialMethodsElisionConfiguration");
+        this.adaptiveDeinstrumentationConfiguration = checkNotNull(adaptiveDeinstrumentationConfiguration, "adaptiveDeinstrumentationConfiguration");
+        this.bytecodeCacheConfiguration = bytecodeCacheConfiguration;
+        this.sinkMetricsReportingConfiguration = checkNotNull(sinkMetricsReportingConfiguration, "sinkMetricsReportingConfiguration");
+        this.startupConfiguration = checkNotNull(startupConfiguration, "startupConfiguration");
+        // all the properties the instrumented bytecode depends on
+        this.transformationFingerprint = String.join(
+                "|",
+                String.valueOf(includedResources),
+                String.valueOf(includedResourcesMask),
+                String.valueOf(excludedResources),
+                String.valueOf(excludedResourcesMask),
+                String.valueOf(computeFrames),
+                String.valueOf(spies),
+                String.valueOf(new TreeMap<>(spiesProperties)),
+                String.valueOf(trivialMethodsElisionConfiguration),
+                String.valueOf(adaptiveDeinstrumentationConfiguration.enabled())
+        );
     }
 
     public boolean dynamicConfigurationEnabled() {
         return dynamicConfigurationEnabled;
     }
 
+    /*
+     * Forces recomputation of all the frames of the instrumented classes instead of preserving the original ones.
+     */
+    public boolean computeFrames() {
+        return computeFrames;
+    }
+
+    /*
+     * Platform MBean server may have to be initialized by the application itself (e.g. after its log manager),
+     * so the agent doesn't touch it when the metrics MBean is disabled.
+     */
+    public boolean metricsMBeanEnabled() {
+        return metricsMBeanEnabled;
+    }
+
     public boolean ignoreSinkErrors() {
         return ignoreSinkErrors;
     }
@@ -97,17 +169,68 @@ public final class StaticProfilingConfiguration extends ProfilingConfiguration {
         return spiesProperties;
     }
 
+    public EventJournalConfiguration eventJournalConfiguration() {
+        return eventJournalConfiguration;
+    }
+
+    public AggregationConfiguration aggregationConfiguration() {
+        return aggregationConfiguration;
+    }
+
+    public TraceRetentionConfiguration traceRetentionConfiguration() {
+        return traceRetentionConfiguration;
+    }
+
+    public RetransformationConfiguration retransformationConfiguration() {
+        return retransformationConfiguration;
+    }
+
+    public TrivialMethodsElisionConfiguration trivialMethodsElisionConfiguration() {
+        return trivialMethodsElisionConfiguration;
+    }
+
+    public AdaptiveDeinstrumentationConfiguration adaptiveDeinstrumentationConfiguration() {
+        return adaptiveDeinstrumentationConfiguration;
+    }
+
+    public BytecodeCacheConfiguration bytecodeCacheConfiguration() {
+        return bytecodeCacheConfiguration;
+    }
+
+    public SinkMetricsReportingConfiguration sinkMetricsReportingConfiguration() {
+        return sinkMetricsReportingConfiguration;
+    }
+
+    public StartupConfiguration startupConfiguration() {
+        return startupConfiguration;
+    }
+
+    public String transformationFingerprint() {
+        return transformationFingerprint;
+    }
+
     @Override
     public String toString() {
         return "StaticProfilingConfiguration{"
                 + "dynamicConfigurationEnabled=" + dynamicConfigurationEnabled
                 + ", dynamicConfigurationRefreshIntervalMs=" + dynamicConfigurationRefreshIntervalMs
                 + ", minExecutionThreshold=" + minExecutionThresholdNs
+                + ", computeFrames=" + computeFrames
+                + ", metricsMBeanEnabled=" + metricsMBeanEnabled
                 + ", sinks=" + sinks
                 + ", sinkProperties=" + sinkProperties
                 + ", spies=" + spies
                 + ", spiesProperties=" + spiesProperties
                 + ", ignoreSinkErrors=" + ignoreSinkErrors
+                + ", eventJournalConfiguration=" + eventJournalConfiguration
+                + ", aggregationConfiguration=" + aggregationConfiguration
+                + ", traceRetentionConfiguration=" + traceRetentionConfiguration
+                + ", retransformationConfiguration=" + retransformationConfiguration
+                + ", trivialMethodsElisionConfiguration=" + trivialMethodsElisionConfiguration
+                + ", adaptiveDeinstrumentationConfiguration=" + adaptiveDeinstrumentationConfiguration
+                + ", bytecodeCacheConfiguration=" + bytecodeCacheConfiguration
+                + ", sinkMetricsReportingConfiguration=" + sinkMetricsReportingConfiguration
+                + ", startupConfiguration=" + startupConfiguration
                 + '}';
     }
 }
@@ -15,11 +15,13 @@ public class DefaultConfigurationPropertyParser implements ConfigurationProperty
     private final Map<Class<?>, Function<String, ?>> convertors;
 
     public DefaultConfigurationPropertyParser() {
-        final Map<Class<?>, Function<String, ?>> convertors = new HashMap<>(8, 1);
+        final Map<Class<?>, Function<String, ?>> convertors = new HashMap<>(10, 1);
         convertors.put(int.class, Integer::valueOf);
         convertors.put(Integer.class, Integer::valueOf);
         convertors.put(long.class, Long::valueOf);
         convertors.put(Long.class, Long::valueOf);
+        convertors.put(double.class, Double::valueOf);
+        convertors.put(Double.class, Double::valueOf);
         convertors.put(boolean.class, Boolean::valueOf);
         convertors.put(Boolean.class, Boolean::valueOf);
         convertors.put(String.class, s -> s.isEmpty() ? null : s);
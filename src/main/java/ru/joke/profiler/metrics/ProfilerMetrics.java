@@ -0,0 +1,181 @@
+package ru.joke.profiler.metrics;
+
+import ru.joke.profiler.ProfilerException;
+import ru.joke.profiler.output.RegistrationMetrics;
+import ru.joke.profiler.transformation.AdaptiveDeinstrumentationService;
+import ru.joke.profiler.transformation.TransformationMetrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Metrics are read from the counters maintained by the transformer and the registrars only on request,
+ * the MBean itself adds nothing to the class loading and the probes. Counters of the registrations are summed
+ * over all the threads, so their snapshot is shared by the getters for a short time.
+ */
+public final class ProfilerMetrics implements ProfilerMetricsMBean, AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ProfilerMetrics.class.getCanonicalName());
+
+    private static final String OBJECT_NAME = "ru.joke.profiler:type=ProfilerMetrics";
+    private static final long REGISTRATION_SNAPSHOT_MAX_AGE_NS = TimeUnit.SECONDS.toNanos(1);
+
+    private final TransformationMetrics transformationMetrics;
+    private final RegistrationMetrics registrationMetrics;
+    private final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService;
+
+    private ObjectName objectName;
+    private RegistrationMetrics.Snapshot registrationSnapshot;
+    private long registrationSnapshotTimestamp;
+
+    public ProfilerMetrics(
+            final TransformationMetrics transformationMetrics,
+            final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService
+    ) {
+        this.transformationMetrics = checkNotNull(transformationMetrics, "transformationMetrics");
+        this.registrationMetrics = RegistrationMetrics.getInstance();
+        this.adaptiveDeinstrumentationService = adaptiveDeinstrumentationService;
+    }
+
+    public void init() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            server.registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException ex) {
+            throw new ProfilerException(ex);
+        }
+
+        logger.info("Profiler metrics MBean registered: " + OBJECT_NAME);
+    }
+
+    @Override
+    public long getClassesSeen() {
+        return this.transformationMetrics.classesSeen();
+    }
+
+    @Override
+    public long getClassesFiltered() {
+        return this.transformationMetrics.classesFiltered();
+    }
+
+    @Override
+    public long getClassesTransformed() {
+        return this.transformationMetrics.classesTransformed();
+    }
+
+    @Override
+    public long getTransformationFailures() {
+        return this.transformationMetrics.transformationFailures();
+    }
+
+    @Override
+    public long getTransformationTimeNanos() {
+        return this.transformationMetrics.transformationTimeNs();
+    }
+
+    @Override
+    public long[] getTransformationTimeHistogram() {
+        return this.transformationMetrics.transformationTimeHistogram();
+    }
+
+    @Override
+    public long[] getTransformationTimeHistogramBoundsMicros() {
+        return this.transformationMetrics.transformationTimeHistogramBoundsUs();
+    }
+
+    @Override
+    public long getBytesAdded() {
+        return this.transformationMetrics.instrumentedBytecodeSize() - this.transformationMetrics.originalBytecodeSize();
+    }
+
+    @Override
+    public long getElidedProbes() {
+        return this.transformationMetrics.elidedProbes();
+    }
+
+    @Override
+    public long getFramesComputationFallbacks() {
+        return this.transformationMetrics.framesComputationFallbacks();
+    }
+
+    @Override
+    public long getHugeMethods() {
+        return this.transformationMetrics.hugeMethods();
+    }
+
+    @Override
+    public long getProbesFired() {
+        return registrationSnapshot().probesFired();
+    }
+
+    @Override
+    public long getSpansEmitted() {
+        return registrationSnapshot().spansEmitted();
+    }
+
+    @Override
+    public long getSpansDroppedByThreshold() {
+        return registrationSnapshot().spansDroppedByThreshold();
+    }
+
+    @Override
+    public long getSpansDroppedByDepth() {
+        return registrationSnapshot().spansDroppedByDepth();
+    }
+
+    @Override
+    public long getSpansDroppedBySampling() {
+        return registrationSnapshot().spansDroppedBySampling();
+    }
+
+    @Override
+    public long getOverheadNanos() {
+        return registrationSnapshot().overheadNs();
+    }
+
+    @Override
+    public int getDemotedMethodsCount() {
+        return this.adaptiveDeinstrumentationService == null
+                ? 0
+                : this.adaptiveDeinstrumentationService.demotedMethods().size();
+    }
+
+    @Override
+    public String[] getDemotedMethods() {
+        return this.adaptiveDeinstrumentationService == null
+                ? new String[0]
+                : this.adaptiveDeinstrumentationService.demotedMethods().keySet().toArray(new String[0]);
+    }
+
+    private synchronized RegistrationMetrics.Snapshot registrationSnapshot() {
+        final long now = System.nanoTime();
+        if (this.registrationSnapshot == null || now - this.registrationSnapshotTimestamp > REGISTRATION_SNAPSHOT_MAX_AGE_NS) {
+            this.registrationSnapshot = this.registrationMetrics.snapshot();
+            this.registrationSnapshotTimestamp = now;
+        }
+
+        return this.registrationSnapshot;
+    }
+
+    @Override
+    public void close() {
+        if (this.objectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException ex) {
+            logger.log(Level.FINE, "Unable to unregister profiler metrics MBean", ex);
+        }
+    }
+}
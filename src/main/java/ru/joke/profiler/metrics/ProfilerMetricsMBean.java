@@ -0,0 +1,45 @@
+package ru.joke.profiler.metrics;
+
+/*
+ * Self-metrics of the agent: what the classes transformation and the registrations at runtime cost.
+ */
+public interface ProfilerMetricsMBean {
+
+    long getClassesSeen();
+
+    long getClassesFiltered();
+
+    long getClassesTransformed();
+
+    long getTransformationFailures();
+
+    long getTransformationTimeNanos();
+
+    long[] getTransformationTimeHistogram();
+
+    long[] getTransformationTimeHistogramBoundsMicros();
+
+    long getBytesAdded();
+
+    long getElidedProbes();
+
+    long getFramesComputationFallbacks();
+
+    long getHugeMethods();
+
+    long getProbesFired();
+
+    long getSpansEmitted();
+
+    long getSpansDroppedByThreshold();
+
+    long getSpansDroppedByDepth();
+
+    long getSpansDroppedBySampling();
+
+    long getOverheadNanos();
+
+    int getDemotedMethodsCount();
+
+    String[] getDemotedMethods();
+}
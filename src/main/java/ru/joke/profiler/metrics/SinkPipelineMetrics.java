@@ -0,0 +1,167 @@
+package ru.joke.profiler.metrics;
+
+import ru.joke.profiler.ProfilerException;
+import ru.joke.profiler.output.sinks.util.metrics.Log2Histogram;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * MBean of the sink metrics, one per sink type.
+ */
+public final class SinkPipelineMetrics implements SinkPipelineMetricsMBean, AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(SinkPipelineMetrics.class.getCanonicalName());
+
+    private static final String OBJECT_NAME_TEMPLATE = "ru.joke.profiler:type=SinkMetrics,sink=%s";
+
+    private final SinkMetrics metrics;
+
+    private ObjectName objectName;
+
+    public SinkPipelineMetrics(final SinkMetrics metrics) {
+        this.metrics = checkNotNull(metrics, "metrics");
+    }
+
+    public void init() {
+        final String objectName = String.format(OBJECT_NAME_TEMPLATE, this.metrics.sinkName());
+        try {
+            final ObjectName name = new ObjectName(objectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException ex) {
+            throw new ProfilerException(ex);
+        }
+
+        logger.info("Sink metrics MBean registered: " + objectName);
+    }
+
+    @Override
+    public int getQueueOccupancy() {
+        return this.metrics.queueOccupancy();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return this.metrics.queueCapacity();
+    }
+
+    @Override
+    public long getOffers() {
+        return this.metrics.offers();
+    }
+
+    @Override
+    public long getOverflowsWrittenSync() {
+        return this.metrics.overflowsWrittenSync();
+    }
+
+    @Override
+    public long getOverflowsDiscarded() {
+        return this.metrics.overflowsDiscarded();
+    }
+
+    @Override
+    public long getOverflowsRejected() {
+        return this.metrics.overflowsRejected();
+    }
+
+    @Override
+    public long getOverflowsWaited() {
+        return this.metrics.overflowsWaited();
+    }
+
+    @Override
+    public long getFlushedItems() {
+        return this.metrics.flushedItems();
+    }
+
+    @Override
+    public long getFlushTimeNanos() {
+        return this.metrics.flushTimeNs();
+    }
+
+    @Override
+    public long[] getFlushBatchSizeHistogram() {
+        return this.metrics.flushBatchSizes().buckets();
+    }
+
+    @Override
+    public long[] getFlushDurationHistogram() {
+        return this.metrics.flushDurations().buckets();
+    }
+
+    @Override
+    public long getDelegateWrites() {
+        return this.metrics.delegateWrites();
+    }
+
+    @Override
+    public long getDelegateWriteTimeNanos() {
+        return this.metrics.delegateWriteTimeNs();
+    }
+
+    @Override
+    public long[] getDelegateWriteLatencyHistogram() {
+        return this.metrics.delegateWriteLatencies().buckets();
+    }
+
+    @Override
+    public long getRecoveryEpisodes() {
+        return this.metrics.recoveryEpisodes();
+    }
+
+    @Override
+    public long getRecoveryFailures() {
+        return this.metrics.recoveryFailures();
+    }
+
+    @Override
+    public long getRecoveryTimeNanos() {
+        return this.metrics.recoveryTimeNs();
+    }
+
+    @Override
+    public long getPoolWaits() {
+        return this.metrics.poolWaits();
+    }
+
+    @Override
+    public long getPoolWaitTimeouts() {
+        return this.metrics.poolWaitTimeouts();
+    }
+
+    @Override
+    public long getPoolWaitTimeNanos() {
+        return this.metrics.poolWaitTimeNs();
+    }
+
+    @Override
+    public long[] getPoolWaitTimeHistogram() {
+        return this.metrics.poolWaitTimes().buckets();
+    }
+
+    @Override
+    public long[] getHistogramBounds() {
+        return Log2Histogram.bounds();
+    }
+
+    @Override
+    public void close() {
+        if (this.objectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException ex) {
+            logger.log(Level.FINE, "Unable to unregister sink metrics MBean", ex);
+        }
+    }
+}
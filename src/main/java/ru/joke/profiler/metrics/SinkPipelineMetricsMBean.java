@@ -0,0 +1,51 @@
+package ru.joke.profiler.metrics;
+
+/*
+ * Telemetry of the output pipeline of a sink; histograms of the durations are in microseconds.
+ */
+public interface SinkPipelineMetricsMBean {
+
+    int getQueueOccupancy();
+
+    int getQueueCapacity();
+
+    long getOffers();
+
+    long getOverflowsWrittenSync();
+
+    long getOverflowsDiscarded();
+
+    long getOverflowsRejected();
+
+    long getOverflowsWaited();
+
+    long getFlushedItems();
+
+    long getFlushTimeNanos();
+
+    long[] getFlushBatchSizeHistogram();
+
+    long[] getFlushDurationHistogram();
+
+    long getDelegateWrites();
+
+    long getDelegateWriteTimeNanos();
+
+    long[] getDelegateWriteLatencyHistogram();
+
+    long getRecoveryEpisodes();
+
+    long getRecoveryFailures();
+
+    long getRecoveryTimeNanos();
+
+    long getPoolWaits();
+
+    long getPoolWaitTimeouts();
+
+    long getPoolWaitTimeNanos();
+
+    long[] getPoolWaitTimeHistogram();
+
+    long[] getHistogramBounds();
+}
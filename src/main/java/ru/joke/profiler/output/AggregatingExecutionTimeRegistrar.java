@@ -0,0 +1,77 @@
+package ru.joke.profiler.output;
+
+import ru.joke.profiler.output.aggregation.LatencyAggregator;
+import ru.joke.profiler.output.aggregation.ThreadLatencyRecorder;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+public final class AggregatingExecutionTimeRegistrar extends ExecutionTimeRegistrar {
+
+    private final LatencyAggregator latencyAggregator;
+
+    public AggregatingExecutionTimeRegistrar(final LatencyAggregator latencyAggregator) {
+        this.latencyAggregator = checkNotNull(latencyAggregator, "latencyAggregator");
+    }
+
+    @Override
+    void registerMethodEnter(
+            final ThreadProfilingContext context,
+            final int methodId,
+            final String method
+    ) {
+        context.withAggregationDepth(context.aggregationDepth() + 1);
+    }
+
+    @Override
+    void registerMethodExit(final ThreadProfilingContext context) {
+        final int depth = context.aggregationDepth();
+        if (depth > 0) {
+            context.withAggregationDepth(depth - 1);
+        }
+    }
+
+    @Override
+    void registerMethodExit(
+            final ThreadProfilingContext context,
+            final int methodId,
+            final String method,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
+        final int depth = context.aggregationDepth();
+        if (depth == 0) {
+            return;
+        }
+
+        context.withAggregationDepth(depth - 1);
+        write(context, methodId, method, methodEnterTimestamp, methodElapsedTime);
+    }
+
+    @Override
+    boolean isRegistrationOccurredOnTrace(final ThreadProfilingContext context) {
+        return context.aggregationDepth() > 0;
+    }
+
+    @Override
+    void write(
+            final ThreadProfilingContext context,
+            final int methodId,
+            final String method,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
+        context.metrics().onSpanEmitted();
+        takeLatencyRecorder(context).record(methodId, method, methodElapsedTime);
+    }
+
+    private ThreadLatencyRecorder takeLatencyRecorder(final ThreadProfilingContext context) {
+        final ThreadLatencyRecorder recorder = context.latencyRecorder();
+        if (recorder != null) {
+            return recorder;
+        }
+
+        final ThreadLatencyRecorder result = this.latencyAggregator.createThreadRecorder();
+        context.withLatencyRecorder(result);
+        return result;
+    }
+}
@@ -8,10 +8,11 @@ import static ru.joke.profiler.util.ArgUtil.checkNotNull;
 
 public final class DynamicConfigurableExecutionTimeRegistrar extends ExecutionTimeRegistrar {
 
-    private final ThreadLocal<DynamicExecutionContext> threadExecutionContext = new ThreadLocal<>();
+    private static final String PROBES_SWITCH_SUBSCRIPTION_ID = "probes-switch";
 
     private final ExecutionTimeRegistrar delegate;
     private final DynamicProfilingConfigurationHolder dynamicProfilingConfigurationHolder;
+    private final ProbesSwitch probesSwitch;
 
     public DynamicConfigurableExecutionTimeRegistrar(
             final ExecutionTimeRegistrar delegate,
@@ -19,116 +20,185 @@ public final class DynamicConfigurableExecutionTimeRegistrar extends ExecutionTi
     ) {
         this.delegate = checkNotNull(delegate, "delegate");
         this.dynamicProfilingConfigurationHolder = checkNotNull(dynamicProfilingConfigurationHolder, "dynamicProfilingConfigurationHolder");
+        this.probesSwitch = ProbesSwitch.getInstance();
+
+        switchProbes(dynamicProfilingConfigurationHolder.get());
+        dynamicProfilingConfigurationHolder.subscribeOnChanges(PROBES_SWITCH_SUBSCRIPTION_ID, (id, c) -> switchProbes(c));
     }
 
     @Override
-    public void registerMethodEnter(final String method) {
+    void registerMethodEnter(
+            final ThreadProfilingContext context,
+            final int methodId,
+            final String method
+    ) {
+        if (!context.isDynamicTraceStarted()) {
+            final long configurationVersion = this.dynamicProfilingConfigurationHolder.version();
+            context.startDynamicTrace(this.dynamicProfilingConfigurationHolder.get(), configurationVersion);
+        }
 
-        final DynamicExecutionContext executionContext = findOrCreateExecutionContext();
-        if (executionContext.configuration != null && ++executionContext.depth > executionContext.configuration.profiledTraceMaxDepth()) {
-            return;
+        final DynamicProfilingConfiguration dynamicConfig = context.dynamicConfiguration();
+        if (dynamicConfig != null) {
+            final int depth = context.dynamicDepth() + 1;
+            context.withDynamicDepth(depth);
+            if (depth > dynamicConfig.profiledTraceMaxDepth()) {
+                return;
+            }
         }
 
         try {
-            if (executionContext.configuration == null
-                    || this.delegate.isRegistrationOccurredOnTrace()
-                    || executionContext.configuration.profilingRootsFilter() == null
-                    || executionContext.configuration.profilingRootsFilter().test(method)) {
-                this.delegate.registerMethodEnter(method);
+            if (dynamicConfig == null
+                    || this.delegate.isRegistrationOccurredOnTrace(context)
+                    || isProfilingRoot(dynamicConfig, methodId, method)) {
+                this.delegate.registerMethodEnter(context, methodId, method);
             }
         } finally {
-            if (!this.delegate.isRegistrationOccurredOnTrace()) {
-                this.threadExecutionContext.remove();
-            }
+            finishTraceIfCompleted(context);
         }
     }
 
     @Override
-    public void registerMethodExit() {
-        final DynamicExecutionContext executionContext = findOrCreateExecutionContext();
+    void registerMethodExit(final ThreadProfilingContext context) {
+        if (!context.isDynamicTraceStarted()) {
+            return;
+        }
+
         try {
-            if (executionContext.configuration != null && executionContext.depth-- > executionContext.configuration.profiledTraceMaxDepth()) {
+            if (isTooDeepMethodExit(context)) {
                 return;
             }
 
-            if (this.delegate.isRegistrationOccurredOnTrace()) {
-                this.delegate.registerMethodExit();
+            if (this.delegate.isRegistrationOccurredOnTrace(context)) {
+                this.delegate.registerMethodExit(context);
             }
         } finally {
-            if (executionContext.depth == 0) {
-                this.threadExecutionContext.remove();
-            }
+            finishTraceIfCompleted(context);
         }
     }
 
     @Override
-    public void registerMethodExit(
+    void registerMethodExit(
+            final ThreadProfilingContext context,
+            final int methodId,
             final String method,
             final long methodEnterTimestamp,
             final long methodElapsedTime
     ) {
-        final DynamicExecutionContext executionContext = findOrCreateExecutionContext();
+        if (!context.isDynamicTraceStarted()) {
+            return;
+        }
+
         try {
-            if (executionContext.configuration != null && executionContext.depth-- > executionContext.configuration.profiledTraceMaxDepth()
-                    || !this.delegate.isRegistrationOccurredOnTrace()) {
+            if (isTooDeepMethodExit(context)) {
+                context.metrics().onSpanDroppedByDepth();
                 return;
             }
 
-            if (executionContext.configuration == null) {
-                this.delegate.registerMethodExit(method, methodEnterTimestamp, methodElapsedTime);
+            if (!this.delegate.isRegistrationOccurredOnTrace(context)) {
                 return;
             }
 
-            if (!isProfiled(executionContext.configuration, method)
-                    || executionContext.configuration.minExecutionThresholdNs() > methodElapsedTime) {
-                this.delegate.registerMethodExit();
-                return;
+            final DynamicProfilingConfiguration dynamicConfig = context.dynamicConfiguration();
+            if (dynamicConfig != null) {
+                if (!this.delegate.isRegistrationOccurredOnSampledTrace(context)) {
+                    context.metrics().onSpanDroppedBySampling();
+                    this.delegate.registerMethodExit(context);
+                    return;
+                }
+
+                if (dynamicConfig.minExecutionThresholdNs() > methodElapsedTime) {
+                    context.metrics().onSpanDroppedByThreshold();
+                    this.delegate.registerMethodExit(context);
+                    return;
+                }
+
+                if (!isProfiled(context, dynamicConfig, methodId, method)) {
+                    this.delegate.registerMethodExit(context);
+                    return;
+                }
             }
 
-            this.delegate.registerMethodExit(method, methodEnterTimestamp, methodElapsedTime);
+            this.delegate.registerMethodExit(context, methodId, method, methodEnterTimestamp, methodElapsedTime);
         } finally {
-            if (executionContext.depth == 0) {
-                this.threadExecutionContext.remove();
-            }
+            finishTraceIfCompleted(context);
         }
     }
 
     @Override
-    protected void write(String method, long methodEnterTimestamp, long methodElapsedTime) {
+    void registerMethodError(final ThreadProfilingContext context) {
+        if (context.isDynamicTraceStarted() && this.delegate.isRegistrationOccurredOnTrace(context)) {
+            this.delegate.registerMethodError(context);
+        }
+    }
+
+    @Override
+    void write(
+            final ThreadProfilingContext context,
+            final int methodId,
+            final String method,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
         throw new ProfilerException("Method doesn't supported in such type of registrar");
     }
 
     @Override
-    protected boolean isRegistrationOccurredOnTrace() {
-        return this.delegate.isRegistrationOccurredOnTrace();
+    boolean isRegistrationOccurredOnTrace(final ThreadProfilingContext context) {
+        return this.delegate.isRegistrationOccurredOnTrace(context);
     }
 
-    private boolean isProfiled(final DynamicProfilingConfiguration dynamicConfig, final String method) {
-        final Thread currentThread = Thread.currentThread();
-        return !dynamicConfig.profilingDisabled()
-                && dynamicConfig.isResourceMustBeProfiled(method)
-                && (dynamicConfig.threadsFilter() == null || dynamicConfig.threadsFilter().test(currentThread.getName()));
+    @Override
+    boolean isRegistrationOccurredOnSampledTrace(final ThreadProfilingContext context) {
+        return this.delegate.isRegistrationOccurredOnSampledTrace(context);
     }
 
-    private DynamicExecutionContext findOrCreateExecutionContext() {
-        final DynamicExecutionContext context = this.threadExecutionContext.get();
-        if (context == null) {
-            final DynamicProfilingConfiguration dynamicConfig = this.dynamicProfilingConfigurationHolder.get();
-            final DynamicExecutionContext result = new DynamicExecutionContext(dynamicConfig);
-            this.threadExecutionContext.set(result);
-            return result;
-        } else {
-            return context;
+    private boolean isTooDeepMethodExit(final ThreadProfilingContext context) {
+        final DynamicProfilingConfiguration dynamicConfig = context.dynamicConfiguration();
+        if (dynamicConfig == null) {
+            return false;
+        }
+
+        final int depth = context.dynamicDepth();
+        context.withDynamicDepth(depth - 1);
+        return depth > dynamicConfig.profiledTraceMaxDepth();
+    }
+
+    /*
+     * Configuration captured by the trace is released when the delegate's trace is over,
+     * so the next trace of the thread starts with the actual one.
+     */
+    private void finishTraceIfCompleted(final ThreadProfilingContext context) {
+        if (!this.delegate.isRegistrationOccurredOnTrace(context)) {
+            context.finishDynamicTrace();
         }
     }
 
-    private static class DynamicExecutionContext {
+    private boolean isProfilingRoot(
+            final DynamicProfilingConfiguration dynamicConfig,
+            final int methodId,
+            final String method
+    ) {
+        return method == null
+                ? dynamicConfig.isProfilingRoot(methodId)
+                : dynamicConfig.isProfilingRoot(method);
+    }
 
-        private final DynamicProfilingConfiguration configuration;
-        private int depth;
+    private boolean isProfiled(
+            final ThreadProfilingContext context,
+            final DynamicProfilingConfiguration dynamicConfig,
+            final int methodId,
+            final String method
+    ) {
+        return !dynamicConfig.profilingDisabled()
+                && (method == null ? dynamicConfig.isResourceMustBeProfiled(methodId) : dynamicConfig.isResourceMustBeProfiled(method))
+                && (dynamicConfig.threadsFilter() == null || context.isThreadProfiled(dynamicConfig.threadsFilter()));
+    }
 
-        private DynamicExecutionContext(final DynamicProfilingConfiguration configuration) {
-            this.configuration = configuration;
+    private void switchProbes(final DynamicProfilingConfiguration dynamicConfig) {
+        if (dynamicConfig != null && dynamicConfig.profilingDisabled()) {
+            this.probesSwitch.turnOff();
+        } else {
+            this.probesSwitch.turnOn();
         }
     }
 }
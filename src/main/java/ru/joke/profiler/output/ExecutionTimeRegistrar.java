@@ -1,12 +1,25 @@
 package ru.joke.profiler.output;
 
 import ru.joke.profiler.ProfilerException;
+import ru.joke.profiler.output.meta.MethodCompletionHandle;
 import ru.joke.profiler.output.meta.MethodEnterHandle;
+import ru.joke.profiler.output.meta.MethodErrorHandle;
 import ru.joke.profiler.output.meta.MethodExitHandle;
 import ru.joke.profiler.output.meta.MethodInstanceAccessorHandle;
+import ru.joke.profiler.output.meta.ProbeBootstrapHandle;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 
 public abstract class ExecutionTimeRegistrar {
 
+    /*
+     * Enter timestamp returned by the enter probe switched off: the exit of such method isn't registered.
+     */
+    static final long SKIPPED_ENTER_TIMESTAMP = 0;
+
     private static ExecutionTimeRegistrar registrarInstance;
 
     @MethodInstanceAccessorHandle
@@ -14,36 +27,186 @@ public abstract class ExecutionTimeRegistrar {
         return registrarInstance;
     }
 
+    /*
+     * Links invokedynamic probe to the registration method of the registrar instance:
+     * the bound receiver is a constant for the JIT, so the call is devirtualized.
+     */
+    @ProbeBootstrapHandle
+    public static CallSite linkProbe(
+            final MethodHandles.Lookup callerLookup,
+            final String registrationMethodName,
+            final MethodType registrationMethodType
+    ) throws NoSuchMethodException, IllegalAccessException {
+        final MethodHandle registrationMethod =
+                MethodHandles.publicLookup()
+                                .findVirtual(ExecutionTimeRegistrar.class, registrationMethodName, registrationMethodType)
+                                .bindTo(registrarInstance);
+        return new ProbeCallSite(registrationMethod, ProbesSwitch.getInstance());
+    }
+
+    private final ProbesSwitch probesSwitch = ProbesSwitch.getInstance();
+    private final MethodCallsStatistics callsStatistics = MethodCallsStatistics.getInstance();
+
+    private long minExecutionThresholdNs;
+
+    /*
+     * Enter of the instrumented method returns the enter timestamp of the method: the clock is read by the probe
+     * rather than by the method itself, so the probe switched off costs nothing.
+     */
     @MethodEnterHandle
-    public void registerMethodEnter(final String method) {
+    public long registerMethodEnter(final int methodId) {
+        final ThreadProfilingContext context = takeContext();
+        context.metrics().onProbeFired();
+        registerMethodEnter(context, methodId, null);
+        return System.nanoTime();
+    }
 
+    public void registerMethodEnter(final String method) {
+        final ThreadProfilingContext context = takeContext();
+        context.metrics().onProbeFired();
+        registerMethodEnter(context, MethodSymbolTable.UNKNOWN_METHOD_ID, method);
     }
 
     @MethodExitHandle(forTimeRegistration = false)
     public void registerMethodExit() {
-
+        registerMethodExit(takeContext());
     }
 
     @MethodExitHandle(forTimeRegistration = true)
+    public void registerMethodExit(
+            final int methodId,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
+        final ThreadProfilingContext context = takeContext();
+        this.callsStatistics.registerSlowCall(context, methodId);
+        registerMethodExit(context, methodId, null, methodEnterTimestamp, methodElapsedTime);
+    }
+
+    /*
+     * Exit of the instrumented method: the elapsed time is measured and compared with the min execution threshold
+     * here rather than in the probe, so each probe is just a call. Calls faster than the threshold are counted
+     * for adaptive de-instrumentation (no-op unless the statistics are enabled).
+     */
+    @MethodCompletionHandle(forNativeMethodCall = false)
+    public void registerMethodCompletion(final int methodId, final long methodEnterTimestamp) {
+        if (methodEnterTimestamp == SKIPPED_ENTER_TIMESTAMP) {
+            return;
+        }
+
+        final long methodElapsedTime = System.nanoTime() - methodEnterTimestamp;
+        if (methodElapsedTime >= this.minExecutionThresholdNs) {
+            registerMethodExit(methodId, methodEnterTimestamp, methodElapsedTime);
+        } else {
+            final ThreadProfilingContext context = takeContext();
+            this.callsStatistics.registerFastCall(context, methodId);
+            registerFastMethodExit(context);
+        }
+    }
+
+    /*
+     * Exit of the native method called from the instrumented one: native methods are never de-instrumented,
+     * so their fast calls aren't counted.
+     */
+    @MethodCompletionHandle(forNativeMethodCall = true)
+    public void registerNativeMethodCompletion(final int methodId, final long methodEnterTimestamp) {
+        if (methodEnterTimestamp == SKIPPED_ENTER_TIMESTAMP) {
+            return;
+        }
+
+        final long methodElapsedTime = System.nanoTime() - methodEnterTimestamp;
+        if (methodElapsedTime >= this.minExecutionThresholdNs) {
+            registerMethodExit(methodId, methodEnterTimestamp, methodElapsedTime);
+        } else {
+            registerFastMethodExit(takeContext());
+        }
+    }
+
     public void registerMethodExit(
             final String method,
             final long methodEnterTimestamp,
             final long methodElapsedTime
     ) {
-        write(method, methodEnterTimestamp, methodElapsedTime);
+        registerMethodExit(takeContext(), MethodSymbolTable.UNKNOWN_METHOD_ID, method, methodEnterTimestamp, methodElapsedTime);
+    }
+
+    /*
+     * Called on the exceptional exit of the method before its time registration.
+     */
+    @MethodErrorHandle
+    public void registerMethodError() {
+        registerMethodError(takeContext());
+    }
+
+    private void registerFastMethodExit(final ThreadProfilingContext context) {
+        context.metrics().onSpanDroppedByThreshold();
+        registerMethodExit(context);
     }
 
     protected boolean isRegistrationOccurredOnTrace() {
+        return isRegistrationOccurredOnTrace(takeContext());
+    }
+
+    protected boolean isRegistrationOccurredOnSampledTrace() {
+        return isRegistrationOccurredOnSampledTrace(takeContext());
+    }
+
+    /*
+     * Registrations with the thread context already looked up: the public entry points of the registrar
+     * look it up once and the wrapping registrars pass it further to their delegates.
+     */
+    void registerMethodEnter(
+            final ThreadProfilingContext context,
+            final int methodId,
+            final String method
+    ) {
+
+    }
+
+    void registerMethodExit(final ThreadProfilingContext context) {
+
+    }
+
+    void registerMethodExit(
+            final ThreadProfilingContext context,
+            final int methodId,
+            final String method,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
+        write(context, methodId, method, methodEnterTimestamp, methodElapsedTime);
+    }
+
+    void registerMethodError(final ThreadProfilingContext context) {
+
+    }
+
+    boolean isRegistrationOccurredOnTrace(final ThreadProfilingContext context) {
         return false;
     }
 
-    protected abstract void write(
+    boolean isRegistrationOccurredOnSampledTrace(final ThreadProfilingContext context) {
+        return isRegistrationOccurredOnTrace(context);
+    }
+
+    /*
+     * Method is identified either by the id interned at transformation time or,
+     * for dynamically composed names (e.g. by spies), by the name itself.
+     */
+    abstract void write(
+            final ThreadProfilingContext context,
+            final int methodId,
             final String method,
             final long methodEnterTimestamp,
             final long methodElapsedTime
     );
 
-    void init() {
+    ThreadProfilingContext takeContext() {
+        return ThreadProfilingContext.current(this.probesSwitch);
+    }
+
+    void init(final long minExecutionThresholdNs) {
+        this.minExecutionThresholdNs = minExecutionThresholdNs;
         if (registrarInstance != null) {
             throw new ProfilerException("Registrar instance already created: " + registrarInstance);
         }
@@ -2,6 +2,9 @@ package ru.joke.profiler.output;
 
 import ru.joke.profiler.configuration.DynamicProfilingConfigurationHolder;
 import ru.joke.profiler.configuration.StaticProfilingConfiguration;
+import ru.joke.profiler.output.aggregation.LatencyAggregator;
+import ru.joke.profiler.output.journal.EventJournal;
+import ru.joke.profiler.output.retention.TraceRetentionConfiguration;
 import ru.joke.profiler.output.sinks.OutputData;
 import ru.joke.profiler.output.sinks.OutputDataSink;
 
@@ -12,25 +15,50 @@ public final class ExecutionTimeRegistrarFactory {
     private final StaticProfilingConfiguration staticConfiguration;
     private final DynamicProfilingConfigurationHolder dynamicProfilingConfigurationHolder;
     private final OutputDataSink<OutputData> outputSink;
+    private final EventJournal eventJournal;
+    private final LatencyAggregator latencyAggregator;
 
     public ExecutionTimeRegistrarFactory(
             final StaticProfilingConfiguration staticConfiguration,
             final DynamicProfilingConfigurationHolder dynamicProfilingConfigurationHolder,
-            final OutputDataSink<OutputData> outputSink
+            final OutputDataSink<OutputData> outputSink,
+            final EventJournal eventJournal,
+            final LatencyAggregator latencyAggregator
     ) {
         this.staticConfiguration = checkNotNull(staticConfiguration, "staticConfiguration");
         this.outputSink = checkNotNull(outputSink, "outputSink");
         this.dynamicProfilingConfigurationHolder = checkNotNull(dynamicProfilingConfigurationHolder, "dynamicProfilingConfigurationHolder");
+        this.eventJournal = eventJournal;
+        this.latencyAggregator = latencyAggregator;
     }
 
     public ExecutionTimeRegistrar create() {
-        final ExecutionTimeRegistrar baseRegistrar = new TracedExecutionTimeRegistrar(this.outputSink);
+        final ExecutionTimeRegistrar baseRegistrar = createBaseRegistrar();
         final ExecutionTimeRegistrar resultRegistrar =
                 this.staticConfiguration.dynamicConfigurationEnabled()
                         ? new DynamicConfigurableExecutionTimeRegistrar(baseRegistrar, this.dynamicProfilingConfigurationHolder)
                         : baseRegistrar;
-        resultRegistrar.init();
+        resultRegistrar.init(this.staticConfiguration.minExecutionThresholdNs());
 
         return resultRegistrar;
     }
+
+    private ExecutionTimeRegistrar createBaseRegistrar() {
+        if (this.latencyAggregator != null) {
+            return new AggregatingExecutionTimeRegistrar(this.latencyAggregator);
+        }
+
+        final TraceSampler traceSampler =
+                this.staticConfiguration.dynamicConfigurationEnabled()
+                        ? new TraceSampler(this.dynamicProfilingConfigurationHolder)
+                        : null;
+        final TraceRetentionConfiguration retentionConfiguration = this.staticConfiguration.traceRetentionConfiguration();
+        final TraceRetentionConfiguration actualRetentionConfiguration =
+                retentionConfiguration != null && retentionConfiguration.enabled()
+                        ? retentionConfiguration
+                        : null;
+        return this.eventJournal == null
+                ? new TracedExecutionTimeRegistrar(this.outputSink, traceSampler, actualRetentionConfiguration)
+                : new TracedExecutionTimeRegistrar(this.eventJournal, traceSampler, actualRetentionConfiguration);
+    }
 }
@@ -1,9 +1,12 @@
 package ru.joke.profiler.output;
 
 import ru.joke.profiler.ProfilerException;
+import ru.joke.profiler.output.meta.MethodCompletionHandle;
 import ru.joke.profiler.output.meta.MethodEnterHandle;
+import ru.joke.profiler.output.meta.MethodErrorHandle;
 import ru.joke.profiler.output.meta.MethodExitHandle;
 import ru.joke.profiler.output.meta.MethodInstanceAccessorHandle;
+import ru.joke.profiler.output.meta.ProbeBootstrapHandle;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
@@ -24,6 +27,14 @@ public final class ExecutionTimeRegistrarMetadataSelector {
     private final String exitMethodRegistrationSignature;
     private final String exitMethodTimeRegistrationName;
     private final String exitMethodTimeRegistrationSignature;
+    private final String errorRegistrationMethodName;
+    private final String errorRegistrationMethodSignature;
+    private final String completionRegistrationMethodName;
+    private final String completionRegistrationMethodSignature;
+    private final String nativeCompletionRegistrationMethodName;
+    private final String nativeCompletionRegistrationMethodSignature;
+    private final String probeBootstrapMethodName;
+    private final String probeBootstrapMethodSignature;
 
     public ExecutionTimeRegistrarMetadataSelector(final Class<?> registrarClass) {
         this.registrarClass = toBytecodeFormat(registrarClass);
@@ -43,6 +54,22 @@ public final class ExecutionTimeRegistrarMetadataSelector {
         final Method exitMethod = findAnnotatedMethod(registrarClass, MethodExitHandle.class, a -> !a.forTimeRegistration());
         this.exitMethodRegistrationName = exitMethod.getName();
         this.exitMethodRegistrationSignature = buildMethodDescriptor(exitMethod);
+
+        final Method errorMethod = findAnnotatedMethod(registrarClass, MethodErrorHandle.class, a -> true);
+        this.errorRegistrationMethodName = errorMethod.getName();
+        this.errorRegistrationMethodSignature = buildMethodDescriptor(errorMethod);
+
+        final Method completionMethod = findAnnotatedMethod(registrarClass, MethodCompletionHandle.class, a -> !a.forNativeMethodCall());
+        this.completionRegistrationMethodName = completionMethod.getName();
+        this.completionRegistrationMethodSignature = buildMethodDescriptor(completionMethod);
+
+        final Method nativeCompletionMethod = findAnnotatedMethod(registrarClass, MethodCompletionHandle.class, MethodCompletionHandle::forNativeMethodCall);
+        this.nativeCompletionRegistrationMethodName = nativeCompletionMethod.getName();
+        this.nativeCompletionRegistrationMethodSignature = buildMethodDescriptor(nativeCompletionMethod);
+
+        final Method probeBootstrapMethod = findAnnotatedMethod(registrarClass, ProbeBootstrapHandle.class, a -> true);
+        this.probeBootstrapMethodName = probeBootstrapMethod.getName();
+        this.probeBootstrapMethodSignature = buildMethodDescriptor(probeBootstrapMethod);
     }
 
     public String selectEnterRegistrationMethod() {
@@ -81,6 +108,38 @@ public final class ExecutionTimeRegistrarMetadataSelector {
         return this.exitMethodRegistrationSignature;
     }
 
+    public String selectErrorRegistrationMethod() {
+        return this.errorRegistrationMethodName;
+    }
+
+    public String selectErrorRegistrationMethodSignature() {
+        return this.errorRegistrationMethodSignature;
+    }
+
+    public String selectCompletionRegistrationMethod() {
+        return this.completionRegistrationMethodName;
+    }
+
+    public String selectCompletionRegistrationMethodSignature() {
+        return this.completionRegistrationMethodSignature;
+    }
+
+    public String selectNativeCompletionRegistrationMethod() {
+        return this.nativeCompletionRegistrationMethodName;
+    }
+
+    public String selectNativeCompletionRegistrationMethodSignature() {
+        return this.nativeCompletionRegistrationMethodSignature;
+    }
+
+    public String selectProbeBootstrapMethod() {
+        return this.probeBootstrapMethodName;
+    }
+
+    public String selectProbeBootstrapMethodSignature() {
+        return this.probeBootstrapMethodSignature;
+    }
+
     private <T extends Annotation> Method findAnnotatedMethod(
             final Class<?> registrarClass,
             final Class<T> annotation,
@@ -0,0 +1,195 @@
+package ru.joke.profiler.output;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Per-method counters of the calls faster and slower than the min execution threshold within the current window.
+ * Each thread counts into its own cumulative counters indexed by the interned method id: plain arrays written only
+ * by the owner thread, so the probes neither contend nor lose increments. Window is closed by summing the counters
+ * of all threads and subtracting the totals of the previous window, so the calls counted during the closing
+ * fall into the next window instead of being lost; counters of the finished threads are folded into the totals.
+ * Calls aren't counted until the statistics are enabled.
+ */
+public final class MethodCallsStatistics {
+
+    private static final MethodCallsStatistics instance = new MethodCallsStatistics();
+
+    public static MethodCallsStatistics getInstance() {
+        return instance;
+    }
+
+    private final Set<ThreadCalls> threadCalls;
+    private long[] finishedThreadsFastCalls;
+    private long[] finishedThreadsSlowCalls;
+    private long[] previousFastCalls;
+    private long[] previousSlowCalls;
+    private volatile boolean enabled;
+
+    private MethodCallsStatistics() {
+        this.threadCalls = ConcurrentHashMap.newKeySet();
+        this.finishedThreadsFastCalls = new long[0];
+        this.finishedThreadsSlowCalls = new long[0];
+    }
+
+    void registerFastCall(final ThreadProfilingContext context, final int methodId) {
+        if (this.enabled && methodId >= 0) {
+            takeThreadCalls(context).onFastCall(methodId);
+        }
+    }
+
+    void registerSlowCall(final ThreadProfilingContext context, final int methodId) {
+        if (this.enabled && methodId >= 0) {
+            takeThreadCalls(context).onSlowCall(methodId);
+        }
+    }
+
+    /*
+     * Starts the new window and returns the closed one (null on the first call, when the statistics are enabled).
+     * Closed window is sized by the count of the methods interned so far.
+     */
+    public synchronized Window nextWindow() {
+        final int methodsCount = MethodSymbolTable.getInstance().size();
+        final long[] fastCalls = Arrays.copyOf(this.finishedThreadsFastCalls, methodsCount);
+        final long[] slowCalls = Arrays.copyOf(this.finishedThreadsSlowCalls, methodsCount);
+
+        final Iterator<ThreadCalls> iterator = this.threadCalls.iterator();
+        while (iterator.hasNext()) {
+            final ThreadCalls calls = iterator.next();
+            if (calls.isThreadFinished()) {
+                iterator.remove();
+                this.finishedThreadsFastCalls = extendTo(this.finishedThreadsFastCalls, calls.fastCalls.length);
+                this.finishedThreadsSlowCalls = extendTo(this.finishedThreadsSlowCalls, calls.slowCalls.length);
+                add(this.finishedThreadsFastCalls, calls.fastCalls);
+                add(this.finishedThreadsSlowCalls, calls.slowCalls);
+            }
+
+            add(fastCalls, calls.fastCalls);
+            add(slowCalls, calls.slowCalls);
+        }
+
+        final Window closedWindow =
+                this.previousFastCalls == null
+                        ? null
+                        : new Window(subtract(fastCalls, this.previousFastCalls), subtract(slowCalls, this.previousSlowCalls));
+        this.previousFastCalls = fastCalls;
+        this.previousSlowCalls = slowCalls;
+        this.enabled = true;
+
+        return closedWindow;
+    }
+
+    public synchronized void disable() {
+        this.enabled = false;
+        this.previousFastCalls = null;
+        this.previousSlowCalls = null;
+    }
+
+    /*
+     * Counters of the thread are registered on its first counted call: they stay registered while the thread
+     * is alive, so the statistics enabled again continue with the same counters.
+     */
+    private ThreadCalls takeThreadCalls(final ThreadProfilingContext context) {
+        ThreadCalls calls = context.methodCalls();
+        if (calls == null) {
+            calls = new ThreadCalls(Thread.currentThread());
+            this.threadCalls.add(calls);
+            context.withMethodCalls(calls);
+        }
+
+        return calls;
+    }
+
+    /*
+     * Counters of the methods beyond the target are skipped: they are counted by the next windows.
+     */
+    private static void add(final long[] target, final long[] counters) {
+        for (int i = 0; i < Math.min(counters.length, target.length); i++) {
+            target[i] += counters[i];
+        }
+    }
+
+    private static long[] extendTo(final long[] counters, final int length) {
+        return counters.length < length ? Arrays.copyOf(counters, length) : counters;
+    }
+
+    private static long[] subtract(final long[] totals, final long[] previousTotals) {
+        final long[] result = new long[totals.length];
+        for (int i = 0; i < totals.length; i++) {
+            result[i] = Math.max(totals[i] - (i < previousTotals.length ? previousTotals[i] : 0), 0);
+        }
+
+        return result;
+    }
+
+    /*
+     * Arrays are extended by the owner thread only and published by the volatile stores;
+     * readers may see the counters slightly stale, they are caught up by the next window.
+     */
+    static final class ThreadCalls {
+
+        private final WeakReference<Thread> thread;
+
+        private volatile long[] fastCalls;
+        private volatile long[] slowCalls;
+
+        private ThreadCalls(final Thread thread) {
+            this.thread = new WeakReference<>(thread);
+            this.fastCalls = new long[0];
+            this.slowCalls = new long[0];
+        }
+
+        private void onFastCall(final int methodId) {
+            long[] calls = this.fastCalls;
+            if (methodId >= calls.length) {
+                this.fastCalls = calls = Arrays.copyOf(calls, capacityFor(methodId));
+            }
+
+            calls[methodId]++;
+        }
+
+        private void onSlowCall(final int methodId) {
+            long[] calls = this.slowCalls;
+            if (methodId >= calls.length) {
+                this.slowCalls = calls = Arrays.copyOf(calls, capacityFor(methodId));
+            }
+
+            calls[methodId]++;
+        }
+
+        private boolean isThreadFinished() {
+            final Thread thread = this.thread.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        private static int capacityFor(final int methodId) {
+            return Math.max(methodId + 1, MethodSymbolTable.getInstance().size());
+        }
+    }
+
+    public static final class Window {
+
+        private final long[] fastCalls;
+        private final long[] slowCalls;
+
+        private Window(final long[] fastCalls, final long[] slowCalls) {
+            this.fastCalls = fastCalls;
+            this.slowCalls = slowCalls;
+        }
+
+        public int methodsCount() {
+            return this.fastCalls.length;
+        }
+
+        public long fastCalls(final int methodId) {
+            return this.fastCalls[methodId];
+        }
+
+        public long slowCalls(final int methodId) {
+            return this.slowCalls[methodId];
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.joke.profiler.output;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotEmpty;
+
+public final class MethodSymbolTable {
+
+    public static final int UNKNOWN_METHOD_ID = -1;
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private static final MethodSymbolTable instance = new MethodSymbolTable();
+
+    public static MethodSymbolTable getInstance() {
+        return instance;
+    }
+
+    private final Map<String, Integer> method2idMap;
+    private volatile String[] methods;
+    private int size;
+
+    private MethodSymbolTable() {
+        this.method2idMap = new ConcurrentHashMap<>(INITIAL_CAPACITY, 0.5f, 256);
+        this.methods = new String[INITIAL_CAPACITY];
+    }
+
+    public int intern(final String method) {
+        final Integer id = this.method2idMap.get(checkNotEmpty(method, "method"));
+        return id == null ? register(method) : id;
+    }
+
+    public String resolve(final int methodId) {
+        final String[] methods = this.methods;
+        return methodId >= 0 && methodId < methods.length ? methods[methodId] : null;
+    }
+
+    public int size() {
+        return this.method2idMap.size();
+    }
+
+    private synchronized int register(final String method) {
+        final Integer existingId = this.method2idMap.get(method);
+        if (existingId != null) {
+            return existingId;
+        }
+
+        final int id = this.size++;
+        String[] methods = this.methods;
+        if (id == methods.length) {
+            final String[] newMethods = new String[methods.length * 2];
+            System.arraycopy(methods, 0, newMethods, 0, methods.length);
+            methods = newMethods;
+        }
+
+        methods[id] = method;
+        this.methods = methods;
+        this.method2idMap.put(method, id);
+
+        return id;
+    }
+}
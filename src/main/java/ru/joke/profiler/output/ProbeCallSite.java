@@ -0,0 +1,67 @@
+package ru.joke.profiler.output;
+
+import ru.joke.profiler.ProfilerException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+/*
+ * Probe call site guarded by the switch point of the current probes state. While the state is unchanged
+ * the target is a constant for the JIT, so disabled probes are folded away completely. On switching,
+ * the guard fails once and the call site is relinked to the target of the new state.
+ */
+final class ProbeCallSite extends MutableCallSite {
+
+    private static final MethodHandle NOOP;
+    private static final MethodHandle RELINK;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            NOOP = lookup.findStatic(ProbeCallSite.class, "noop", MethodType.methodType(void.class));
+            RELINK = lookup.findVirtual(ProbeCallSite.class, "relink", MethodType.methodType(MethodHandle.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ProfilerException(ex);
+        }
+    }
+
+    private final ProbesSwitch probesSwitch;
+    private final MethodHandle enabledTarget;
+    private final MethodHandle disabledTarget;
+    private final MethodHandle relinkTarget;
+
+    ProbeCallSite(final MethodHandle enabledTarget, final ProbesSwitch probesSwitch) {
+        super(enabledTarget.type());
+        this.probesSwitch = probesSwitch;
+        this.enabledTarget = enabledTarget;
+        this.disabledTarget = MethodHandles.dropArguments(composeDisabledTarget(type().returnType()), 0, type().parameterList());
+        this.relinkTarget = MethodHandles.foldArguments(MethodHandles.exactInvoker(type()), RELINK.bindTo(this));
+
+        relink();
+    }
+
+    private MethodHandle relink() {
+        final ProbesSwitch.State state = this.probesSwitch.state();
+        final MethodHandle target = state.switchPoint().guardWithTest(
+                state.enabled() ? this.enabledTarget : this.disabledTarget,
+                this.relinkTarget
+        );
+        setTarget(target);
+
+        return target;
+    }
+
+    /*
+     * Enter probe returns the enter timestamp of the method, the disabled one returns the constant marking the enter as skipped.
+     */
+    private static MethodHandle composeDisabledTarget(final Class<?> returnType) {
+        return returnType == long.class
+                ? MethodHandles.constant(long.class, ExecutionTimeRegistrar.SKIPPED_ENTER_TIMESTAMP)
+                : NOOP;
+    }
+
+    private static void noop() {
+    }
+}
@@ -0,0 +1,91 @@
+package ru.joke.profiler.output;
+
+import java.lang.invoke.SwitchPoint;
+import java.util.logging.Logger;
+
+public final class ProbesSwitch {
+
+    private static final Logger logger = Logger.getLogger(ProbesSwitch.class.getCanonicalName());
+
+    private static final ProbesSwitch instance = new ProbesSwitch();
+
+    public static ProbesSwitch getInstance() {
+        return instance;
+    }
+
+    private volatile State state;
+    private boolean turnedOffPermanently;
+
+    private ProbesSwitch() {
+        this.state = new State(true, 0);
+    }
+
+    public boolean isEnabled() {
+        return this.state.enabled;
+    }
+
+    /*
+     * Generation is changed on each switching, so the registrars can detect per-thread
+     * trace state left by the probes whose counterparts were skipped while probes were off.
+     */
+    public int generation() {
+        return this.state.generation;
+    }
+
+    public void turnOn() {
+        switchTo(true);
+    }
+
+    public void turnOff() {
+        switchTo(false);
+    }
+
+    /*
+     * Probes can't be switched on after that anymore, e.g. when there is nowhere to write the registrations.
+     */
+    public synchronized void turnOffPermanently() {
+        switchTo(false);
+        this.turnedOffPermanently = true;
+    }
+
+    State state() {
+        return this.state;
+    }
+
+    private synchronized void switchTo(final boolean enabled) {
+        final State currentState = this.state;
+        if (currentState.enabled == enabled || this.turnedOffPermanently) {
+            return;
+        }
+
+        /*
+         * New state must be published before invalidation: the call sites relinked
+         * after invalidation of the previous switch point have to observe the new one.
+         */
+        this.state = new State(enabled, currentState.generation + 1);
+        SwitchPoint.invalidateAll(new SwitchPoint[] { currentState.switchPoint });
+
+        logger.info("Profiling probes are switched " + (enabled ? "on" : "off"));
+    }
+
+    static final class State {
+
+        private final boolean enabled;
+        private final int generation;
+        private final SwitchPoint switchPoint;
+
+        private State(final boolean enabled, final int generation) {
+            this.enabled = enabled;
+            this.generation = generation;
+            this.switchPoint = new SwitchPoint();
+        }
+
+        boolean enabled() {
+            return this.enabled;
+        }
+
+        SwitchPoint switchPoint() {
+            return this.switchPoint;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package ru.joke.profiler.output;
+
+import ru.joke.profiler.util.ProfilerThreadFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Runtime counters of the registrations. Each thread counts into its own counters: plain fields written only
+ * by the owner thread, so the probes pay nothing but an increment and never contend. Readers sum the counters
+ * of all threads and may see slightly stale values; counters of the finished threads are folded into the totals
+ * periodically, independently of the readers. Until the metrics are enabled, the counters of the threads
+ * aren't registered and nobody reads them.
+ */
+public final class RegistrationMetrics {
+
+    private static final String FINISHED_THREADS_COLLECTOR_THREAD_NAME = "profiler-registration-metrics-collector";
+    private static final long FINISHED_THREADS_COLLECTION_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final RegistrationMetrics instance = new RegistrationMetrics();
+
+    public static RegistrationMetrics getInstance() {
+        return instance;
+    }
+
+    private final Set<ThreadCounters> threadCounters;
+    private final ThreadCounters finishedThreadsCounters;
+    private volatile boolean enabled;
+
+    private RegistrationMetrics() {
+        this.threadCounters = ConcurrentHashMap.newKeySet();
+        this.finishedThreadsCounters = new ThreadCounters(null);
+    }
+
+    /*
+     * Must be called before the probes are fired: counters of the threads registered earlier aren't read.
+     */
+    public synchronized void enable() {
+        if (this.enabled) {
+            return;
+        }
+
+        final ScheduledExecutorService collector = Executors.newSingleThreadScheduledExecutor(new ProfilerThreadFactory(FINISHED_THREADS_COLLECTOR_THREAD_NAME, false));
+        collector.scheduleWithFixedDelay(
+                this::collectFinishedThreadsCounters,
+                FINISHED_THREADS_COLLECTION_INTERVAL_MS,
+                FINISHED_THREADS_COLLECTION_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
+        this.enabled = true;
+    }
+
+    ThreadCounters register() {
+        final ThreadCounters counters = new ThreadCounters(Thread.currentThread());
+        if (this.enabled) {
+            this.threadCounters.add(counters);
+        }
+
+        return counters;
+    }
+
+    public synchronized Snapshot snapshot() {
+        final Snapshot snapshot = new Snapshot();
+        this.threadCounters.forEach(snapshot::add);
+        snapshot.add(this.finishedThreadsCounters);
+        return snapshot;
+    }
+
+    private synchronized void collectFinishedThreadsCounters() {
+        final Iterator<ThreadCounters> iterator = this.threadCounters.iterator();
+        while (iterator.hasNext()) {
+            final ThreadCounters counters = iterator.next();
+            if (counters.isThreadFinished()) {
+                iterator.remove();
+                this.finishedThreadsCounters.add(counters);
+            }
+        }
+    }
+
+    static final class ThreadCounters {
+
+        private final WeakReference<Thread> thread;
+
+        private long probesFired;
+        private long spansEmitted;
+        private long spansDroppedByThreshold;
+        private long spansDroppedByDepth;
+        private long spansDroppedBySampling;
+        private long overheadNs;
+
+        private ThreadCounters(final Thread thread) {
+            this.thread = new WeakReference<>(thread);
+        }
+
+        void onProbeFired() {
+            this.probesFired++;
+        }
+
+        void onSpanEmitted() {
+            this.spansEmitted++;
+        }
+
+        void onSpansEmitted(final int spans) {
+            this.spansEmitted += spans;
+        }
+
+        void onSpanDroppedByThreshold() {
+            this.spansDroppedByThreshold++;
+        }
+
+        void onSpanDroppedByDepth() {
+            this.spansDroppedByDepth++;
+        }
+
+        void onSpanDroppedBySampling() {
+            this.spansDroppedBySampling++;
+        }
+
+        void onOverhead(final long overheadNs) {
+            this.overheadNs += overheadNs;
+        }
+
+        private boolean isThreadFinished() {
+            final Thread thread = this.thread.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        private void add(final ThreadCounters other) {
+            this.probesFired += other.probesFired;
+            this.spansEmitted += other.spansEmitted;
+            this.spansDroppedByThreshold += other.spansDroppedByThreshold;
+            this.spansDroppedByDepth += other.spansDroppedByDepth;
+            this.spansDroppedBySampling += other.spansDroppedBySampling;
+            this.overheadNs += other.overheadNs;
+        }
+    }
+
+    public static final class Snapshot {
+
+        private long probesFired;
+        private long spansEmitted;
+        private long spansDroppedByThreshold;
+        private long spansDroppedByDepth;
+        private long spansDroppedBySampling;
+        private long overheadNs;
+
+        private Snapshot() {
+        }
+
+        public long probesFired() {
+            return this.probesFired;
+        }
+
+        public long spansEmitted() {
+            return this.spansEmitted;
+        }
+
+        public long spansDroppedByThreshold() {
+            return this.spansDroppedByThreshold;
+        }
+
+        public long spansDroppedByDepth() {
+            return this.spansDroppedByDepth;
+        }
+
+        public long spansDroppedBySampling() {
+            return this.spansDroppedBySampling;
+        }
+
+        public long overheadNs() {
+            return this.overheadNs;
+        }
+
+        private void add(final ThreadCounters counters) {
+            this.probesFired += counters.probesFired;
+            this.spansEmitted += counters.spansEmitted;
+            this.spansDroppedByThreshold += counters.spansDroppedByThreshold;
+            this.spansDroppedByDepth += counters.spansDroppedByDepth;
+            this.spansDroppedBySampling += counters.spansDroppedBySampling;
+            this.overheadNs += counters.overheadNs;
+        }
+    }
+}
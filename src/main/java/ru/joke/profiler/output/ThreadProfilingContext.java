@@ -0,0 +1,168 @@
+package ru.joke.profiler.output;
+
+import ru.joke.profiler.configuration.DynamicProfilingConfiguration;
+import ru.joke.profiler.output.aggregation.ThreadLatencyRecorder;
+import ru.joke.profiler.output.journal.ThreadEventJournal;
+import ru.joke.profiler.output.retention.TraceBuffer;
+import ru.joke.profiler.output.sinks.OutputData;
+
+import java.util.function.Predicate;
+
+/*
+ * Profiling state of the thread shared by all registrars of the chain: it's looked up once per probe by the outer
+ * registrar and passed to the delegates. Context lives as long as its thread, so its parts are reset instead of
+ * being removed and created again at the trace boundaries.
+ */
+final class ThreadProfilingContext {
+
+    private static final ThreadLocal<ThreadProfilingContext> threadContext = ThreadLocal.withInitial(ThreadProfilingContext::new);
+
+    private final OutputData traceData;
+    private final RegistrationMetrics.ThreadCounters metrics;
+    private TraceBuffer traceBuffer;
+    private ThreadLatencyRecorder latencyRecorder;
+    private ThreadEventJournal eventJournal;
+    private MethodCallsStatistics.ThreadCalls methodCalls;
+    private int aggregationDepth;
+
+    private DynamicProfilingConfiguration dynamicConfiguration;
+    private long dynamicConfigurationVersion;
+    private int dynamicDepth;
+    private boolean dynamicTraceStarted;
+
+    private long threadVerdictVersion = -1;
+    private String threadVerdictName;
+    private boolean threadProfiled;
+
+    private int probesGeneration;
+
+    private ThreadProfilingContext() {
+        this.traceData = new OutputData();
+        this.metrics = RegistrationMetrics.getInstance().register();
+    }
+
+    /*
+     * Probes could be switched off in the middle of the trace: the exits of the methods entered before that
+     * are skipped, so the state of the previous probes generation is discarded, as well as the exits
+     * of such methods, which arrive after switching the probes on again and find no trace.
+     */
+    static ThreadProfilingContext current(final ProbesSwitch probesSwitch) {
+        final ThreadProfilingContext context = threadContext.get();
+        final int probesGeneration = probesSwitch.generation();
+        if (context.probesGeneration != probesGeneration) {
+            context.reset(probesGeneration);
+        }
+
+        return context;
+    }
+
+    OutputData traceData() {
+        return this.traceData;
+    }
+
+    RegistrationMetrics.ThreadCounters metrics() {
+        return this.metrics;
+    }
+
+    TraceBuffer traceBuffer() {
+        return this.traceBuffer;
+    }
+
+    void withTraceBuffer(final TraceBuffer traceBuffer) {
+        this.traceBuffer = traceBuffer;
+    }
+
+    ThreadLatencyRecorder latencyRecorder() {
+        return this.latencyRecorder;
+    }
+
+    void withLatencyRecorder(final ThreadLatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    ThreadEventJournal eventJournal() {
+        return this.eventJournal;
+    }
+
+    void withEventJournal(final ThreadEventJournal eventJournal) {
+        this.eventJournal = eventJournal;
+    }
+
+    MethodCallsStatistics.ThreadCalls methodCalls() {
+        return this.methodCalls;
+    }
+
+    void withMethodCalls(final MethodCallsStatistics.ThreadCalls methodCalls) {
+        this.methodCalls = methodCalls;
+    }
+
+    int aggregationDepth() {
+        return this.aggregationDepth;
+    }
+
+    void withAggregationDepth(final int aggregationDepth) {
+        this.aggregationDepth = aggregationDepth;
+    }
+
+    boolean isDynamicTraceStarted() {
+        return this.dynamicTraceStarted;
+    }
+
+    /*
+     * Configuration is captured at the beginning of the trace and stays the same till its end.
+     */
+    void startDynamicTrace(
+            final DynamicProfilingConfiguration dynamicConfiguration,
+            final long dynamicConfigurationVersion
+    ) {
+        this.dynamicConfiguration = dynamicConfiguration;
+        this.dynamicConfigurationVersion = dynamicConfigurationVersion;
+        this.dynamicDepth = 0;
+        this.dynamicTraceStarted = true;
+    }
+
+    void finishDynamicTrace() {
+        this.dynamicConfiguration = null;
+        this.dynamicDepth = 0;
+        this.dynamicTraceStarted = false;
+    }
+
+    DynamicProfilingConfiguration dynamicConfiguration() {
+        return this.dynamicConfiguration;
+    }
+
+    /*
+     * Verdict of the threads filter of the trace configuration is cached until the configuration
+     * version or the thread name changes, so the filter is evaluated once per configuration refresh.
+     * Name is compared by reference: renaming the thread replaces the name string.
+     */
+    boolean isThreadProfiled(final Predicate<String> threadsFilter) {
+        final String threadName = Thread.currentThread().getName();
+        if (this.threadVerdictVersion != this.dynamicConfigurationVersion || threadName != this.threadVerdictName) {
+            this.threadProfiled = threadsFilter.test(threadName);
+            this.threadVerdictVersion = this.dynamicConfigurationVersion;
+            this.threadVerdictName = threadName;
+        }
+
+        return this.threadProfiled;
+    }
+
+    int dynamicDepth() {
+        return this.dynamicDepth;
+    }
+
+    void withDynamicDepth(final int dynamicDepth) {
+        this.dynamicDepth = dynamicDepth;
+    }
+
+    private void reset(final int probesGeneration) {
+        this.traceData.resetTrace();
+        if (this.traceBuffer != null) {
+            this.traceBuffer.clear();
+        }
+
+        this.aggregationDepth = 0;
+        finishDynamicTrace();
+        this.probesGeneration = probesGeneration;
+    }
+}
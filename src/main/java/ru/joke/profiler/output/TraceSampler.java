@@ -0,0 +1,45 @@
+package ru.joke.profiler.output;
+
+import ru.joke.profiler.configuration.DynamicProfilingConfiguration;
+import ru.joke.profiler.configuration.DynamicProfilingConfigurationHolder;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Head-based sampling: decision is made once per trace, when its id is created. Decision is a function of
+ * the trace id and the sampling rate of the root, so it can be reproduced by anyone knowing them:
+ * trace is sampled if the upper 53 bits of the low part of the trace id, as a fraction of 2^53, are less than the rate.
+ */
+public final class TraceSampler {
+
+    private static final double FRACTION_SCALE = 0x1.0p-53;
+    private static final int FRACTION_SHIFT = 11;
+
+    private final DynamicProfilingConfigurationHolder dynamicProfilingConfigurationHolder;
+
+    public TraceSampler(final DynamicProfilingConfigurationHolder dynamicProfilingConfigurationHolder) {
+        this.dynamicProfilingConfigurationHolder = checkNotNull(dynamicProfilingConfigurationHolder, "dynamicProfilingConfigurationHolder");
+    }
+
+    public boolean isSampled(
+            final int rootMethodId,
+            final String rootMethod,
+            final long traceIdLow
+    ) {
+        final DynamicProfilingConfiguration dynamicConfig = this.dynamicProfilingConfigurationHolder.get();
+        if (dynamicConfig == null) {
+            return true;
+        }
+
+        final double samplingRate =
+                rootMethod == null
+                        ? dynamicConfig.samplingRate(rootMethodId)
+                        : dynamicConfig.samplingRate(rootMethod);
+        return isSampled(traceIdLow, samplingRate);
+    }
+
+    public static boolean isSampled(final long traceIdLow, final double samplingRate) {
+        return samplingRate >= 1
+                || samplingRate > 0 && (traceIdLow >>> FRACTION_SHIFT) * FRACTION_SCALE < samplingRate;
+    }
+}
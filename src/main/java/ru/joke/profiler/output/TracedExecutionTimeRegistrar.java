@@ -1,72 +1,207 @@
 package ru.joke.profiler.output;
 
+import ru.joke.profiler.output.journal.EventJournal;
+import ru.joke.profiler.output.journal.ThreadEventJournal;
+import ru.joke.profiler.output.retention.TraceBuffer;
+import ru.joke.profiler.output.retention.TraceRetentionConfiguration;
 import ru.joke.profiler.output.sinks.OutputData;
 import ru.joke.profiler.output.sinks.OutputDataSink;
 
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
 
 import static ru.joke.profiler.util.ArgUtil.checkNotNull;
 
 public final class TracedExecutionTimeRegistrar extends ExecutionTimeRegistrar {
 
-    private final ThreadLocal<OutputData> outputData;
+    private static final Logger logger = Logger.getLogger(TracedExecutionTimeRegistrar.class.getCanonicalName());
+
     private final OutputDataSink<OutputData> outputSink;
+    private final EventJournal eventJournal;
+    private final TraceSampler traceSampler;
+    private final TraceRetentionConfiguration traceRetentionConfiguration;
 
     public TracedExecutionTimeRegistrar(final OutputDataSink<OutputData> outputSink) {
-        this.outputSink = checkNotNull(outputSink, "outputSink");
-        this.outputData = ThreadLocal.withInitial(OutputData::new);
+        this(outputSink, null);
+    }
+
+    public TracedExecutionTimeRegistrar(final EventJournal eventJournal) {
+        this(eventJournal, null);
+    }
+
+    public TracedExecutionTimeRegistrar(
+            final OutputDataSink<OutputData> outputSink,
+            final TraceSampler traceSampler
+    ) {
+        this(outputSink, traceSampler, null);
+    }
+
+    public TracedExecutionTimeRegistrar(
+            final EventJournal eventJournal,
+            final TraceSampler traceSampler
+    ) {
+        this(eventJournal, traceSampler, null);
+    }
+
+    public TracedExecutionTimeRegistrar(
+            final OutputDataSink<OutputData> outputSink,
+            final TraceSampler traceSampler,
+            final TraceRetentionConfiguration traceRetentionConfiguration
+    ) {
+        this(checkNotNull(outputSink, "outputSink"), null, traceSampler, traceRetentionConfiguration);
+    }
+
+    public TracedExecutionTimeRegistrar(
+            final EventJournal eventJournal,
+            final TraceSampler traceSampler,
+            final TraceRetentionConfiguration traceRetentionConfiguration
+    ) {
+        this(null, checkNotNull(eventJournal, "eventJournal"), traceSampler, traceRetentionConfiguration);
+    }
+
+    private TracedExecutionTimeRegistrar(
+            final OutputDataSink<OutputData> outputSink,
+            final EventJournal eventJournal,
+            final TraceSampler traceSampler,
+            final TraceRetentionConfiguration traceRetentionConfiguration
+    ) {
+        this.outputSink = outputSink;
+        this.eventJournal = eventJournal;
+        this.traceSampler = traceSampler;
+        this.traceRetentionConfiguration = traceRetentionConfiguration;
     }
 
     @Override
-    public void registerMethodEnter(final String method) {
-        final OutputData methodData = this.outputData.get();
-        if (methodData.traceId() == null) {
-            methodData.withTraceId(generateTraceId(method));
+    void registerMethodEnter(
+            final ThreadProfilingContext context,
+            final int methodId,
+            final String method
+    ) {
+        final OutputData methodData = context.traceData();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (!methodData.hasTraceId()) {
+            generateTraceId(methodData, random);
+            methodData.withSampled(this.traceSampler == null || this.traceSampler.isSampled(methodId, method, methodData.traceIdLow()));
         } else {
             methodData.withDepth(methodData.depth() + 1);
         }
 
-        methodData.withSpan(generateSpanId(method, methodData.depth(), methodData.traceId()));
+        // spans of the unsampled traces are not tracked at all
+        if (methodData.isSampled()) {
+            methodData.withSpan(generateSpanId(random));
+        }
     }
 
     @Override
-    public void registerMethodExit() {
-        registerMethodExit(false);
-    }
+    void registerMethodExit(final ThreadProfilingContext context) {
+        final OutputData methodData = context.traceData();
+        if (!methodData.hasTraceId()) {
+            return;
+        }
 
-    @Override
-    protected boolean isRegistrationOccurredOnTrace() {
-        return this.outputData.get().traceId() != null;
+        if (methodData.isSampled()) {
+            methodData.pollLastSpan();
+
+            // root is faster than the static threshold, so it's retained only if the error occurred
+            if (this.traceRetentionConfiguration != null && methodData.depth() == 0) {
+                completeRetainedTrace(context, methodData, takeTraceBuffer(context), false);
+            }
+        }
+
+        leaveMethod(methodData);
     }
 
     @Override
-    public void registerMethodExit(
+    void registerMethodExit(
+            final ThreadProfilingContext context,
+            final int methodId,
             final String method,
             final long methodEnterTimestamp,
             final long methodElapsedTime
     ) {
+        final OutputData methodData = context.traceData();
+        if (!methodData.hasTraceId()) {
+            return;
+        }
+
         try {
-            super.registerMethodExit(method, methodEnterTimestamp, methodElapsedTime);
+            if (methodData.isSampled()) {
+                write(context, methodId, method, methodEnterTimestamp, methodElapsedTime);
+            } else {
+                context.metrics().onSpanDroppedBySampling();
+            }
         } finally {
-            registerMethodExit(true);
+            leaveMethod(methodData);
         }
     }
 
     @Override
-    protected void write(
+    void registerMethodError(final ThreadProfilingContext context) {
+        if (this.traceRetentionConfiguration == null) {
+            return;
+        }
+
+        final OutputData methodData = context.traceData();
+        if (methodData.hasTraceId() && methodData.isSampled()) {
+            takeTraceBuffer(context).markError();
+        }
+    }
+
+    @Override
+    boolean isRegistrationOccurredOnTrace(final ThreadProfilingContext context) {
+        return context.traceData().hasTraceId();
+    }
+
+    @Override
+    boolean isRegistrationOccurredOnSampledTrace(final ThreadProfilingContext context) {
+        final OutputData methodData = context.traceData();
+        return methodData.hasTraceId() && methodData.isSampled();
+    }
+
+    @Override
+    void write(
+            final ThreadProfilingContext context,
+            final int methodId,
             final String method,
             final long methodEnterTimestamp,
             final long methodElapsedTime
     ) {
         final long startWriteTime = System.nanoTime();
 
-        final OutputData output = this.outputData.get();
+        final OutputData output = context.traceData();
         try {
+            // retained spans are counted as emitted only when their trace is flushed
+            if (this.traceRetentionConfiguration != null) {
+                retain(context, output, takeTraceBuffer(context), methodId, method, methodEnterTimestamp, methodElapsedTime);
+                return;
+            }
+
+            context.metrics().onSpanEmitted();
+
+            if (this.eventJournal != null) {
+                final long spanId = output.pollLastSpan();
+                this.eventJournal.append(
+                        takeThreadJournal(context),
+                        methodId,
+                        method,
+                        output.traceIdHigh(),
+                        output.traceIdLow(),
+                        output.depth(),
+                        spanId,
+                        output.peekLastSpan(),
+                        methodEnterTimestamp,
+                        methodElapsedTime - output.lastPolledSpanOverhead()
+                );
+                return;
+            }
+
             output.fill(
+                    methodId,
                     method,
                     methodElapsedTime,
                     methodEnterTimestamp,
-                    output.traceId(),
+                    output.traceIdHigh(),
+                    output.traceIdLow(),
                     output.depth(),
                     output.pollLastSpan(),
                     output.peekLastSpan()
@@ -74,47 +209,117 @@ public final class TracedExecutionTimeRegistrar extends ExecutionTimeRegistrar {
 
             this.outputSink.write(output);
         } finally {
-            output.increaseOverhead(System.nanoTime() - startWriteTime);
+            final long overhead = System.nanoTime() - startWriteTime;
+            output.increaseOverhead(overhead);
+            context.metrics().onOverhead(overhead);
+        }
+    }
+
+    private void retain(
+            final ThreadProfilingContext context,
+            final OutputData output,
+            final TraceBuffer buffer,
+            final int methodId,
+            final String method,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
+        final long spanId = output.pollLastSpan();
+        final long elapsedTime = methodElapsedTime - output.lastPolledSpanOverhead();
+        buffer.append(
+                methodId,
+                method,
+                output.depth(),
+                spanId,
+                output.peekLastSpan(),
+                methodEnterTimestamp,
+                elapsedTime
+        );
+
+        if (output.depth() == 0) {
+            completeRetainedTrace(context, output, buffer, elapsedTime >= this.traceRetentionConfiguration.rootMinExecutionThresholdNs());
+        }
+    }
+
+    /*
+     * Trace is emitted as a whole when its root is slow or any method of the trace threw,
+     * otherwise it's discarded entirely.
+     */
+    private void completeRetainedTrace(
+            final ThreadProfilingContext context,
+            final OutputData methodData,
+            final TraceBuffer buffer,
+            final boolean slowRoot
+    ) {
+        try {
+            if (!slowRoot && !buffer.isErrorOccurred()) {
+                return;
+            }
+
+            if (buffer.discardedSpans() > 0) {
+                logger.warning(String.format("Trace %s exceeded the spans limit, %d spans were discarded", methodData.traceId(), buffer.discardedSpans()));
+            }
+
+            if (this.eventJournal != null) {
+                buffer.appendTo(this.eventJournal, takeThreadJournal(context), methodData.traceIdHigh(), methodData.traceIdLow());
+            } else {
+                this.outputSink.write(buffer.toOutputData(methodData.traceIdHigh(), methodData.traceIdLow()));
+            }
+
+            context.metrics().onSpansEmitted(buffer.spans());
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private ThreadEventJournal takeThreadJournal(final ThreadProfilingContext context) {
+        final ThreadEventJournal journal = context.eventJournal();
+        if (journal != null) {
+            return journal;
         }
+
+        final ThreadEventJournal result = this.eventJournal.createThreadJournal();
+        context.withEventJournal(result);
+        return result;
     }
 
-    private void registerMethodExit(final boolean isOutputRegistered) {
-        final OutputData methodData = outputData.get();
+    private void leaveMethod(final OutputData methodData) {
         int currentDepth = methodData.depth();
         methodData.withDepth(--currentDepth);
         if (currentDepth == -1) {
-            methodData.withTraceId(null);
+            methodData.withTraceId(0, 0);
             methodData.withDepth(0);
         }
+    }
 
-        if (!isOutputRegistered) {
-            methodData.pollLastSpan();
+    private TraceBuffer takeTraceBuffer(final ThreadProfilingContext context) {
+        final TraceBuffer buffer = context.traceBuffer();
+        if (buffer != null) {
+            return buffer;
         }
+
+        final TraceBuffer result = new TraceBuffer(this.traceRetentionConfiguration.maxTraceSpans());
+        context.withTraceBuffer(result);
+        return result;
     }
 
-    private String generateTraceId(final String method) {
-        final UUID uuid = UUID.randomUUID();
-        final long uuidLsb = uuid.getLeastSignificantBits();
-        final long result = (uuidLsb ^ method.hashCode()) * 3141592653589793L + System.nanoTime();
-        return uuid + "-" + Long.toHexString(result);
+    private void generateTraceId(final OutputData methodData, final ThreadLocalRandom random) {
+        long traceIdHigh;
+        long traceIdLow;
+        do {
+            traceIdHigh = random.nextLong();
+            traceIdLow = random.nextLong();
+        } while (traceIdHigh == 0 && traceIdLow == 0);
+
+        methodData.withTraceId(traceIdHigh, traceIdLow);
     }
 
-    private String generateSpanId(
-            final String method,
-            final int depth,
-            final String traceId
-    ) {
-        long result = method.hashCode();
-        result = (result << 13) ^ (result >> 7) ^ depth;
-        result = (result << 29) ^ (result >> 11) ^ System.nanoTime();
-        result = (result << 17) ^ (result >> 9) ^ traceId.hashCode();
-
-        result = result ^ (result >>> 32);
-        result = result * 0x4a6d138479645723L;
-        result = result ^ (result >>> 35);
-        result = result * 0x7c9b23a8d456f123L;
-        result = result ^ (result >>> 28);
-        
-        return Long.toHexString(result);
+    private long generateSpanId(final ThreadLocalRandom random) {
+        long result;
+        do {
+            result = random.nextLong();
+        } while (result == 0);
+
+        return result;
     }
 }
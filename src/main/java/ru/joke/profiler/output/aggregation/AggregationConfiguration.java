@@ -0,0 +1,43 @@
+package ru.joke.profiler.output.aggregation;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+import ru.joke.profiler.configuration.util.MillisTimePropertyParser;
+
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+public final class AggregationConfiguration {
+
+    private static final String AGGREGATION_PREFIX = "aggregation.";
+
+    private static final String ENABLED = "enabled";
+    private static final String INTERVAL = "interval";
+
+    private final boolean enabled;
+    private final long intervalMs;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = AGGREGATION_PREFIX, nullIfNoExplicitPropertiesProvided = true)
+    public AggregationConfiguration(
+            @ProfilerConfigurationProperty(name = ENABLED) final boolean enabled,
+            @ProfilerConfigurationProperty(name = INTERVAL, defaultValue = "1m", parser = MillisTimePropertyParser.class) final long intervalMs
+    ) {
+        this.enabled = enabled;
+        this.intervalMs = checkPositive(intervalMs, "intervalMs");
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public long intervalMs() {
+        return intervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return "AggregationConfiguration{"
+                + "enabled=" + enabled
+                + ", intervalMs=" + intervalMs
+                + '}';
+    }
+}
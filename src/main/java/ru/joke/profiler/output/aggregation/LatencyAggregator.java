@@ -0,0 +1,188 @@
+package ru.joke.profiler.output.aggregation;
+
+import ru.joke.profiler.output.MethodSymbolTable;
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.OutputDataSink;
+import ru.joke.profiler.util.ProfilerThreadFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+public final class LatencyAggregator implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(LatencyAggregator.class.getCanonicalName());
+
+    private static final String AGGREGATOR_THREAD_NAME = "profiler-latency-aggregator-thread";
+
+    private static final double P50 = 50;
+    private static final double P90 = 90;
+    private static final double P99 = 99;
+
+    private final AggregationConfiguration configuration;
+    private final OutputDataSink<OutputData> outputSink;
+    private final List<ThreadLatencyRecorder> recorders;
+    private final ScheduledExecutorService aggregatorExecutor;
+    private final Map<String, LatencyHistogram> totalsByName;
+    private LatencyHistogram[] totalsById;
+    private long intervalStartTimestamp;
+
+    public LatencyAggregator(
+            final AggregationConfiguration configuration,
+            final OutputDataSink<OutputData> outputSink
+    ) {
+        this.configuration = checkNotNull(configuration, "configuration");
+        this.outputSink = checkNotNull(outputSink, "outputSink");
+        this.recorders = new CopyOnWriteArrayList<>();
+        this.aggregatorExecutor = Executors.newSingleThreadScheduledExecutor(new ProfilerThreadFactory(AGGREGATOR_THREAD_NAME, false));
+        this.totalsByName = new HashMap<>();
+        this.totalsById = new LatencyHistogram[0];
+    }
+
+    public void init() {
+        this.intervalStartTimestamp = System.nanoTime();
+        this.aggregatorExecutor.scheduleAtFixedRate(
+                this::aggregateSafely,
+                this.configuration.intervalMs(),
+                this.configuration.intervalMs(),
+                TimeUnit.MILLISECONDS
+        );
+
+        logger.info("Latency aggregator initialized with configuration: " + this.configuration);
+    }
+
+    public ThreadLatencyRecorder createThreadRecorder() {
+        final ThreadLatencyRecorder recorder = new ThreadLatencyRecorder(Thread.currentThread());
+        this.recorders.add(recorder);
+        return recorder;
+    }
+
+    @Override
+    public void close() {
+        logger.info("Latency aggregator will be closed");
+
+        this.aggregatorExecutor.shutdownNow();
+        try {
+            if (!this.aggregatorExecutor.awaitTermination(this.configuration.intervalMs(), TimeUnit.MILLISECONDS)) {
+                logger.warning("Latency aggregator isn't terminated in time");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        aggregate();
+
+        logger.info("Latency aggregator closed");
+    }
+
+    private void aggregateSafely() {
+        try {
+            aggregate();
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "Unable to aggregate latencies", ex);
+        }
+    }
+
+    private synchronized void aggregate() {
+        for (final ThreadLatencyRecorder recorder : this.recorders) {
+            /*
+             * Termination is checked before merging: values recorded before the owner's death are merged
+             * in this pass, so the recorder of a terminated thread can be released safely afterwards.
+             */
+            final boolean ownerTerminated = recorder.isOwnerTerminated();
+            recorder.mergeInto(this::takeTotal, this.totalsByName);
+
+            if (ownerTerminated) {
+                this.recorders.remove(recorder);
+            }
+        }
+
+        final long intervalStartTimestamp = this.intervalStartTimestamp;
+        this.intervalStartTimestamp = System.nanoTime();
+
+        final List<OutputData> summaries = collectSummaries(intervalStartTimestamp);
+        if (!summaries.isEmpty()) {
+            this.outputSink.write(summaries);
+        }
+    }
+
+    private List<OutputData> collectSummaries(final long intervalStartTimestamp) {
+        final LocalDateTime timestamp = LocalDateTime.now();
+        final List<OutputData> result = new ArrayList<>();
+
+        final LatencyHistogram[] totalsById = this.totalsById;
+        for (int i = 0; i < totalsById.length; i++) {
+            final LatencyHistogram total = totalsById[i];
+            if (total == null) {
+                continue;
+            }
+
+            if (total.isEmpty()) {
+                totalsById[i] = null;
+            } else {
+                result.add(createSummary(i, null, total, intervalStartTimestamp, timestamp));
+            }
+        }
+
+        final Iterator<Map.Entry<String, LatencyHistogram>> iterator = this.totalsByName.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, LatencyHistogram> entry = iterator.next();
+            if (entry.getValue().isEmpty()) {
+                iterator.remove();
+            } else {
+                result.add(createSummary(MethodSymbolTable.UNKNOWN_METHOD_ID, entry.getKey(), entry.getValue(), intervalStartTimestamp, timestamp));
+            }
+        }
+
+        return result;
+    }
+
+    private OutputData createSummary(
+            final int methodId,
+            final String method,
+            final LatencyHistogram total,
+            final long intervalStartTimestamp,
+            final LocalDateTime timestamp
+    ) {
+        final OutputData result = new OutputData();
+        result.fillSummary(
+                methodId,
+                method,
+                intervalStartTimestamp,
+                timestamp,
+                total.count(),
+                total.sum(),
+                total.min(),
+                total.max(),
+                total.valueAtPercentile(P50),
+                total.valueAtPercentile(P90),
+                total.valueAtPercentile(P99)
+        );
+        total.reset();
+
+        return result;
+    }
+
+    private LatencyHistogram takeTotal(final int methodId) {
+        LatencyHistogram[] totals = this.totalsById;
+        if (methodId >= totals.length) {
+            final LatencyHistogram[] newTotals = new LatencyHistogram[Math.max(methodId + 1, totals.length * 2)];
+            System.arraycopy(totals, 0, newTotals, 0, totals.length);
+            this.totalsById = totals = newTotals;
+        }
+
+        final LatencyHistogram total = totals[methodId];
+        return total == null ? (totals[methodId] = new LatencyHistogram()) : total;
+    }
+}
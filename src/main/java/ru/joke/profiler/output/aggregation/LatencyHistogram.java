@@ -0,0 +1,147 @@
+package ru.joke.profiler.output.aggregation;
+
+import java.util.Arrays;
+
+/*
+ * Log-linear histogram of the elapsed times: values below 2^SUB_BUCKET_BITS are counted exactly,
+ * each next power of two range is split into 2^SUB_BUCKET_BITS linear buckets, so the relative error
+ * of the percentiles doesn't exceed 1/2^SUB_BUCKET_BITS. Buckets are allocated only for the
+ * recorded range of values, since the elapsed times of a single method are usually close to each other.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private long[] counts;
+    private int lowestBucket;
+
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    void record(final long value) {
+        final long normalizedValue = Math.max(value, 0);
+        final int bucket = bucketIndex(normalizedValue);
+        takeCounts(bucket)[bucket - this.lowestBucket]++;
+
+        this.count++;
+        this.sum += normalizedValue;
+        this.min = Math.min(this.min, normalizedValue);
+        this.max = Math.max(this.max, normalizedValue);
+    }
+
+    void add(final LatencyHistogram other) {
+        if (other.count == 0) {
+            return;
+        }
+
+        final long[] otherCounts = other.counts;
+        for (int i = 0; i < otherCounts.length; i++) {
+            if (otherCounts[i] != 0) {
+                final int bucket = other.lowestBucket + i;
+                takeCounts(bucket)[bucket - this.lowestBucket] += otherCounts[i];
+            }
+        }
+
+        this.count += other.count;
+        this.sum += other.sum;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+    }
+
+    long valueAtPercentile(final double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        final long targetCount = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+        long accumulatedCount = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            accumulatedCount += this.counts[i];
+            if (accumulatedCount >= targetCount) {
+                final long bucketHighestValue = highestValueInBucket(this.lowestBucket + i);
+                return Math.max(this.min, Math.min(bucketHighestValue, this.max));
+            }
+        }
+
+        return this.max;
+    }
+
+    long count() {
+        return this.count;
+    }
+
+    long sum() {
+        return this.sum;
+    }
+
+    long min() {
+        return this.count == 0 ? 0 : this.min;
+    }
+
+    long max() {
+        return this.max;
+    }
+
+    boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    void reset() {
+        if (this.count == 0) {
+            return;
+        }
+
+        Arrays.fill(this.counts, 0);
+        this.count = 0;
+        this.sum = 0;
+        this.min = Long.MAX_VALUE;
+        this.max = 0;
+    }
+
+    private long[] takeCounts(final int bucket) {
+        final long[] counts = this.counts;
+        if (counts != null && bucket >= this.lowestBucket && bucket < this.lowestBucket + counts.length) {
+            return counts;
+        }
+
+        /*
+         * Range is extended by the whole power of two ranges to avoid frequent reallocations.
+         */
+        final int alignedBucket = bucket & -SUB_BUCKETS;
+        final int newLowestBucket = counts == null ? alignedBucket : Math.min(this.lowestBucket, alignedBucket);
+        final int newHighestBucket = counts == null ? alignedBucket + SUB_BUCKETS : Math.max(this.lowestBucket + counts.length, alignedBucket + SUB_BUCKETS);
+
+        final long[] newCounts = new long[newHighestBucket - newLowestBucket];
+        if (counts != null) {
+            System.arraycopy(counts, 0, newCounts, this.lowestBucket - newLowestBucket, counts.length);
+        }
+
+        this.counts = newCounts;
+        this.lowestBucket = newLowestBucket;
+
+        return newCounts;
+    }
+
+    private static int bucketIndex(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueInBucket(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lowestValue = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+}
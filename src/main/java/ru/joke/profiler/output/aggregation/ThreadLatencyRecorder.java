@@ -0,0 +1,136 @@
+package ru.joke.profiler.output.aggregation;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.IntFunction;
+
+/*
+ * Histograms of the owner thread for the current interval. The owner records into the active interval only,
+ * the aggregator swaps it with the standby one and merges the retired interval. The records counter is odd while
+ * the owner records: it's set by a volatile store before the active interval is read, so after the swap
+ * the aggregator waits for the record in progress (it may still write into the retired interval) to complete.
+ * The owner is never blocked: a record racing with the swap is merged with the retired interval or goes to the next one.
+ * The merge of the next interval is skipped only if no record was started since the swap, so the record which went
+ * to the next interval while racing with the swap is merged with it as well.
+ */
+public final class ThreadLatencyRecorder {
+
+    private static final AtomicLongFieldUpdater<ThreadLatencyRecorder> recordsUpdater = AtomicLongFieldUpdater.newUpdater(ThreadLatencyRecorder.class, "records");
+
+    private final Thread owner;
+    private volatile Interval active;
+    private Interval standby;
+    private volatile long records;
+    private long mergedRecords;
+
+    ThreadLatencyRecorder(final Thread owner) {
+        this.owner = owner;
+        this.active = new Interval();
+        this.standby = new Interval();
+    }
+
+    public void record(
+            final int methodId,
+            final String method,
+            final long methodElapsedTime
+    ) {
+        final long records = this.records;
+        // marks the record in progress before the active interval is read
+        this.records = records + 1;
+
+        final Interval interval = this.active;
+        final LatencyHistogram histogram =
+                method == null
+                        ? interval.takeHistogram(methodId)
+                        : interval.takeHistogram(method);
+        histogram.record(methodElapsedTime);
+
+        // completes the record and publishes the recorded values to the aggregator
+        recordsUpdater.lazySet(this, records + 2);
+    }
+
+    void mergeInto(
+            final IntFunction<LatencyHistogram> totalsById,
+            final Map<String, LatencyHistogram> totalsByName
+    ) {
+        // records completed before the swap are in the retired interval, the others may be in the next one
+        final long recordsBeforeSwap = this.records & ~1L;
+
+        final Interval retired = this.active;
+        this.active = this.standby;
+        this.standby = retired;
+
+        final long records = awaitRecordCompletion();
+        if (records == this.mergedRecords) {
+            return;
+        }
+
+        this.mergedRecords = recordsBeforeSwap;
+
+        final LatencyHistogram[] histogramsById = retired.histogramsById;
+        for (int i = 0; i < histogramsById.length; i++) {
+            final LatencyHistogram histogram = histogramsById[i];
+            if (histogram == null) {
+                continue;
+            }
+
+            // histograms of the methods not called during the whole interval are released
+            if (histogram.isEmpty()) {
+                histogramsById[i] = null;
+            } else {
+                totalsById.apply(i).add(histogram);
+                histogram.reset();
+            }
+        }
+
+        final Iterator<Map.Entry<String, LatencyHistogram>> iterator = retired.histogramsByName.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, LatencyHistogram> entry = iterator.next();
+            final LatencyHistogram histogram = entry.getValue();
+            if (histogram.isEmpty()) {
+                iterator.remove();
+            } else {
+                totalsByName.computeIfAbsent(entry.getKey(), k -> new LatencyHistogram()).add(histogram);
+                histogram.reset();
+            }
+        }
+    }
+
+    private long awaitRecordCompletion() {
+        long records;
+        while (((records = this.records) & 1) != 0 && this.owner.isAlive()) {
+            Thread.yield();
+        }
+
+        return records;
+    }
+
+    boolean isOwnerTerminated() {
+        return !this.owner.isAlive();
+    }
+
+    private static final class Interval {
+
+        private LatencyHistogram[] histogramsById = new LatencyHistogram[0];
+        private final Map<String, LatencyHistogram> histogramsByName = new ConcurrentHashMap<>();
+
+        private LatencyHistogram takeHistogram(final int methodId) {
+            LatencyHistogram[] histograms = this.histogramsById;
+            if (methodId >= histograms.length) {
+                final LatencyHistogram[] newHistograms = new LatencyHistogram[Math.max(methodId + 1, histograms.length * 2)];
+                System.arraycopy(histograms, 0, newHistograms, 0, histograms.length);
+                this.histogramsById = histograms = newHistograms;
+            }
+
+            final LatencyHistogram histogram = histograms[methodId];
+            return histogram == null ? (histograms[methodId] = new LatencyHistogram()) : histogram;
+        }
+
+        private LatencyHistogram takeHistogram(final String method) {
+            final LatencyHistogram histogram = this.histogramsByName.get(method);
+            return histogram == null ? this.histogramsByName.computeIfAbsent(method, m -> new LatencyHistogram()) : histogram;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ru.joke.profiler.output.journal;
+
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.OutputDataSink;
+import ru.joke.profiler.util.ProfilerThreadFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+public final class EventJournal implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(EventJournal.class.getCanonicalName());
+
+    private static final String COLLECTOR_THREAD_NAME = "profiler-journal-collector-thread";
+    private static final int OVERFLOW_YIELD_TRIES = 100;
+    private static final long OVERFLOW_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final EventJournalConfiguration configuration;
+    private final OutputDataSink<OutputData> outputSink;
+    private final List<ThreadEventJournal> journals;
+    private final ExecutorService collectorExecutor;
+    private final OutputData[] batch;
+
+    private volatile Thread collectorThread;
+    private volatile boolean collectorParked;
+    private volatile boolean closed;
+
+    public EventJournal(
+            final EventJournalConfiguration configuration,
+            final OutputDataSink<OutputData> outputSink
+    ) {
+        this.configuration = checkNotNull(configuration, "configuration");
+        this.outputSink = checkNotNull(outputSink, "outputSink");
+        this.journals = new CopyOnWriteArrayList<>();
+        this.collectorExecutor = Executors.newSingleThreadExecutor(new ProfilerThreadFactory(COLLECTOR_THREAD_NAME, false));
+        this.batch = new OutputData[configuration.drainingBatchSize()];
+        for (int i = 0; i < this.batch.length; i++) {
+            this.batch[i] = new OutputData();
+        }
+    }
+
+    public void init() {
+        this.collectorExecutor.execute(this::runCollector);
+
+        logger.info("Event journal initialized with configuration: " + this.configuration);
+    }
+
+    /*
+     * Journal of the current thread: it's kept by the caller in the profiling context of the thread.
+     */
+    public ThreadEventJournal createThreadJournal() {
+        final ThreadEventJournal journal = new ThreadEventJournal(Thread.currentThread(), this.configuration.threadBufferSize());
+        this.journals.add(journal);
+        return journal;
+    }
+
+    public boolean append(
+            final ThreadEventJournal threadJournal,
+            final int methodId,
+            final String method,
+            final long traceIdHigh,
+            final long traceIdLow,
+            final int depth,
+            final long spanId,
+            final long parentSpanId,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
+        if (this.closed) {
+            threadJournal.discard();
+            return false;
+        }
+
+        if (threadJournal.append(
+                methodId,
+                method,
+                traceIdHigh,
+                traceIdLow,
+                depth,
+                spanId,
+                parentSpanId,
+                methodEnterTimestamp,
+                methodElapsedTime
+        )) {
+            if (threadJournal.isAboveHighWatermark()) {
+                wakeCollector();
+            }
+
+            return true;
+        }
+
+        if (this.configuration.overflowPolicy() == EventJournalConfiguration.OverflowPolicy.WAIT) {
+            wakeCollector();
+            for (int attempt = 0; !this.closed && !Thread.currentThread().isInterrupted(); attempt++) {
+                if (attempt < OVERFLOW_YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, OVERFLOW_PARK_NANOS);
+                }
+
+                if (threadJournal.append(
+                        methodId,
+                        method,
+                        traceIdHigh,
+                        traceIdLow,
+                        depth,
+                        spanId,
+                        parentSpanId,
+                        methodEnterTimestamp,
+                        methodElapsedTime
+                )) {
+                    return true;
+                }
+            }
+        }
+
+        threadJournal.discard();
+        return false;
+    }
+
+    @Override
+    public void close() {
+        logger.info("Event journal will be closed");
+
+        this.closed = true;
+        this.collectorExecutor.shutdownNow();
+        try {
+            if (!this.collectorExecutor.awaitTermination(this.configuration.drainingIntervalMs(), TimeUnit.MILLISECONDS)) {
+                logger.warning("Journal collector isn't terminated in time");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        collect();
+
+        logger.info("Event journal closed");
+    }
+
+    /*
+     * The collector drains the journals each interval or earlier, when a journal is filled above the watermark.
+     * The flag is cleared by the waking thread before the unpark; a wakeup missed while the collector is going to park
+     * only delays the collection by the interval, the filled journal keeps waking the collector on each append.
+     */
+    private void runCollector() {
+        this.collectorThread = Thread.currentThread();
+        final long drainingIntervalNs = TimeUnit.MILLISECONDS.toNanos(this.configuration.drainingIntervalMs());
+        while (!Thread.currentThread().isInterrupted()) {
+            collectSafely();
+
+            this.collectorParked = true;
+            LockSupport.parkNanos(this, drainingIntervalNs);
+            this.collectorParked = false;
+        }
+    }
+
+    private void wakeCollector() {
+        final Thread collectorThread = this.collectorThread;
+        if (this.collectorParked && collectorThread != null) {
+            this.collectorParked = false;
+            LockSupport.unpark(collectorThread);
+        }
+    }
+
+    private void collectSafely() {
+        try {
+            collect();
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "Unable to collect events from journal", ex);
+        }
+    }
+
+    /*
+     * Journals are drained by the passes of at most a batch from each journal, so a journal filled faster
+     * than the sink writes doesn't starve the others; the passes are repeated while any journal fills a batch.
+     */
+    private synchronized void collect() {
+        int batchSize = 0;
+        boolean batchFilled;
+        do {
+            batchFilled = false;
+            for (final ThreadEventJournal journal : this.journals) {
+                /*
+                 * Termination is checked before draining: records published before the owner's death are drained
+                 * in this pass, so the empty journal of a terminated thread can be released safely afterwards.
+                 */
+                final boolean ownerTerminated = journal.isOwnerTerminated();
+
+                int remaining = this.batch.length;
+                int drained;
+                while (remaining > 0 && (drained = journal.drain(this.batch, batchSize, Math.min(remaining, this.batch.length - batchSize))) > 0) {
+                    remaining -= drained;
+                    batchSize += drained;
+                    if (batchSize == this.batch.length) {
+                        flush(batchSize);
+                        batchSize = 0;
+                    }
+                }
+
+                if (remaining == 0) {
+                    batchFilled = true;
+                    continue;
+                }
+
+                final long droppedRecords = journal.takeNewlyDroppedRecords();
+                if (droppedRecords > 0) {
+                    logger.warning(String.format("Journal of thread %s is full, %d records were discarded", journal.owner().getName(), droppedRecords));
+                }
+
+                if (ownerTerminated && journal.isEmpty()) {
+                    this.journals.remove(journal);
+                }
+            }
+        } while (batchFilled);
+
+        flush(batchSize);
+    }
+
+    private void flush(final int batchSize) {
+        if (batchSize == 0) {
+            return;
+        }
+
+        this.outputSink.write(Arrays.asList(this.batch).subList(0, batchSize));
+    }
+}
@@ -0,0 +1,86 @@
+package ru.joke.profiler.output.journal;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+import ru.joke.profiler.configuration.meta.ProfilerDefaultEnumProperty;
+import ru.joke.profiler.configuration.util.MillisTimePropertyParser;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+public final class EventJournalConfiguration {
+
+    private static final String JOURNAL_PREFIX = "journal.";
+
+    private static final String ENABLED = "enabled";
+    private static final String THREAD_BUFFER_SIZE = "thread_buffer_size";
+    private static final String DRAINING_INTERVAL = "draining_interval";
+    private static final String DRAINING_BATCH_SIZE = "draining_batch_size";
+    private static final String OVERFLOW_POLICY = "overflow_policy";
+
+    private final boolean enabled;
+    private final int threadBufferSize;
+    private final long drainingIntervalMs;
+    private final int drainingBatchSize;
+    private final OverflowPolicy overflowPolicy;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = JOURNAL_PREFIX, nullIfNoExplicitPropertiesProvided = true)
+    public EventJournalConfiguration(
+            @ProfilerConfigurationProperty(name = ENABLED) final boolean enabled,
+            @ProfilerConfigurationProperty(name = THREAD_BUFFER_SIZE, defaultValue = "8192") final int threadBufferSize,
+            @ProfilerConfigurationProperty(name = DRAINING_INTERVAL, defaultValue = "100ms", parser = MillisTimePropertyParser.class) final long drainingIntervalMs,
+            @ProfilerConfigurationProperty(name = DRAINING_BATCH_SIZE, defaultValue = "1024") final int drainingBatchSize,
+            @ProfilerConfigurationProperty(name = OVERFLOW_POLICY) final OverflowPolicy overflowPolicy
+    ) {
+        this.enabled = enabled;
+        this.threadBufferSize = checkPositive(threadBufferSize, "threadBufferSize");
+        this.drainingIntervalMs = checkPositive(drainingIntervalMs, "drainingIntervalMs");
+        this.drainingBatchSize = checkPositive(drainingBatchSize, "drainingBatchSize");
+        this.overflowPolicy = checkNotNull(overflowPolicy, "overflowPolicy");
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public int threadBufferSize() {
+        return threadBufferSize;
+    }
+
+    public long drainingIntervalMs() {
+        return drainingIntervalMs;
+    }
+
+    public int drainingBatchSize() {
+        return drainingBatchSize;
+    }
+
+    public OverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
+
+    @Override
+    public String toString() {
+        return "EventJournalConfiguration{"
+                + "enabled=" + enabled
+                + ", threadBufferSize=" + threadBufferSize
+                + ", drainingIntervalMs=" + drainingIntervalMs
+                + ", drainingBatchSize=" + drainingBatchSize
+                + ", overflowPolicy=" + overflowPolicy
+                + '}';
+    }
+
+    public enum OverflowPolicy {
+
+        /*
+         * The owner thread wakes the collector and waits for the free space in its journal.
+         */
+        @ProfilerDefaultEnumProperty
+        WAIT,
+
+        /*
+         * The record is discarded, the discarded records are reported by the collector.
+         */
+        DISCARD
+    }
+}
@@ -0,0 +1,170 @@
+package ru.joke.profiler.output.journal;
+
+import ru.joke.profiler.output.sinks.OutputData;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/*
+ * Single-producer/single-consumer ring of fixed-size span records. The owner thread is the only producer,
+ * the journal collector is the only consumer, so publishing requires only ordered (lazy) stores of the sequences.
+ */
+public final class ThreadEventJournal {
+
+    private static final AtomicLongFieldUpdater<ThreadEventJournal> headUpdater = AtomicLongFieldUpdater.newUpdater(ThreadEventJournal.class, "head");
+    private static final AtomicLongFieldUpdater<ThreadEventJournal> tailUpdater = AtomicLongFieldUpdater.newUpdater(ThreadEventJournal.class, "tail");
+
+    private static final int RECORD_SIZE = 8;
+
+    private static final int TRACE_ID_HIGH_OFFSET = 0;
+    private static final int TRACE_ID_LOW_OFFSET = 1;
+    private static final int SPAN_ID_OFFSET = 2;
+    private static final int PARENT_SPAN_ID_OFFSET = 3;
+    private static final int ENTER_TS_OFFSET = 4;
+    private static final int ELAPSED_TIME_OFFSET = 5;
+    private static final int TIMESTAMP_OFFSET = 6;
+    private static final int DEPTH_AND_METHOD_ID_OFFSET = 7;
+
+    private final Thread owner;
+    private final long[] records;
+    private final String[] methods;
+    private final int mask;
+    private final int highWatermark;
+
+    private volatile long head;
+    private volatile long tail;
+    private volatile long droppedRecords;
+
+    private long cachedHead;
+    private long reportedDroppedRecords;
+
+    ThreadEventJournal(final Thread owner, final int capacity) {
+        this.owner = owner;
+        final int size = roundToPowerOfTwo(capacity);
+        this.records = new long[size * RECORD_SIZE];
+        this.methods = new String[size];
+        this.mask = size - 1;
+        this.highWatermark = size >> 1;
+    }
+
+    boolean append(
+            final int methodId,
+            final String method,
+            final long traceIdHigh,
+            final long traceIdLow,
+            final int depth,
+            final long spanId,
+            final long parentSpanId,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
+        final long currentTail = this.tail;
+        if (currentTail - this.cachedHead > this.mask) {
+            this.cachedHead = this.head;
+            if (currentTail - this.cachedHead > this.mask) {
+                return false;
+            }
+        }
+
+        final int index = (int) currentTail & this.mask;
+        final int offset = index * RECORD_SIZE;
+        final long[] records = this.records;
+        records[offset + TRACE_ID_HIGH_OFFSET] = traceIdHigh;
+        records[offset + TRACE_ID_LOW_OFFSET] = traceIdLow;
+        records[offset + SPAN_ID_OFFSET] = spanId;
+        records[offset + PARENT_SPAN_ID_OFFSET] = parentSpanId;
+        records[offset + ENTER_TS_OFFSET] = methodEnterTimestamp;
+        records[offset + ELAPSED_TIME_OFFSET] = methodElapsedTime;
+        records[offset + TIMESTAMP_OFFSET] = System.currentTimeMillis();
+        records[offset + DEPTH_AND_METHOD_ID_OFFSET] = ((long) depth << 32) | (methodId & 0xFFFFFFFFL);
+        this.methods[index] = method;
+
+        tailUpdater.lazySet(this, currentTail + 1);
+        return true;
+    }
+
+    /*
+     * Called by the owner when the record can't be appended and won't be retried.
+     */
+    void discard() {
+        this.droppedRecords++;
+    }
+
+    /*
+     * Checked by the owner after the append: the occupancy is estimated by the cached head first,
+     * so the head is read only while the ring is filled above the watermark.
+     */
+    boolean isAboveHighWatermark() {
+        if (this.tail - this.cachedHead <= this.highWatermark) {
+            return false;
+        }
+
+        this.cachedHead = this.head;
+        return this.tail - this.cachedHead > this.highWatermark;
+    }
+
+    int drain(
+            final OutputData[] target,
+            final int fromIndex,
+            final int maxRecords
+    ) {
+        final long currentHead = this.head;
+        final long available = Math.min(this.tail - currentHead, maxRecords);
+        if (available <= 0) {
+            return 0;
+        }
+
+        final String threadName = this.owner.getName();
+        final ZoneId zone = ZoneId.systemDefault();
+        for (int i = 0; i < available; i++) {
+            final int index = (int) (currentHead + i) & this.mask;
+            final int offset = index * RECORD_SIZE;
+            final long[] records = this.records;
+            final long depthAndMethodId = records[offset + DEPTH_AND_METHOD_ID_OFFSET];
+
+            target[fromIndex + i].fill(
+                    (int) depthAndMethodId,
+                    this.methods[index],
+                    records[offset + ELAPSED_TIME_OFFSET],
+                    records[offset + ENTER_TS_OFFSET],
+                    records[offset + TRACE_ID_HIGH_OFFSET],
+                    records[offset + TRACE_ID_LOW_OFFSET],
+                    (int) (depthAndMethodId >>> 32),
+                    threadName,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(records[offset + TIMESTAMP_OFFSET]), zone),
+                    records[offset + SPAN_ID_OFFSET],
+                    records[offset + PARENT_SPAN_ID_OFFSET]
+            );
+            this.methods[index] = null;
+        }
+
+        headUpdater.lazySet(this, currentHead + available);
+        return (int) available;
+    }
+
+    boolean isEmpty() {
+        return this.tail == this.head;
+    }
+
+    boolean isOwnerTerminated() {
+        return !this.owner.isAlive();
+    }
+
+    long takeNewlyDroppedRecords() {
+        final long dropped = this.droppedRecords;
+        final long result = dropped - this.reportedDroppedRecords;
+        this.reportedDroppedRecords = dropped;
+        return result;
+    }
+
+    Thread owner() {
+        return this.owner;
+    }
+
+    private static int roundToPowerOfTwo(final int value) {
+        final int highestBit = Integer.highestOneBit(value);
+        return highestBit == value ? value : highestBit << 1;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.joke.profiler.output.meta;
+
+import java.lang.annotation.*;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface MethodErrorHandle {
+}
@@ -0,0 +1,177 @@
+package ru.joke.profiler.output.retention;
+
+import ru.joke.profiler.output.journal.EventJournal;
+import ru.joke.profiler.output.journal.ThreadEventJournal;
+import ru.joke.profiler.output.sinks.OutputData;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+/*
+ * Spans of the current trace of the owner thread kept as fixed-size primitive records until the trace root exits.
+ * Buffer is reused by the subsequent traces of the thread: the storage grows on demand up to the span limit
+ * and isn't released, the spans exceeding the limit are discarded and only counted. The last slot is reserved
+ * for the root span, which exits last, so the truncated trace is still emitted with its root.
+ */
+public final class TraceBuffer {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final int RECORD_SIZE = 6;
+
+    private static final int SPAN_ID_OFFSET = 0;
+    private static final int PARENT_SPAN_ID_OFFSET = 1;
+    private static final int ENTER_TS_OFFSET = 2;
+    private static final int ELAPSED_TIME_OFFSET = 3;
+    private static final int TIMESTAMP_OFFSET = 4;
+    private static final int DEPTH_AND_METHOD_ID_OFFSET = 5;
+
+    private final int maxSpans;
+
+    private long[] records;
+    private String[] methods;
+    private OutputData[] outputs;
+    private int size;
+    private int discardedSpans;
+    private boolean errorOccurred;
+
+    public TraceBuffer(final int maxSpans) {
+        this.maxSpans = checkPositive(maxSpans, "maxSpans");
+        final int capacity = Math.min(INITIAL_CAPACITY, maxSpans);
+        this.records = new long[capacity * RECORD_SIZE];
+        this.methods = new String[capacity];
+    }
+
+    public boolean append(
+            final int methodId,
+            final String method,
+            final int depth,
+            final long spanId,
+            final long parentSpanId,
+            final long methodEnterTimestamp,
+            final long methodElapsedTime
+    ) {
+        final int index = this.size;
+        if (depth > 0 && index == this.maxSpans - 1 || index == this.methods.length && !grow()) {
+            this.discardedSpans++;
+            return false;
+        }
+
+        final int offset = index * RECORD_SIZE;
+        final long[] records = this.records;
+        records[offset + SPAN_ID_OFFSET] = spanId;
+        records[offset + PARENT_SPAN_ID_OFFSET] = parentSpanId;
+        records[offset + ENTER_TS_OFFSET] = methodEnterTimestamp;
+        records[offset + ELAPSED_TIME_OFFSET] = methodElapsedTime;
+        records[offset + TIMESTAMP_OFFSET] = System.currentTimeMillis();
+        records[offset + DEPTH_AND_METHOD_ID_OFFSET] = ((long) depth << 32) | (methodId & 0xFFFFFFFFL);
+        this.methods[index] = method;
+        this.size = index + 1;
+
+        return true;
+    }
+
+    public void markError() {
+        this.errorOccurred = true;
+    }
+
+    public boolean isErrorOccurred() {
+        return this.errorOccurred;
+    }
+
+    public int discardedSpans() {
+        return this.discardedSpans;
+    }
+
+    public int spans() {
+        return this.size;
+    }
+
+    /*
+     * Returned data objects are owned by the buffer and are valid only until the next trace of the thread.
+     */
+    public List<OutputData> toOutputData(final long traceIdHigh, final long traceIdLow) {
+        final int size = this.size;
+        if (this.outputs == null || this.outputs.length < size) {
+            final int previousLength = this.outputs == null ? 0 : this.outputs.length;
+            this.outputs = this.outputs == null ? new OutputData[this.methods.length] : Arrays.copyOf(this.outputs, this.methods.length);
+            for (int i = previousLength; i < this.outputs.length; i++) {
+                this.outputs[i] = new OutputData();
+            }
+        }
+
+        final String threadName = Thread.currentThread().getName();
+        final ZoneId zone = ZoneId.systemDefault();
+        final long[] records = this.records;
+        for (int i = 0; i < size; i++) {
+            final int offset = i * RECORD_SIZE;
+            final long depthAndMethodId = records[offset + DEPTH_AND_METHOD_ID_OFFSET];
+
+            this.outputs[i].fill(
+                    (int) depthAndMethodId,
+                    this.methods[i],
+                    records[offset + ELAPSED_TIME_OFFSET],
+                    records[offset + ENTER_TS_OFFSET],
+                    traceIdHigh,
+                    traceIdLow,
+                    (int) (depthAndMethodId >>> 32),
+                    threadName,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(records[offset + TIMESTAMP_OFFSET]), zone),
+                    records[offset + SPAN_ID_OFFSET],
+                    records[offset + PARENT_SPAN_ID_OFFSET]
+            );
+        }
+
+        return Arrays.asList(this.outputs).subList(0, size);
+    }
+
+    public void appendTo(
+            final EventJournal eventJournal,
+            final ThreadEventJournal threadJournal,
+            final long traceIdHigh,
+            final long traceIdLow
+    ) {
+        final long[] records = this.records;
+        for (int i = 0; i < this.size; i++) {
+            final int offset = i * RECORD_SIZE;
+            final long depthAndMethodId = records[offset + DEPTH_AND_METHOD_ID_OFFSET];
+
+            eventJournal.append(
+                    threadJournal,
+                    (int) depthAndMethodId,
+                    this.methods[i],
+                    traceIdHigh,
+                    traceIdLow,
+                    (int) (depthAndMethodId >>> 32),
+                    records[offset + SPAN_ID_OFFSET],
+                    records[offset + PARENT_SPAN_ID_OFFSET],
+                    records[offset + ENTER_TS_OFFSET],
+                    records[offset + ELAPSED_TIME_OFFSET]
+            );
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(this.methods, 0, this.size, null);
+        this.size = 0;
+        this.discardedSpans = 0;
+        this.errorOccurred = false;
+    }
+
+    private boolean grow() {
+        final int capacity = this.methods.length;
+        if (capacity == this.maxSpans) {
+            return false;
+        }
+
+        final int newCapacity = (int) Math.min((long) capacity * 2, this.maxSpans);
+        this.records = Arrays.copyOf(this.records, newCapacity * RECORD_SIZE);
+        this.methods = Arrays.copyOf(this.methods, newCapacity);
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.joke.profiler.output.retention;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+import ru.joke.profiler.configuration.util.NanoTimePropertyParser;
+
+import static ru.joke.profiler.util.ArgUtil.checkNonNegative;
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+public final class TraceRetentionConfiguration {
+
+    private static final String RETENTION_PREFIX = "retention.";
+
+    private static final String ENABLED = "enabled";
+    private static final String ROOT_MIN_EXECUTION_THRESHOLD = "root_min_execution_threshold";
+    private static final String MAX_TRACE_SPANS = "max_trace_spans";
+
+    private final boolean enabled;
+    private final long rootMinExecutionThresholdNs;
+    private final int maxTraceSpans;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = RETENTION_PREFIX, nullIfNoExplicitPropertiesProvided = true)
+    public TraceRetentionConfiguration(
+            @ProfilerConfigurationProperty(name = ENABLED) final boolean enabled,
+            @ProfilerConfigurationProperty(name = ROOT_MIN_EXECUTION_THRESHOLD, defaultValue = "0", parser = NanoTimePropertyParser.class) final long rootMinExecutionThresholdNs,
+            @ProfilerConfigurationProperty(name = MAX_TRACE_SPANS, defaultValue = "4096") final int maxTraceSpans
+    ) {
+        this.enabled = enabled;
+        this.rootMinExecutionThresholdNs = checkNonNegative(rootMinExecutionThresholdNs, "rootMinExecutionThresholdNs");
+        this.maxTraceSpans = checkPositive(maxTraceSpans, "maxTraceSpans");
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public long rootMinExecutionThresholdNs() {
+        return rootMinExecutionThresholdNs;
+    }
+
+    public int maxTraceSpans() {
+        return maxTraceSpans;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceRetentionConfiguration{"
+                + "enabled=" + enabled
+                + ", rootMinExecutionThresholdNs=" + rootMinExecutionThresholdNs
+                + ", maxTraceSpans=" + maxTraceSpans
+                + '}';
+    }
+}
@@ -1,55 +1,130 @@
 package ru.joke.profiler.output.sinks;
 
+import ru.joke.profiler.output.MethodSymbolTable;
+
 import java.time.LocalDateTime;
-import java.util.ArrayDeque;
-import java.util.Deque;
+
+import static ru.joke.profiler.output.MethodSymbolTable.UNKNOWN_METHOD_ID;
+import static ru.joke.profiler.util.HexUtil.toHex;
 
 public final class OutputData {
 
     private static final int DEFAULT_INITIAL_SPANS_SIZE = 256;
-    private static final String NO_SPAN = "-";
+    private static final long NO_SPAN = 0;
+    private static final String NO_SPAN_LABEL = "-";
+    private static final String NO_TRACE_LABEL = "-";
+    private static final String NO_THREAD_LABEL = "-";
 
+    private int methodId = UNKNOWN_METHOD_ID;
     private String method;
-    private String traceId;
+    private long traceIdHigh;
+    private long traceIdLow;
     private int depth;
     private long methodElapsedTime;
     private long methodEnterTimestamp;
     private String threadName;
     private LocalDateTime timestamp;
-    private String spanId;
-    private String parentSpanId;
+    private long spanId;
+    private long parentSpanId;
+
+    private String traceIdHex;
+
+    private long callsCount;
+    private long minElapsedTime;
+    private long maxElapsedTime;
+    private long elapsedTimeP50;
+    private long elapsedTimeP90;
+    private long elapsedTimeP99;
 
-    private Deque<String> spans;
-    private long[] spanOverheads;
+    private long[] spans;
+    private long[] spanOverheadSnapshots;
+    private int spansCount;
+    private long accumulatedOverhead;
+    private boolean sampled = true;
 
     public void fill(final OutputData source) {
         fill(
+                source.methodId,
                 source.method,
                 source.methodElapsedTime,
                 source.methodEnterTimestamp,
-                source.traceId,
+                source.traceIdHigh,
+                source.traceIdLow,
                 source.depth,
                 source.threadName,
                 source.timestamp,
                 source.spanId,
                 source.parentSpanId
         );
+        this.traceIdHex = source.traceIdHex;
+        fillStatistics(
+                source.callsCount,
+                source.minElapsedTime,
+                source.maxElapsedTime,
+                source.elapsedTimeP50,
+                source.elapsedTimeP90,
+                source.elapsedTimeP99
+        );
+    }
+
+    /*
+     * Summary of the method executions over the aggregation interval: elapsed time is the total one,
+     * enter timestamp is the start of the interval; summary doesn't belong to any trace or thread.
+     */
+    public void fillSummary(
+            final int methodId,
+            final String method,
+            final long intervalStartTimestamp,
+            final LocalDateTime timestamp,
+            final long callsCount,
+            final long totalElapsedTime,
+            final long minElapsedTime,
+            final long maxElapsedTime,
+            final long elapsedTimeP50,
+            final long elapsedTimeP90,
+            final long elapsedTimeP99
+    ) {
+        fill(
+                methodId,
+                method,
+                totalElapsedTime,
+                intervalStartTimestamp,
+                0,
+                0,
+                0,
+                NO_THREAD_LABEL,
+                timestamp,
+                NO_SPAN,
+                NO_SPAN
+        );
+        fillStatistics(
+                callsCount,
+                minElapsedTime,
+                maxElapsedTime,
+                elapsedTimeP50,
+                elapsedTimeP90,
+                elapsedTimeP99
+        );
     }
 
     public void fill(
+            final int methodId,
             final String method,
             final long methodElapsedTime,
             final long methodEnterTimestamp,
-            final String traceId,
+            final long traceIdHigh,
+            final long traceIdLow,
             final int depth,
-            final String spanId,
-            final String parentSpanId
+            final long spanId,
+            final long parentSpanId
     ) {
         fill(
+                methodId,
                 method,
-                methodElapsedTime - pollLastOverhead(),
+                methodElapsedTime - lastPolledSpanOverhead(),
                 methodEnterTimestamp,
-                traceId,
+                traceIdHigh,
+                traceIdLow,
                 depth,
                 Thread.currentThread().getName(),
                 LocalDateTime.now(),
@@ -58,19 +133,21 @@ public final class OutputData {
         );
     }
 
-    private void fill(
+    public void fill(
+            final int methodId,
             final String method,
             final long methodElapsedTime,
             final long methodEnterTimestamp,
-            final String traceId,
+            final long traceIdHigh,
+            final long traceIdLow,
             final int depth,
             final String threadName,
             final LocalDateTime timestamp,
-            final String spanId,
-            final String parentSpanId
+            final long spanId,
+            final long parentSpanId
     ) {
+        this.methodId = methodId;
         this.method = method;
-        this.traceId = traceId;
         this.depth = depth;
         this.methodElapsedTime = methodElapsedTime;
         this.methodEnterTimestamp = methodEnterTimestamp;
@@ -78,14 +155,43 @@ public final class OutputData {
         this.timestamp = timestamp;
         this.spanId = spanId;
         this.parentSpanId = parentSpanId;
+        withTraceId(traceIdHigh, traceIdLow);
     }
 
     public String method() {
+        if (this.method == null && this.methodId != UNKNOWN_METHOD_ID) {
+            this.method = MethodSymbolTable.getInstance().resolve(this.methodId);
+        }
+
         return this.method;
     }
 
+    public int methodId() {
+        return this.methodId;
+    }
+
     public String traceId() {
-        return this.traceId;
+        if (!hasTraceId()) {
+            return NO_TRACE_LABEL;
+        }
+
+        if (this.traceIdHex == null) {
+            this.traceIdHex = toHex(this.traceIdHigh, this.traceIdLow);
+        }
+
+        return this.traceIdHex;
+    }
+
+    public long traceIdHigh() {
+        return this.traceIdHigh;
+    }
+
+    public long traceIdLow() {
+        return this.traceIdLow;
+    }
+
+    public boolean hasTraceId() {
+        return this.traceIdHigh != 0 || this.traceIdLow != 0;
     }
 
     public int depth() {
@@ -108,80 +214,154 @@ public final class OutputData {
         return this.timestamp;
     }
 
+    public long callsCount() {
+        return this.callsCount;
+    }
+
+    public long minElapsedTime() {
+        return this.minElapsedTime;
+    }
+
+    public long maxElapsedTime() {
+        return this.maxElapsedTime;
+    }
+
+    public long elapsedTimeP50() {
+        return this.elapsedTimeP50;
+    }
+
+    public long elapsedTimeP90() {
+        return this.elapsedTimeP90;
+    }
+
+    public long elapsedTimeP99() {
+        return this.elapsedTimeP99;
+    }
+
+    public boolean isSummary() {
+        return this.callsCount > 0;
+    }
+
     public void withDepth(int depth) {
         this.depth = depth;
     }
 
-    public void withSpan(final String span) {
-        final Deque<String> spans = takeSpans();
-        spans.addLast(span);
+    public void withSpan(final long span) {
+        final long[] spans = takeSpans();
+        if (spans.length == this.spansCount) {
+            this.spans = new long[spans.length * 2];
+            System.arraycopy(spans, 0, this.spans, 0, spans.length);
 
-        final long[] oldOverheads = takeSpanOverheads();
-        if (oldOverheads.length < spans.size()) {
-            this.spanOverheads = new long[oldOverheads.length * 2];
-            System.arraycopy(oldOverheads, 0, this.spanOverheads, 0, oldOverheads.length);
+            final long[] snapshots = this.spanOverheadSnapshots;
+            this.spanOverheadSnapshots = new long[snapshots.length * 2];
+            System.arraycopy(snapshots, 0, this.spanOverheadSnapshots, 0, snapshots.length);
         }
+
+        this.spanOverheadSnapshots[this.spansCount] = this.accumulatedOverhead;
+        this.spans[this.spansCount++] = span;
     }
 
     public String parentSpanId() {
-        return this.parentSpanId;
+        return toSpanLabel(this.parentSpanId);
     }
 
     public String spanId() {
+        return toSpanLabel(this.spanId);
+    }
+
+    public long rawParentSpanId() {
+        return this.parentSpanId;
+    }
+
+    public long rawSpanId() {
         return this.spanId;
     }
 
-    public String pollLastSpan() {
-        return takeSpans().pollLast();
+    public long pollLastSpan() {
+        takeSpans();
+        return this.spansCount == 0 ? NO_SPAN : this.spans[--this.spansCount];
     }
 
-    public String peekLastSpan() {
-        return takeSpans().peekLast();
+    public long peekLastSpan() {
+        takeSpans();
+        return this.spansCount == 0 ? NO_SPAN : this.spans[this.spansCount - 1];
     }
 
-    public void withTraceId(final String traceId) {
-        this.traceId = traceId;
+    public void withTraceId(final long traceIdHigh, final long traceIdLow) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.traceIdHex = null;
     }
 
-    public void increaseOverhead(final long overhead) {
-        final int spansCount = this.spans.size() - 1;
-        final long[] overheads = takeSpanOverheads();
-        for (int i = 0; i < spansCount; i++) {
-            overheads[i] += overhead;
+    public boolean isSampled() {
+        return this.sampled;
+    }
+
+    public void withSampled(final boolean sampled) {
+        this.sampled = sampled;
+    }
+
+    public void resetTrace() {
+        withTraceId(0, 0);
+        this.depth = 0;
+        if (this.spans != null) {
+            this.spansCount = 1;
         }
     }
 
-    private long pollLastOverhead() {
-        final int index = this.spans.size() - 1;
-        final long[] spanOverheads = takeSpanOverheads();
-        final long result = spanOverheads[index];
-        spanOverheads[index] = 0;
-        return result;
+    public void increaseOverhead(final long overhead) {
+        this.accumulatedOverhead += overhead;
+    }
+
+    /*
+     * Overhead of the registrations made inside the last polled span: the polled frame's slot
+     * is not cleared on poll, so its snapshot stays readable until the next span is added.
+     */
+    public long lastPolledSpanOverhead() {
+        return this.accumulatedOverhead - this.spanOverheadSnapshots[this.spansCount];
     }
 
     @Override
     public String toString() {
         return "OutputData{"
-                + "method='" + method + '\''
-                + ", traceId='" + traceId + '\''
+                + "method='" + method() + '\''
+                + ", traceId='" + traceId() + '\''
                 + ", depth=" + depth
                 + ", methodElapsedTime=" + methodElapsedTime
                 + ", methodEnterTimestamp=" + methodEnterTimestamp
                 + ", thread=" + threadName + '\''
                 + ", timestamp=" + timestamp
+                + ", callsCount=" + callsCount
                 + '}';
     }
 
-    private Deque<String> takeSpans() {
+    private void fillStatistics(
+            final long callsCount,
+            final long minElapsedTime,
+            final long maxElapsedTime,
+            final long elapsedTimeP50,
+            final long elapsedTimeP90,
+            final long elapsedTimeP99
+    ) {
+        this.callsCount = callsCount;
+        this.minElapsedTime = minElapsedTime;
+        this.maxElapsedTime = maxElapsedTime;
+        this.elapsedTimeP50 = elapsedTimeP50;
+        this.elapsedTimeP90 = elapsedTimeP90;
+        this.elapsedTimeP99 = elapsedTimeP99;
+    }
+
+    private long[] takeSpans() {
         if (this.spans == null) {
-            this.spans = new ArrayDeque<>(DEFAULT_INITIAL_SPANS_SIZE);
-            this.spans.addLast(NO_SPAN);
+            this.spans = new long[DEFAULT_INITIAL_SPANS_SIZE];
+            this.spanOverheadSnapshots = new long[DEFAULT_INITIAL_SPANS_SIZE];
+            this.spans[this.spansCount++] = NO_SPAN;
         }
 
         return this.spans;
     }
 
-    private long[] takeSpanOverheads() {
-        return this.spanOverheads == null ? (this.spanOverheads = new long[DEFAULT_INITIAL_SPANS_SIZE]) : this.spanOverheads;
+    private static String toSpanLabel(final long span) {
+        return span == NO_SPAN ? NO_SPAN_LABEL : toHex(span);
     }
 }
@@ -2,7 +2,9 @@ package ru.joke.profiler.output.sinks.async;
 
 import ru.joke.profiler.output.sinks.OutputDataSink;
 import ru.joke.profiler.output.sinks.ProfilerOutputSinkException;
-import ru.joke.profiler.output.sinks.util.ConcurrentLinkedBlockingQueue;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetricsRegistry;
+import ru.joke.profiler.output.sinks.util.ring.BlockingMpscRingBuffer;
 import ru.joke.profiler.util.ProfilerThreadFactory;
 
 import java.util.ArrayList;
@@ -21,12 +23,17 @@ final class AsyncOutputDataSink<S, T> extends OutputDataSink<S> {
     private static final Logger logger = Logger.getLogger(AsyncOutputDataSink.class.getCanonicalName());
 
     private static final String FLUSHING_THREAD_NAME_PREFIX_TEMPLATE = "profiler-%s-flushing-thread-";
+    /*
+     * The ring is preallocated, so the unbounded queue is limited (4-8 MB of slots, see the configuration).
+     */
+    private static final int MAX_QUEUE_CAPACITY = 1 << 20;
 
     private final OutputDataSink<T> delegateSink;
     private final AsyncSinkDataFlushingConfiguration configuration;
-    private final ConcurrentLinkedBlockingQueue<Supplier<T>> queue;
+    private final BlockingMpscRingBuffer<Supplier<T>> queue;
     private final ScheduledExecutorService flushExecutor;
     private final Function<S, Supplier<T>> conversionFunc;
+    private final SinkMetrics metrics;
 
     AsyncOutputDataSink(
             final OutputDataSink<T> delegateSink,
@@ -36,13 +43,12 @@ final class AsyncOutputDataSink<S, T> extends OutputDataSink<S> {
     ) {
         this.delegateSink = checkNotNull(delegateSink, "delegateSink");
         this.configuration = checkNotNull(configuration, "configuration");
-        this.queue = new ConcurrentLinkedBlockingQueue<>(configuration.overflowLimit());
+        this.queue = createQueue(configuration, delegateSink);
         final String threadNamePrefix = String.format(FLUSHING_THREAD_NAME_PREFIX_TEMPLATE, sinkType);
-        this.flushExecutor = Executors.newScheduledThreadPool(
-                configuration.flushingThreadPoolSize(),
-                new ProfilerThreadFactory(threadNamePrefix, true)
-        );
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(new ProfilerThreadFactory(threadNamePrefix, true));
         this.conversionFunc = checkNotNull(conversionFunc, "conversionFunc");
+        this.metrics = SinkMetricsRegistry.getInstance().get(sinkType);
+        this.metrics.bindQueue(this.queue::size, this.queue.capacity());
     }
 
     @Override
@@ -60,22 +66,39 @@ final class AsyncOutputDataSink<S, T> extends OutputDataSink<S> {
         logger.info(String.format("Async sink wrapper for %s initialized with configuration: %s", this.delegateSink, this.configuration));
     }
 
+    /*
+     * Overflows are only counted here: they are reported once per interval by the sink metrics reporter.
+     */
     @Override
     public void write(final S outputData) {
         final Supplier<T> dataSupplier = this.conversionFunc.apply(outputData);
         final AsyncSinkDataFlushingConfiguration.OverflowPolicy overflowPolicy = this.configuration.overflowPolicy();
-        while (!this.queue.offer(dataSupplier)) {
-            switch (overflowPolicy) {
-                case SYNC:
-                    logger.severe("Async queue is full, data will be written sync");
-                    this.delegateSink.write(dataSupplier.get());
-                    return;
-                case DISCARD:
-                    logger.severe("Async queue is full, data will be discarded");
-                    return;
-                case ERROR:
-                    throw new ProfilerOutputSinkException(String.format("Unable to offer data to async queue: %s", outputData));
-            }
+        this.metrics.onOffer();
+        if (this.queue.offer(dataSupplier)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case SYNC:
+                this.metrics.onOverflowWrittenSync();
+                final long startTime = System.nanoTime();
+                this.delegateSink.write(dataSupplier.get());
+                this.metrics.onDelegateWrite(System.nanoTime() - startTime);
+                return;
+            case DISCARD:
+                this.metrics.onOverflowDiscarded();
+                return;
+            case ERROR:
+                this.metrics.onOverflowRejected();
+                throw new ProfilerOutputSinkException(String.format("Unable to offer data to async queue: %s", outputData));
+            case WAIT:
+                this.metrics.onOverflowWaited();
+                try {
+                    this.queue.offer(dataSupplier, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    this.metrics.onOverflowDiscarded();
+                }
         }
     }
 
@@ -92,22 +115,45 @@ final class AsyncOutputDataSink<S, T> extends OutputDataSink<S> {
         logger.info(String.format("Async sink wrapper for %s closed", this.delegateSink));
     }
 
-    private void flush() {
-        Supplier<T> data = this.queue.poll();
-        final List<T> dataItems = new ArrayList<>();
-        while (data != null) {
-            dataItems.add(data.get());
+    /*
+     * The queue has a single consumer, the flushing thread: the monitor only keeps the flush on close
+     * from overlapping the scheduled flush still running.
+     */
+    private synchronized void flush() {
+        final long startTime = System.nanoTime();
+        boolean flushed = false;
 
-            if (this.configuration.flushMaxBatchSize() == dataItems.size()) {
-                this.delegateSink.write(dataItems);
-                dataItems.clear();
-            }
+        final List<T> dataItems = new ArrayList<>();
+        final int maxBatchSize = Math.min(this.configuration.flushMaxBatchSize(), this.queue.capacity());
+        while (this.queue.drainTo(data -> dataItems.add(data.get()), maxBatchSize) > 0) {
+            writeBatch(dataItems);
+            flushed = true;
+        }
 
-            data = this.queue.poll();
+        if (flushed) {
+            this.metrics.onFlush(System.nanoTime() - startTime);
         }
+    }
 
-        if (!dataItems.isEmpty()) {
-            this.delegateSink.write(dataItems);
+    private void writeBatch(final List<T> dataItems) {
+        this.metrics.onBatchFlushed(dataItems.size());
+
+        final long startTime = System.nanoTime();
+        this.delegateSink.write(dataItems);
+        this.metrics.onDelegateWrite(System.nanoTime() - startTime);
+
+        dataItems.clear();
+    }
+
+    private static <T> BlockingMpscRingBuffer<T> createQueue(
+            final AsyncSinkDataFlushingConfiguration configuration,
+            final OutputDataSink<?> delegateSink
+    ) {
+        final int capacity = Math.min(configuration.overflowLimit(), MAX_QUEUE_CAPACITY);
+        if (capacity < configuration.overflowLimit()) {
+            logger.info(String.format("Async queue of sink %s will be limited by %d elements (preallocated)", delegateSink, capacity));
         }
+
+        return new BlockingMpscRingBuffer<>(capacity, configuration.queueWaitStrategy());
     }
 }
@@ -4,19 +4,24 @@ import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrappe
 import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
 import ru.joke.profiler.configuration.meta.ProfilerDefaultEnumProperty;
 import ru.joke.profiler.configuration.util.MillisTimePropertyParser;
+import ru.joke.profiler.output.sinks.util.ring.WaitStrategy;
 
 import static ru.joke.profiler.util.ArgUtil.checkNotNull;
 import static ru.joke.profiler.util.ArgUtil.checkPositive;
 
+/*
+ * The queue is a preallocated ring of overflow_limit slots (a reference per slot: 4 bytes with the compressed oops,
+ * 8 bytes otherwise); the unlimited queue (-1) is limited by 2^20 slots, i.e. 4-8 MB per sink.
+ */
 public final class AsyncSinkDataFlushingConfiguration {
 
     private static final String ASYNC_FLUSHING_CONFIGURATION = "async-flushing.";
 
     private static final String ASYNC_FLUSHING_ENABLED = "enabled";
     private static final String FLUSHING_INTERVAL = "flushing_interval";
-    private static final String FLUSHING_POOL_SIZE = "flushing_pool_size";
     private static final String FLUSHING_QUEUE_OVERFLOW_LIMIT = "flushing_queue_overflow_limit";
     private static final String FLUSHING_QUEUE_OVERFLOW_POLICY = "flushing_queue_overflow_policy";
+    private static final String FLUSHING_QUEUE_WAIT_STRATEGY = "flushing_queue_wait_strategy";
     private static final String FLUSHING_FORCE_ON_EXIT = "force_flush_on_exit";
     private static final String FLUSHING_MAX_BATCH_SIZE = "flushing_max_batch_size";
 
@@ -24,7 +29,7 @@ public final class AsyncSinkDataFlushingConfiguration {
     private final long flushIntervalMs;
     private final int overflowLimit;
     private final OverflowPolicy overflowPolicy;
-    private final int flushingThreadPoolSize;
+    private final WaitStrategy queueWaitStrategy;
     private final boolean forceFlushOnExit;
     private final int flushMaxBatchSize;
 
@@ -32,9 +37,9 @@ public final class AsyncSinkDataFlushingConfiguration {
     AsyncSinkDataFlushingConfiguration(
             @ProfilerConfigurationProperty(name = ASYNC_FLUSHING_ENABLED) final boolean asyncFlushingEnabled,
             @ProfilerConfigurationProperty(name = FLUSHING_INTERVAL, defaultValue = "10s", parser = MillisTimePropertyParser.class) final long flushIntervalMs,
-            @ProfilerConfigurationProperty(name = FLUSHING_POOL_SIZE, defaultValue = "2") final int flushingThreadPoolSize,
             @ProfilerConfigurationProperty(name = FLUSHING_QUEUE_OVERFLOW_LIMIT, defaultValue = "10000") final int overflowLimit,
             @ProfilerConfigurationProperty(name = FLUSHING_QUEUE_OVERFLOW_POLICY) final OverflowPolicy overflowPolicy,
+            @ProfilerConfigurationProperty(name = FLUSHING_QUEUE_WAIT_STRATEGY) final WaitStrategy queueWaitStrategy,
             @ProfilerConfigurationProperty(name = FLUSHING_FORCE_ON_EXIT) final boolean forceFlushOnExit,
             @ProfilerConfigurationProperty(name = FLUSHING_MAX_BATCH_SIZE, defaultValue = "-1") final int flushMaxBatchSize
     ) {
@@ -42,7 +47,7 @@ public final class AsyncSinkDataFlushingConfiguration {
         this.flushIntervalMs = checkPositive(flushIntervalMs, "flushIntervalMs");
         this.overflowLimit = overflowLimit == -1 ? Integer.MAX_VALUE : checkPositive(overflowLimit, "overflowLimit");
         this.overflowPolicy = checkNotNull(overflowPolicy, "overflowPolicy");
-        this.flushingThreadPoolSize = checkPositive(flushingThreadPoolSize, "flushingThreadPoolSize");
+        this.queueWaitStrategy = checkNotNull(queueWaitStrategy, "queueWaitStrategy");
         this.forceFlushOnExit = forceFlushOnExit;
         this.flushMaxBatchSize = flushMaxBatchSize == -1 ? Integer.MAX_VALUE : checkPositive(flushMaxBatchSize, "flushMaxBatchSize");
     }
@@ -63,8 +68,8 @@ public final class AsyncSinkDataFlushingConfiguration {
         return overflowPolicy;
     }
 
-    int flushingThreadPoolSize() {
-        return flushingThreadPoolSize;
+    WaitStrategy queueWaitStrategy() {
+        return queueWaitStrategy;
     }
 
     boolean forceFlushOnExit() {
@@ -82,7 +87,7 @@ public final class AsyncSinkDataFlushingConfiguration {
                 + ", flushIntervalMs=" + flushIntervalMs
                 + ", overflowLimit=" + overflowLimit
                 + ", overflowPolicy=" + overflowPolicy
-                + ", flushingThreadPoolSize=" + flushingThreadPoolSize
+                + ", queueWaitStrategy=" + queueWaitStrategy
                 + ", forceFlushOnExit=" + forceFlushOnExit
                 + ", flushMaxBatchSize=" + flushMaxBatchSize
                 + '}';
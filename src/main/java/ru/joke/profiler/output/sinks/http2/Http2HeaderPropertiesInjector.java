@@ -46,6 +46,16 @@ final class Http2HeaderPropertiesInjector extends OutputPropertiesInjector<Heade
         return addHeader(template, property, methodElapsedTime, propertyIndex);
     }
 
+    @Override
+    protected Header[] injectStatistic(
+            final Header[] template,
+            final long value,
+            final String property,
+            final int propertyIndex
+    ) {
+        return addHeader(template, property, value, propertyIndex);
+    }
+
     @Override
     protected Header[] injectTraceId(
             final Header[] template,
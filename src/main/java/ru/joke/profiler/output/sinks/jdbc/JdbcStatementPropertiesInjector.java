@@ -45,6 +45,16 @@ final class JdbcStatementPropertiesInjector extends OutputPropertiesInjector<Pre
         return injectLongParam(template, propertyIndex, methodElapsedTime);
     }
 
+    @Override
+    protected PreparedStatement injectStatistic(
+            final PreparedStatement template,
+            final long value,
+            final String property,
+            int propertyIndex
+    ) {
+        return injectLongParam(template, propertyIndex, value);
+    }
+
     @Override
     protected PreparedStatement injectTraceId(
             final PreparedStatement template,
@@ -5,6 +5,7 @@ import ru.joke.profiler.output.sinks.OutputDataSink;
 import ru.joke.profiler.output.sinks.async.AsyncOutputDataSinkHandleSupport;
 import ru.joke.profiler.output.sinks.util.NoProfilingOutputDataSinkWrapper;
 import ru.joke.profiler.output.sinks.util.injectors.OutputPropertiesInjector;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetricsRegistry;
 import ru.joke.profiler.output.sinks.util.pool.ConnectionFactory;
 import ru.joke.profiler.output.sinks.util.pool.ConnectionPool;
 import ru.joke.profiler.output.sinks.util.pool.ConnectionPoolFactory;
@@ -46,7 +47,10 @@ public final class OutputDataJdbcSinkHandle extends AsyncOutputDataSinkHandleSup
             final Map<String, Object> context
     ) {
         final ConnectionFactory<JdbcConnectionWrapper> connectionFactory = new JdbcConnectionFactory(configuration.connectionFactoryConfiguration());
-        final ConnectionPoolFactory<JdbcConnectionWrapper> poolFactory = new ConnectionPoolFactory<>(connectionFactory);
+        final ConnectionPoolFactory<JdbcConnectionWrapper> poolFactory = new ConnectionPoolFactory<>(
+                connectionFactory,
+                SinkMetricsRegistry.getInstance().get(SINK_TYPE)
+        );
 
         final ConnectionPool<JdbcConnectionWrapper> pool = poolFactory.create(configuration.connectionPoolConfiguration());
 
@@ -7,6 +7,7 @@ import jakarta.jms.JMSRuntimeException;
 import ru.joke.profiler.output.sinks.OutputData;
 import ru.joke.profiler.output.sinks.ProfilerOutputSinkException;
 import ru.joke.profiler.output.sinks.util.injectors.OutputPropertiesInjector;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
 import ru.joke.profiler.output.sinks.util.pool.ConnectionPool;
 import ru.joke.profiler.output.sinks.util.pool.ConnectionPoolFactory;
 import ru.joke.profiler.output.sinks.util.recovery.ConnectionRecoveryConfiguration;
@@ -40,6 +41,7 @@ final class JmsMessageChannel implements AutoCloseable {
     private final OutputPropertiesInjector<StringBuilder> outputMessageBodyBuilder;
     private final OutputPropertiesInjector<JMSProducer> producerPropertiesInjector;
     private final Destination outputEndpoint;
+    private final SinkMetrics metrics;
 
     private final AtomicBoolean inRecoveryState = new AtomicBoolean(false);
 
@@ -50,13 +52,15 @@ final class JmsMessageChannel implements AutoCloseable {
             final JmsSinkConfiguration configuration,
             final ConnectionPoolFactory<JmsContextWrapper> connectionPoolFactory,
             final OutputPropertiesInjector<StringBuilder> outputMessageBodyBuilder,
-            final OutputPropertiesInjector<JMSProducer> producerPropertiesInjector
+            final OutputPropertiesInjector<JMSProducer> producerPropertiesInjector,
+            final SinkMetrics metrics
     ) {
         this.configuration = checkNotNull(configuration, "configuration");
         this.connectionPool = checkNotNull(connectionPoolFactory, "connectionPoolFactory").create(configuration.connectionPoolConfiguration());
         this.outputMessageBodyBuilder = checkNotNull(outputMessageBodyBuilder, "outputMessageBodyBuilder");
         this.producerPropertiesInjector = checkNotNull(producerPropertiesInjector, "producerPropertiesInjector");
         this.outputEndpoint = lookup(configuration.outputDestinationConfiguration().destinationJndiName());
+        this.metrics = checkNotNull(metrics, "metrics");
         this.recoveryExecutor = Executors.newSingleThreadExecutor(new ProfilerThreadFactory(RECOVERY_THREAD_NAME, false));
     }
     
@@ -124,6 +128,7 @@ final class JmsMessageChannel implements AutoCloseable {
 
         StringBuilder builder = new StringBuilder();
         for (int i = 0; i < data.size(); i++) {
+            builder.setLength(0);
             builder = this.outputMessageBodyBuilder.inject(builder, data.get(i));
             result[i] = builder.toString().getBytes(StandardCharsets.UTF_8);
         }
@@ -236,7 +241,8 @@ final class JmsMessageChannel implements AutoCloseable {
                         }
                     },
                     this.configuration.recoveryConfiguration().maxRetryRecoveryIntervalMs(),
-                    this.configuration.recoveryConfiguration().recoveryTimeoutMs()
+                    this.configuration.recoveryConfiguration().recoveryTimeoutMs(),
+                    this.metrics
             );
 
             recoveryProcessor.recover(ex);
@@ -45,6 +45,16 @@ final class JmsProducerPropertiesInjector extends OutputPropertiesInjector<JMSPr
         return addLongProperty(template, property, methodElapsedTime);
     }
 
+    @Override
+    protected JMSProducer injectStatistic(
+            final JMSProducer template,
+            final long value,
+            final String property,
+            final int propertyIndex
+    ) {
+        return addLongProperty(template, property, value);
+    }
+
     @Override
     protected JMSProducer injectTraceId(
             final JMSProducer template,
@@ -5,6 +5,8 @@ import ru.joke.profiler.output.sinks.OutputDataSink;
 import ru.joke.profiler.output.sinks.async.AsyncOutputDataSinkHandleSupport;
 import ru.joke.profiler.output.sinks.util.NoProfilingOutputDataSinkWrapper;
 import ru.joke.profiler.output.sinks.util.injectors.JsonObjectPropertiesInjector;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetricsRegistry;
 import ru.joke.profiler.output.sinks.util.pool.ConnectionFactory;
 import ru.joke.profiler.output.sinks.util.pool.ConnectionPoolFactory;
 
@@ -63,13 +65,15 @@ public final class OutputDataJmsSinkHandle extends AsyncOutputDataSinkHandleSupp
         final JmsProducerPropertiesInjector producerPropertiesInjector = new JmsProducerPropertiesInjector(messageConfiguration.messagePropertiesMapping());
 
         final ConnectionFactory<JmsContextWrapper> connectionFactory = new JmsConnectionFactory(configuration.outputDestinationConfiguration());
-        final ConnectionPoolFactory<JmsContextWrapper> connectionPoolFactory = new ConnectionPoolFactory<>(connectionFactory);
+        final SinkMetrics metrics = SinkMetricsRegistry.getInstance().get(SINK_TYPE);
+        final ConnectionPoolFactory<JmsContextWrapper> connectionPoolFactory = new ConnectionPoolFactory<>(connectionFactory, metrics);
 
         return new JmsMessageChannel(
                 configuration,
                 connectionPoolFactory,
                 bodyInjector,
-                producerPropertiesInjector
+                producerPropertiesInjector,
+                metrics
         );
     }
 
@@ -47,6 +47,16 @@ final class KafkaHeaderPropertiesInjector extends OutputPropertiesInjector<Heade
         return addLongHeader(template, property, methodElapsedTime);
     }
 
+    @Override
+    protected Headers injectStatistic(
+            final Headers template,
+            final long value,
+            final String property,
+            final int propertyIndex
+    ) {
+        return addLongHeader(template, property, value);
+    }
+
     @Override
     protected Headers injectTraceId(
             final Headers template,
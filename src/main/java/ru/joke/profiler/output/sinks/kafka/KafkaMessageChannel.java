@@ -7,6 +7,7 @@ import org.apache.kafka.common.errors.RetriableException;
 import ru.joke.profiler.output.sinks.OutputData;
 import ru.joke.profiler.output.sinks.ProfilerOutputSinkException;
 import ru.joke.profiler.output.sinks.util.recovery.ConnectionRecoveryConfiguration;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
 import ru.joke.profiler.output.sinks.util.recovery.RecoveryProcessor;
 import ru.joke.profiler.util.ProfilerThreadFactory;
 
@@ -32,6 +33,7 @@ final class KafkaMessageChannel implements AutoCloseable {
     private final KafkaSinkConfiguration configuration;
     private final KafkaMessageFactory messageFactory;
     private final KafkaClusterValidator clusterValidator;
+    private final SinkMetrics metrics;
 
     private final AtomicBoolean inRecoveryState = new AtomicBoolean(false);
 
@@ -43,12 +45,14 @@ final class KafkaMessageChannel implements AutoCloseable {
             final KafkaSinkConfiguration configuration,
             final KafkaProducerSessionFactory producerSessionFactory,
             final KafkaMessageFactory messageFactory,
-            final KafkaClusterValidator clusterValidator
+            final KafkaClusterValidator clusterValidator,
+            final SinkMetrics metrics
     ) {
         this.producerSessionFactory = checkNotNull(producerSessionFactory, "producerSessionFactory");
         this.clusterValidator = checkNotNull(clusterValidator, "clusterValidator");
         this.configuration = checkNotNull(configuration, "configuration");
         this.messageFactory = checkNotNull(messageFactory, "messageFactory");
+        this.metrics = checkNotNull(metrics, "metrics");
         this.producerSession = checkNotNull(producerSessionFactory, "producerSessionFactory").create(configuration.producerConfiguration());
         this.recoveryExecutor = Executors.newSingleThreadExecutor(new ProfilerThreadFactory(RECOVERY_THREAD_NAME, false));
     }
@@ -200,7 +204,8 @@ final class KafkaMessageChannel implements AutoCloseable {
                         this.producerSession = this.producerSessionFactory.create(this.configuration.producerConfiguration());
                     },
                     this.configuration.recoveryConfiguration().maxRetryRecoveryIntervalMs(),
-                    this.configuration.recoveryConfiguration().recoveryTimeoutMs()
+                    this.configuration.recoveryConfiguration().recoveryTimeoutMs(),
+                    this.metrics
             );
 
             recoveryProcessor.recover(ex);
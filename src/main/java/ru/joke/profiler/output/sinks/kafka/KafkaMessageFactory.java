@@ -31,7 +31,7 @@ final class KafkaMessageFactory {
         return new ProducerRecord<>(
                 this.configuration.outputQueue(),
                 null,
-                data.traceId(),
+                data.hasTraceId() ? data.traceId() : data.method(),
                 bytesBody,
                 headers
         );
@@ -1,6 +1,5 @@
 package ru.joke.profiler.output.sinks.kafka;
 
-import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 
 import java.io.Closeable;
@@ -17,7 +16,7 @@ final class KafkaProducerSession implements Closeable {
 
     KafkaProducerSession(
             final KafkaSinkConfiguration.ProducerConfiguration configuration,
-            final KafkaProducer<String, byte[]> producer
+            final Producer<String, byte[]> producer
     ) {
         this.producer = producer;
         this.configuration = configuration;
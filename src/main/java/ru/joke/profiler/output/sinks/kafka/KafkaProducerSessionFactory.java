@@ -1,12 +1,16 @@
 package ru.joke.profiler.output.sinks.kafka;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
 
 final class KafkaProducerSessionFactory {
 
@@ -22,13 +26,19 @@ final class KafkaProducerSessionFactory {
     private static final String DEFAULT_ENABLE_IDEMPOTENCE = "false";
     private static final String DEFAULT_CLIENT_ID = "joke-profiler";
 
+    private final Function<Map<String, Object>, Producer<String, byte[]>> producerFactory;
+
+    KafkaProducerSessionFactory() {
+        this(properties -> new KafkaProducer<>(properties, new StringSerializer(), new ByteArraySerializer()));
+    }
+
+    KafkaProducerSessionFactory(final Function<Map<String, Object>, Producer<String, byte[]>> producerFactory) {
+        this.producerFactory = checkNotNull(producerFactory, "producerFactory");
+    }
+
     KafkaProducerSession create(final KafkaSinkConfiguration.ProducerConfiguration configuration) {
         final Map<String, Object> properties = composePropertiesMap(configuration);
-        final KafkaProducer<String, byte[]> session = new KafkaProducer<>(
-                properties,
-                new StringSerializer(),
-                new ByteArraySerializer()
-        );
+        final Producer<String, byte[]> session = this.producerFactory.apply(properties);
 
         return new KafkaProducerSession(configuration, session);
     }
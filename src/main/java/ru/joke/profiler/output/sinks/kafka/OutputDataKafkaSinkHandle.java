@@ -1,10 +1,12 @@
 package ru.joke.profiler.output.sinks.kafka;
 
+import org.apache.kafka.clients.producer.Producer;
 import ru.joke.profiler.output.sinks.OutputData;
 import ru.joke.profiler.output.sinks.OutputDataSink;
 import ru.joke.profiler.output.sinks.async.AsyncOutputDataSinkHandleSupport;
 import ru.joke.profiler.output.sinks.util.NoProfilingOutputDataSinkWrapper;
 import ru.joke.profiler.output.sinks.util.injectors.JsonObjectPropertiesInjector;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetricsRegistry;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
@@ -15,6 +17,20 @@ public final class OutputDataKafkaSinkHandle extends AsyncOutputDataSinkHandleSu
 
     public static final String SINK_TYPE = "kafka";
 
+    private final KafkaProducerSessionFactory producerSessionFactory;
+
+    public OutputDataKafkaSinkHandle() {
+        this.producerSessionFactory = new KafkaProducerSessionFactory();
+    }
+
+    /*
+     * Producers are created by the given factory instead of the Kafka client, e.g. the local stand-ins
+     * of the cluster for the benchmarks; the factory accepts the final producer properties.
+     */
+    public OutputDataKafkaSinkHandle(final Function<Map<String, Object>, Producer<String, byte[]>> producerFactory) {
+        this.producerSessionFactory = new KafkaProducerSessionFactory(producerFactory);
+    }
+
     @Override
     public String type() {
         return SINK_TYPE;
@@ -60,7 +76,6 @@ public final class OutputDataKafkaSinkHandle extends AsyncOutputDataSinkHandleSu
         final KafkaSinkConfiguration.OutputRecordConfiguration recordConfiguration = configuration.outputRecordConfiguration();
         final JsonObjectPropertiesInjector injector = new JsonObjectPropertiesInjector(recordConfiguration.propertiesMapping());
 
-        final KafkaProducerSessionFactory producerSessionFactory = new KafkaProducerSessionFactory();
         final Function<OutputData, byte[]> bodyConversionFunc = o -> injector.inject(new StringBuilder(), o).toString().getBytes(StandardCharsets.UTF_8);
         final KafkaHeaderPropertiesInjector headerPropertiesInjector = new KafkaHeaderPropertiesInjector(recordConfiguration.headersMapping());
         final KafkaMessageFactory messageFactory = new KafkaMessageFactory(
@@ -73,9 +88,10 @@ public final class OutputDataKafkaSinkHandle extends AsyncOutputDataSinkHandleSu
 
         return new KafkaMessageChannel(
                 configuration,
-                producerSessionFactory,
+                this.producerSessionFactory,
                 messageFactory,
-                clusterValidator
+                clusterValidator,
+                SinkMetricsRegistry.getInstance().get(SINK_TYPE)
         );
     }
 
@@ -0,0 +1,251 @@
+package ru.joke.profiler.output.sinks.util;
+
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.OutputDataSink;
+import ru.joke.profiler.transformation.ProfilingTransformer;
+import ru.joke.profiler.util.ProfilerThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.logging.Level;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+/*
+ * Creates and initializes the delegate sink in background, so the agent startup doesn't wait for the remote
+ * systems (clusters validation, connection pools, tables creation). Until the delegate is ready, the records are
+ * copied into the bounded ring overwriting the oldest ones; the ring is drained into the delegate once it's ready.
+ * If the delegate can't be initialized, all the records are discarded.
+ * The ring is lock-free: a writer takes the sequence and replaces the slot by CAS unless a newer record is already
+ * stored there. The delegate is published before the ring is drained and the drain waits for the writers which
+ * haven't seen it yet, so the buffered records are written to the delegate without blocking the writers
+ * (the records written directly to the delegate may outrun the buffered ones).
+ */
+public final class DeferredInitOutputDataSink extends OutputDataSink<OutputData> {
+
+    private static final String INIT_THREAD_NAME = "profiler-sinks-initialization-thread";
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DeferredInitOutputDataSink, OutputDataSink> delegateUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(DeferredInitOutputDataSink.class, OutputDataSink.class, "delegate");
+
+    private final Callable<OutputDataSink<OutputData>> sinkFactory;
+    private final Runnable readyCallback;
+    private final Runnable failureCallback;
+    private final ExecutorService initExecutor;
+    private final AtomicReferenceArray<BufferedRecord> preInitBuffer;
+    private final AtomicLong preInitBufferSequence;
+    private final AtomicInteger bufferingWriters;
+
+    private volatile OutputDataSink<OutputData> delegate;
+
+    public DeferredInitOutputDataSink(
+            final Callable<OutputDataSink<OutputData>> sinkFactory,
+            final int preInitBufferSize,
+            final Runnable readyCallback,
+            final Runnable failureCallback
+    ) {
+        this.sinkFactory = checkNotNull(sinkFactory, "sinkFactory");
+        this.preInitBuffer = new AtomicReferenceArray<>(checkPositive(preInitBufferSize, "preInitBufferSize"));
+        this.preInitBufferSequence = new AtomicLong();
+        this.bufferingWriters = new AtomicInteger();
+        this.readyCallback = checkNotNull(readyCallback, "readyCallback");
+        this.failureCallback = checkNotNull(failureCallback, "failureCallback");
+        this.initExecutor = Executors.newSingleThreadExecutor(new ProfilerThreadFactory(INIT_THREAD_NAME, true));
+    }
+
+    @Override
+    public void init() {
+        this.initExecutor.execute(this::initDelegate);
+        this.initExecutor.shutdown();
+
+        logger.info("Sinks will be initialized in background");
+    }
+
+    @Override
+    public void write(final OutputData dataItem) {
+        OutputDataSink<OutputData> delegate = this.delegate;
+        if (delegate == null) {
+            this.bufferingWriters.incrementAndGet();
+            try {
+                if ((delegate = this.delegate) == null) {
+                    buffer(dataItem);
+                    return;
+                }
+            } finally {
+                this.bufferingWriters.decrementAndGet();
+            }
+        }
+
+        delegate.write(dataItem);
+    }
+
+    @Override
+    public void write(final List<OutputData> dataItems) {
+        OutputDataSink<OutputData> delegate = this.delegate;
+        if (delegate == null) {
+            this.bufferingWriters.incrementAndGet();
+            try {
+                if ((delegate = this.delegate) == null) {
+                    dataItems.forEach(this::buffer);
+                    return;
+                }
+            } finally {
+                this.bufferingWriters.decrementAndGet();
+            }
+        }
+
+        delegate.write(dataItems);
+    }
+
+    @Override
+    public void close() {
+        final OutputDataSink<OutputData> discardingSink = new DiscardingOutputDataSink();
+        if (delegateUpdater.compareAndSet(this, null, discardingSink)) {
+            logger.warning(String.format("Sinks aren't initialized before closing, %d buffered records are lost", takeBufferedRecords().size()));
+        }
+
+        this.initExecutor.shutdownNow();
+        this.delegate.close();
+    }
+
+    private void initDelegate() {
+        ProfilingTransformer.disable();
+
+        final long startTime = System.currentTimeMillis();
+        OutputDataSink<OutputData> sink = null;
+        try {
+            sink = this.sinkFactory.call();
+            sink.init();
+        } catch (Exception ex) {
+            logger.log(Level.SEVERE, "Unable to initialize sinks, profiling will be disabled", ex);
+            if (sink != null) {
+                closeQuietly(sink);
+            }
+
+            if (delegateUpdater.compareAndSet(this, null, new DiscardingOutputDataSink())) {
+                takeBufferedRecords();
+            }
+
+            this.failureCallback.run();
+            return;
+        }
+
+        if (!delegateUpdater.compareAndSet(this, null, sink)) {
+            // closed before the sinks are initialized
+            closeQuietly(sink);
+            return;
+        }
+
+        final long bufferedRecordsCount = this.preInitBufferSequence.get();
+        final List<OutputData> bufferedRecords = takeBufferedRecords();
+        writeBufferedRecords(sink, bufferedRecords);
+
+        logger.info(
+                String.format(
+                        "Sinks initialized in background in %d ms, records overwritten in the pre-init buffer: %d",
+                        System.currentTimeMillis() - startTime,
+                        bufferedRecordsCount - bufferedRecords.size()
+                )
+        );
+        this.readyCallback.run();
+    }
+
+    private void buffer(final OutputData dataItem) {
+        final OutputData data = new OutputData();
+        data.fill(dataItem);
+
+        final long sequence = this.preInitBufferSequence.getAndIncrement();
+        final BufferedRecord record = new BufferedRecord(sequence, data);
+        final int index = (int) (sequence % this.preInitBuffer.length());
+        BufferedRecord current;
+        do {
+            current = this.preInitBuffer.get(index);
+            if (current != null && current.sequence > sequence) {
+                // overwritten by a newer record while this one was copied
+                return;
+            }
+        } while (!this.preInitBuffer.compareAndSet(index, current, record));
+    }
+
+    /*
+     * Called once the delegate is published: waits for the writers which may still store the records into the ring.
+     */
+    private List<OutputData> takeBufferedRecords() {
+        while (this.bufferingWriters.get() > 0) {
+            Thread.yield();
+        }
+
+        final int capacity = this.preInitBuffer.length();
+        final long sequence = this.preInitBufferSequence.get();
+        final int count = (int) Math.min(sequence, capacity);
+        final List<OutputData> result = new ArrayList<>(count);
+        for (long i = sequence - count; i < sequence; i++) {
+            final BufferedRecord record = this.preInitBuffer.getAndSet((int) (i % capacity), null);
+            if (record != null) {
+                result.add(record.data);
+            }
+        }
+
+        return result;
+    }
+
+    private void writeBufferedRecords(final OutputDataSink<OutputData> sink, final List<OutputData> bufferedRecords) {
+        if (bufferedRecords.isEmpty()) {
+            return;
+        }
+
+        try {
+            sink.write(bufferedRecords);
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Unable to write records buffered before sinks initialization", ex);
+        }
+    }
+
+    private void closeQuietly(final OutputDataSink<OutputData> sink) {
+        try {
+            sink.close();
+        } catch (RuntimeException ex) {
+            logger.log(Level.FINE, "Unable to close sink", ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeferredInitOutputDataSink{" + "delegate=" + delegate + '}';
+    }
+
+    private static final class BufferedRecord {
+
+        private final long sequence;
+        private final OutputData data;
+
+        private BufferedRecord(final long sequence, final OutputData data) {
+            this.sequence = sequence;
+            this.data = data;
+        }
+    }
+
+    private static class DiscardingOutputDataSink extends OutputDataSink<OutputData> {
+
+        @Override
+        public void write(final OutputData dataItem) {
+        }
+
+        @Override
+        public void write(final List<OutputData> dataItems) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -64,6 +64,18 @@ public final class JsonObjectPropertiesInjector extends OutputPropertiesInjector
         return template;
     }
 
+    @Override
+    protected StringBuilder injectStatistic(
+            final StringBuilder template,
+            final long value,
+            final String property,
+            final int propertyIndex
+    ) {
+        appendFieldName(template, property);
+        appendLongValue(template, value);
+        return template;
+    }
+
     @Override
     protected StringBuilder injectTraceId(
             final StringBuilder template,
@@ -20,6 +20,13 @@ public abstract class OutputPropertiesInjector<T> {
     public static final String SPAN_ID_PROPERTY = "span_id";
     public static final String PARENT_SPAN_ID_PROPERTY = "parent_span_id";
 
+    public static final String CALLS_COUNT_PROPERTY = "calls";
+    public static final String MIN_ELAPSED_TIME_PROPERTY = "elapsed_min";
+    public static final String MAX_ELAPSED_TIME_PROPERTY = "elapsed_max";
+    public static final String ELAPSED_TIME_P50_PROPERTY = "elapsed_p50";
+    public static final String ELAPSED_TIME_P90_PROPERTY = "elapsed_p90";
+    public static final String ELAPSED_TIME_P99_PROPERTY = "elapsed_p99";
+
     public static final String SOURCE_PROPERTY = "source";
     public static final String HOST_PROPERTY = "host";
     public static final String IP_PROPERTY = "ip";
@@ -82,6 +89,16 @@ public abstract class OutputPropertiesInjector<T> {
             final int propertyIndex
     );
 
+    /*
+     * Statistics are filled only in the summary records of aggregation mode.
+     */
+    protected abstract T injectStatistic(
+            final T template,
+            final long value,
+            final String property,
+            final int propertyIndex
+    );
+
     protected abstract T injectTraceId(
             final T template,
             final String traceId,
@@ -166,6 +183,18 @@ public abstract class OutputPropertiesInjector<T> {
                 return injectMethodEnterTimestamp(template, data.methodEnterTimestamp(), property, index);
             case METHOD_ELAPSED_TIME_PROPERTY:
                 return injectMethodElapsedTime(template, data.methodElapsedTime(), property, index);
+            case CALLS_COUNT_PROPERTY:
+                return injectStatistic(template, data.callsCount(), property, index);
+            case MIN_ELAPSED_TIME_PROPERTY:
+                return injectStatistic(template, data.minElapsedTime(), property, index);
+            case MAX_ELAPSED_TIME_PROPERTY:
+                return injectStatistic(template, data.maxElapsedTime(), property, index);
+            case ELAPSED_TIME_P50_PROPERTY:
+                return injectStatistic(template, data.elapsedTimeP50(), property, index);
+            case ELAPSED_TIME_P90_PROPERTY:
+                return injectStatistic(template, data.elapsedTimeP90(), property, index);
+            case ELAPSED_TIME_P99_PROPERTY:
+                return injectStatistic(template, data.elapsedTimeP99(), property, index);
             case TRACE_ID_PROPERTY:
                 return injectTraceId(template, data.traceId(), property, index);
             case DEPTH_PROPERTY:
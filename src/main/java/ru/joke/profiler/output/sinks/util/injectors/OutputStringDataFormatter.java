@@ -5,12 +5,15 @@ import ru.joke.profiler.output.sinks.OutputData;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class OutputStringDataFormatter extends OutputPropertiesInjector<String> {
 
@@ -24,6 +27,8 @@ public final class OutputStringDataFormatter extends OutputPropertiesInjector<St
     private final TimeUnit enterTimestampUnit;
     private final TimeUnit elapsedTimeUnit;
     private final String outputDataPattern;
+    private final Map<String, TimeUnit> elapsedTimeStatisticsUnits;
+    private final boolean statisticsRequired;
 
     public OutputStringDataFormatter(final String outputDataPattern) {
         super(collectRuntimeInjectedProperties(outputDataPattern));
@@ -32,25 +37,27 @@ public final class OutputStringDataFormatter extends OutputPropertiesInjector<St
         this.currentTimestampFormatter = currentTimestampFormat == null ? null : DateTimeFormatter.ofPattern(currentTimestampFormat);
         this.enterTimestampUnit = extractEnterTimestampUnit(patternBuilder);
         this.elapsedTimeUnit = extractElapsedTimeUnit(patternBuilder);
+        this.elapsedTimeStatisticsUnits = extractElapsedTimeStatisticsUnits(patternBuilder, this.elapsedTimeUnit);
         this.outputDataPattern = injectPredefinedProperties(patternBuilder).toString();
+        this.statisticsRequired = Stream.of(
+                CALLS_COUNT_PROPERTY,
+                MIN_ELAPSED_TIME_PROPERTY,
+                MAX_ELAPSED_TIME_PROPERTY,
+                ELAPSED_TIME_P50_PROPERTY,
+                ELAPSED_TIME_P90_PROPERTY,
+                ELAPSED_TIME_P99_PROPERTY
+        ).anyMatch(p -> this.outputDataPattern.contains(PROPERTY_START + p + PROPERTY_END));
     }
 
     public Supplier<String> formatLater(final OutputData outputData) {
-        final String method = outputData.method();
-        final long elapsedTime = outputData.methodElapsedTime();
-        final long methodEnterTimestamp = outputData.methodEnterTimestamp();
-        final String traceId = outputData.traceId();
-        final int depth = outputData.depth();
-        final String threadName = outputData.thread();
-        final LocalDateTime timestamp = outputData.timestamp();
-        final String spanId = outputData.spanId();
-        final String parentSpanId = outputData.parentSpanId();
-
-        return () -> format(traceId, depth, method, methodEnterTimestamp, elapsedTime, threadName, timestamp, spanId, parentSpanId);
+        final OutputData data = new OutputData();
+        data.fill(outputData);
+
+        return () -> format(data);
     }
 
     public String format(final OutputData outputData) {
-        return format(
+        final String result = format(
                 outputData.traceId(),
                 outputData.depth(),
                 outputData.method(),
@@ -61,6 +68,8 @@ public final class OutputStringDataFormatter extends OutputPropertiesInjector<St
                 outputData.spanId(),
                 outputData.parentSpanId()
         );
+
+        return this.statisticsRequired ? formatStatistics(result, outputData) : result;
     }
 
     @Override
@@ -93,6 +102,16 @@ public final class OutputStringDataFormatter extends OutputPropertiesInjector<St
         return injectProperty(template, property, String.valueOf(methodElapsedTime));
     }
 
+    @Override
+    protected String injectStatistic(
+            final String template,
+            final long value,
+            final String property,
+            final int propertyIndex
+    ) {
+        return injectProperty(template, property, String.valueOf(value));
+    }
+
     @Override
     protected String injectTraceId(
             final String template,
@@ -221,6 +240,24 @@ public final class OutputStringDataFormatter extends OutputPropertiesInjector<St
         return result;
     }
 
+    private String formatStatistics(final String template, final OutputData outputData) {
+        String result = injectProperty(template, CALLS_COUNT_PROPERTY, String.valueOf(outputData.callsCount()));
+        result = injectElapsedTimeStatistic(result, MIN_ELAPSED_TIME_PROPERTY, outputData.minElapsedTime());
+        result = injectElapsedTimeStatistic(result, MAX_ELAPSED_TIME_PROPERTY, outputData.maxElapsedTime());
+        result = injectElapsedTimeStatistic(result, ELAPSED_TIME_P50_PROPERTY, outputData.elapsedTimeP50());
+        result = injectElapsedTimeStatistic(result, ELAPSED_TIME_P90_PROPERTY, outputData.elapsedTimeP90());
+        return injectElapsedTimeStatistic(result, ELAPSED_TIME_P99_PROPERTY, outputData.elapsedTimeP99());
+    }
+
+    private String injectElapsedTimeStatistic(
+            final String template,
+            final String property,
+            final long value
+    ) {
+        final TimeUnit unit = this.elapsedTimeStatisticsUnits.get(property);
+        return injectProperty(template, property, String.valueOf(unit.convert(value, TimeUnit.NANOSECONDS)));
+    }
+
     private String injectProperty(
             final String target,
             final String property,
@@ -239,13 +276,33 @@ public final class OutputStringDataFormatter extends OutputPropertiesInjector<St
         return ProfilingTimeUnit.parse(result, ProfilingTimeUnit.NANOSECONDS).toJavaTimeUnit();
     }
 
+    private Map<String, TimeUnit> extractElapsedTimeStatisticsUnits(
+            final StringBuilder pattern,
+            final TimeUnit defaultUnit
+    ) {
+        final Map<String, TimeUnit> result = new HashMap<>();
+        Stream.of(
+                MIN_ELAPSED_TIME_PROPERTY,
+                MAX_ELAPSED_TIME_PROPERTY,
+                ELAPSED_TIME_P50_PROPERTY,
+                ELAPSED_TIME_P90_PROPERTY,
+                ELAPSED_TIME_P99_PROPERTY
+        ).forEach(property -> {
+            final String format = extractPropertyFormat(pattern, property);
+            final ProfilingTimeUnit unit = ProfilingTimeUnit.parse(format, null);
+            result.put(property, unit == null ? defaultUnit : unit.toJavaTimeUnit());
+        });
+
+        return result;
+    }
+
     private String extractTimestampFormat(final StringBuilder pattern) {
         final String result = extractPropertyFormat(pattern, CURRENT_TS_PROPERTY);
         return result != null && result.isEmpty() ? DEFAULT_TIMESTAMP_FORMAT : result;
     }
 
     private String extractPropertyFormat(final StringBuilder pattern, final String propertyName) {
-        final int propertyStartIndex = pattern.indexOf(PROPERTY_START + propertyName);
+        final int propertyStartIndex = findPropertyStartIndex(pattern, propertyName);
         if (propertyStartIndex == -1) {
             return null;
         }
@@ -258,6 +315,25 @@ public final class OutputStringDataFormatter extends OutputPropertiesInjector<St
         return !result.isEmpty() && result.charAt(0) == FORMAT_DELIMITER ? result.substring(1) : result;
     }
 
+    /*
+     * Property name could be a prefix of another one (elapsed and elapsed_min), so the name must be followed by the format or the end of the property.
+     */
+    private int findPropertyStartIndex(final StringBuilder pattern, final String propertyName) {
+        final String property = PROPERTY_START + propertyName;
+        int propertyStartIndex = pattern.indexOf(property);
+        while (propertyStartIndex != -1) {
+            final int nextCharIndex = propertyStartIndex + property.length();
+            if (nextCharIndex < pattern.length()
+                    && (pattern.charAt(nextCharIndex) == FORMAT_DELIMITER || pattern.indexOf(PROPERTY_END, nextCharIndex) == nextCharIndex)) {
+                return propertyStartIndex;
+            }
+
+            propertyStartIndex = pattern.indexOf(property, nextCharIndex);
+        }
+
+        return -1;
+    }
+
     private StringBuilder injectPredefinedProperties(final StringBuilder pattern) {
         int startPropertyIndex = pattern.indexOf(PROPERTY_START);
         while (startPropertyIndex >= 0) {
@@ -0,0 +1,74 @@
+package ru.joke.profiler.output.sinks.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Concurrent histogram with power of two buckets: bucket i counts values below 2^i (and not below 2^(i-1)),
+ * the last bucket counts the rest. Precision is enough for the telemetry and recording is just a striped increment.
+ */
+public final class Log2Histogram {
+
+    static final int BUCKETS = 22;
+
+    private final LongAdder[] buckets;
+
+    Log2Histogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(final long value) {
+        final int bucket = value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+        this.buckets[Math.min(bucket, BUCKETS - 1)].increment();
+    }
+
+    public long[] buckets() {
+        final long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = this.buckets[i].sum();
+        }
+
+        return result;
+    }
+
+    /*
+     * Upper bounds (exclusive) of the buckets, the last bucket is unbounded.
+     */
+    public static long[] bounds() {
+        final long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            result[i] = 1L << i;
+        }
+
+        result[BUCKETS - 1] = Long.MAX_VALUE;
+        return result;
+    }
+
+    /*
+     * Upper bound of the bucket containing the value at the given percentile of the bucket counts
+     * (e.g. difference of two snapshots), 0 if there are no values at all.
+     */
+    static long valueAtPercentile(final long[] buckets, final double percentile) {
+        long total = 0;
+        for (final long count : buckets) {
+            total += count;
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long accumulated = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            accumulated += buckets[i];
+            if (accumulated >= rank) {
+                return 1L << i;
+            }
+        }
+
+        return 1L << (BUCKETS - 1);
+    }
+}
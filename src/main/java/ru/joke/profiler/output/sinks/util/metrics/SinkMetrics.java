@@ -0,0 +1,198 @@
+package ru.joke.profiler.output.sinks.util.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Telemetry of the output pipeline of a sink: async queue, flushes, writes to the delegate sink,
+ * connections recovery and connection pool waits. Counters are updated by the writing threads,
+ * so all of them are striped; durations are recorded into the histograms in microseconds.
+ */
+public final class SinkMetrics {
+
+    private final String sinkName;
+
+    private final LongAdder offers = new LongAdder();
+    private final LongAdder overflowsWrittenSync = new LongAdder();
+    private final LongAdder overflowsDiscarded = new LongAdder();
+    private final LongAdder overflowsRejected = new LongAdder();
+    private final LongAdder overflowsWaited = new LongAdder();
+    private final LongAdder flushedItems = new LongAdder();
+    private final LongAdder flushTimeNs = new LongAdder();
+    private final Log2Histogram flushBatchSizes = new Log2Histogram();
+    private final Log2Histogram flushDurations = new Log2Histogram();
+    private final LongAdder delegateWrites = new LongAdder();
+    private final LongAdder delegateWriteTimeNs = new LongAdder();
+    private final Log2Histogram delegateWriteLatencies = new Log2Histogram();
+    private final LongAdder recoveryEpisodes = new LongAdder();
+    private final LongAdder recoveryFailures = new LongAdder();
+    private final LongAdder recoveryTimeNs = new LongAdder();
+    private final LongAdder poolWaits = new LongAdder();
+    private final LongAdder poolWaitTimeouts = new LongAdder();
+    private final LongAdder poolWaitTimeNs = new LongAdder();
+    private final Log2Histogram poolWaitTimes = new Log2Histogram();
+
+    private volatile IntSupplier queueOccupancy;
+    private volatile int queueCapacity;
+
+    SinkMetrics(final String sinkName) {
+        this.sinkName = checkNotNull(sinkName, "sinkName");
+    }
+
+    public String sinkName() {
+        return this.sinkName;
+    }
+
+    public void bindQueue(final IntSupplier queueOccupancy, final int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        this.queueOccupancy = checkNotNull(queueOccupancy, "queueOccupancy");
+    }
+
+    public void onOffer() {
+        this.offers.increment();
+    }
+
+    public void onOverflowWrittenSync() {
+        this.overflowsWrittenSync.increment();
+    }
+
+    public void onOverflowDiscarded() {
+        this.overflowsDiscarded.increment();
+    }
+
+    public void onOverflowRejected() {
+        this.overflowsRejected.increment();
+    }
+
+    public void onOverflowWaited() {
+        this.overflowsWaited.increment();
+    }
+
+    public void onFlush(final long durationNs) {
+        this.flushTimeNs.add(durationNs);
+        this.flushDurations.record(TimeUnit.NANOSECONDS.toMicros(durationNs));
+    }
+
+    public void onBatchFlushed(final int batchSize) {
+        this.flushedItems.add(batchSize);
+        this.flushBatchSizes.record(batchSize);
+    }
+
+    public void onDelegateWrite(final long latencyNs) {
+        this.delegateWrites.increment();
+        this.delegateWriteTimeNs.add(latencyNs);
+        this.delegateWriteLatencies.record(TimeUnit.NANOSECONDS.toMicros(latencyNs));
+    }
+
+    public void onRecovery(final boolean recovered, final long durationNs) {
+        this.recoveryEpisodes.increment();
+        this.recoveryTimeNs.add(durationNs);
+        if (!recovered) {
+            this.recoveryFailures.increment();
+        }
+    }
+
+    public void onPoolWait(final boolean timedOut, final long waitTimeNs) {
+        this.poolWaits.increment();
+        this.poolWaitTimeNs.add(waitTimeNs);
+        this.poolWaitTimes.record(TimeUnit.NANOSECONDS.toMicros(waitTimeNs));
+        if (timedOut) {
+            this.poolWaitTimeouts.increment();
+        }
+    }
+
+    public int queueOccupancy() {
+        final IntSupplier queueOccupancy = this.queueOccupancy;
+        return queueOccupancy == null ? 0 : queueOccupancy.getAsInt();
+    }
+
+    public int queueCapacity() {
+        return this.queueCapacity;
+    }
+
+    public long offers() {
+        return this.offers.sum();
+    }
+
+    public long overflowsWrittenSync() {
+        return this.overflowsWrittenSync.sum();
+    }
+
+    public long overflowsDiscarded() {
+        return this.overflowsDiscarded.sum();
+    }
+
+    public long overflowsRejected() {
+        return this.overflowsRejected.sum();
+    }
+
+    public long overflowsWaited() {
+        return this.overflowsWaited.sum();
+    }
+
+    public long flushedItems() {
+        return this.flushedItems.sum();
+    }
+
+    public long flushTimeNs() {
+        return this.flushTimeNs.sum();
+    }
+
+    public Log2Histogram flushBatchSizes() {
+        return this.flushBatchSizes;
+    }
+
+    public Log2Histogram flushDurations() {
+        return this.flushDurations;
+    }
+
+    public long delegateWrites() {
+        return this.delegateWrites.sum();
+    }
+
+    public long delegateWriteTimeNs() {
+        return this.delegateWriteTimeNs.sum();
+    }
+
+    public Log2Histogram delegateWriteLatencies() {
+        return this.delegateWriteLatencies;
+    }
+
+    public long recoveryEpisodes() {
+        return this.recoveryEpisodes.sum();
+    }
+
+    public long recoveryFailures() {
+        return this.recoveryFailures.sum();
+    }
+
+    public long recoveryTimeNs() {
+        return this.recoveryTimeNs.sum();
+    }
+
+    public long poolWaits() {
+        return this.poolWaits.sum();
+    }
+
+    public long poolWaitTimeouts() {
+        return this.poolWaitTimeouts.sum();
+    }
+
+    public long poolWaitTimeNs() {
+        return this.poolWaitTimeNs.sum();
+    }
+
+    public Log2Histogram poolWaitTimes() {
+        return this.poolWaitTimes;
+    }
+
+    @Override
+    public String toString() {
+        return "SinkMetrics{"
+                + "sinkName='" + sinkName + '\''
+                + '}';
+    }
+}
@@ -0,0 +1,34 @@
+package ru.joke.profiler.output.sinks.util.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Metrics of the sinks by the sink type: async wrapper, connection pool and recovery of the same sink share them.
+ */
+public final class SinkMetricsRegistry {
+
+    private static final SinkMetricsRegistry instance = new SinkMetricsRegistry();
+
+    public static SinkMetricsRegistry getInstance() {
+        return instance;
+    }
+
+    private final Map<String, SinkMetrics> metrics;
+
+    private SinkMetricsRegistry() {
+        this.metrics = new ConcurrentHashMap<>();
+    }
+
+    public SinkMetrics get(final String sinkName) {
+        return this.metrics.computeIfAbsent(checkNotNull(sinkName, "sinkName").toLowerCase(), SinkMetrics::new);
+    }
+
+    public Collection<SinkMetrics> all() {
+        return new ArrayList<>(this.metrics.values());
+    }
+}
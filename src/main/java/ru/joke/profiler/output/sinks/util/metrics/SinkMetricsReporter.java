@@ -0,0 +1,281 @@
+package ru.joke.profiler.output.sinks.util.metrics;
+
+import ru.joke.profiler.output.MethodSymbolTable;
+import ru.joke.profiler.output.sinks.OutputData;
+import ru.joke.profiler.output.sinks.OutputDataSink;
+import ru.joke.profiler.util.ProfilerThreadFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Reports the sinks metrics once per interval: a single summary log record per sink instead of a record per
+ * overflowed event or recovery, and, optionally, summary records of the sink durations written to the output sink.
+ */
+public final class SinkMetricsReporter implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(SinkMetricsReporter.class.getCanonicalName());
+
+    private static final String REPORTER_THREAD_NAME = "profiler-sink-metrics-reporter-thread";
+    private static final String RECORD_NAME_TEMPLATE = "profiler.sink.%s.%s";
+
+    private static final double P50 = 50;
+    private static final double P90 = 90;
+    private static final double P99 = 99;
+
+    private final SinkMetricsReportingConfiguration configuration;
+    private final OutputDataSink<OutputData> outputSink;
+    private final SinkMetricsRegistry registry;
+    private final ScheduledExecutorService reporterExecutor;
+    private final Map<String, IntervalState> previousStates;
+    private long intervalStartTimestamp;
+
+    public SinkMetricsReporter(
+            final SinkMetricsReportingConfiguration configuration,
+            final OutputDataSink<OutputData> outputSink
+    ) {
+        this.configuration = checkNotNull(configuration, "configuration");
+        this.outputSink = checkNotNull(outputSink, "outputSink");
+        this.registry = SinkMetricsRegistry.getInstance();
+        this.reporterExecutor = Executors.newSingleThreadScheduledExecutor(new ProfilerThreadFactory(REPORTER_THREAD_NAME, true));
+        this.previousStates = new HashMap<>();
+    }
+
+    public void init() {
+        this.intervalStartTimestamp = System.nanoTime();
+        this.reporterExecutor.scheduleAtFixedRate(
+                this::reportSafely,
+                this.configuration.intervalMs(),
+                this.configuration.intervalMs(),
+                TimeUnit.MILLISECONDS
+        );
+
+        logger.info("Sink metrics reporter initialized with configuration: " + this.configuration);
+    }
+
+    @Override
+    public void close() {
+        this.reporterExecutor.shutdownNow();
+        reportSafely();
+    }
+
+    private void reportSafely() {
+        try {
+            report();
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Unable to report sink metrics", ex);
+        }
+    }
+
+    private synchronized void report() {
+        final long intervalStartTimestamp = this.intervalStartTimestamp;
+        this.intervalStartTimestamp = System.nanoTime();
+        final long intervalMs = TimeUnit.NANOSECONDS.toMillis(this.intervalStartTimestamp - intervalStartTimestamp);
+
+        final LocalDateTime timestamp = LocalDateTime.now();
+        final List<OutputData> records = new ArrayList<>();
+        for (final SinkMetrics metrics : this.registry.all()) {
+            final IntervalState current = new IntervalState(metrics);
+            final IntervalState previous = this.previousStates.getOrDefault(metrics.sinkName(), IntervalState.EMPTY);
+            this.previousStates.put(metrics.sinkName(), current);
+
+            logSummary(metrics, current, previous, intervalMs);
+
+            if (this.configuration.emitRecords()) {
+                collectRecords(metrics.sinkName(), current, previous, intervalStartTimestamp, timestamp, records);
+            }
+        }
+
+        if (!records.isEmpty()) {
+            this.outputSink.write(records);
+        }
+    }
+
+    private void logSummary(
+            final SinkMetrics metrics,
+            final IntervalState current,
+            final IntervalState previous,
+            final long intervalMs
+    ) {
+        final long writtenSync = current.overflowsWrittenSync - previous.overflowsWrittenSync;
+        final long discarded = current.overflowsDiscarded - previous.overflowsDiscarded;
+        final long rejected = current.overflowsRejected - previous.overflowsRejected;
+        final long waited = current.overflowsWaited - previous.overflowsWaited;
+        if (writtenSync + discarded + rejected + waited > 0) {
+            logger.warning(
+                    String.format(
+                            "Async queue of sink %s overflowed in the last %d ms: written sync %d, discarded %d, rejected %d, waited %d; queue occupancy %d/%d",
+                            metrics.sinkName(),
+                            intervalMs,
+                            writtenSync,
+                            discarded,
+                            rejected,
+                            waited,
+                            metrics.queueOccupancy(),
+                            metrics.queueCapacity()
+                    )
+            );
+        }
+
+        final long recoveryEpisodes = current.recoveryEpisodes - previous.recoveryEpisodes;
+        if (recoveryEpisodes > 0) {
+            logger.warning(
+                    String.format(
+                            "Connection of sink %s was recovered %d times in the last %d ms, failed recoveries: %d",
+                            metrics.sinkName(),
+                            recoveryEpisodes,
+                            intervalMs,
+                            current.recoveryFailures - previous.recoveryFailures
+                    )
+            );
+        }
+
+        logger.fine(() -> String.format(
+                "Sink %s in the last %d ms: offers %d, flushed items %d, delegate writes %d, pool waits %d (timeouts %d)",
+                metrics.sinkName(),
+                intervalMs,
+                current.offers - previous.offers,
+                current.flushedItems - previous.flushedItems,
+                current.delegateWrites - previous.delegateWrites,
+                current.poolWaits - previous.poolWaits,
+                current.poolWaitTimeouts - previous.poolWaitTimeouts
+        ));
+    }
+
+    private void collectRecords(
+            final String sinkName,
+            final IntervalState current,
+            final IntervalState previous,
+            final long intervalStartTimestamp,
+            final LocalDateTime timestamp,
+            final List<OutputData> records
+    ) {
+        addRecord(
+                records,
+                String.format(RECORD_NAME_TEMPLATE, sinkName, "flush"),
+                intervalStartTimestamp,
+                timestamp,
+                current.flushTimeNs - previous.flushTimeNs,
+                subtract(current.flushDurations, previous.flushDurations)
+        );
+        addRecord(
+                records,
+                String.format(RECORD_NAME_TEMPLATE, sinkName, "delegate_write"),
+                intervalStartTimestamp,
+                timestamp,
+                current.delegateWriteTimeNs - previous.delegateWriteTimeNs,
+                subtract(current.delegateWriteLatencies, previous.delegateWriteLatencies)
+        );
+        addRecord(
+                records,
+                String.format(RECORD_NAME_TEMPLATE, sinkName, "pool_wait"),
+                intervalStartTimestamp,
+                timestamp,
+                current.poolWaitTimeNs - previous.poolWaitTimeNs,
+                subtract(current.poolWaitTimes, previous.poolWaitTimes)
+        );
+    }
+
+    private void addRecord(
+            final List<OutputData> records,
+            final String name,
+            final long intervalStartTimestamp,
+            final LocalDateTime timestamp,
+            final long totalTimeNs,
+            final long[] latenciesUs
+    ) {
+        long count = 0;
+        int minBucket = -1;
+        int maxBucket = -1;
+        for (int i = 0; i < latenciesUs.length; i++) {
+            if (latenciesUs[i] > 0) {
+                count += latenciesUs[i];
+                minBucket = minBucket == -1 ? i : minBucket;
+                maxBucket = i;
+            }
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        final OutputData record = new OutputData();
+        record.fillSummary(
+                MethodSymbolTable.UNKNOWN_METHOD_ID,
+                name,
+                intervalStartTimestamp,
+                timestamp,
+                count,
+                totalTimeNs,
+                minBucket == 0 ? 0 : TimeUnit.MICROSECONDS.toNanos(1L << (minBucket - 1)),
+                TimeUnit.MICROSECONDS.toNanos(1L << maxBucket),
+                TimeUnit.MICROSECONDS.toNanos(Log2Histogram.valueAtPercentile(latenciesUs, P50)),
+                TimeUnit.MICROSECONDS.toNanos(Log2Histogram.valueAtPercentile(latenciesUs, P90)),
+                TimeUnit.MICROSECONDS.toNanos(Log2Histogram.valueAtPercentile(latenciesUs, P99))
+        );
+        records.add(record);
+    }
+
+    private static long[] subtract(final long[] current, final long[] previous) {
+        final long[] result = new long[current.length];
+        for (int i = 0; i < current.length; i++) {
+            result[i] = current[i] - (previous == null ? 0 : previous[i]);
+        }
+
+        return result;
+    }
+
+    private static final class IntervalState {
+
+        private static final IntervalState EMPTY = new IntervalState(null);
+
+        private final long offers;
+        private final long overflowsWrittenSync;
+        private final long overflowsDiscarded;
+        private final long overflowsRejected;
+        private final long overflowsWaited;
+        private final long flushedItems;
+        private final long flushTimeNs;
+        private final long[] flushDurations;
+        private final long delegateWrites;
+        private final long delegateWriteTimeNs;
+        private final long[] delegateWriteLatencies;
+        private final long recoveryEpisodes;
+        private final long recoveryFailures;
+        private final long poolWaits;
+        private final long poolWaitTimeouts;
+        private final long poolWaitTimeNs;
+        private final long[] poolWaitTimes;
+
+        private IntervalState(final SinkMetrics metrics) {
+            final boolean empty = metrics == null;
+            this.offers = empty ? 0 : metrics.offers();
+            this.overflowsWrittenSync = empty ? 0 : metrics.overflowsWrittenSync();
+            this.overflowsDiscarded = empty ? 0 : metrics.overflowsDiscarded();
+            this.overflowsRejected = empty ? 0 : metrics.overflowsRejected();
+            this.overflowsWaited = empty ? 0 : metrics.overflowsWaited();
+            this.flushedItems = empty ? 0 : metrics.flushedItems();
+            this.flushTimeNs = empty ? 0 : metrics.flushTimeNs();
+            this.flushDurations = empty ? null : metrics.flushDurations().buckets();
+            this.delegateWrites = empty ? 0 : metrics.delegateWrites();
+            this.delegateWriteTimeNs = empty ? 0 : metrics.delegateWriteTimeNs();
+            this.delegateWriteLatencies = empty ? null : metrics.delegateWriteLatencies().buckets();
+            this.recoveryEpisodes = empty ? 0 : metrics.recoveryEpisodes();
+            this.recoveryFailures = empty ? 0 : metrics.recoveryFailures();
+            this.poolWaits = empty ? 0 : metrics.poolWaits();
+            this.poolWaitTimeouts = empty ? 0 : metrics.poolWaitTimeouts();
+            this.poolWaitTimeNs = empty ? 0 : metrics.poolWaitTimeNs();
+            this.poolWaitTimes = empty ? null : metrics.poolWaitTimes().buckets();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.joke.profiler.output.sinks.util.metrics;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+import ru.joke.profiler.configuration.util.MillisTimePropertyParser;
+
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+public final class SinkMetricsReportingConfiguration {
+
+    private static final String SINK_METRICS_PREFIX = "sink_metrics.";
+
+    private static final String INTERVAL = "interval";
+    private static final String EMIT_RECORDS = "emit_records";
+
+    private final long intervalMs;
+    private final boolean emitRecords;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = SINK_METRICS_PREFIX)
+    public SinkMetricsReportingConfiguration(
+            @ProfilerConfigurationProperty(name = INTERVAL, defaultValue = "1m", parser = MillisTimePropertyParser.class) final long intervalMs,
+            @ProfilerConfigurationProperty(name = EMIT_RECORDS) final boolean emitRecords
+    ) {
+        this.intervalMs = checkPositive(intervalMs, "intervalMs");
+        this.emitRecords = emitRecords;
+    }
+
+    public long intervalMs() {
+        return intervalMs;
+    }
+
+    /*
+     * Metrics of the sinks are written to the output sinks as the summary records once per interval.
+     */
+    public boolean emitRecords() {
+        return emitRecords;
+    }
+
+    @Override
+    public String toString() {
+        return "SinkMetricsReportingConfiguration{"
+                + "intervalMs=" + intervalMs
+                + ", emitRecords=" + emitRecords
+                + '}';
+    }
+}
@@ -4,6 +4,7 @@ import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrappe
 import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
 import ru.joke.profiler.configuration.meta.ProfilerDefaultEnumProperty;
 import ru.joke.profiler.configuration.util.MillisTimePropertyParser;
+import ru.joke.profiler.output.sinks.util.ring.WaitStrategy;
 
 import static ru.joke.profiler.util.ArgUtil.*;
 
@@ -17,6 +18,7 @@ public final class ConnectionPoolConfiguration {
     private static final String KEEP_ALIVE_IDLE_CONNECTIONS = "keep_alive_idle_time";
     private static final String MAX_WAIT_CONNECTION = "max_connection_wait_time";
     private static final String CONN_UNAVAILABILITY_POLICY = "connection_unavailability_policy";
+    private static final String WAIT_STRATEGY = "wait_strategy";
     
     private final boolean enablePooling;
     private final int maxPoolSize;
@@ -24,6 +26,7 @@ public final class ConnectionPoolConfiguration {
     private final long keepAliveIdleMs;
     private final long maxConnectionWaitMs;
     private final ConnectionUnavailabilityPolicy connectionUnavailabilityPolicy;
+    private final WaitStrategy waitStrategy;
 
     @ProfilerConfigurationPropertiesWrapper(prefix = CONNECTION_POOL_PROPERTIES_PREFIX)
     public ConnectionPoolConfiguration(
@@ -32,7 +35,8 @@ public final class ConnectionPoolConfiguration {
             @ProfilerConfigurationProperty(name = INIT_POOL_SIZE, defaultValue = "4") final int initialPoolSize,
             @ProfilerConfigurationProperty(name = KEEP_ALIVE_IDLE_CONNECTIONS, defaultValue = "2m", parser = MillisTimePropertyParser.class) final long keepAliveIdleMs,
             @ProfilerConfigurationProperty(name = MAX_WAIT_CONNECTION, defaultValue = "3s", parser = MillisTimePropertyParser.class) final long maxConnectionWaitMs,
-            @ProfilerConfigurationProperty(name = CONN_UNAVAILABILITY_POLICY) final ConnectionUnavailabilityPolicy connectionUnavailabilityPolicy
+            @ProfilerConfigurationProperty(name = CONN_UNAVAILABILITY_POLICY) final ConnectionUnavailabilityPolicy connectionUnavailabilityPolicy,
+            @ProfilerConfigurationProperty(name = WAIT_STRATEGY, defaultValue = "BLOCKING") final WaitStrategy waitStrategy
     ) {
         this.enablePooling = enablePooling;
         this.maxPoolSize = checkPositive(maxPoolSize, "maxPoolSize");
@@ -40,6 +44,7 @@ public final class ConnectionPoolConfiguration {
         this.keepAliveIdleMs = keepAliveIdleMs;
         this.maxConnectionWaitMs = checkNonNegative(maxConnectionWaitMs, "maxConnectionWaitMs");
         this.connectionUnavailabilityPolicy = checkNotNull(connectionUnavailabilityPolicy, "connectionUnavailabilityPolicy");
+        this.waitStrategy = checkNotNull(waitStrategy, "waitStrategy");
     }
 
     public boolean enablePooling() {
@@ -66,6 +71,10 @@ public final class ConnectionPoolConfiguration {
         return connectionUnavailabilityPolicy;
     }
 
+    public WaitStrategy waitStrategy() {
+        return waitStrategy;
+    }
+
     @Override
     public String toString() {
         return "ConnectionPoolConfiguration{"
@@ -75,6 +84,7 @@ public final class ConnectionPoolConfiguration {
                 + ", keepAliveIdleMs=" + keepAliveIdleMs
                 + ", maxConnectionWaitMs=" + maxConnectionWaitMs
                 + ", connectionUnavailabilityPolicy=" + connectionUnavailabilityPolicy
+                + ", waitStrategy=" + waitStrategy
                 + '}';
     }
 
@@ -1,18 +1,25 @@
 package ru.joke.profiler.output.sinks.util.pool;
 
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
+
 import static ru.joke.profiler.util.ArgUtil.checkNotNull;
 
 public final class ConnectionPoolFactory<T extends PooledConnection> {
 
     private final ConnectionFactory<T> connectionFactory;
+    private final SinkMetrics metrics;
 
-    public ConnectionPoolFactory(final ConnectionFactory<T> connectionFactory) {
+    public ConnectionPoolFactory(
+            final ConnectionFactory<T> connectionFactory,
+            final SinkMetrics metrics
+    ) {
         this.connectionFactory = checkNotNull(connectionFactory, "connectionFactory");
+        this.metrics = checkNotNull(metrics, "metrics");
     }
 
     public ConnectionPool<T> create(final ConnectionPoolConfiguration configuration) {
         return configuration.enablePooling()
-                ? new StdConnectionPool<>(this.connectionFactory, configuration)
+                ? new StdConnectionPool<>(this.connectionFactory, configuration, this.metrics)
                 : new NoPoolingConnectionPool<>(this.connectionFactory);
     }
 }
@@ -1,7 +1,8 @@
 package ru.joke.profiler.output.sinks.util.pool;
 
 import ru.joke.profiler.output.sinks.ProfilerOutputSinkException;
-import ru.joke.profiler.output.sinks.util.ConcurrentLinkedBlockingQueue;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
+import ru.joke.profiler.output.sinks.util.ring.BlockingMpscRingBuffer;
 import ru.joke.profiler.util.ProfilerThreadFactory;
 
 import java.util.ArrayList;
@@ -9,6 +10,7 @@ import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,18 +24,23 @@ public final class StdConnectionPool<T extends PooledConnection> implements Conn
 
     private final ConnectionFactory<T> connectionFactory;
     private final ConnectionPoolConfiguration configuration;
-    private final ConcurrentLinkedBlockingQueue<T> pool;
+    private final BlockingMpscRingBuffer<T> pool;
+    private final ReentrantLock consumerLock;
     private final ScheduledExecutorService idleConnectionsTerminator;
     private final List<T> registry;
+    private final SinkMetrics metrics;
 
     StdConnectionPool(
             final ConnectionFactory<T> connectionFactory,
-            final ConnectionPoolConfiguration configuration
+            final ConnectionPoolConfiguration configuration,
+            final SinkMetrics metrics
     ) {
         this.connectionFactory = checkNotNull(connectionFactory, "connectionFactory");
         this.configuration = checkNotNull(configuration, "configuration");
-        this.pool = new ConcurrentLinkedBlockingQueue<>(configuration.maxPoolSize());
+        this.pool = new BlockingMpscRingBuffer<>(configuration.maxPoolSize(), configuration.waitStrategy());
+        this.consumerLock = new ReentrantLock();
         this.registry = new ArrayList<>();
+        this.metrics = checkNotNull(metrics, "metrics");
         this.idleConnectionsTerminator =
                 configuration.keepAliveIdleMs() == -1
                         ? null
@@ -73,8 +80,10 @@ public final class StdConnectionPool<T extends PooledConnection> implements Conn
     @Override
     public T get() {
         final T result;
+        final long startTime = System.nanoTime();
         try {
-            result = this.pool.poll(this.configuration.maxConnectionWaitMs(), TimeUnit.MILLISECONDS);
+            result = poll(TimeUnit.MILLISECONDS.toNanos(this.configuration.maxConnectionWaitMs()));
+            this.metrics.onPoolWait(result == null, System.nanoTime() - startTime);
         } catch (InterruptedException e) {
             logger.log(Level.WARNING, "Thread was interrupted", e);
             throw new ProfilerOutputSinkException(e);
@@ -103,6 +112,24 @@ public final class StdConnectionPool<T extends PooledConnection> implements Conn
         this.registry.forEach(PooledConnection::close);
     }
 
+    /*
+     * The ring allows the single consumer only, so the connections are polled under the lock;
+     * the connections are released without the lock.
+     */
+    private T poll(final long timeoutNs) throws InterruptedException {
+        final long startTime = System.nanoTime();
+        if (!this.consumerLock.tryLock(timeoutNs, TimeUnit.NANOSECONDS)) {
+            return null;
+        }
+
+        try {
+            final long remainingNs = timeoutNs - (System.nanoTime() - startTime);
+            return this.pool.poll(Math.max(remainingNs, 0), TimeUnit.NANOSECONDS);
+        } finally {
+            this.consumerLock.unlock();
+        }
+    }
+
     private void terminateExpiredIdleConnections() {
         final long currentTimestamp = System.currentTimeMillis();
         this.pool.forEach(wrapper -> {
@@ -1,6 +1,7 @@
 package ru.joke.profiler.output.sinks.util.recovery;
 
 import ru.joke.profiler.output.sinks.ProfilerOutputSinkException;
+import ru.joke.profiler.output.sinks.util.metrics.SinkMetrics;
 
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
@@ -17,26 +18,32 @@ public final class RecoveryProcessor {
     private final Runnable recoveryCallback;
     private final long maxRecoveryAttemptTimeMillis;
     private final long maxRecoveryTimeoutMillis;
+    private final SinkMetrics metrics;
 
     public RecoveryProcessor(
             final Runnable cleaningCallback,
             final Runnable recoveryCallback,
             final long maxRecoveryAttemptTimeMillis,
-            final long maxRecoveryTimeoutMillis
+            final long maxRecoveryTimeoutMillis,
+            final SinkMetrics metrics
     ) {
         this.recoveryCallback = checkNotNull(recoveryCallback, "recoveryCallback");
         this.cleaningCallback = checkNotNull(cleaningCallback, "cleaningCallback");
         this.maxRecoveryAttemptTimeMillis = checkNonNegative(maxRecoveryAttemptTimeMillis, "maxRecoveryAttemptTimeMillis");
         this.maxRecoveryTimeoutMillis = checkNonNegative(maxRecoveryTimeoutMillis, "maxRecoveryTimeoutMillis");
+        this.metrics = checkNotNull(metrics, "metrics");
     }
 
     public void recover(final Exception exception) {
 
         logger.log(Level.FINE, "Trying to recover connection, exception detected", exception);
 
+        final long startTime = System.nanoTime();
         this.clean();
 
-        if (!this.recover()) {
+        final boolean recovered = this.recover();
+        this.metrics.onRecovery(recovered, System.nanoTime() - startTime);
+        if (!recovered) {
             logger.severe(String.format("Fatal disconnect, cannot recover connection in %d ms", this.maxRecoveryAttemptTimeMillis));
             throw new ProfilerOutputSinkException(exception);
         }
@@ -0,0 +1,147 @@
+package ru.joke.profiler.output.sinks.util.ring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Multi-producer/single-consumer ring with the waiting for the free space (producers) and for the elements (consumer)
+ * according to the wait strategy. Non-waiting methods never block and never take a lock unless there are waiting
+ * threads of the opposite side for the blocking strategy.
+ * Only one thread at a time may call the consumer methods (poll, drainTo).
+ */
+public final class BlockingMpscRingBuffer<E> {
+
+    private static final long MAX_TIMEOUT_NANOS = Long.MAX_VALUE >> 1;
+
+    private final MpscRingBuffer<E> ring;
+    private final WaitStrategy waitStrategy;
+    private final Waiter notEmpty;
+    private final Waiter notFull;
+
+    public BlockingMpscRingBuffer(final int capacity, final WaitStrategy waitStrategy) {
+        this.ring = new MpscRingBuffer<>(capacity);
+        this.waitStrategy = checkNotNull(waitStrategy, "waitStrategy");
+        this.notEmpty = waitStrategy.createWaiter();
+        this.notFull = waitStrategy.createWaiter();
+    }
+
+    public boolean offer(final E element) {
+        if (this.ring.offer(element)) {
+            this.notEmpty.signal();
+            return true;
+        }
+
+        return false;
+    }
+
+    public boolean offer(
+            final E element,
+            final long timeout,
+            final TimeUnit unit
+    ) throws InterruptedException {
+        if (offer(element)) {
+            return true;
+        }
+
+        final long deadlineNs = deadline(timeout, unit);
+        this.notFull.register();
+        try {
+            for (int attempt = 0; this.notFull.await(attempt, deadlineNs, this::hasFreeSpace); attempt++) {
+                if (offer(element)) {
+                    return true;
+                }
+            }
+        } finally {
+            this.notFull.unregister();
+        }
+
+        return offer(element);
+    }
+
+    public E poll() {
+        final E result = this.ring.poll();
+        if (result != null) {
+            this.notFull.signal();
+        }
+
+        return result;
+    }
+
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        E result = poll();
+        if (result != null) {
+            return result;
+        }
+
+        final long deadlineNs = deadline(timeout, unit);
+        this.notEmpty.register();
+        try {
+            for (int attempt = 0; this.notEmpty.await(attempt, deadlineNs, this::hasElements); attempt++) {
+                if ((result = poll()) != null) {
+                    return result;
+                }
+            }
+        } finally {
+            this.notEmpty.unregister();
+        }
+
+        return poll();
+    }
+
+    public int drainTo(final Consumer<? super E> consumer, final int maxElements) {
+        final int result = this.ring.drainTo(consumer, maxElements);
+        if (result > 0) {
+            this.notFull.signal();
+        }
+
+        return result;
+    }
+
+    public void forEach(final Consumer<? super E> action) {
+        this.ring.forEach(action);
+    }
+
+    public int size() {
+        return this.ring.size();
+    }
+
+    public boolean isEmpty() {
+        return this.ring.isEmpty();
+    }
+
+    public int capacity() {
+        return this.ring.capacity();
+    }
+
+    public WaitStrategy waitStrategy() {
+        return this.waitStrategy;
+    }
+
+    private boolean hasFreeSpace() {
+        return this.ring.size() < this.ring.capacity();
+    }
+
+    private boolean hasElements() {
+        return !this.ring.isEmpty();
+    }
+
+    private static long deadline(final long timeout, final TimeUnit unit) {
+        /*
+         * The deadline may wrap around, the waiters compare it by the difference with nanoTime,
+         * so the timeout is limited by the half of the range (~146 years) to keep the difference positive.
+         */
+        final long timeoutNs = Math.min(unit.toNanos(timeout), MAX_TIMEOUT_NANOS);
+        return System.nanoTime() + timeoutNs;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockingMpscRingBuffer{"
+                + "capacity=" + capacity()
+                + ", size=" + size()
+                + ", waitStrategy=" + waitStrategy
+                + '}';
+    }
+}
@@ -0,0 +1,165 @@
+package ru.joke.profiler.output.sinks.util.ring;
+
+import ru.joke.profiler.ProfilerException;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+/*
+ * Bounded multi-producer/single-consumer ring over the preallocated power-of-two array of slots.
+ * A producer claims a slot by a single CAS of the producer index and publishes the element by an ordered store
+ * into the slot; the consumer takes the published elements in order and frees the slots by ordered stores.
+ * Producers check the free space against the cached limit and read the consumer index only when the limit is reached.
+ * The indexes are kept in the separate cache lines of one array (so the padding doesn't depend on the fields layout).
+ * Capacity is exact, the array is rounded up to the power of two only for the index masking.
+ * Only one thread at a time may call the consumer methods (poll, drainTo).
+ */
+public final class MpscRingBuffer<E> {
+
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    /*
+     * 128 bytes: a cache line and its adjacent line fetched by the spatial prefetcher.
+     */
+    private static final int PADDING = 16;
+    private static final int PRODUCER_INDEX = PADDING;
+    private static final int PRODUCER_LIMIT = PADDING * 2;
+    private static final int CONSUMER_INDEX = PADDING * 3;
+
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final int capacity;
+    private final int mask;
+
+    public MpscRingBuffer(final int capacity) {
+        this.capacity = checkPositive(capacity, "capacity");
+        if (capacity > MAX_CAPACITY) {
+            throw new ProfilerException(String.format("Capacity of the ring must not exceed %d: %d", MAX_CAPACITY, capacity));
+        }
+
+        final int size = roundToPowerOfTwo(capacity);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(PADDING * 4);
+        this.sequences.set(PRODUCER_LIMIT, capacity);
+        this.mask = size - 1;
+    }
+
+    public boolean offer(final E element) {
+        checkNotNull(element, "element");
+
+        long producerLimit = this.sequences.get(PRODUCER_LIMIT);
+        long producerIndex;
+        do {
+            producerIndex = this.sequences.get(PRODUCER_INDEX);
+            if (producerIndex >= producerLimit) {
+                producerLimit = this.sequences.get(CONSUMER_INDEX) + this.capacity;
+                if (producerIndex >= producerLimit) {
+                    return false;
+                }
+
+                this.sequences.lazySet(PRODUCER_LIMIT, producerLimit);
+            }
+        } while (!this.sequences.compareAndSet(PRODUCER_INDEX, producerIndex, producerIndex + 1));
+
+        this.slots.lazySet((int) producerIndex & this.mask, element);
+        return true;
+    }
+
+    /*
+     * If the next slot is claimed by a producer, but the element isn't published yet, waits for the publication.
+     */
+    public E poll() {
+        final long consumerIndex = this.sequences.get(CONSUMER_INDEX);
+        final int offset = (int) consumerIndex & this.mask;
+        E result = this.slots.get(offset);
+        if (result == null) {
+            if (consumerIndex == this.sequences.get(PRODUCER_INDEX)) {
+                return null;
+            }
+
+            while ((result = this.slots.get(offset)) == null);
+        }
+
+        this.slots.lazySet(offset, null);
+        this.sequences.lazySet(CONSUMER_INDEX, consumerIndex + 1);
+        return result;
+    }
+
+    /*
+     * Takes up to maxElements published elements in order; stops on the first claimed, but not yet published slot.
+     * Each slot is freed before the element is passed to the consumer, so the producers aren't blocked by a long batch.
+     */
+    public int drainTo(final Consumer<? super E> consumer, final int maxElements) {
+        long consumerIndex = this.sequences.get(CONSUMER_INDEX);
+        int result = 0;
+        while (result < maxElements) {
+            final int offset = (int) consumerIndex & this.mask;
+            final E element = this.slots.get(offset);
+            if (element == null) {
+                break;
+            }
+
+            this.slots.lazySet(offset, null);
+            this.sequences.lazySet(CONSUMER_INDEX, ++consumerIndex);
+
+            consumer.accept(element);
+            result++;
+        }
+
+        return result;
+    }
+
+    /*
+     * Weakly consistent: elements offered or polled concurrently may be skipped or visited.
+     */
+    public void forEach(final Consumer<? super E> action) {
+        final long producerIndex = this.sequences.get(PRODUCER_INDEX);
+        for (long i = this.sequences.get(CONSUMER_INDEX); i < producerIndex; i++) {
+            final E element = this.slots.get((int) i & this.mask);
+            if (element != null) {
+                action.accept(element);
+            }
+        }
+    }
+
+    /*
+     * Approximate number of the elements: claimed, but not yet published elements are counted.
+     */
+    public int size() {
+        long consumerIndex = this.sequences.get(CONSUMER_INDEX);
+        while (true) {
+            final long producerIndex = this.sequences.get(PRODUCER_INDEX);
+            final long currentConsumerIndex = this.sequences.get(CONSUMER_INDEX);
+            if (currentConsumerIndex == consumerIndex) {
+                return (int) Math.max(0, Math.min(producerIndex - consumerIndex, this.capacity));
+            }
+
+            consumerIndex = currentConsumerIndex;
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.sequences.get(CONSUMER_INDEX) == this.sequences.get(PRODUCER_INDEX);
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+    private static int roundToPowerOfTwo(final int value) {
+        final int highestBit = Integer.highestOneBit(value);
+        return highestBit == value ? value : highestBit << 1;
+    }
+
+    @Override
+    public String toString() {
+        return "MpscRingBuffer{"
+                + "capacity=" + capacity
+                + ", size=" + size()
+                + '}';
+    }
+}
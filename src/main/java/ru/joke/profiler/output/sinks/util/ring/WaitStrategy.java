@@ -0,0 +1,53 @@
+package ru.joke.profiler.output.sinks.util.ring;
+
+import ru.joke.profiler.configuration.meta.ProfilerDefaultEnumProperty;
+
+/*
+ * How the threads of the blocking ring wait for the free space (producers) or for the elements (consumer).
+ */
+public enum WaitStrategy {
+
+    /*
+     * Spins: the lowest latency, but the waiting thread occupies the core.
+     */
+    BUSY_SPIN {
+        @Override
+        Waiter createWaiter() {
+            return new Waiter.SpinningWaiter(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        }
+    },
+
+    /*
+     * Spins for a while, then yields the core to the other threads.
+     */
+    YIELDING {
+        @Override
+        Waiter createWaiter() {
+            return new Waiter.SpinningWaiter(Waiter.SPIN_TRIES, Integer.MAX_VALUE);
+        }
+    },
+
+    /*
+     * Spins, yields, then parks for short periods.
+     */
+    @ProfilerDefaultEnumProperty
+    PARKING {
+        @Override
+        Waiter createWaiter() {
+            return new Waiter.SpinningWaiter(Waiter.SPIN_TRIES, Waiter.SPIN_TRIES + Waiter.YIELD_TRIES);
+        }
+    },
+
+    /*
+     * Waits on the condition signalled by the opposite side: no CPU is used while waiting, but the opposite side
+     * takes the lock to signal while there are waiting threads.
+     */
+    BLOCKING {
+        @Override
+        Waiter createWaiter() {
+            return new Waiter.BlockingWaiter();
+        }
+    };
+
+    abstract Waiter createWaiter();
+}
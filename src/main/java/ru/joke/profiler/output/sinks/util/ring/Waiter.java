@@ -0,0 +1,133 @@
+package ru.joke.profiler.output.sinks.util.ring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/*
+ * Waiting side of one direction of the blocking ring (free space or elements).
+ */
+abstract class Waiter {
+
+    static final int SPIN_TRIES = 100;
+    static final int YIELD_TRIES = 100;
+
+    /*
+     * Registers the thread as the waiting one, so the opposite side signals it; called before the condition
+     * is checked the first time.
+     */
+    void register() {
+    }
+
+    void unregister() {
+    }
+
+    /*
+     * One waiting step of the thread, called until the condition is met; returns false if the deadline is passed.
+     */
+    abstract boolean await(int attempt, long deadlineNs, BooleanSupplier condition) throws InterruptedException;
+
+    /*
+     * Called by the opposite side when the condition may be met.
+     */
+    void signal() {
+    }
+
+    static final class SpinningWaiter extends Waiter {
+
+        private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+        private final int spinTries;
+        private final int yieldTries;
+
+        SpinningWaiter(final int spinTries, final int yieldTries) {
+            this.spinTries = spinTries;
+            this.yieldTries = yieldTries;
+        }
+
+        @Override
+        boolean await(
+                final int attempt,
+                final long deadlineNs,
+                final BooleanSupplier condition
+        ) throws InterruptedException {
+            final long remainingNs = deadlineNs - System.nanoTime();
+            if (remainingNs <= 0) {
+                return false;
+            } else if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (attempt >= this.yieldTries) {
+                LockSupport.parkNanos(Math.min(remainingNs, PARK_NANOS));
+            } else if (attempt >= this.spinTries) {
+                Thread.yield();
+            }
+
+            return true;
+        }
+    }
+
+    /*
+     * The consumer frees the slots by ordered stores, so a producer registered concurrently may miss the signal;
+     * the wait is limited by the slice to bound such a delay.
+     */
+    static final class BlockingWaiter extends Waiter {
+
+        private static final long MAX_WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition signalled = this.lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        void register() {
+            this.waiters.incrementAndGet();
+        }
+
+        @Override
+        void unregister() {
+            this.waiters.decrementAndGet();
+        }
+
+        @Override
+        boolean await(
+                final int attempt,
+                final long deadlineNs,
+                final BooleanSupplier condition
+        ) throws InterruptedException {
+            final long remainingNs = deadlineNs - System.nanoTime();
+            if (remainingNs <= 0) {
+                return false;
+            }
+
+            this.lock.lockInterruptibly();
+            try {
+                if (!condition.getAsBoolean()) {
+                    this.signalled.awaitNanos(Math.min(remainingNs, MAX_WAIT_SLICE_NANOS));
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            return true;
+        }
+
+        @Override
+        void signal() {
+            if (this.waiters.get() == 0) {
+                return;
+            }
+
+            this.lock.lock();
+            try {
+                this.signalled.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+}
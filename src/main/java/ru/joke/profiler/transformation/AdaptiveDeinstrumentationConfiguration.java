@@ -0,0 +1,70 @@
+package ru.joke.profiler.transformation;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+import ru.joke.profiler.configuration.util.MillisTimePropertyParser;
+
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+public final class AdaptiveDeinstrumentationConfiguration {
+
+    private static final String ADAPTIVE_DEINSTRUMENTATION_PREFIX = "adaptive_deinstrumentation.";
+
+    private static final String ENABLED = "enabled";
+    private static final String WINDOW = "window";
+    private static final String WINDOWS_TO_DEMOTE = "windows_to_demote";
+    private static final String MIN_CALLS_PER_WINDOW = "min_calls_per_window";
+    private static final String RECHECK_INTERVAL = "recheck_interval";
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final int windowsToDemote;
+    private final long minCallsPerWindow;
+    private final long recheckIntervalMs;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = ADAPTIVE_DEINSTRUMENTATION_PREFIX)
+    public AdaptiveDeinstrumentationConfiguration(
+            @ProfilerConfigurationProperty(name = ENABLED) final boolean enabled,
+            @ProfilerConfigurationProperty(name = WINDOW, defaultValue = "10s", parser = MillisTimePropertyParser.class) final long windowMs,
+            @ProfilerConfigurationProperty(name = WINDOWS_TO_DEMOTE, defaultValue = "3") final int windowsToDemote,
+            @ProfilerConfigurationProperty(name = MIN_CALLS_PER_WINDOW, defaultValue = "10000") final long minCallsPerWindow,
+            @ProfilerConfigurationProperty(name = RECHECK_INTERVAL, defaultValue = "10m", parser = MillisTimePropertyParser.class) final long recheckIntervalMs
+    ) {
+        this.enabled = enabled;
+        this.windowMs = checkPositive(windowMs, "windowMs");
+        this.windowsToDemote = checkPositive(windowsToDemote, "windowsToDemote");
+        this.minCallsPerWindow = checkPositive(minCallsPerWindow, "minCallsPerWindow");
+        this.recheckIntervalMs = checkPositive(recheckIntervalMs, "recheckIntervalMs");
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public long windowMs() {
+        return windowMs;
+    }
+
+    public int windowsToDemote() {
+        return windowsToDemote;
+    }
+
+    public long minCallsPerWindow() {
+        return minCallsPerWindow;
+    }
+
+    public long recheckIntervalMs() {
+        return recheckIntervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveDeinstrumentationConfiguration{"
+                + "enabled=" + enabled
+                + ", windowMs=" + windowMs
+                + ", windowsToDemote=" + windowsToDemote
+                + ", minCallsPerWindow=" + minCallsPerWindow
+                + ", recheckIntervalMs=" + recheckIntervalMs
+                + '}';
+    }
+}
@@ -0,0 +1,178 @@
+package ru.joke.profiler.transformation;
+
+import ru.joke.profiler.output.MethodCallsStatistics;
+import ru.joke.profiler.output.MethodSymbolTable;
+import ru.joke.profiler.util.ProfilerThreadFactory;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Demotes the hot methods that are consistently faster than the min execution threshold: their registrations
+ * are always dropped, so the probes are a pure overhead. A method is demoted when it is called at least
+ * min_calls_per_window times and never exceeds the threshold within windows_to_demote consecutive windows.
+ * Classes of the demoted methods are retransformed without their probes; after the recheck interval the
+ * methods are promoted back (instrumented again) to check whether they are still fast.
+ */
+public final class AdaptiveDeinstrumentationService implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(AdaptiveDeinstrumentationService.class.getCanonicalName());
+
+    private static final String ADAPTIVE_DEINSTRUMENTATION_THREAD_NAME = "profiler-adaptive-deinstrumentation-thread";
+
+    private final AdaptiveDeinstrumentationConfiguration configuration;
+    private final MethodCallsStatistics callsStatistics;
+    private final MethodSymbolTable methodSymbolTable;
+    private final Map<String, Long> demotedMethods;
+    private final ScheduledExecutorService windowsExecutor;
+
+    private ClassesRetransformer retransformer;
+    private int[] fastWindowsStreaks;
+
+    public AdaptiveDeinstrumentationService(final AdaptiveDeinstrumentationConfiguration configuration) {
+        this.configuration = checkNotNull(configuration, "configuration");
+        this.callsStatistics = MethodCallsStatistics.getInstance();
+        this.methodSymbolTable = MethodSymbolTable.getInstance();
+        this.demotedMethods = new ConcurrentHashMap<>();
+        this.windowsExecutor = Executors.newSingleThreadScheduledExecutor(new ProfilerThreadFactory(ADAPTIVE_DEINSTRUMENTATION_THREAD_NAME, false));
+        this.fastWindowsStreaks = new int[0];
+    }
+
+    public void init(final ClassesRetransformer retransformer) {
+        this.retransformer = checkNotNull(retransformer, "retransformer");
+        this.callsStatistics.nextWindow();
+        this.windowsExecutor.scheduleWithFixedDelay(
+                this::closeWindowSafely,
+                this.configuration.windowMs(),
+                this.configuration.windowMs(),
+                TimeUnit.MILLISECONDS
+        );
+
+        logger.info("Adaptive de-instrumentation initialized with configuration: " + this.configuration);
+    }
+
+    boolean isMethodDemoted(final String method) {
+        return !this.demotedMethods.isEmpty() && this.demotedMethods.containsKey(method);
+    }
+
+    boolean hasDemotedMethods() {
+        return !this.demotedMethods.isEmpty();
+    }
+
+    /*
+     * Demoted methods with the timestamps of their demotion.
+     */
+    public Map<String, Long> demotedMethods() {
+        return Collections.unmodifiableMap(new TreeMap<>(this.demotedMethods));
+    }
+
+    public String report() {
+        final StringBuilder report = new StringBuilder("Demoted methods (").append(this.demotedMethods.size()).append("):");
+        demotedMethods().forEach((method, demotedAt) ->
+                report.append(System.lineSeparator())
+                        .append('\t')
+                        .append(method)
+                        .append(" since ")
+                        .append(Instant.ofEpochMilli(demotedAt))
+        );
+
+        return report.toString();
+    }
+
+    @Override
+    public void close() {
+        this.windowsExecutor.shutdownNow();
+        this.callsStatistics.disable();
+
+        logger.info(report());
+    }
+
+    private void closeWindowSafely() {
+        try {
+            closeWindow();
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "Unable to process calls statistics window", ex);
+        }
+    }
+
+    private void closeWindow() {
+        final MethodCallsStatistics.Window window = this.callsStatistics.nextWindow();
+        if (window == null) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final Set<String> changedClasses = new HashSet<>();
+        final List<String> promotedMethods = promoteRecheckedMethods(now, changedClasses);
+        final List<String> demotedMethods = demoteFastMethods(window, now, changedClasses);
+
+        if (changedClasses.isEmpty()) {
+            return;
+        }
+
+        logger.info(String.format("Methods demoted: %s, methods promoted for recheck: %s", demotedMethods, promotedMethods));
+        this.retransformer.retransform(changedClasses);
+    }
+
+    private List<String> promoteRecheckedMethods(final long now, final Set<String> changedClasses) {
+        final List<String> promotedMethods = new ArrayList<>();
+        final Iterator<Map.Entry<String, Long>> iterator = this.demotedMethods.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Long> demotedMethod = iterator.next();
+            if (now - demotedMethod.getValue() >= this.configuration.recheckIntervalMs()) {
+                iterator.remove();
+                promotedMethods.add(demotedMethod.getKey());
+                changedClasses.add(toClassName(demotedMethod.getKey()));
+            }
+        }
+
+        return promotedMethods;
+    }
+
+    private List<String> demoteFastMethods(
+            final MethodCallsStatistics.Window window,
+            final long now,
+            final Set<String> changedClasses
+    ) {
+        final int methodsCount = window.methodsCount();
+        if (this.fastWindowsStreaks.length < methodsCount) {
+            this.fastWindowsStreaks = Arrays.copyOf(this.fastWindowsStreaks, methodsCount);
+        }
+
+        final List<String> demotedMethods = new ArrayList<>();
+        for (int methodId = 0; methodId < methodsCount; methodId++) {
+            final boolean hotAndFast =
+                    window.slowCalls(methodId) == 0
+                            && window.fastCalls(methodId) >= this.configuration.minCallsPerWindow();
+            if (!hotAndFast) {
+                this.fastWindowsStreaks[methodId] = 0;
+                continue;
+            }
+
+            if (++this.fastWindowsStreaks[methodId] < this.configuration.windowsToDemote()) {
+                continue;
+            }
+
+            this.fastWindowsStreaks[methodId] = 0;
+            final String method = this.methodSymbolTable.resolve(methodId);
+            if (method != null && this.demotedMethods.putIfAbsent(method, now) == null) {
+                demotedMethods.add(method);
+                changedClasses.add(toClassName(method));
+            }
+        }
+
+        return demotedMethods;
+    }
+
+    private static String toClassName(final String method) {
+        return method.substring(0, method.lastIndexOf('.'));
+    }
+}
@@ -0,0 +1,55 @@
+package ru.joke.profiler.transformation;
+
+import ru.joke.profiler.configuration.InvalidConfigurationException;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotEmpty;
+
+public final class BytecodeCacheConfiguration {
+
+    private static final String BYTECODE_CACHE_PREFIX = "bytecode_cache.";
+
+    private static final String ENABLED = "enabled";
+    private static final String CACHE_FILE = "file";
+    private static final String MAX_SIZE = "max_size_bytes";
+
+    private final boolean enabled;
+    private final String cacheFilePath;
+    private final int maxSizeBytes;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = BYTECODE_CACHE_PREFIX, nullIfNoExplicitPropertiesProvided = true)
+    public BytecodeCacheConfiguration(
+            @ProfilerConfigurationProperty(name = ENABLED) final boolean enabled,
+            @ProfilerConfigurationProperty(name = CACHE_FILE, required = true) final String cacheFilePath,
+            @ProfilerConfigurationProperty(name = MAX_SIZE, defaultValue = "268435456") final long maxSizeBytes
+    ) {
+        this.enabled = enabled;
+        this.cacheFilePath = checkNotEmpty(cacheFilePath, "cacheFilePath");
+        if (maxSizeBytes <= TransformedBytecodeCache.HEADER_SIZE || maxSizeBytes > Integer.MAX_VALUE) {
+            throw new InvalidConfigurationException("Bytecode cache size must be in range (" + TransformedBytecodeCache.HEADER_SIZE + ", " + Integer.MAX_VALUE + "]: " + maxSizeBytes);
+        }
+        this.maxSizeBytes = (int) maxSizeBytes;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public String cacheFilePath() {
+        return cacheFilePath;
+    }
+
+    public int maxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "BytecodeCacheConfiguration{"
+                + "enabled=" + enabled
+                + ", cacheFilePath='" + cacheFilePath + '\''
+                + ", maxSizeBytes=" + maxSizeBytes
+                + '}';
+    }
+}
@@ -0,0 +1,144 @@
+package ru.joke.profiler.transformation;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.objectweb.asm.Opcodes.*;
+import static ru.joke.profiler.util.BytecodeUtil.OBJECT_TYPE;
+
+/*
+ * Index of the classes metadata (super class, interfaces, native methods) shared by the frames computation
+ * and the native call sites instrumentation. Classes are resolved through the class loader of the class being
+ * transformed (the system class loader for the bootstrap classes), so the app-server and fat-jar loaders
+ * are supported. Each class is read and parsed once per loader; loaders are referenced weakly,
+ * so the metadata of the unloaded loaders is collected along with them.
+ */
+public final class ClassMetadataIndex {
+
+    private static final Logger logger = Logger.getLogger(ClassMetadataIndex.class.getCanonicalName());
+
+    private static final String CLASS_EXT = ".class";
+
+    private final Map<ClassLoader, Map<String, ClassMetadata>> loader2classesMap;
+    private final Map<String, ClassMetadata> systemClasses;
+
+    public ClassMetadataIndex() {
+        this.loader2classesMap = Collections.synchronizedMap(new WeakHashMap<>());
+        this.systemClasses = new ConcurrentHashMap<>(4096, 0.75f, 64);
+    }
+
+    ClassMetadata find(final ClassLoader loader, final String className) {
+        final Map<String, ClassMetadata> classes = findLoaderClasses(loader);
+        final ClassMetadata metadata = classes.get(className);
+        return metadata == null ? classes.computeIfAbsent(className, c -> readClassMetadata(loader, c)) : metadata;
+    }
+
+    /*
+     * Registers the metadata of the class being transformed from its already parsed bytecode.
+     */
+    void register(final ClassLoader loader, final String className, final ClassReader classReader) {
+        findLoaderClasses(loader).computeIfAbsent(className, c -> parse(classReader));
+    }
+
+    private Map<String, ClassMetadata> findLoaderClasses(final ClassLoader loader) {
+        if (loader == null) {
+            return this.systemClasses;
+        }
+
+        final Map<String, ClassMetadata> classes = this.loader2classesMap.get(loader);
+        return classes == null
+                ? this.loader2classesMap.computeIfAbsent(loader, l -> new ConcurrentHashMap<>(256, 0.75f, 16))
+                : classes;
+    }
+
+    private ClassMetadata readClassMetadata(final ClassLoader loader, final String className) {
+        final String resourceName = className + CLASS_EXT;
+        try (final InputStream classStream =
+                     loader == null
+                             ? ClassLoader.getSystemResourceAsStream(resourceName)
+                             : loader.getResourceAsStream(resourceName)) {
+            if (classStream == null) {
+                logger.fine(() -> "Unable to find class " + className + " in class loader " + loader);
+                return ClassMetadata.UNKNOWN;
+            }
+
+            return parse(new ClassReader(classStream));
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, String.format("Unable to read metadata of class: %s", className), ex);
+            return ClassMetadata.UNKNOWN;
+        }
+    }
+
+    private static ClassMetadata parse(final ClassReader classReader) {
+        final Set<String> nativeMethods = new HashSet<>();
+        classReader.accept(new ClassVisitor(ASM9) {
+            @Override
+            public MethodVisitor visitMethod(
+                    final int access,
+                    final String name,
+                    final String descriptor,
+                    final String signature,
+                    final String[] exceptions
+            ) {
+                if ((access & ACC_NATIVE) != 0) {
+                    nativeMethods.add(name + descriptor);
+                }
+
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        return new ClassMetadata(
+                classReader.getSuperName(),
+                classReader.getInterfaces(),
+                (classReader.getAccess() & ACC_INTERFACE) != 0,
+                nativeMethods.isEmpty() ? Collections.emptySet() : nativeMethods
+        );
+    }
+
+    static final class ClassMetadata {
+
+        private static final ClassMetadata UNKNOWN = new ClassMetadata(OBJECT_TYPE, new String[0], false, Collections.emptySet());
+
+        private final String superName;
+        private final List<String> interfaces;
+        private final boolean isInterface;
+        private final Set<String> nativeMethods;
+
+        private ClassMetadata(
+                final String superName,
+                final String[] interfaces,
+                final boolean isInterface,
+                final Set<String> nativeMethods
+        ) {
+            this.superName = superName == null ? OBJECT_TYPE : superName;
+            this.interfaces = Collections.unmodifiableList(Arrays.asList(interfaces));
+            this.isInterface = isInterface;
+            this.nativeMethods = nativeMethods;
+        }
+
+        String superName() {
+            return this.superName;
+        }
+
+        List<String> interfaces() {
+            return this.interfaces;
+        }
+
+        boolean isInterface() {
+            return this.isInterface;
+        }
+
+        boolean isNativeMethod(final String methodName, final String methodDesc) {
+            return !this.nativeMethods.isEmpty() && this.nativeMethods.contains(methodName + methodDesc);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package ru.joke.profiler.transformation;
+
+import ru.joke.profiler.configuration.DynamicProfilingConfiguration;
+import ru.joke.profiler.configuration.DynamicProfilingConfigurationHolder;
+import ru.joke.profiler.util.ProfilerThreadFactory;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+import static ru.joke.profiler.util.BytecodeUtil.toBytecodeFormat;
+
+/*
+ * Retransforms the loaded classes affected by the changes of the dynamic exclusions, so the excluded methods
+ * carry no probes at all, and restores the original bytecode of all the classes on detaching. Classes are
+ * retransformed in batches of the limited size not more often than once per interval: each batch costs a safepoint.
+ */
+public final class ClassesRetransformer implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ClassesRetransformer.class.getCanonicalName());
+
+    private static final String RETRANSFORMATION_THREAD_NAME = "profiler-retransformation-thread";
+    private static final String DYNAMIC_CONFIGURATION_SUBSCRIPTION_ID = "classes-retransformation";
+    private static final char SEPARATOR = '/';
+
+    private final RetransformationConfiguration configuration;
+    private final Instrumentation instrumentation;
+    private final ProfilingTransformer transformer;
+    private final Predicate<String> transformationFilter;
+    private final DynamicProfilingConfigurationHolder dynamicConfigurationHolder;
+    private final ScheduledExecutorService retransformationExecutor;
+    private final Set<Class<?>> pendingClasses;
+
+    private DynamicProfilingConfiguration appliedDynamicConfiguration;
+    private boolean detached;
+    private boolean transformerRemoved;
+
+    public ClassesRetransformer(
+            final RetransformationConfiguration configuration,
+            final Instrumentation instrumentation,
+            final ProfilingTransformer transformer,
+            final Predicate<String> transformationFilter,
+            final DynamicProfilingConfigurationHolder dynamicConfigurationHolder
+    ) {
+        this.configuration = checkNotNull(configuration, "configuration");
+        this.instrumentation = checkNotNull(instrumentation, "instrumentation");
+        this.transformer = checkNotNull(transformer, "transformer");
+        this.transformationFilter = checkNotNull(transformationFilter, "transformationFilter");
+        this.dynamicConfigurationHolder = dynamicConfigurationHolder;
+        this.retransformationExecutor = Executors.newSingleThreadScheduledExecutor(new ProfilerThreadFactory(RETRANSFORMATION_THREAD_NAME, false));
+        this.pendingClasses = new LinkedHashSet<>();
+    }
+
+    public void init() {
+        if (this.configuration.enabled() && this.dynamicConfigurationHolder != null) {
+            synchronized (this) {
+                this.appliedDynamicConfiguration = this.dynamicConfigurationHolder.get();
+            }
+
+            this.dynamicConfigurationHolder.subscribeOnChanges(DYNAMIC_CONFIGURATION_SUBSCRIPTION_ID, (id, c) -> onDynamicConfigurationChanged(c));
+        }
+
+        this.retransformationExecutor.scheduleWithFixedDelay(
+                this::retransformNextBatchSafely,
+                this.configuration.batchIntervalMs(),
+                this.configuration.batchIntervalMs(),
+                TimeUnit.MILLISECONDS
+        );
+
+        logger.info("Classes retransformer initialized with configuration: " + this.configuration);
+    }
+
+    /*
+     * Restores the original bytecode of all the loaded classes, the transformer is removed
+     * after the last batch is retransformed. Profiling can't be attached back after that.
+     */
+    public void detach() {
+        synchronized (this) {
+            if (this.detached) {
+                return;
+            }
+
+            this.detached = true;
+            this.transformer.detach();
+            this.pendingClasses.clear();
+        }
+
+        if (this.dynamicConfigurationHolder != null) {
+            this.dynamicConfigurationHolder.unsubscribe(DYNAMIC_CONFIGURATION_SUBSCRIPTION_ID);
+        }
+
+        final int classesCount = enqueue(className -> true);
+        logger.info(String.format("Profiler will be detached, %d classes will be restored", classesCount));
+    }
+
+    /*
+     * Retransforms the loaded classes with the given names (in the bytecode format).
+     */
+    void retransform(final Set<String> classNames) {
+        synchronized (this) {
+            if (this.detached) {
+                return;
+            }
+        }
+
+        final int classesCount = enqueue(classNames::contains);
+        logger.fine(() -> String.format("%d classes will be retransformed", classesCount));
+    }
+
+    @Override
+    public void close() {
+        this.retransformationExecutor.shutdownNow();
+    }
+
+    private synchronized void onDynamicConfigurationChanged(final DynamicProfilingConfiguration dynamicConfiguration) {
+        if (this.detached) {
+            return;
+        }
+
+        final Predicate<String> affectedClassesFilter = findAffectedClasses(this.appliedDynamicConfiguration, dynamicConfiguration);
+        this.appliedDynamicConfiguration = dynamicConfiguration;
+        if (affectedClassesFilter == null) {
+            return;
+        }
+
+        final int classesCount = enqueue(affectedClassesFilter);
+        logger.info(String.format("Dynamic exclusions are changed, %d classes will be retransformed", classesCount));
+    }
+
+    private Predicate<String> findAffectedClasses(
+            final DynamicProfilingConfiguration previous,
+            final DynamicProfilingConfiguration actual
+    ) {
+        final boolean previouslyDisabled = previous != null && previous.profilingDisabled();
+        final boolean actuallyDisabled = actual != null && actual.profilingDisabled();
+        final String previousMask = previous == null ? null : previous.excludedResourcesMask();
+        final String actualMask = actual == null ? null : actual.excludedResourcesMask();
+        if (previouslyDisabled != actuallyDisabled || !Objects.equals(previousMask, actualMask)) {
+            return className -> true;
+        }
+
+        final Set<String> previousExcluded = previous == null ? Collections.emptySet() : previous.excludedResources();
+        final Set<String> actualExcluded = actual == null ? Collections.emptySet() : actual.excludedResources();
+        if (previousExcluded.equals(actualExcluded)) {
+            return null;
+        }
+
+        final List<String> changedPrefixes = new ArrayList<>();
+        previousExcluded.stream().filter(p -> !actualExcluded.contains(p)).forEach(changedPrefixes::add);
+        actualExcluded.stream().filter(p -> !previousExcluded.contains(p)).forEach(changedPrefixes::add);
+        changedPrefixes.replaceAll(p -> p.replace('.', SEPARATOR));
+
+        // prefix covers the whole class (or its package) or some of its methods
+        return className -> changedPrefixes.stream().anyMatch(p -> className.startsWith(p) || p.startsWith(className + SEPARATOR));
+    }
+
+    private int enqueue(final Predicate<String> affectedClassesFilter) {
+        final List<Class<?>> affectedClasses = new ArrayList<>();
+        for (final Class<?> loadedClass : this.instrumentation.getAllLoadedClasses()) {
+            if (!this.instrumentation.isModifiableClass(loadedClass)) {
+                continue;
+            }
+
+            final String className = toBytecodeFormat(loadedClass);
+            if (this.transformationFilter.test(className) && affectedClassesFilter.test(className)) {
+                affectedClasses.add(loadedClass);
+            }
+        }
+
+        synchronized (this) {
+            this.pendingClasses.addAll(affectedClasses);
+        }
+
+        return affectedClasses.size();
+    }
+
+    private void retransformNextBatchSafely() {
+        try {
+            retransformNextBatch();
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "Unable to retransform classes", ex);
+        }
+    }
+
+    private void retransformNextBatch() {
+        final Class<?>[] batch;
+        synchronized (this) {
+            if (this.pendingClasses.isEmpty()) {
+                if (this.detached && !this.transformerRemoved) {
+                    this.instrumentation.removeTransformer(this.transformer);
+                    this.transformerRemoved = true;
+                    logger.info("Profiler detached, original bytecode of the classes is restored");
+                }
+
+                return;
+            }
+
+            batch = new Class<?>[Math.min(this.configuration.batchSize(), this.pendingClasses.size())];
+            final Iterator<Class<?>> iterator = this.pendingClasses.iterator();
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = iterator.next();
+                iterator.remove();
+            }
+        }
+
+        try {
+            this.instrumentation.retransformClasses(batch);
+        } catch (UnmodifiableClassException | LinkageError | RuntimeException ex) {
+            // the whole batch is rejected on the first failure, so the classes are retried one by one
+            logger.log(Level.FINE, "Unable to retransform batch of classes, classes will be retransformed one by one", ex);
+            for (final Class<?> batchClass : batch) {
+                retransformClass(batchClass);
+            }
+        }
+    }
+
+    private void retransformClass(final Class<?> targetClass) {
+        try {
+            this.instrumentation.retransformClasses(targetClass);
+        } catch (UnmodifiableClassException | LinkageError | RuntimeException ex) {
+            logger.log(Level.WARNING, "Unable to retransform class " + targetClass.getName(), ex);
+        }
+    }
+}
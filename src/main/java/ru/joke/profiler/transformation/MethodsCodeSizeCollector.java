@@ -0,0 +1,65 @@
+package ru.joke.profiler.transformation;
+
+import org.objectweb.asm.ClassReader;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Reads the sizes of the Code attributes of the class methods directly from the class file structure:
+ * the sizes aren't exposed by the visitors, and the full parsing isn't needed to get them.
+ */
+final class MethodsCodeSizeCollector {
+
+    private static final String CODE_ATTRIBUTE = "Code";
+    private static final int CODE_LENGTH_OFFSET = 4;
+
+    /*
+     * Returns the code sizes of the non-abstract methods keyed by the method key (name + descriptor).
+     */
+    Map<String, Integer> collect(final ClassReader classReader) {
+        final char[] buffer = new char[classReader.getMaxStringLength()];
+        final Map<String, Integer> result = new HashMap<>();
+
+        // access flags, this class, super class, interfaces
+        int offset = classReader.header + 6;
+        offset += 2 + classReader.readUnsignedShort(offset) * 2;
+
+        final int fieldsCount = classReader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < fieldsCount; i++) {
+            offset = skipMember(classReader, offset);
+        }
+
+        final int methodsCount = classReader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < methodsCount; i++) {
+            final String name = classReader.readUTF8(offset + 2, buffer);
+            final String descriptor = classReader.readUTF8(offset + 4, buffer);
+
+            final int attributesCount = classReader.readUnsignedShort(offset + 6);
+            offset += 8;
+            for (int j = 0; j < attributesCount; j++) {
+                final String attributeName = classReader.readUTF8(offset, buffer);
+                final int attributeLength = classReader.readInt(offset + 2);
+                if (CODE_ATTRIBUTE.equals(attributeName)) {
+                    result.put(TrivialMethodsClassifier.toMethodKey(name, descriptor), classReader.readInt(offset + 6 + CODE_LENGTH_OFFSET));
+                }
+
+                offset += 6 + attributeLength;
+            }
+        }
+
+        return result;
+    }
+
+    private int skipMember(final ClassReader classReader, final int memberOffset) {
+        final int attributesCount = classReader.readUnsignedShort(memberOffset + 6);
+        int offset = memberOffset + 8;
+        for (int i = 0; i < attributesCount; i++) {
+            offset += 6 + classReader.readInt(offset + 2);
+        }
+
+        return offset;
+    }
+}
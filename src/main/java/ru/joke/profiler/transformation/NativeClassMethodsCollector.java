@@ -1,117 +1,35 @@
 package ru.joke.profiler.transformation;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
-import ru.joke.profiler.ProfilerAgent;
-
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
-import static org.objectweb.asm.ClassReader.*;
-import static org.objectweb.asm.Opcodes.ASM9;
 import static ru.joke.profiler.util.ArgUtil.checkNotNull;
-import static ru.joke.profiler.util.BytecodeUtil.toCanonicalFormat;
-
-public final class NativeClassMethodsCollector extends ClassVisitor {
 
-    private static final Logger logger = Logger.getLogger(ProfilerAgent.class.getCanonicalName());
+public final class NativeClassMethodsCollector {
 
     private final Predicate<String> filter;
-    private final Map<String, Set<MethodInfo>> class2methodsMap;
-    private final ThreadLocal<Set<MethodInfo>> classMethods;
+    private final ClassMetadataIndex classMetadataIndex;
 
-    public NativeClassMethodsCollector(final Predicate<String> filter) {
-        super(ASM9);
-        this.class2methodsMap = new ConcurrentHashMap<>(4096, 0.5f, 256);
-        this.classMethods = ThreadLocal.withInitial(HashSet::new);
+    public NativeClassMethodsCollector(
+            final Predicate<String> filter,
+            final ClassMetadataIndex classMetadataIndex
+    ) {
         this.filter = checkNotNull(filter, "filter");
+        this.classMetadataIndex = checkNotNull(classMetadataIndex, "classMetadataIndex");
     }
 
-    @Override
-    public MethodVisitor visitMethod(
-            final int access,
-            final String name,
-            final String descriptor,
-            final String signature,
-            final String[] exceptions
-    ) {
-        if ((access & Opcodes.ACC_NATIVE) == 0) {
-            return null;
-        }
-
-        this.classMethods.get().add(new MethodInfo(name, descriptor));
-        return null;
+    /*
+     * Only the callees of the profiled classes are resolved through the class loader.
+     */
+    boolean isCalleeTracked(final String owner, final String methodName) {
+        return this.filter.test(owner + "." + methodName);
     }
 
     boolean isNativeMethod(
+            final ClassLoader loader,
             final String owner,
             final String methodName,
             final String methodDesc
     ) {
-        final String resource = owner + "." + methodName;
-        if (!this.filter.test(resource)) {
-            return false;
-        }
-
-        final MethodInfo methodInfo = new MethodInfo(methodName, methodDesc);
-        return this.class2methodsMap.computeIfAbsent(owner, this::collectNativeMethodsInClass).contains(methodInfo);
-    }
-
-    private Set<MethodInfo> collectNativeMethodsInClass(final String ownerClass) {
-
-        try {
-            final ClassReader classReader = new ClassReader(toCanonicalFormat(ownerClass));
-            classReader.accept(this, SKIP_CODE | SKIP_FRAMES | SKIP_DEBUG);
-
-            return this.classMethods.get();
-        } catch (Exception ex) {
-            logger.log(Level.SEVERE, String.format("Unable to collect native methods from class: %s", ownerClass), ex);
-            return Collections.emptySet();
-        } finally {
-            this.classMethods.remove();
-        }
-    }
-
-    static class MethodInfo {
-
-        private final String name;
-        private final String descriptor;
-
-        MethodInfo(
-                final String name,
-                final String descriptor
-        ) {
-            this.name = name;
-            this.descriptor = descriptor;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (o == null || getClass() != o.getClass()) {
-                return false;
-            }
-
-            final MethodInfo that = (MethodInfo) o;
-            return name.equals(that.name)
-                    && descriptor.equals(that.descriptor);
-        }
-
-        @Override
-        public int hashCode() {
-            int result = name.hashCode();
-            result = 31 * result + descriptor.hashCode();
-            return result;
-        }
+        return this.classMetadataIndex.find(loader, owner).isNativeMethod(methodName, methodDesc);
     }
 }
@@ -1,40 +1,88 @@
 package ru.joke.profiler.transformation;
 
 import org.objectweb.asm.*;
+import org.objectweb.asm.commons.AnalyzerAdapter;
 import org.objectweb.asm.commons.LocalVariablesSorter;
+import ru.joke.profiler.configuration.DynamicProfilingConfiguration;
 import ru.joke.profiler.configuration.StaticProfilingConfiguration;
 import ru.joke.profiler.output.ExecutionTimeRegistrarMetadataSelector;
+import ru.joke.profiler.output.MethodSymbolTable;
 import ru.joke.profiler.transformation.spy.SpyInjector;
 
+import java.util.*;
+
 import static org.objectweb.asm.Opcodes.*;
 import static ru.joke.profiler.util.BytecodeUtil.*;
 
 final class ProfilingClassTransformer extends ClassVisitor {
 
-    private static final String SYSTEM_CLASS_NAME = toBytecodeFormat(System.class);
-    private static final String NANO_TIME_METHOD_NAME = "nanoTime";
-    private static final String NANO_TIME_METHOD_SIGNATURE = buildMethodDescriptor(System.class, NANO_TIME_METHOD_NAME);
+    private static final String THROWABLE_TYPE = toBytecodeFormat(Throwable.class);
 
+    private final ClassLoader loader;
     private final String className;
     private final StaticProfilingConfiguration profilingConfiguration;
+    private final DynamicProfilingConfiguration dynamicProfilingConfiguration;
     private final ExecutionTimeRegistrarMetadataSelector registrarMetadataSelector;
     private final NativeClassMethodsCollector nativeClassMethodsCollector;
     private final SpyInjector spyInjector;
+    private final MethodSymbolTable methodSymbolTable;
+    private final Handle probeBootstrapHandle;
+    private final Set<String> trivialMethods;
+    private final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService;
+    private final boolean preserveFrames;
+
+    private boolean invokeDynamicSupported;
+    private int elidedProbes;
+    private boolean dependsOnOtherClasses;
 
     ProfilingClassTransformer(
             final ClassWriter classWriter,
+            final ClassLoader loader,
             final String className,
             final StaticProfilingConfiguration profilingConfiguration,
+            final DynamicProfilingConfiguration dynamicProfilingConfiguration,
             final ExecutionTimeRegistrarMetadataSelector registrarMetadataSelector,
             final NativeClassMethodsCollector nativeClassMethodsCollector,
-            final SpyInjector spyInjector
+            final SpyInjector spyInjector,
+            final Set<String> trivialMethods,
+            final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService,
+            final boolean preserveFrames
     ) {
         super(Opcodes.ASM9, classWriter);
+        this.loader = loader;
         this.className = className;
         this.profilingConfiguration = profilingConfiguration;
+        this.dynamicProfilingConfiguration = dynamicProfilingConfiguration;
         this.registrarMetadataSelector = registrarMetadataSelector;
         this.nativeClassMethodsCollector = nativeClassMethodsCollector;
         this.spyInjector = spyInjector;
+        this.methodSymbolTable = MethodSymbolTable.getInstance();
+        this.trivialMethods = trivialMethods;
+        this.adaptiveDeinstrumentationService = adaptiveDeinstrumentationService;
+        this.preserveFrames = preserveFrames;
+        this.probeBootstrapHandle = new Handle(
+                H_INVOKESTATIC,
+                registrarMetadataSelector.selectRegistrarClass(),
+                registrarMetadataSelector.selectProbeBootstrapMethod(),
+                registrarMetadataSelector.selectProbeBootstrapMethodSignature(),
+                false
+        );
+    }
+
+    @Override
+    public void visit(
+            final int version,
+            final int access,
+            final String name,
+            final String signature,
+            final String superName,
+            final String[] interfaces
+    ) {
+        /*
+         * Class files prior to Java 7 can't contain invokedynamic, the registrar is called directly in them.
+         */
+        this.invokeDynamicSupported = (version & 0xFFFF) >= V1_7;
+        super.visit(version, access, name, signature, superName, interfaces);
     }
 
     @Override
@@ -58,68 +106,114 @@ final class ProfilingClassTransformer extends ClassVisitor {
         }
 
         final String fullMethodName = this.className + "." + methodName;
-        if (!this.profilingConfiguration.isResourceMustBeProfiled(fullMethodName)) {
+        if (!this.profilingConfiguration.isResourceMustBeProfiled(fullMethodName)
+                || this.dynamicProfilingConfiguration != null && !this.dynamicProfilingConfiguration.isResourceMustBeProfiled(fullMethodName)
+                || this.adaptiveDeinstrumentationService != null && this.adaptiveDeinstrumentationService.isMethodDemoted(fullMethodName)) {
             return methodVisitor;
         }
 
+        if (this.trivialMethods.contains(TrivialMethodsClassifier.toMethodKey(methodName, methodDesc))) {
+            this.elidedProbes++;
+            return methodVisitor;
+        }
+
+        /*
+         * Analyzer tracks the frames of the original and injected code, so the frames of the injected labels
+         * are emitted directly and the writer doesn't recompute the frames of the whole class.
+         */
+        final AnalyzerAdapter analyzer =
+                this.preserveFrames
+                        ? new AnalyzerAdapter(this.className, methodAccess, methodName, methodDesc, methodVisitor)
+                        : null;
         return new MethodExecutionTimeRegistrationTransformer(
                 Opcodes.ASM9,
                 methodAccess,
                 methodDesc,
-                methodVisitor,
-                fullMethodName
+                analyzer,
+                analyzer == null ? methodVisitor : analyzer,
+                fullMethodName,
+                this.methodSymbolTable.intern(fullMethodName)
         );
     }
 
+    int elidedProbes() {
+        return this.elidedProbes;
+    }
+
+    /*
+     * Callees of the other classes were resolved through the class loader: the bytecode depends on them.
+     */
+    boolean dependsOnOtherClasses() {
+        return this.dependsOnOtherClasses;
+    }
+
+    private boolean isNativeCallee(
+            final String owner,
+            final String name,
+            final String descriptor
+    ) {
+        if (!this.nativeClassMethodsCollector.isCalleeTracked(owner, name)) {
+            return false;
+        }
+
+        if (!owner.equals(this.className)) {
+            this.dependsOnOtherClasses = true;
+        }
+
+        return this.nativeClassMethodsCollector.isNativeMethod(this.loader, owner, name, descriptor);
+    }
+
     private class MethodExecutionTimeRegistrationTransformer extends LocalVariablesSorter {
 
-        private final String methodName;
+        private final int methodId;
         private final boolean isConstructor;
+        private final Type returnType;
+        private final AnalyzerAdapter analyzer;
+        private final List<NativeCallHandler> nativeCallHandlers;
+        private final List<Label> tryBlocksBoundaries;
 
         private int timestampEnterVarIndex;
+        private int nativeMethodStartVarIndex = -1;
 
         private Label tryStartLabel;
         private Label tryHandlerLabel;
-        private Label lastThrowLabel;
+        private Label exitLabel;
 
         private int lastInstruction;
+        private int returnOpcode;
 
         MethodExecutionTimeRegistrationTransformer(
                 final int api,
                 final int access,
                 final String descriptor,
+                final AnalyzerAdapter analyzer,
                 final MethodVisitor methodVisitor,
-                final String methodName
+                final String methodName,
+                final int methodId
         ) {
             super(api, access, descriptor, methodVisitor);
-            this.methodName = methodName;
+            this.methodId = methodId;
             this.isConstructor = methodName.endsWith(CONSTRUCTOR_NAME);
+            this.returnType = Type.getReturnType(descriptor);
+            this.analyzer = analyzer;
+            this.nativeCallHandlers = new ArrayList<>();
+            this.tryBlocksBoundaries = new ArrayList<>();
         }
 
         @Override
         public void visitCode() {
             /*
-             * ~ ExecutionTimeRegistrar.getInstance().registerMethodEnter();
-             */
-            invokeMethodEnterRegistration(this.methodName);
-
-            /*
-             * ~ long startTime = System.nanoTime();
+             * ~ long startTime = ExecutionTimeRegistrar.getInstance().registerMethodEnter(methodId);
              */
             this.timestampEnterVarIndex = newLocal(Type.LONG_TYPE);
-            invokeNanoTime();
+            invokeMethodEnterRegistration(this.methodId);
             mv.visitVarInsn(LSTORE, this.timestampEnterVarIndex);
 
             /*
              * Try block in constructors starts only after the parent class constructor is called.
              */
             if (!this.isConstructor) {
-                injectTryBlockBeginning(
-                        this.methodName,
-                        this.timestampEnterVarIndex,
-                        this.tryHandlerLabel = new Label(),
-                        this.tryStartLabel = new Label()
-                );
+                injectTryBlockBeginning();
             }
 
             super.visitCode();
@@ -133,7 +227,7 @@ final class ProfilingClassTransformer extends ClassVisitor {
                 final String descriptor,
                 final boolean isInterface
         ) {
-            final boolean isNativeMethod = nativeClassMethodsCollector.isNativeMethod(owner, name, descriptor);
+            final boolean isNativeMethod = isNativeCallee(owner, name, descriptor);
             if (isNativeMethod) {
                 injectNativeMethodExecutionRegistration(
                         opcode,
@@ -157,12 +251,7 @@ final class ProfilingClassTransformer extends ClassVisitor {
                     && opcode == INVOKESPECIAL
                     && this.tryStartLabel == null
                     && this.lastInstruction != DUP) {
-                injectTryBlockBeginning(
-                        this.methodName,
-                        this.timestampEnterVarIndex,
-                        this.tryHandlerLabel = new Label(),
-                        this.tryStartLabel = new Label()
-                );
+                injectTryBlockBeginning();
             } else {
                 this.lastInstruction = opcode;
             }
@@ -177,21 +266,65 @@ final class ProfilingClassTransformer extends ClassVisitor {
             }
 
             super.visitInsn(opcode);
-            if (opcode == Opcodes.ATHROW) {
-                this.lastThrowLabel = new Label();
-                mv.visitLabel(this.lastThrowLabel);
-            }
         }
 
         @Override
         public void visitMaxs(int maxStack, int maxLocals) {
-            if (this.lastThrowLabel != null && this.lastThrowLabel.getOffset() > this.tryStartLabel.getOffset()) {
-                mv.visitTryCatchBlock(this.tryStartLabel, this.lastThrowLabel, this.tryHandlerLabel, null);
+            /*
+             * Handlers and the shared exit block are placed after the method code: no jumps over them are needed
+             * and their frames never collide with the frames of the original code. Handlers of the native calls
+             * made within the try block of the method rethrow into the method handler, so they are covered by it too.
+             */
+            for (final NativeCallHandler handler : this.nativeCallHandlers) {
+                if (handler.coveredByMethodTryBlock) {
+                    injectTryHandler(handler.nativeMethodId, handler.startVarIndex, handler.handlerLabel, handler.frameLocals, true);
+                }
+            }
+
+            if (this.tryStartLabel != null) {
+                final Label tryEndLabel = new Label();
+                mv.visitLabel(tryEndLabel);
+                this.tryBlocksBoundaries.add(this.tryStartLabel);
+                this.tryBlocksBoundaries.add(tryEndLabel);
+            }
+
+            for (final NativeCallHandler handler : this.nativeCallHandlers) {
+                if (!handler.coveredByMethodTryBlock) {
+                    injectTryHandler(handler.nativeMethodId, handler.startVarIndex, handler.handlerLabel, handler.frameLocals, true);
+                }
+            }
+
+            final Object[] frameLocals = composeMethodFrameLocals();
+            if (this.tryHandlerLabel != null) {
+                injectTryHandler(this.methodId, this.timestampEnterVarIndex, this.tryHandlerLabel, frameLocals, false);
+            }
+
+            if (this.exitLabel != null) {
+                injectExitBlock(frameLocals);
+            }
+
+            for (int i = 0; i < this.tryBlocksBoundaries.size(); i += 2) {
+                final Label tryStartLabel = this.tryBlocksBoundaries.get(i);
+                final Label tryEndLabel = this.tryBlocksBoundaries.get(i + 1);
+                if (tryStartLabel.getOffset() < tryEndLabel.getOffset()) {
+                    mv.visitTryCatchBlock(tryStartLabel, tryEndLabel, this.tryHandlerLabel, null);
+                }
             }
 
             super.visitMaxs(maxStack, maxLocals);
         }
 
+        /*
+         * Start of the native call is assigned right before each call, so it is unset (TOP) in the frames
+         * of the original code: otherwise a frame reachable from the path where the call wasn't made would be invalid.
+         */
+        @Override
+        protected void updateNewLocals(final Object[] newLocals) {
+            if (this.nativeMethodStartVarIndex >= 0 && this.nativeMethodStartVarIndex < newLocals.length) {
+                newLocals[this.nativeMethodStartVarIndex] = TOP;
+            }
+        }
+
         private void injectNativeMethodExecutionRegistration(
                 final int opcode,
                 final String owner,
@@ -199,26 +332,33 @@ final class ProfilingClassTransformer extends ClassVisitor {
                 final String descriptor,
                 final boolean isInterface
         ) {
-            final String nativeMethodName = toCanonicalFormat(owner) + '.' + name;
+            final int nativeMethodId = methodSymbolTable.intern(toCanonicalFormat(owner) + '.' + name);
             /*
-             * ~ ExecutionTimeRegistrar.getInstance().registerMethodEnter();
+             * ~ long startTime = ExecutionTimeRegistrar.getInstance().registerMethodEnter(methodId);
+             * Native calls never overlap, so all of them share the same local.
              */
-            invokeMethodEnterRegistration(nativeMethodName);
+            if (this.nativeMethodStartVarIndex < 0) {
+                this.nativeMethodStartVarIndex = newLocal(Type.LONG_TYPE);
+            }
 
-            /*
-             * ~ long startTime = System.nanoTime();
-             */
-            final int nativeMethodStartVarIndex = newLocal(Type.LONG_TYPE);
-            invokeNanoTime();
-            mv.visitVarInsn(LSTORE, nativeMethodStartVarIndex);
+            invokeMethodEnterRegistration(nativeMethodId);
+            mv.visitVarInsn(LSTORE, this.nativeMethodStartVarIndex);
 
             final Label tryHandlerLabel = new Label();
             final Label tryStartLabel = new Label();
-            injectTryBlockBeginning(
-                    nativeMethodName,
-                    nativeMethodStartVarIndex,
-                    tryHandlerLabel,
-                    tryStartLabel
+            mv.visitLabel(tryStartLabel);
+
+            /*
+             * Try block covers only the native method call, so the handler frame is exactly the frame of the call.
+             */
+            this.nativeCallHandlers.add(
+                    new NativeCallHandler(
+                            nativeMethodId,
+                            this.nativeMethodStartVarIndex,
+                            tryHandlerLabel,
+                            this.analyzer == null ? null : toFrameTypes(this.analyzer.locals),
+                            this.tryStartLabel != null
+                    )
             );
 
             super.visitMethodInsn(
@@ -232,187 +372,268 @@ final class ProfilingClassTransformer extends ClassVisitor {
             final Label tryEndLabel = new Label();
             mv.visitLabel(tryEndLabel);
 
-            insertElapsedTimeRegistrationCall(nativeMethodName, nativeMethodStartVarIndex);
+            /*
+             * ~ ExecutionTimeRegistrar.getInstance().registerNativeMethodCompletion(methodId, startTime);
+             */
+            invokeMethodCompletionRegistration(nativeMethodId, this.nativeMethodStartVarIndex, true);
 
             mv.visitTryCatchBlock(tryStartLabel, tryEndLabel, tryHandlerLabel, null);
         }
 
         private void onSuccessMethodExecution(final int returnOpcode) {
+            /*
+             * All returns jump to the single exit block with the registration call. The block is entered
+             * with nothing but the return value on the stack, so the returns with the other values below it
+             * (never emitted by javac) and the returns without the known frames register the exit in place.
+             */
+            if (canJumpToExitBlock()) {
+                if (this.exitLabel == null) {
+                    this.exitLabel = new Label();
+                    this.returnOpcode = returnOpcode;
+                }
+
+                mv.visitJumpInsn(GOTO, this.exitLabel);
+                return;
+            }
+
             final Label tryEndLabel = new Label();
             mv.visitLabel(tryEndLabel);
 
-            insertElapsedTimeRegistrationCall(this.methodName, this.timestampEnterVarIndex);
-
+            invokeMethodCompletionRegistration(this.methodId, this.timestampEnterVarIndex, false);
             super.visitInsn(returnOpcode);
 
-            if (this.tryStartLabel.getOffset() < tryEndLabel.getOffset()) {
-                mv.visitTryCatchBlock(this.tryStartLabel, tryEndLabel, this.tryHandlerLabel, null);
-            }
+            if (this.tryStartLabel != null) {
+                this.tryBlocksBoundaries.add(this.tryStartLabel);
+                this.tryBlocksBoundaries.add(tryEndLabel);
 
-            this.tryStartLabel = new Label();
-            mv.visitLabel(this.tryStartLabel);
+                this.tryStartLabel = new Label();
+                mv.visitLabel(this.tryStartLabel);
+            }
         }
 
-        private void injectTryBlockBeginning(
-                final String instrumentedMethodName,
-                final int timestampEnterVarIndex,
-                final Label tryHandlerLabel,
-                final Label tryStartLabel
-        ) {
-            final Label codeStart = new Label();
-            mv.visitJumpInsn(GOTO, codeStart);
-
-            injectTryHandler(instrumentedMethodName, timestampEnterVarIndex, tryHandlerLabel);
+        private boolean canJumpToExitBlock() {
+            return this.analyzer != null
+                    && this.analyzer.stack != null
+                    && this.analyzer.stack.size() == this.returnType.getSize();
+        }
 
-            mv.visitLabel(codeStart);
-            mv.visitLabel(tryStartLabel);
+        private void injectTryBlockBeginning() {
+            this.tryHandlerLabel = new Label();
+            this.tryStartLabel = new Label();
+            mv.visitLabel(this.tryStartLabel);
         }
 
         private void injectTryHandler(
-                final String instrumentedMethodName,
+                final int instrumentedMethodId,
                 final int timestampEnterVarIndex,
-                final Label tryHandlerLabel
+                final Label tryHandlerLabel,
+                final Object[] frameLocals,
+                final boolean nativeMethodCall
         ) {
             mv.visitLabel(tryHandlerLabel);
-            insertElapsedTimeRegistrationCall(instrumentedMethodName, timestampEnterVarIndex);
-            mv.visitInsn(ATHROW);
-        }
+            visitFrame(frameLocals, THROWABLE_TYPE);
 
-        private void insertElapsedTimeRegistrationCall(
-                final String instrumentedMethodName,
-                final int timestampEnterVarIndex
-        ) {
             /*
-             * ~ long endTime = System.nanoTime();
+             * ~ ExecutionTimeRegistrar.getInstance().registerMethodError();
              */
-            final int timestampExitVarIndex = newLocal(Type.LONG_TYPE);
-            invokeNanoTime();
-            mv.visitVarInsn(LSTORE, timestampExitVarIndex);
+            invokeMethodErrorRegistration(instrumentedMethodId);
+            invokeMethodCompletionRegistration(instrumentedMethodId, timestampEnterVarIndex, nativeMethodCall);
+            mv.visitInsn(ATHROW);
+        }
+
+        private void injectExitBlock(final Object[] frameLocals) {
+            mv.visitLabel(this.exitLabel);
+            visitFrame(frameLocals, toFrameType(this.returnType));
 
             /*
-             * ~ long elapsedTime = endTime - startTime;
+             * ~ ExecutionTimeRegistrar.getInstance().registerMethodCompletion(methodId, startTime);
              */
-            mv.visitVarInsn(LLOAD, timestampExitVarIndex);
-            mv.visitVarInsn(LLOAD, timestampEnterVarIndex);
-            mv.visitInsn(LSUB);
-
-            final int elapsedTimeVarIndex = newLocal(Type.LONG_TYPE);
-            mv.visitVarInsn(LSTORE, elapsedTimeVarIndex);
-
-            final long minExecutionThreshold = profilingConfiguration.minExecutionThresholdNs();
-            if (minExecutionThreshold > 0) {
-
-                /*
-                 * ~ if (elapsedTime >= minExecutionThreshold) {
-                 *       ExecutionTimeRegistrar.getInstance().(registerDynamic(this.method, startTime, elapsedTime) | registerStatic(this.method, startTime, elapsedTime));
-                 *   } else {
-                 *       ExecutionTimeRegistrar.getInstance().registerMethodExit();
-                 *   }
-                 */
-                mv.visitVarInsn(LLOAD, elapsedTimeVarIndex);
-                mv.visitLdcInsn(minExecutionThreshold);
-                mv.visitInsn(LCMP);
-
-                final Label jumpLabel = new Label();
-                mv.visitJumpInsn(IFLT, jumpLabel);
-
-                invokeMethodExitRegistration(instrumentedMethodName, elapsedTimeVarIndex, timestampEnterVarIndex);
-                final Label afterRegistrationCall = new Label();
-                mv.visitJumpInsn(GOTO, afterRegistrationCall);
+            invokeMethodCompletionRegistration(this.methodId, this.timestampEnterVarIndex, false);
+            super.visitInsn(this.returnOpcode);
+        }
 
-                mv.visitLabel(jumpLabel);
+        /*
+         * Handler and exit block of the method are reachable from all of its code, so only the enter timestamp
+         * is defined in their frames.
+         */
+        private Object[] composeMethodFrameLocals() {
+            if (this.analyzer == null) {
+                return null;
+            }
 
-                invokeMethodExitRegistration(instrumentedMethodName);
+            final Object[] locals = new Object[this.timestampEnterVarIndex + 1];
+            Arrays.fill(locals, TOP);
+            locals[this.timestampEnterVarIndex] = LONG;
+            return locals;
+        }
 
-                mv.visitLabel(afterRegistrationCall);
-            } else {
-                /*
-                 * ExecutionTimeRegistrar.getInstance().(registerDynamic(this.method, startTime, elapsedTime) | registerStatic(this.method, startTime, elapsedTime));
-                 */
-                invokeMethodExitRegistration(
-                        instrumentedMethodName,
-                        elapsedTimeVarIndex,
-                        timestampEnterVarIndex
-                );
+        private void visitFrame(final Object[] frameLocals, final Object stackType) {
+            if (this.analyzer != null) {
+                final Object[] stack = stackType == null ? new Object[0] : new Object[] { stackType };
+                mv.visitFrame(F_NEW, frameLocals.length, frameLocals, stack.length, stack);
             }
         }
 
-        private void invokeNanoTime() {
-            mv.visitMethodInsn(
-                    INVOKESTATIC,
-                    SYSTEM_CLASS_NAME,
-                    NANO_TIME_METHOD_NAME,
-                    NANO_TIME_METHOD_SIGNATURE,
-                    false
-            );
+        private void pushInt(final int value) {
+            if (value >= -1 && value <= 5) {
+                mv.visitInsn(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                mv.visitIntInsn(SIPUSH, value);
+            } else {
+                mv.visitLdcInsn(value);
+            }
         }
 
-        private void invokeMethodExitRegistration(
-                final String instrumentedMethodName,
-                final int elapsedTimeVarIndex,
-                final int timestampEnterVarIndex
+        private void invokeMethodCompletionRegistration(
+                final int instrumentedMethodId,
+                final int timestampEnterVarIndex,
+                final boolean nativeMethodCall
         ) {
-            final String registerMethodName = registrarMetadataSelector.selectExitTimeRegistrationMethod();
-            final String registerMethodSignature = registrarMetadataSelector.selectTimeRegistrationMethodSignature();
-            final String registrarClass = registrarMetadataSelector.selectRegistrarClass();
-            mv.visitMethodInsn(
-                    INVOKESTATIC,
-                    registrarClass,
-                    registrarMetadataSelector.selectRegistrarSingletonAccessorMethod(),
-                    registrarMetadataSelector.selectRegistrarSingletonAccessorSignature(),
-                    false
-            );
-
-            mv.visitLdcInsn(instrumentedMethodName);
+            if (!invokeDynamicSupported) {
+                loadRegistrarInstance();
+            }
 
+            pushInt(instrumentedMethodId);
             mv.visitVarInsn(LLOAD, timestampEnterVarIndex);
-            mv.visitVarInsn(LLOAD, elapsedTimeVarIndex);
 
-            mv.visitMethodInsn(
-                    INVOKEVIRTUAL,
-                    registrarClass,
-                    registerMethodName,
-                    registerMethodSignature,
-                    false
-            );
+            if (nativeMethodCall) {
+                invokeRegistrar(
+                        registrarMetadataSelector.selectNativeCompletionRegistrationMethod(),
+                        registrarMetadataSelector.selectNativeCompletionRegistrationMethodSignature()
+                );
+            } else {
+                invokeRegistrar(
+                        registrarMetadataSelector.selectCompletionRegistrationMethod(),
+                        registrarMetadataSelector.selectCompletionRegistrationMethodSignature()
+                );
+            }
         }
 
-        private void invokeMethodExitRegistration(final String instrumentedMethodName) {
-            final String exitRegistrationMethod = registrarMetadataSelector.selectExitRegistrationMethod();
-            invokeMethodVisitRegistration(exitRegistrationMethod, registrarMetadataSelector.selectExitRegistrationMethodSignature(), false, instrumentedMethodName);
+        private void invokeMethodErrorRegistration(final int instrumentedMethodId) {
+            final String errorRegistrationMethod = registrarMetadataSelector.selectErrorRegistrationMethod();
+            invokeMethodVisitRegistration(errorRegistrationMethod, registrarMetadataSelector.selectErrorRegistrationMethodSignature(), false, instrumentedMethodId);
         }
 
-        private void invokeMethodEnterRegistration(final String instrumentedMethodName) {
+        private void invokeMethodEnterRegistration(final int instrumentedMethodId) {
             final String enterRegistrationMethod = registrarMetadataSelector.selectEnterRegistrationMethod();
-            invokeMethodVisitRegistration(enterRegistrationMethod, registrarMetadataSelector.selectEnterRegistrationMethodSignature(), true, instrumentedMethodName);
+            invokeMethodVisitRegistration(enterRegistrationMethod, registrarMetadataSelector.selectEnterRegistrationMethodSignature(), true, instrumentedMethodId);
         }
 
         private void invokeMethodVisitRegistration(
                 final String visitMethodName,
                 final String signature,
-                final boolean loadInstrumentedMethodNameAsParameter,
-                final String instrumentedMethodName
+                final boolean loadInstrumentedMethodIdAsParameter,
+                final int instrumentedMethodId
         ) {
-            final String registrarClass = registrarMetadataSelector.selectRegistrarClass();
+            if (!invokeDynamicSupported) {
+                loadRegistrarInstance();
+            }
+
+            if (loadInstrumentedMethodIdAsParameter) {
+                pushInt(instrumentedMethodId);
+            }
+
+            invokeRegistrar(visitMethodName, signature);
+        }
+
+        private void loadRegistrarInstance() {
             mv.visitMethodInsn(
                     INVOKESTATIC,
-                    registrarClass,
+                    registrarMetadataSelector.selectRegistrarClass(),
                     registrarMetadataSelector.selectRegistrarSingletonAccessorMethod(),
                     registrarMetadataSelector.selectRegistrarSingletonAccessorSignature(),
                     false
             );
+        }
+
+        private void invokeRegistrar(
+                final String registrationMethodName,
+                final String registrationMethodSignature
+        ) {
+            if (invokeDynamicSupported) {
+                /*
+                 * ~ invokedynamic registrationMethodName(args) bound to the registrar instance
+                 *   and guarded by the global probes switch.
+                 */
+                mv.visitInvokeDynamicInsn(
+                        registrationMethodName,
+                        registrationMethodSignature,
+                        probeBootstrapHandle
+                );
+            } else {
+                mv.visitMethodInsn(
+                        INVOKEVIRTUAL,
+                        registrarMetadataSelector.selectRegistrarClass(),
+                        registrationMethodName,
+                        registrationMethodSignature,
+                        false
+                );
+            }
+        }
+    }
 
-            if (loadInstrumentedMethodNameAsParameter) {
-                mv.visitLdcInsn(instrumentedMethodName);
+    /*
+     * Converts the analyzer types (long and double take two slots) to the frame types (one entry per value).
+     */
+    private static Object[] toFrameTypes(final List<Object> types) {
+        final List<Object> result = new ArrayList<>(types.size());
+        for (int i = 0; i < types.size(); i++) {
+            final Object type = types.get(i);
+            result.add(type);
+            if (type == LONG || type == DOUBLE) {
+                i++;
             }
+        }
 
-            mv.visitMethodInsn(
-                    INVOKEVIRTUAL,
-                    registrarClass,
-                    visitMethodName,
-                    signature,
-                    false
-            );
+        return result.toArray();
+    }
+
+    /*
+     * Frame type of the value of the given type on the stack (null for void).
+     */
+    private static Object toFrameType(final Type type) {
+        switch (type.getSort()) {
+            case Type.VOID:
+                return null;
+            case Type.BOOLEAN:
+            case Type.CHAR:
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.INT:
+                return INTEGER;
+            case Type.FLOAT:
+                return FLOAT;
+            case Type.LONG:
+                return LONG;
+            case Type.DOUBLE:
+                return DOUBLE;
+            default:
+                return type.getInternalName();
+        }
+    }
+
+    private static final class NativeCallHandler {
+
+        private final int nativeMethodId;
+        private final int startVarIndex;
+        private final Label handlerLabel;
+        private final Object[] frameLocals;
+        private final boolean coveredByMethodTryBlock;
+
+        private NativeCallHandler(
+                final int nativeMethodId,
+                final int startVarIndex,
+                final Label handlerLabel,
+                final Object[] frameLocals,
+                final boolean coveredByMethodTryBlock
+        ) {
+            this.nativeMethodId = nativeMethodId;
+            this.startVarIndex = startVarIndex;
+            this.handlerLabel = handlerLabel;
+            this.frameLocals = frameLocals;
+            this.coveredByMethodTryBlock = coveredByMethodTryBlock;
         }
     }
 }
@@ -1,8 +1,9 @@
 package ru.joke.profiler.transformation;
 
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import ru.joke.profiler.configuration.DynamicProfilingConfiguration;
+import ru.joke.profiler.configuration.DynamicProfilingConfigurationHolder;
 import ru.joke.profiler.configuration.StaticProfilingConfiguration;
 import ru.joke.profiler.output.ExecutionTimeRegistrarMetadataSelector;
 import ru.joke.profiler.transformation.spy.SpyInjector;
@@ -10,33 +11,68 @@ import ru.joke.profiler.transformation.spy.SpyInjector;
 import java.lang.instrument.ClassFileTransformer;
 import java.security.ProtectionDomain;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import static org.objectweb.asm.Opcodes.V1_6;
 import static ru.joke.profiler.util.ArgUtil.checkNotNull;
 import static ru.joke.profiler.util.BytecodeUtil.*;
 
 public final class ProfilingTransformer implements ClassFileTransformer {
 
+    private static final Logger logger = Logger.getLogger(ProfilingTransformer.class.getCanonicalName());
+
+    private static final int MAJOR_VERSION_OFFSET = 6;
+    /*
+     * Default value of the HotSpot HugeMethodLimit: methods with the larger bytecode aren't JIT-compiled.
+     */
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
     private static final ThreadLocal<Boolean> profilingDisabled = new ThreadLocal<>();
 
     private final Predicate<String> transformationFilter;
     private final StaticProfilingConfiguration configuration;
     private final ExecutionTimeRegistrarMetadataSelector registrarMetadataSelector;
     private final NativeClassMethodsCollector nativeClassMethodsCollector;
+    private final ClassMetadataIndex classMetadataIndex;
+    private final TypeHierarchyCollector typeHierarchyCollector;
     private final SpyInjector spyInjector;
+    private final DynamicProfilingConfigurationHolder dynamicConfigurationHolder;
+    private final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService;
+    private final TransformedBytecodeCache bytecodeCache;
+    private final TrivialMethodsClassifier trivialMethodsClassifier;
+    private final MethodsCodeSizeCollector methodsCodeSizeCollector;
+    private final TransformationMetrics metrics;
+
+    private volatile boolean detached;
 
     public ProfilingTransformer(
             final Predicate<String> transformationFilter,
             final StaticProfilingConfiguration configuration,
             final ExecutionTimeRegistrarMetadataSelector registrarMetadataSelector,
             final NativeClassMethodsCollector nativeClassMethodsCollector,
-            final SpyInjector spyInjector
+            final ClassMetadataIndex classMetadataIndex,
+            final SpyInjector spyInjector,
+            final DynamicProfilingConfigurationHolder dynamicConfigurationHolder,
+            final AdaptiveDeinstrumentationService adaptiveDeinstrumentationService,
+            final TransformedBytecodeCache bytecodeCache
     ) {
         this.transformationFilter = checkNotNull(transformationFilter, "transformationFilter");
         this.configuration = checkNotNull(configuration, "configuration");
         this.registrarMetadataSelector = checkNotNull(registrarMetadataSelector, "registrarMetadataSelector");
         this.nativeClassMethodsCollector = checkNotNull(nativeClassMethodsCollector, "nativeClassMethodsCollector");
+        this.classMetadataIndex = checkNotNull(classMetadataIndex, "classMetadataIndex");
+        this.typeHierarchyCollector = new TypeHierarchyCollector(classMetadataIndex);
         this.spyInjector = checkNotNull(spyInjector, "spyInjector");
+        this.dynamicConfigurationHolder = dynamicConfigurationHolder;
+        this.adaptiveDeinstrumentationService = adaptiveDeinstrumentationService;
+        this.bytecodeCache = bytecodeCache;
+        this.trivialMethodsClassifier = new TrivialMethodsClassifier(configuration.trivialMethodsElisionConfiguration());
+        this.methodsCodeSizeCollector = new MethodsCodeSizeCollector();
+        this.metrics = new TransformationMetrics();
     }
 
     @Override
@@ -48,30 +84,182 @@ public final class ProfilingTransformer implements ClassFileTransformer {
             final byte[] classFileBuffer
     ) {
         final Boolean isProfilingDisabled = profilingDisabled.get();
-        if (isProfilingDisabled != null && isProfilingDisabled
-                || !this.transformationFilter.test(className)) {
+        if (isProfilingDisabled != null && isProfilingDisabled || this.detached) {
+            return null;
+        }
+
+        this.metrics.onClassSeen();
+        if (!this.transformationFilter.test(className)) {
+            this.metrics.onClassFiltered();
+            return null;
+        }
+
+        final long startTime = System.nanoTime();
+        try {
+            final byte[] result = transform(loader, className, classBeingRedefined, classFileBuffer);
+            if (result != null) {
+                this.metrics.onClassTransformed(System.nanoTime() - startTime);
+            }
+
+            return result;
+        } catch (RuntimeException | LinkageError ex) {
+            this.metrics.onTransformationFailed(System.nanoTime() - startTime);
+            logger.log(Level.WARNING, "Unable to transform class " + className, ex);
+            return null;
+        }
+    }
+
+    private byte[] transform(
+            final ClassLoader loader,
+            final String className,
+            final Class<?> classBeingRedefined,
+            final byte[] classFileBuffer
+    ) {
+
+        /*
+         * Dynamic exclusions are applied to the bytecode only when the classes are retransformed on their changes,
+         * otherwise probes of the excluded methods just skip registration at runtime.
+         */
+        final DynamicProfilingConfiguration dynamicConfiguration =
+                this.dynamicConfigurationHolder == null
+                        ? null
+                        : this.dynamicConfigurationHolder.get();
+        if (dynamicConfiguration != null && dynamicConfiguration.profilingDisabled()) {
             return null;
         }
 
+        /*
+         * Only the initial loading of the class depends on nothing but its bytecode and the static configuration:
+         * retransformations, dynamic exclusions and demotions of methods aren't cached.
+         */
+        final TransformedBytecodeCache.Key cacheKey =
+                this.bytecodeCache != null
+                        && classBeingRedefined == null
+                        && dynamicConfiguration == null
+                        && (this.adaptiveDeinstrumentationService == null || !this.adaptiveDeinstrumentationService.hasDemotedMethods())
+                        ? this.bytecodeCache.createKey(className, classFileBuffer)
+                        : null;
+        if (cacheKey != null) {
+            final byte[] cachedBytecode = this.bytecodeCache.get(cacheKey);
+            if (cachedBytecode != null) {
+                return cachedBytecode;
+            }
+        }
+
         final ClassReader cr = new ClassReader(classFileBuffer);
-        final ClassWriter cw = createClassWriter(cr);
+        final Set<String> trivialMethods = this.trivialMethodsClassifier.classify(cr);
+
+        /*
+         * Frames of the original code are preserved and only the frames of the injected code are emitted,
+         * the writer recomputes all frames (with the type hierarchy lookups) only if that fails.
+         * Class files prior to Java 6 have no frames at all.
+         */
+        final boolean preserveFrames = !this.configuration.computeFrames() && cr.readUnsignedShort(MAJOR_VERSION_OFFSET) >= V1_6;
+        InstrumentedClass result = null;
+        if (preserveFrames) {
+            try {
+                result = instrument(cr, loader, className, dynamicConfiguration, trivialMethods, true);
+            } catch (RuntimeException ex) {
+                this.metrics.onFramesComputationFallback();
+                logger.log(Level.FINE, String.format("Unable to preserve frames of class %s, frames will be computed", className), ex);
+            }
+        }
+
+        if (result == null) {
+            this.classMetadataIndex.register(loader, className, cr);
+            result = instrument(cr, loader, className, dynamicConfiguration, trivialMethods, false);
+        }
+
+        reportBytecodeGrowth(cr, className, classFileBuffer.length, result.bytecode);
+
+        /*
+         * Cache key covers the class itself only: bytecode depending on the other classes (computed frames,
+         * native callees detection) is cached only if they are loaded from the class path covered by the cache fingerprint.
+         */
+        if (cacheKey != null && (!result.dependsOnOtherClasses || isClassPathLoader(loader))) {
+            this.bytecodeCache.put(cacheKey, result.bytecode);
+        }
+
+        return result.bytecode;
+    }
 
-        final ClassVisitor cv = new ProfilingClassTransformer(
+    /*
+     * Methods grown over the HugeMethodLimit by the probes aren't compiled by the JIT at all, so they are reported.
+     * Only a class larger than the limit may contain such a method.
+     */
+    private void reportBytecodeGrowth(
+            final ClassReader originalClassReader,
+            final String className,
+            final int originalSize,
+            final byte[] instrumentedBytecode
+    ) {
+        this.metrics.onClassInstrumented(originalSize, instrumentedBytecode.length);
+        logger.fine(() -> String.format("Class %s instrumented: %d -> %d bytes", className, originalSize, instrumentedBytecode.length));
+
+        if (instrumentedBytecode.length <= HUGE_METHOD_LIMIT) {
+            return;
+        }
+
+        final Map<String, Integer> originalCodeSizes = this.methodsCodeSizeCollector.collect(originalClassReader);
+        final Map<String, Integer> instrumentedCodeSizes = this.methodsCodeSizeCollector.collect(new ClassReader(instrumentedBytecode));
+        instrumentedCodeSizes.forEach((method, codeSize) -> {
+            final Integer originalCodeSize = originalCodeSizes.get(method);
+            if (codeSize > HUGE_METHOD_LIMIT && originalCodeSize != null && originalCodeSize <= HUGE_METHOD_LIMIT) {
+                this.metrics.onHugeMethod();
+                logger.warning(
+                        String.format(
+                                "Method %s.%s exceeds the huge method limit after instrumentation (%d -> %d bytes) and won't be JIT-compiled",
+                                className,
+                                method,
+                                originalCodeSize,
+                                codeSize
+                        )
+                );
+            }
+        });
+    }
+
+    private InstrumentedClass instrument(
+            final ClassReader cr,
+            final ClassLoader loader,
+            final String className,
+            final DynamicProfilingConfiguration dynamicConfiguration,
+            final Set<String> trivialMethods,
+            final boolean preserveFrames
+    ) {
+        final ClassWriter cw =
+                preserveFrames
+                        ? new ClassWriter(cr, ClassWriter.COMPUTE_MAXS)
+                        : createClassWriter(cr, loader);
+
+        final ProfilingClassTransformer cv = new ProfilingClassTransformer(
                 cw,
+                loader,
                 className,
                 this.configuration,
+                dynamicConfiguration,
                 this.registrarMetadataSelector,
                 this.nativeClassMethodsCollector,
-                this.spyInjector
+                this.spyInjector,
+                trivialMethods,
+                this.adaptiveDeinstrumentationService,
+                preserveFrames
         );
 
-        cr.accept(cv, ClassReader.SKIP_FRAMES);
+        cr.accept(cv, preserveFrames ? ClassReader.EXPAND_FRAMES : ClassReader.SKIP_FRAMES);
+        final InstrumentedClass result = new InstrumentedClass(cw.toByteArray(), !preserveFrames || cv.dependsOnOtherClasses());
+
+        final int elidedProbes = cv.elidedProbes();
+        if (elidedProbes > 0) {
+            this.metrics.onProbesElided(elidedProbes);
+            logger.fine(() -> String.format("Probes of %d trivial methods of class %s are elided", elidedProbes, className));
+        }
 
-        return cw.toByteArray();
+        return result;
     }
 
-    private static ClassWriter createClassWriter(ClassReader cr) {
-        final TypeHierarchyCollector typeHierarchyCollector = new TypeHierarchyCollector();
+    private ClassWriter createClassWriter(final ClassReader cr, final ClassLoader loader) {
+        final TypeHierarchyCollector typeHierarchyCollector = this.typeHierarchyCollector;
         return new ClassWriter(cr, ClassWriter.COMPUTE_FRAMES) {
             @Override
             protected String getCommonSuperClass(String type1, String type2) {
@@ -93,8 +281,12 @@ public final class ProfilingTransformer implements ClassFileTransformer {
                     return OBJECT_TYPE;
                 }
 
-                final List<String> superTypes1 = typeHierarchyCollector.collect(type1);
-                final List<String> superTypes2 = typeHierarchyCollector.collect(type2);
+                if (typeHierarchyCollector.isInterface(loader, type1) || typeHierarchyCollector.isInterface(loader, type2)) {
+                    return OBJECT_TYPE;
+                }
+
+                final List<String> superTypes1 = typeHierarchyCollector.collect(loader, type1);
+                final List<String> superTypes2 = typeHierarchyCollector.collect(loader, type2);
 
                 superTypes1.retainAll(superTypes2);
                 return superTypes1.get(0);
@@ -102,6 +294,31 @@ public final class ProfilingTransformer implements ClassFileTransformer {
         };
     }
 
+    private static boolean isClassPathLoader(final ClassLoader loader) {
+        if (loader == null) {
+            return true;
+        }
+
+        for (ClassLoader classPathLoader = ClassLoader.getSystemClassLoader(); classPathLoader != null; classPathLoader = classPathLoader.getParent()) {
+            if (classPathLoader == loader) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public TransformationMetrics metrics() {
+        return this.metrics;
+    }
+
+    /*
+     * Detached transformer leaves all classes as is: being retransformed, they get back their original bytecode.
+     */
+    void detach() {
+        this.detached = true;
+    }
+
     public static void disable() {
         profilingDisabled.set(true);
     }
@@ -109,4 +326,15 @@ public final class ProfilingTransformer implements ClassFileTransformer {
     public static void enable() {
         profilingDisabled.remove();
     }
+
+    private static final class InstrumentedClass {
+
+        private final byte[] bytecode;
+        private final boolean dependsOnOtherClasses;
+
+        private InstrumentedClass(final byte[] bytecode, final boolean dependsOnOtherClasses) {
+            this.bytecode = bytecode;
+            this.dependsOnOtherClasses = dependsOnOtherClasses;
+        }
+    }
 }
@@ -0,0 +1,52 @@
+package ru.joke.profiler.transformation;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+import ru.joke.profiler.configuration.util.MillisTimePropertyParser;
+
+import static ru.joke.profiler.util.ArgUtil.checkPositive;
+
+public final class RetransformationConfiguration {
+
+    private static final String RETRANSFORMATION_PREFIX = "retransformation.";
+
+    private static final String ENABLED = "enabled";
+    private static final String BATCH_SIZE = "batch_size";
+    private static final String BATCH_INTERVAL = "batch_interval";
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long batchIntervalMs;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = RETRANSFORMATION_PREFIX)
+    public RetransformationConfiguration(
+            @ProfilerConfigurationProperty(name = ENABLED) final boolean enabled,
+            @ProfilerConfigurationProperty(name = BATCH_SIZE, defaultValue = "100") final int batchSize,
+            @ProfilerConfigurationProperty(name = BATCH_INTERVAL, defaultValue = "200ms", parser = MillisTimePropertyParser.class) final long batchIntervalMs
+    ) {
+        this.enabled = enabled;
+        this.batchSize = checkPositive(batchSize, "batchSize");
+        this.batchIntervalMs = checkPositive(batchIntervalMs, "batchIntervalMs");
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public long batchIntervalMs() {
+        return batchIntervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return "RetransformationConfiguration{"
+                + "enabled=" + enabled
+                + ", batchSize=" + batchSize
+                + ", batchIntervalMs=" + batchIntervalMs
+                + '}';
+    }
+}
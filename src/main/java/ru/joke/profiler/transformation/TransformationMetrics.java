@@ -0,0 +1,138 @@
+package ru.joke.profiler.transformation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counters of the classes transformation. Classes are transformed concurrently by the loading threads,
+ * so all counters are striped (LongAdder) and never contend on the class loading path.
+ * Transformation time histogram has power of two buckets from 1us up to ~1s, the last bucket counts the rest.
+ */
+public final class TransformationMetrics {
+
+    private static final int TIME_HISTOGRAM_BUCKETS = 22;
+
+    private final LongAdder classesSeen = new LongAdder();
+    private final LongAdder classesFiltered = new LongAdder();
+    private final LongAdder classesTransformed = new LongAdder();
+    private final LongAdder transformationFailures = new LongAdder();
+    private final LongAdder transformationTimeNs = new LongAdder();
+    private final LongAdder[] transformationTimeHistogram;
+    private final LongAdder elidedProbes = new LongAdder();
+    private final LongAdder framesComputationFallbacks = new LongAdder();
+    private final LongAdder originalBytecodeSize = new LongAdder();
+    private final LongAdder instrumentedBytecodeSize = new LongAdder();
+    private final LongAdder hugeMethods = new LongAdder();
+
+    TransformationMetrics() {
+        this.transformationTimeHistogram = new LongAdder[TIME_HISTOGRAM_BUCKETS];
+        for (int i = 0; i < TIME_HISTOGRAM_BUCKETS; i++) {
+            this.transformationTimeHistogram[i] = new LongAdder();
+        }
+    }
+
+    void onClassSeen() {
+        this.classesSeen.increment();
+    }
+
+    void onClassFiltered() {
+        this.classesFiltered.increment();
+    }
+
+    void onClassTransformed(final long transformationTimeNs) {
+        this.classesTransformed.increment();
+        onTransformationTime(transformationTimeNs);
+    }
+
+    void onTransformationFailed(final long transformationTimeNs) {
+        this.transformationFailures.increment();
+        onTransformationTime(transformationTimeNs);
+    }
+
+    void onProbesElided(final int count) {
+        this.elidedProbes.add(count);
+    }
+
+    void onFramesComputationFallback() {
+        this.framesComputationFallbacks.increment();
+    }
+
+    void onClassInstrumented(final int originalSize, final int instrumentedSize) {
+        this.originalBytecodeSize.add(originalSize);
+        this.instrumentedBytecodeSize.add(instrumentedSize);
+    }
+
+    void onHugeMethod() {
+        this.hugeMethods.increment();
+    }
+
+    public long classesSeen() {
+        return this.classesSeen.sum();
+    }
+
+    public long classesFiltered() {
+        return this.classesFiltered.sum();
+    }
+
+    public long classesTransformed() {
+        return this.classesTransformed.sum();
+    }
+
+    public long transformationFailures() {
+        return this.transformationFailures.sum();
+    }
+
+    public long transformationTimeNs() {
+        return this.transformationTimeNs.sum();
+    }
+
+    public long[] transformationTimeHistogram() {
+        final long[] result = new long[TIME_HISTOGRAM_BUCKETS];
+        for (int i = 0; i < TIME_HISTOGRAM_BUCKETS; i++) {
+            result[i] = this.transformationTimeHistogram[i].sum();
+        }
+
+        return result;
+    }
+
+    /*
+     * Upper bounds (exclusive) of the histogram buckets in microseconds, the last bucket is unbounded.
+     */
+    public long[] transformationTimeHistogramBoundsUs() {
+        final long[] result = new long[TIME_HISTOGRAM_BUCKETS];
+        for (int i = 0; i < TIME_HISTOGRAM_BUCKETS - 1; i++) {
+            result[i] = 1L << i;
+        }
+
+        result[TIME_HISTOGRAM_BUCKETS - 1] = Long.MAX_VALUE;
+        return result;
+    }
+
+    public long elidedProbes() {
+        return this.elidedProbes.sum();
+    }
+
+    public long framesComputationFallbacks() {
+        return this.framesComputationFallbacks.sum();
+    }
+
+    public long originalBytecodeSize() {
+        return this.originalBytecodeSize.sum();
+    }
+
+    public long instrumentedBytecodeSize() {
+        return this.instrumentedBytecodeSize.sum();
+    }
+
+    public long hugeMethods() {
+        return this.hugeMethods.sum();
+    }
+
+    private void onTransformationTime(final long transformationTimeNs) {
+        this.transformationTimeNs.add(transformationTimeNs);
+
+        final long timeUs = TimeUnit.NANOSECONDS.toMicros(transformationTimeNs);
+        final int bucket = timeUs == 0 ? 0 : 64 - Long.numberOfLeadingZeros(timeUs);
+        this.transformationTimeHistogram[Math.min(bucket, TIME_HISTOGRAM_BUCKETS - 1)].increment();
+    }
+}
@@ -0,0 +1,304 @@
+package ru.joke.profiler.transformation;
+
+import ru.joke.profiler.ProfilerException;
+import ru.joke.profiler.output.MethodSymbolTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static ru.joke.profiler.util.ArgUtil.checkNotEmpty;
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Persistent cache of the instrumented classes bytecode: cache hits skip parsing, instrumentation and frames computation.
+ * Cache is a memory-mapped append-only file:
+ *  header: magic | format version | fingerprint of the agent version, class path and the effective configuration | committed size;
+ *  records: symbol (method id -> method name) | class (digest of the class name and original bytes -> instrumented bytes).
+ * Instrumented bytecode contains the ids of the interned methods, so the method symbols are persisted along with
+ * the classes and restored into the empty symbol table on startup: ids in the cached bytecode stay valid.
+ * Committed size is updated after the record is written, so a partially written record is never read.
+ * Cache is invalidated as a whole when the fingerprint changes; a changed class just gets the new digest.
+ * In-memory index of the class records is built on startup by a scan of the record headers.
+ */
+public final class TransformedBytecodeCache implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(TransformedBytecodeCache.class.getCanonicalName());
+
+    static final int HEADER_SIZE = 48;
+
+    private static final int MAGIC = 0x4A504243;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FINGERPRINT_OFFSET = 8;
+    private static final int COMMITTED_SIZE_OFFSET = 40;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int DIGEST_LENGTH = 32;
+
+    private static final byte SYMBOL_RECORD = 1;
+    private static final byte CLASS_RECORD = 2;
+
+    private final BytecodeCacheConfiguration configuration;
+    private final byte[] fingerprint;
+    private final MethodSymbolTable methodSymbolTable;
+    private final Map<Key, Entry> index;
+    private final ThreadLocal<MessageDigest> digest;
+
+    private FileChannel channel;
+    private FileLock lock;
+    private MappedByteBuffer buffer;
+    private int committedSize;
+    private int persistedSymbols;
+    private boolean full;
+    private boolean closed;
+
+    public TransformedBytecodeCache(
+            final BytecodeCacheConfiguration configuration,
+            final String fingerprint
+    ) {
+        this.configuration = checkNotNull(configuration, "configuration");
+        this.methodSymbolTable = MethodSymbolTable.getInstance();
+        this.index = new ConcurrentHashMap<>(4096, 0.75f, 64);
+        this.digest = ThreadLocal.withInitial(TransformedBytecodeCache::createDigest);
+        this.fingerprint = this.digest.get().digest(checkNotEmpty(fingerprint, "fingerprint").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*
+     * Must be called before any class is transformed: symbols of the cached classes are restored into the symbol table.
+     */
+    public synchronized void init() {
+        final Path cacheFile = Paths.get(this.configuration.cacheFilePath()).toAbsolutePath();
+        try {
+            if (cacheFile.getParent() != null) {
+                Files.createDirectories(cacheFile.getParent());
+            }
+
+            this.channel = FileChannel.open(cacheFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.lock = this.channel.tryLock();
+            if (this.lock == null) {
+                this.channel.close();
+                throw new ProfilerException("Bytecode cache file is used by another process: " + cacheFile);
+            }
+
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.configuration.maxSizeBytes());
+        } catch (IOException ex) {
+            close();
+            throw new ProfilerException("Unable to open bytecode cache file: " + cacheFile, ex);
+        }
+
+        if (!isHeaderValid() || !load()) {
+            reset();
+        }
+
+        logger.info(String.format("Bytecode cache %s opened: %d classes, %d bytes used", cacheFile, this.index.size(), this.committedSize));
+    }
+
+    Key createKey(final String className, final byte[] classFileBuffer) {
+        final MessageDigest digest = this.digest.get();
+        digest.update(className.getBytes(StandardCharsets.UTF_8));
+        digest.update(classFileBuffer);
+
+        return new Key(digest.digest());
+    }
+
+    byte[] get(final Key key) {
+        final Entry entry = this.index.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        final byte[] result = new byte[entry.length];
+        final ByteBuffer reader = this.buffer.duplicate();
+        reader.position(entry.offset);
+        reader.get(result);
+
+        return result;
+    }
+
+    synchronized void put(final Key key, final byte[] transformedBytecode) {
+        if (this.full || this.closed || this.index.containsKey(key)) {
+            return;
+        }
+
+        final int symbolsCount = this.methodSymbolTable.size();
+        final byte[][] symbols = new byte[symbolsCount - this.persistedSymbols][];
+        int requiredSize = 1 + DIGEST_LENGTH + Integer.BYTES + transformedBytecode.length;
+        for (int i = 0; i < symbols.length; i++) {
+            final String method = this.methodSymbolTable.resolve(this.persistedSymbols + i);
+            if (method == null) {
+                return;
+            }
+
+            symbols[i] = method.getBytes(StandardCharsets.UTF_8);
+            requiredSize += 1 + Integer.BYTES * 2 + symbols[i].length;
+        }
+
+        if ((long) this.committedSize + requiredSize > this.buffer.capacity()) {
+            this.full = true;
+            logger.warning("Bytecode cache is full, new classes will not be cached: " + this.configuration);
+            return;
+        }
+
+        final ByteBuffer writer = this.buffer.duplicate();
+        writer.position(this.committedSize);
+        for (int i = 0; i < symbols.length; i++) {
+            writer.put(SYMBOL_RECORD)
+                    .putInt(this.persistedSymbols + i)
+                    .putInt(symbols[i].length)
+                    .put(symbols[i]);
+        }
+
+        writer.put(CLASS_RECORD)
+                .put(key.digest)
+                .putInt(transformedBytecode.length);
+        final int offset = writer.position();
+        writer.put(transformedBytecode);
+
+        this.persistedSymbols = symbolsCount;
+        commit(writer.position());
+        this.index.put(key, new Entry(offset, transformedBytecode.length));
+    }
+
+    @Override
+    public synchronized void close() {
+        // mapping stays valid after the channel is closed, so the cached classes can still be read
+        this.closed = true;
+        try {
+            if (this.buffer != null) {
+                this.buffer.force();
+            }
+            if (this.lock != null) {
+                this.lock.release();
+            }
+            if (this.channel != null) {
+                this.channel.close();
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Unable to close bytecode cache", ex);
+        }
+    }
+
+    private boolean isHeaderValid() {
+        if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+            return false;
+        }
+
+        final byte[] storedFingerprint = new byte[DIGEST_LENGTH];
+        final ByteBuffer reader = this.buffer.duplicate();
+        reader.position(FINGERPRINT_OFFSET);
+        reader.get(storedFingerprint);
+
+        final long committedSize = this.buffer.getLong(COMMITTED_SIZE_OFFSET);
+        return Arrays.equals(storedFingerprint, this.fingerprint)
+                && committedSize >= HEADER_SIZE
+                && committedSize <= this.buffer.capacity();
+    }
+
+    private boolean load() {
+        final int committedSize = (int) this.buffer.getLong(COMMITTED_SIZE_OFFSET);
+        final ByteBuffer reader = this.buffer.duplicate();
+        reader.position(HEADER_SIZE);
+        reader.limit(committedSize);
+
+        try {
+            while (reader.hasRemaining()) {
+                final byte recordType = reader.get();
+                if (recordType == SYMBOL_RECORD) {
+                    final int methodId = reader.getInt();
+                    final byte[] method = new byte[reader.getInt()];
+                    reader.get(method);
+                    if (this.methodSymbolTable.intern(new String(method, StandardCharsets.UTF_8)) != methodId) {
+                        logger.warning("Method ids of the bytecode cache don't match the symbol table, cache will be reset");
+                        return false;
+                    }
+                } else if (recordType == CLASS_RECORD) {
+                    final byte[] digest = new byte[DIGEST_LENGTH];
+                    reader.get(digest);
+                    final int length = reader.getInt();
+                    this.index.put(new Key(digest), new Entry(reader.position(), length));
+                    reader.position(reader.position() + length);
+                } else {
+                    logger.warning("Bytecode cache is corrupted, cache will be reset");
+                    return false;
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Bytecode cache is corrupted, cache will be reset", ex);
+            return false;
+        }
+
+        this.committedSize = committedSize;
+        this.persistedSymbols = this.methodSymbolTable.size();
+        return true;
+    }
+
+    private void reset() {
+        this.index.clear();
+        this.persistedSymbols = 0;
+
+        this.buffer.putInt(0, MAGIC);
+        this.buffer.putInt(Integer.BYTES, FORMAT_VERSION);
+        final ByteBuffer writer = this.buffer.duplicate();
+        writer.position(FINGERPRINT_OFFSET);
+        writer.put(this.fingerprint);
+        commit(HEADER_SIZE);
+    }
+
+    private void commit(final int committedSize) {
+        this.committedSize = committedSize;
+        this.buffer.putLong(COMMITTED_SIZE_OFFSET, committedSize);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new ProfilerException(ex);
+        }
+    }
+
+    static final class Key {
+
+        private final byte[] digest;
+        private final int hash;
+
+        private Key(final byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Key && Arrays.equals(this.digest, ((Key) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    private static final class Entry {
+
+        private final int offset;
+        private final int length;
+
+        private Entry(final int offset, final int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ru.joke.profiler.transformation;
+
+import org.objectweb.asm.*;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.objectweb.asm.Opcodes.*;
+import static ru.joke.profiler.util.ArgUtil.checkNotNull;
+
+/*
+ * Pre-pass over the class bytecode that finds the methods which aren't worth a probe: bridges, synthetic methods
+ * (when configured) and short straight-line methods without calls, loops, exception handlers and monitors,
+ * i.e. getters, setters, trivial equals / hashCode and so on. The probe costs more than such a method itself
+ * and prevents its inlining, while its execution time is accounted in the caller anyway.
+ */
+final class TrivialMethodsClassifier {
+
+    private final TrivialMethodsElisionConfiguration configuration;
+
+    TrivialMethodsClassifier(final TrivialMethodsElisionConfiguration configuration) {
+        this.configuration = checkNotNull(configuration, "configuration");
+    }
+
+    /*
+     * Returns the set of the trivial methods keys (name + descriptor) of the class.
+     */
+    Set<String> classify(final ClassReader classReader) {
+        if (!this.configuration.enabled()) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> trivialMethods = new HashSet<>();
+        classReader.accept(new ClassVisitor(ASM9) {
+            @Override
+            public MethodVisitor visitMethod(
+                    final int access,
+                    final String name,
+                    final String descriptor,
+                    final String signature,
+                    final String[] exceptions
+            ) {
+                if ((access & (ACC_NATIVE | ACC_ABSTRACT)) != 0) {
+                    return null;
+                }
+
+                if ((access & ACC_BRIDGE) != 0 && configuration.skipBridges()
+                        || (access & ACC_SYNTHETIC) != 0 && configuration.skipSynthetic()) {
+                    trivialMethods.add(toMethodKey(name, descriptor));
+                    return null;
+                }
+
+                return (access & ACC_SYNCHRONIZED) == 0
+                        ? new MethodShapeVisitor(name, descriptor, trivialMethods)
+                        : null;
+            }
+        }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        return trivialMethods;
+    }
+
+    static String toMethodKey(final String methodName, final String methodDesc) {
+        return methodName + methodDesc;
+    }
+
+    private final class MethodShapeVisitor extends MethodVisitor {
+
+        private final String methodName;
+        private final String methodDesc;
+        private final Set<String> trivialMethods;
+        private final Set<Label> visitedLabels;
+
+        private int instructionsCount;
+        private boolean trivial;
+
+        private MethodShapeVisitor(
+                final String methodName,
+                final String methodDesc,
+                final Set<String> trivialMethods
+        ) {
+            super(ASM9);
+            this.methodName = methodName;
+            this.methodDesc = methodDesc;
+            this.trivialMethods = trivialMethods;
+            this.visitedLabels = new HashSet<>();
+            this.trivial = true;
+        }
+
+        @Override
+        public void visitLabel(final Label label) {
+            this.visitedLabels.add(label);
+        }
+
+        @Override
+        public void visitInsn(final int opcode) {
+            onInstruction(opcode != MONITORENTER && opcode != MONITOREXIT);
+        }
+
+        @Override
+        public void visitIntInsn(final int opcode, final int operand) {
+            onInstruction(true);
+        }
+
+        @Override
+        public void visitVarInsn(final int opcode, final int varIndex) {
+            onInstruction(true);
+        }
+
+        @Override
+        public void visitTypeInsn(final int opcode, final String type) {
+            onInstruction(true);
+        }
+
+        @Override
+        public void visitFieldInsn(final int opcode, final String owner, final String name, final String descriptor) {
+            onInstruction(true);
+        }
+
+        @Override
+        public void visitMethodInsn(final int opcode, final String owner, final String name, final String descriptor, final boolean isInterface) {
+            onInstruction(false);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(final String name, final String descriptor, final Handle bootstrapMethodHandle, final Object... bootstrapMethodArguments) {
+            onInstruction(false);
+        }
+
+        @Override
+        public void visitJumpInsn(final int opcode, final Label label) {
+            // backward jump means loop
+            onInstruction(!this.visitedLabels.contains(label));
+        }
+
+        @Override
+        public void visitLdcInsn(final Object value) {
+            onInstruction(true);
+        }
+
+        @Override
+        public void visitIincInsn(final int varIndex, final int increment) {
+            onInstruction(true);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(final int min, final int max, final Label dflt, final Label... labels) {
+            onInstruction(false);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+            onInstruction(false);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(final String descriptor, final int numDimensions) {
+            onInstruction(true);
+        }
+
+        @Override
+        public void visitTryCatchBlock(final Label start, final Label end, final Label handler, final String type) {
+            this.trivial = false;
+        }
+
+        @Override
+        public void visitEnd() {
+            if (this.trivial) {
+                this.trivialMethods.add(toMethodKey(this.methodName, this.methodDesc));
+            }
+        }
+
+        private void onInstruction(final boolean trivialInstruction) {
+            this.trivial &= trivialInstruction && ++this.instructionsCount <= configuration.maxInstructions();
+        }
+    }
+}
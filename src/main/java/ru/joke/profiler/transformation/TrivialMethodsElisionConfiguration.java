@@ -0,0 +1,60 @@
+package ru.joke.profiler.transformation;
+
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationPropertiesWrapper;
+import ru.joke.profiler.configuration.meta.ProfilerConfigurationProperty;
+
+import static ru.joke.profiler.util.ArgUtil.checkNonNegative;
+
+public final class TrivialMethodsElisionConfiguration {
+
+    private static final String TRIVIAL_METHODS_ELISION_PREFIX = "trivial_methods_elision.";
+
+    private static final String ENABLED = "enabled";
+    private static final String MAX_INSTRUCTIONS = "max_instructions";
+    private static final String SKIP_BRIDGES = "skip_bridges";
+    private static final String SKIP_SYNTHETIC = "skip_synthetic";
+
+    private final boolean enabled;
+    private final int maxInstructions;
+    private final boolean skipBridges;
+    private final boolean skipSynthetic;
+
+    @ProfilerConfigurationPropertiesWrapper(prefix = TRIVIAL_METHODS_ELISION_PREFIX)
+    public TrivialMethodsElisionConfiguration(
+            @ProfilerConfigurationProperty(name = ENABLED) final boolean enabled,
+            @ProfilerConfigurationProperty(name = MAX_INSTRUCTIONS, defaultValue = "10") final int maxInstructions,
+            @ProfilerConfigurationProperty(name = SKIP_BRIDGES, defaultValue = "true") final boolean skipBridges,
+            @ProfilerConfigurationProperty(name = SKIP_SYNTHETIC) final boolean skipSynthetic
+    ) {
+        this.enabled = enabled;
+        this.maxInstructions = checkNonNegative(maxInstructions, "maxInstructions");
+        this.skipBridges = skipBridges;
+        this.skipSynthetic = skipSynthetic;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public int maxInstructions() {
+        return maxInstructions;
+    }
+
+    public boolean skipBridges() {
+        return skipBridges;
+    }
+
+    public boolean skipSynthetic() {
+        return skipSynthetic;
+    }
+
+    @Override
+    public String toString() {
+        return "TrivialMethodsElisionConfiguration{"
+                + "enabled=" + enabled
+                + ", maxInstructions=" + maxInstructions
+                + ", skipBridges=" + skipBridges
+                + ", skipSynthetic=" + skipSynthetic
+                + '}';
+    }
+}
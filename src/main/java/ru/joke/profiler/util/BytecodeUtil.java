@@ -55,7 +55,7 @@ public abstract class BytecodeUtil {
     }
 
     public static String toBytecodeFormat(final Class<?> clazz) {
-        return checkNotNull(clazz, "clazz").getCanonicalName().replace('.', '/');
+        return checkNotNull(clazz, "clazz").getName().replace('.', '/');
     }
 
     private static String getTypeSignature(final Class<?> type) {
@@ -0,0 +1,32 @@
+package ru.joke.profiler.util;
+
+public abstract class HexUtil {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int LONG_HEX_LENGTH = 16;
+
+    public static String toHex(final long value) {
+        final char[] result = new char[LONG_HEX_LENGTH];
+        fillHex(result, 0, value);
+        return new String(result);
+    }
+
+    public static String toHex(final long high, final long low) {
+        final char[] result = new char[LONG_HEX_LENGTH * 2];
+        fillHex(result, 0, high);
+        fillHex(result, LONG_HEX_LENGTH, low);
+        return new String(result);
+    }
+
+    private static void fillHex(
+            final char[] target,
+            final int offset,
+            final long value
+    ) {
+        for (int i = LONG_HEX_LENGTH - 1; i >= 0; i--) {
+            target[offset + LONG_HEX_LENGTH - 1 - i] = HEX_DIGITS[(int) (value >>> (i * 4)) & 0xF];
+        }
+    }
+
+    private HexUtil() {}
+}